@@ -0,0 +1,77 @@
+package com.power.dialer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Latency of reading an agent's queue while the agent holds a growing number of COMPLETED leads from earlier calls.
+ * The agent has one QUEUED and one WAITING_TO_BE_ENGAGED lead, the answers are the same whatever its history
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dsqlite4java.library.path=target/dependencies")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AgentHistoryBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    @Param({"DYNAMODB_LOCAL"})
+    public Backend backend;
+
+    @Param({"0", "1000", "100000"})
+    public int completedLeads;
+
+    private Store store;
+    private String agentId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.store = this.backend.open(0, 1);
+        this.agentId = Backend.agentId(0);
+        final List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < this.completedLeads + 2; i++) {
+            final LeadStatus status = i == 0 ? LeadStatus.QUEUED : i == 1 ? LeadStatus.WAITING_TO_BE_ENGAGED : LeadStatus.COMPLETED;
+            leads.add(Lead.builder().phoneNumber(Backend.phoneNumber(i)).currentStatus(status).agentId(this.agentId).build());
+            if (leads.size() == SEED_BATCH_SIZE) {
+                this.store.getPowerDialerDao().updateLeads(leads);
+                leads.clear();
+            }
+        }
+        this.store.getPowerDialerDao().updateLeads(leads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.store.close();
+    }
+
+    @Benchmark
+    public Lead getNextLead() {
+        return this.store.getPowerDialerDao().getNextLead(this.agentId);
+    }
+
+    @Benchmark
+    public List<Lead> getAllLeads() {
+        return this.store.getPowerDialerDao().getAllLeads(this.agentId);
+    }
+}
@@ -0,0 +1,139 @@
+package com.power.dialer.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.power.dialer.dao.DurabilityConfig;
+import com.power.dialer.dao.DurablePowerDialerDao;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.dao.PowerDialerDaoImpl;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.AgentRecord;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+/*
+ * Stores the benchmarks run against. DURABLE logs every write to a temporary directory and waits for it to sync.
+ * DYNAMODB_LOCAL runs DynamoDB Local in process and needs the sqlite4java native libraries, the benchmarks point
+ * sqlite4java.library.path at target/dependencies
+ */
+public enum Backend {
+
+    MEMORY {
+        @Override
+        Store open() {
+            return new Store(new InMemoryPowerDialerDao(), () -> { });
+        }
+    },
+    DURABLE {
+        @Override
+        Store open() {
+            final Path directory = createTempDirectory();
+            final DurablePowerDialerDao durablePowerDialerDao = new DurablePowerDialerDao(DurabilityConfig.builder().directory(directory).build());
+            return new Store(durablePowerDialerDao, () -> {
+                durablePowerDialerDao.close();
+                deleteDirectory(directory);
+            });
+        }
+    },
+    DYNAMODB_LOCAL {
+        @Override
+        Store open() {
+            final AmazonDynamoDB dynamoDb = DynamoDBEmbedded.create().amazonDynamoDB();
+            final DynamoDBMapper dynamoDbMapper = new DynamoDBMapper(dynamoDb);
+            createTables(dynamoDb, dynamoDbMapper);
+            return new Store(new PowerDialerDaoImpl(dynamoDb, dynamoDbMapper), dynamoDb::shutdown);
+        }
+    };
+
+    public static final String DEFAULT_AGENT = "NONE";
+    // Phone numbers are fixed width, so their order is the same as the lead order
+    private static final long FIRST_PHONE_NUMBER = 1_000_000_000L;
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    abstract Store open();
+
+    /**
+     * Opens an empty store and fills it with AVAILABLE leads and OFF_DUTY agents
+     * @param leads number of leads
+     * @param agents number of agents, named agent0 to agent{agents - 1}
+     * @return seeded store, to be closed after the run
+     */
+    public Store open(final int leads, final int agents) {
+        final Store store = this.open();
+        final List<Lead> leadBatch = new ArrayList<>();
+        for (int i = 0; i < leads; i++) {
+            leadBatch.add(Lead.builder().phoneNumber(phoneNumber(i)).currentStatus(LeadStatus.AVAILABLE).agentId(DEFAULT_AGENT).build());
+            if (leadBatch.size() == SEED_BATCH_SIZE || i == leads - 1) {
+                store.getPowerDialerDao().updateLeads(leadBatch);
+                leadBatch.clear();
+            }
+        }
+        final List<Agent> agentBatch = new ArrayList<>();
+        for (int i = 0; i < agents; i++) {
+            agentBatch.add(Agent.builder().agentId(agentId(i)).agentStatus(AgentStatus.OFF_DUTY).build());
+        }
+        if (!agentBatch.isEmpty()) {
+            store.getPowerDialerDao().updateAgents(agentBatch);
+        }
+        return store;
+    }
+
+    public static String phoneNumber(final int lead) {
+        return String.valueOf(FIRST_PHONE_NUMBER + lead);
+    }
+
+    public static String agentId(final int agent) {
+        return "agent" + agent;
+    }
+
+    static Path createTempDirectory() {
+        try {
+            return Files.createTempDirectory("power-dialer-state");
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteDirectory(final Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void createTables(final AmazonDynamoDB dynamoDb, final DynamoDBMapper dynamoDbMapper) {
+        final ProvisionedThroughput provisionedThroughput = new ProvisionedThroughput(1L, 1L);
+
+        final CreateTableRequest createAgentTableRequest = dynamoDbMapper.generateCreateTableRequest(AgentRecord.class);
+        final CreateTableRequest createLeadTableRequest = dynamoDbMapper.generateCreateTableRequest(LeadRecord.class);
+
+        createAgentTableRequest.setProvisionedThroughput(provisionedThroughput);
+        createLeadTableRequest.setProvisionedThroughput(provisionedThroughput);
+        createLeadTableRequest.getGlobalSecondaryIndexes().forEach(index -> index.setProvisionedThroughput(provisionedThroughput));
+        createLeadTableRequest.getGlobalSecondaryIndexes().forEach(index -> index.setProjection(new Projection().withProjectionType(
+            ProjectionType.ALL)));
+
+        dynamoDb.createTable(createAgentTableRequest);
+        dynamoDb.createTable(createLeadTableRequest);
+    }
+}
@@ -0,0 +1,119 @@
+package com.power.dialer.benchmarks;
+
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.power.dialer.compute.LeadPool;
+import com.power.dialer.compute.LeadSelectionPolicy;
+import com.power.dialer.compute.LeadSelector;
+import com.power.dialer.compute.PriorityLeadSelector;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Latency of claiming a lead straight from the lead table compared with claiming it through a LeadPool or a
+ * PriorityLeadSelector while the number of AVAILABLE leads grows. Every claimed lead goes back to the pool after the
+ * invocation
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dsqlite4java.library.path=target/dependencies")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LeadClaimBenchmark {
+
+    public enum Selector {
+        DIRECT,
+        POOLED,
+        PRIORITIZED
+    }
+
+    @Benchmark
+    public String claimLead(final ClaimState claims, final Agent agent) {
+        agent.phoneNumber = claims.leadSelector.claimLead(agent.agentId);
+        return agent.phoneNumber;
+    }
+
+    @State(Scope.Benchmark)
+    public static class ClaimState {
+
+        @Param({"DYNAMODB_LOCAL"})
+        public Backend backend;
+
+        @Param({"1000", "10000", "50000"})
+        public int leads;
+
+        @Param({"DIRECT", "POOLED", "PRIORITIZED"})
+        public Selector selector;
+
+        private Store store;
+        private LeadPool leadPool;
+        private PriorityLeadSelector priorityLeadSelector;
+        private LeadSelector leadSelector;
+        private final AtomicInteger nextAgent = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.store = this.backend.open(this.leads, 0);
+            this.leadPool = new LeadPool(this.store.getPowerDialerDao());
+            // Every lead may be called at any time, like leads without a timezone
+            this.priorityLeadSelector = new PriorityLeadSelector(this.store.getPowerDialerDao(), LeadSelectionPolicy.builder()
+                .callingWindowStart(LocalTime.MIDNIGHT)
+                .callingWindowEnd(LocalTime.MIDNIGHT)
+                .retryDelayMillis(0)
+                .build());
+            if (Selector.POOLED.equals(this.selector)) {
+                this.leadPool.refill();
+                this.leadSelector = this.leadPool;
+            } else if (Selector.PRIORITIZED.equals(this.selector)) {
+                this.priorityLeadSelector.refresh();
+                this.leadSelector = this.priorityLeadSelector;
+            } else {
+                this.leadSelector = this.store.getPowerDialerDao()::claimLead;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.leadPool.close();
+            this.priorityLeadSelector.close();
+            this.store.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Agent {
+
+        private String agentId;
+        private String phoneNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(final ClaimState claims) {
+            this.agentId = Backend.agentId(claims.nextAgent.getAndIncrement());
+        }
+
+        @TearDown(Level.Invocation)
+        public void release(final ClaimState claims) {
+            if (this.phoneNumber != null) {
+                claims.store.getPowerDialerDao().transitionLeadStatus(this.phoneNumber, EnumSet.of(LeadStatus.QUEUED), LeadStatus.AVAILABLE,
+                    Backend.DEFAULT_AGENT);
+                this.phoneNumber = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.power.dialer.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.power.dialer.ingestion.ImportProgress;
+import com.power.dialer.ingestion.LeadImporter;
+
+/*
+ * Time for a LeadImporter to load a CSV upload into an empty store. The upload has formatted phone numbers, a metadata
+ * column and one duplicate every 20 leads, like a campaign export would
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsqlite4java.library.path=target/dependencies"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class LeadImportBenchmark {
+
+    private static final int DUPLICATE_EVERY = 20;
+
+    @Param({"MEMORY", "DURABLE", "DYNAMODB_LOCAL"})
+    public Backend backend;
+
+    @Param({"1000000"})
+    public int leads;
+
+    @Param({"1", "16"})
+    public int writers;
+
+    private Path directory;
+    private Path upload;
+    private Store store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.directory = Backend.createTempDirectory();
+        this.upload = this.directory.resolve("leads.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(this.upload, StandardCharsets.UTF_8)) {
+            writer.write("phoneNumber,timezone\n");
+            for (int i = 0; i < this.leads; i++) {
+                final String phoneNumber = Backend.phoneNumber(i % DUPLICATE_EVERY == 0 && i > 0 ? i - 1 : i);
+                writer.write(String.format("+1 (%s) %s-%s,PST%n", phoneNumber.substring(0, 3), phoneNumber.substring(3, 6),
+                    phoneNumber.substring(6)));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openStore() {
+        this.store = this.backend.open();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() {
+        this.store.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Backend.deleteDirectory(this.directory);
+    }
+
+    @Benchmark
+    public ImportProgress importLeads() {
+        return new LeadImporter(this.store.getPowerDialerDao(), this.writers).importLeads(this.upload);
+    }
+}
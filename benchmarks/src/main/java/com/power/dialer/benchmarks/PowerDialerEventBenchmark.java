@@ -0,0 +1,222 @@
+package com.power.dialer.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import com.power.dialer.compute.FixedDialRatio;
+import com.power.dialer.compute.PowerDialer;
+import com.power.dialer.compute.PowerDialerImpl;
+import com.power.dialer.dao.CountingPowerDialerDao;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.sun.management.ThreadMXBean;
+
+/*
+ * Throughput and latency percentiles of the PowerDialerImpl events, plus the dao calls each event makes and the bytes
+ * it allocates on the calling thread. -prof gc reports gc.alloc.rate.norm as well, but it also counts the per
+ * invocation setup, the bytes per event printed at the end of a trial only count the event. Every JMH
+ * thread is one agent, e.g. -t 1000 for 1,000 concurrent agents. Each agent holds up to 3 leads at a time, so the
+ * lead table has to be at least 3 times the number of threads. The state an event needs, e.g. a logged in agent with
+ * a ringing lead, is set up before every invocation and is not measured. -p pipelined=false,true compares refilling
+ * the agent's queue within the event with refilling it on the common pool, the dao calls of a pipelined event then
+ * leave out the claims of the refill, which run on another thread
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dsqlite4java.library.path=target/dependencies")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PowerDialerEventBenchmark {
+
+    private static final int AGENTS = 1_000;
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Benchmark
+    public void onAgentLogin(final DialerState dialer, final LoggedOutAgent agent) {
+        dialer.measure(() -> dialer.powerDialer.onAgentLogin(agent.agentId));
+    }
+
+    @Benchmark
+    public void onAgentLogout(final DialerState dialer, final LoggedInAgent agent) {
+        dialer.measure(() -> dialer.powerDialer.onAgentLogout(agent.agentId));
+    }
+
+    @Benchmark
+    public void onCallEnded(final DialerState dialer, final EngagedAgent agent) {
+        dialer.measure(() -> dialer.powerDialer.onCallEnded(agent.agentId, agent.phoneNumber));
+    }
+
+    @Benchmark
+    public void onCallFailed(final DialerState dialer, final DialingAgent agent) {
+        dialer.measure(() -> dialer.powerDialer.onCallFailed(agent.agentId, agent.phoneNumber));
+    }
+
+    @State(Scope.Benchmark)
+    public static class DialerState {
+
+        @Param({"MEMORY", "DURABLE", "DYNAMODB_LOCAL"})
+        public Backend backend;
+
+        @Param({"1000", "100000", "1000000"})
+        public int leads;
+
+        @Param({"false"})
+        public boolean pipelined;
+
+        private Store store;
+        private CountingPowerDialerDao countingPowerDialerDao;
+        private PowerDialer powerDialer;
+        private final AtomicInteger nextAgent = new AtomicInteger();
+        private final LongAdder daoCalls = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder events = new LongAdder();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.store = this.backend.open(this.leads, AGENTS);
+            this.countingPowerDialerDao = new CountingPowerDialerDao(this.store.getPowerDialerDao());
+            this.powerDialer = new PowerDialerImpl(this.countingPowerDialerDao, this.countingPowerDialerDao::claimLead,
+                ForkJoinPool.commonPool(), new FixedDialRatio(2), this.pipelined);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(final BenchmarkParams params) {
+            final long events = Math.max(1, this.events.sum());
+            System.out.println(String.format("%n%s dao calls per event: %.2f, bytes allocated per event: %.0f",
+                params.getBenchmark(), (double) this.daoCalls.sum() / events, (double) this.allocatedBytes.sum() / events));
+            this.store.close();
+        }
+
+        PowerDialerDao getPowerDialerDao() {
+            return this.store.getPowerDialerDao();
+        }
+
+        String nextAgentId() {
+            final int agent = this.nextAgent.getAndIncrement();
+            if (agent >= AGENTS) {
+                throw new IllegalStateException(String.format("At most %d agents, run with fewer threads", AGENTS));
+            }
+            return Backend.agentId(agent);
+        }
+
+        void logIn(final String agentId) {
+            if (AgentStatus.OFF_DUTY.equals(this.getPowerDialerDao().getAgent(agentId).getAgentStatus())) {
+                this.powerDialer.onAgentLogin(agentId);
+            }
+        }
+
+        String getDialedLead(final String agentId) {
+            return this.getPowerDialerDao().getAllLeads(agentId).stream()
+                .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+                .map(Lead::getPhoneNumber)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(String.format("Agent %s is not dialing any lead", agentId)));
+        }
+
+        private void measure(final Runnable event) {
+            final long calls = this.countingPowerDialerDao.getCalls();
+            final long bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+            event.run();
+            this.allocatedBytes.add(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes);
+            this.daoCalls.add(this.countingPowerDialerDao.getCalls() - calls);
+            this.events.increment();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoggedOutAgent {
+
+        private String agentId;
+
+        @Setup(Level.Trial)
+        public void setUp(final DialerState dialer) {
+            this.agentId = dialer.nextAgentId();
+        }
+
+        @Setup(Level.Invocation)
+        public void logOut(final DialerState dialer) {
+            if (!AgentStatus.OFF_DUTY.equals(dialer.getPowerDialerDao().getAgent(this.agentId).getAgentStatus())) {
+                dialer.powerDialer.onAgentLogout(this.agentId);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LoggedInAgent {
+
+        private String agentId;
+
+        @Setup(Level.Trial)
+        public void setUp(final DialerState dialer) {
+            this.agentId = dialer.nextAgentId();
+        }
+
+        @Setup(Level.Invocation)
+        public void logIn(final DialerState dialer) {
+            dialer.logIn(this.agentId);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DialingAgent {
+
+        private String agentId;
+        private String phoneNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(final DialerState dialer) {
+            this.agentId = dialer.nextAgentId();
+        }
+
+        @Setup(Level.Invocation)
+        public void dial(final DialerState dialer) {
+            dialer.logIn(this.agentId);
+            this.phoneNumber = dialer.getDialedLead(this.agentId);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EngagedAgent {
+
+        private String agentId;
+        private String phoneNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(final DialerState dialer) {
+            this.agentId = dialer.nextAgentId();
+        }
+
+        @Setup(Level.Invocation)
+        public void startCall(final DialerState dialer) {
+            if (this.phoneNumber != null) {
+                // Put the lead of the previous call back in the pool, so the lead table never runs dry
+                dialer.getPowerDialerDao().transitionLeadStatus(this.phoneNumber, EnumSet.of(LeadStatus.COMPLETED), LeadStatus.AVAILABLE,
+                    Backend.DEFAULT_AGENT);
+            }
+            dialer.logIn(this.agentId);
+            this.phoneNumber = dialer.getDialedLead(this.agentId);
+            dialer.powerDialer.onCallStarted(this.agentId, this.phoneNumber);
+        }
+    }
+}
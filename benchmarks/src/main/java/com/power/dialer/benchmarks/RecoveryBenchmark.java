@@ -0,0 +1,93 @@
+package com.power.dialer.benchmarks;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.power.dialer.dao.DurabilityConfig;
+import com.power.dialer.dao.DurabilityConfig.SyncPolicy;
+import com.power.dialer.dao.DurablePowerDialerDao;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Time for a DurablePowerDialerDao to recover its state on start. The trial logs the given number of lead transitions,
+ * moving leads between AVAILABLE and QUEUED, and every invocation opens the directory again. With snapshot the last
+ * tenth of the transitions is logged after a snapshot, so recovery loads it and replays only that tenth
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class RecoveryBenchmark {
+
+    private static final int LEADS = 100_000;
+    private static final int AGENTS = 1000;
+
+    @Param({"1000000", "10000000"})
+    public int transitions;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private Path directory;
+    private DurabilityConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.directory = Backend.createTempDirectory();
+        // Syncing is left to close, recovery does not depend on how the log got to disk
+        this.config = DurabilityConfig.builder().directory(this.directory).syncPolicy(SyncPolicy.NEVER).snapshotEveryWrites(0).build();
+        try (DurablePowerDialerDao durablePowerDialerDao = new DurablePowerDialerDao(this.config)) {
+            final List<Lead> leads = new ArrayList<>();
+            for (int i = 0; i < LEADS; i++) {
+                leads.add(Lead.builder().phoneNumber(Backend.phoneNumber(i)).currentStatus(LeadStatus.AVAILABLE)
+                    .agentId(Backend.DEFAULT_AGENT).build());
+            }
+            durablePowerDialerDao.updateLeads(leads);
+            final int snapshotAt = this.snapshot ? this.transitions - this.transitions / 10 : -1;
+            for (int i = 0; i < this.transitions; i++) {
+                if (i == snapshotAt) {
+                    durablePowerDialerDao.snapshot();
+                }
+                final String phoneNumber = Backend.phoneNumber(i % LEADS);
+                if ((i / LEADS) % 2 == 0) {
+                    durablePowerDialerDao.claimLead(Backend.agentId(i % AGENTS), phoneNumber);
+                } else {
+                    durablePowerDialerDao.transitionLeadStatus(phoneNumber, EnumSet.of(LeadStatus.QUEUED), LeadStatus.AVAILABLE,
+                        Backend.DEFAULT_AGENT);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Backend.deleteDirectory(this.directory);
+    }
+
+    @Benchmark
+    public int recover() {
+        try (DurablePowerDialerDao durablePowerDialerDao = new DurablePowerDialerDao(this.config)) {
+            return durablePowerDialerDao.getState().size();
+        }
+    }
+}
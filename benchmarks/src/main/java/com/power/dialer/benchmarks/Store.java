@@ -0,0 +1,23 @@
+package com.power.dialer.benchmarks;
+
+import com.power.dialer.dao.PowerDialerDao;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/*
+ * A seeded PowerDialerDao and whatever has to be shut down once the benchmark is done with it
+ */
+@AllArgsConstructor
+public class Store implements AutoCloseable {
+
+    @Getter
+    @NonNull private final PowerDialerDao powerDialerDao;
+    @NonNull private final Runnable onClose;
+
+    @Override
+    public void close() {
+        this.onClose.run();
+    }
+}
@@ -0,0 +1,121 @@
+package com.power.dialer.compute;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Dial ratio steered by the call outcomes, in constant memory and without locks: each statistic is updated by its own
+ * compare and set loop and the dial ratio is derived from the latest number of dialed leads on read. The number
+ * of leads dialed at once moves up by gain * maxAbandonRate on every connected call and down by gain * (1 - maxAbandonRate)
+ * on every abandoned one, so it only settles where the abandon rate meets the ceiling. It never goes above
+ * 1 / answerRate, which already keeps one answered call per agent on average, the answer rate being an exponentially
+ * weighted moving average. The leads of all agents share the statistics, a single agent's outcomes are too few to
+ * steer on. Run a PowerDialerSimulator to pick the ceiling and the gain for a campaign
+ */
+public class AdaptiveDialRatio implements DialRatioStrategy {
+
+    public static final double DEFAULT_SMOOTHING = 0.02;
+    public static final double DEFAULT_GAIN = 0.2;
+    public static final int DEFAULT_MAX_DIAL_RATIO = 8;
+
+    private final double maxAbandonRate;
+    private final int maxDialRatio;
+    private final double smoothing;
+    private final double gain;
+
+    // Share of dialed leads which picked up, starts at 1 which gives the classic dial ratio of 2
+    private final AtomicLong answerRate = new AtomicLong(Double.doubleToLongBits(1));
+    // Share of the leads which picked up and found no agent
+    private final AtomicLong abandonRate = new AtomicLong(Double.doubleToLongBits(0));
+    // Number of leads to dial at once, rounded to get the dial ratio
+    private final AtomicLong dialedLeads = new AtomicLong(Double.doubleToLongBits(1));
+
+    public AdaptiveDialRatio(final double maxAbandonRate) {
+        this(maxAbandonRate, DEFAULT_MAX_DIAL_RATIO, DEFAULT_SMOOTHING, DEFAULT_GAIN);
+    }
+
+    /**
+     * @param maxAbandonRate abandon rate ceiling, e.g. 0.03 for 3% of the answered calls
+     * @param maxDialRatio upper bound of the dial ratio
+     * @param smoothing weight of the latest outcome in the moving averages, about 1 / number of outcomes remembered
+     * @param gain how fast the number of dialed leads follows the abandoned calls
+     */
+    public AdaptiveDialRatio(final double maxAbandonRate, final int maxDialRatio, final double smoothing, final double gain) {
+        if (maxAbandonRate <= 0 || maxAbandonRate >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid abandon rate ceiling %f", maxAbandonRate));
+        }
+        if (maxDialRatio < 2) {
+            throw new IllegalArgumentException(String.format("Invalid max dial ratio %d", maxDialRatio));
+        }
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException(String.format("Invalid smoothing %f", smoothing));
+        }
+        if (gain <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid gain %f", gain));
+        }
+        this.maxAbandonRate = maxAbandonRate;
+        this.maxDialRatio = maxDialRatio;
+        this.smoothing = smoothing;
+        this.gain = gain;
+    }
+
+    @Override
+    public int getDialRatio(final String agentId) {
+        return (int) Math.round(Double.longBitsToDouble(this.dialedLeads.get())) + 1;
+    }
+
+    @Override
+    public void onCallAnswered(final String agentId) {
+        this.update(this.answerRate, 1);
+        this.update(this.abandonRate, 0);
+        this.adapt(this.gain * this.maxAbandonRate);
+    }
+
+    @Override
+    public void onCallAbandoned(final String agentId) {
+        this.update(this.answerRate, 1);
+        this.update(this.abandonRate, 1);
+        this.adapt(this.gain * (this.maxAbandonRate - 1));
+    }
+
+    @Override
+    public void onCallFailed(final String agentId) {
+        this.update(this.answerRate, 0);
+        this.adapt(0);
+    }
+
+    /**
+     * @return moving average of the share of dialed leads which picked up
+     */
+    public double getAnswerRate() {
+        return Double.longBitsToDouble(this.answerRate.get());
+    }
+
+    /**
+     * @return moving average of the share of answered calls which were abandoned
+     */
+    public double getAbandonRate() {
+        return Double.longBitsToDouble(this.abandonRate.get());
+    }
+
+    private void update(final AtomicLong average, final double sample) {
+        long current;
+        long next;
+        do {
+            current = average.get();
+            final double value = Double.longBitsToDouble(current);
+            next = Double.doubleToLongBits(value + this.smoothing * (sample - value));
+        } while (!average.compareAndSet(current, next));
+    }
+
+    private void adapt(final double step) {
+        // One lead of the queue waits, the others are dialed
+        final int maxDialedLeads = this.maxDialRatio - 1;
+        final double ceiling = 1 / Math.max(this.getAnswerRate(), 1.0 / maxDialedLeads);
+        long current;
+        double next;
+        do {
+            current = this.dialedLeads.get();
+            next = Math.max(1, Math.min(ceiling, Double.longBitsToDouble(current) + step));
+        } while (!this.dialedLeads.compareAndSet(current, Double.doubleToLongBits(next)));
+    }
+}
@@ -0,0 +1,196 @@
+package com.power.dialer.compute;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+
+/*
+ * Serializes the events of every agent without a global lock. Each agentId is hashed onto one of N single threaded
+ * lanes, so the events of an agent run one after the other in the order they were dispatched, e.g. an onCallEnded can
+ * not interleave with the onCallStarted of the same agent, while agents on different lanes run fully in parallel.
+ * The wrapped PowerDialer still has to be safe to share between lanes
+ */
+public class AgentEventDispatcher implements AsyncPowerDialer, AutoCloseable {
+
+    private final PowerDialer powerDialer;
+    private final Lane[] lanes;
+
+    public AgentEventDispatcher(@NonNull final PowerDialer powerDialer) {
+        this(powerDialer, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AgentEventDispatcher(@NonNull final PowerDialer powerDialer, final int laneCount) {
+        if (laneCount <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of lanes %d", laneCount));
+        }
+        this.powerDialer = powerDialer;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            this.lanes[i] = new Lane(i);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> onAgentLogin(final String agentId) {
+        return this.dispatch(agentId, () -> this.powerDialer.onAgentLogin(agentId));
+    }
+
+    @Override
+    public CompletableFuture<Void> onAgentLogout(final String agentId) {
+        return this.dispatch(agentId, () -> this.powerDialer.onAgentLogout(agentId));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallStarted(final String agentId, final String phoneNumber) {
+        return this.dispatch(agentId, () -> this.powerDialer.onCallStarted(agentId, phoneNumber));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallFailed(final String agentId, final String phoneNumber) {
+        return this.dispatch(agentId, () -> this.powerDialer.onCallFailed(agentId, phoneNumber));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallEnded(final String agentId, final String phoneNumber) {
+        return this.dispatch(agentId, () -> this.powerDialer.onCallEnded(agentId, phoneNumber));
+    }
+
+    /**
+     * Runs the onLeadAssigned of a lead handed over to the agent on the agent's lane, see WaitingPowerDialer
+     * @param agentId agent id
+     * @param phoneNumber lead phone number
+     * @return completes once the agent's queue is dialed
+     */
+    public CompletableFuture<Void> onLeadAssigned(final String agentId, final String phoneNumber) {
+        return this.dispatch(agentId, () -> this.powerDialer.onLeadAssigned(agentId, phoneNumber));
+    }
+
+    /**
+     * @return number of lanes
+     */
+    public int getLaneCount() {
+        return this.lanes.length;
+    }
+
+    /**
+     * @param agentId agent id
+     * @return lane the events of the agent run on
+     */
+    public int getLane(@NonNull final String agentId) {
+        final int hash = agentId.hashCode();
+        // Spread the high bits, agent ids often only differ in their last characters
+        return Math.floorMod(hash ^ (hash >>> 16), this.lanes.length);
+    }
+
+    /**
+     * @return number of events waiting or running over all the lanes
+     */
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (final Lane lane : this.lanes) {
+            queueDepth += lane.queueDepth.get();
+        }
+        return queueDepth;
+    }
+
+    /**
+     * @param lane lane index
+     * @return number of events waiting or running on the lane
+     */
+    public int getQueueDepth(final int lane) {
+        return this.lanes[lane].queueDepth.get();
+    }
+
+    /**
+     * @param lane lane index
+     * @return number of events completed on the lane, successfully or not
+     */
+    public long getCompletedEvents(final int lane) {
+        return this.lanes[lane].completed.sum();
+    }
+
+    /**
+     * @param lane lane index
+     * @return average time in nanoseconds from dispatching an event on the lane until it completes, 0 if none completed
+     */
+    public long getAverageLatencyNanos(final int lane) {
+        final long completed = this.lanes[lane].completed.sum();
+        return completed == 0 ? 0 : this.lanes[lane].totalLatencyNanos.sum() / completed;
+    }
+
+    /**
+     * @param lane lane index
+     * @return longest time in nanoseconds from dispatching an event on the lane until it completed
+     */
+    public long getMaxLatencyNanos(final int lane) {
+        return this.lanes[lane].maxLatencyNanos.get();
+    }
+
+    /**
+     * Stops accepting events and waits for the dispatched ones to complete, unless the calling thread is interrupted
+     */
+    @Override
+    public void close() {
+        for (final Lane lane : this.lanes) {
+            lane.executor.shutdown();
+        }
+        try {
+            for (final Lane lane : this.lanes) {
+                lane.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(final String agentId, final Runnable event) {
+        final Lane lane = this.lanes[this.getLane(agentId)];
+        final long dispatched = System.nanoTime();
+        lane.queueDepth.incrementAndGet();
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    event.run();
+                } finally {
+                    lane.record(System.nanoTime() - dispatched);
+                }
+            }, lane.executor);
+        } catch (final RejectedExecutionException e) {
+            lane.queueDepth.decrementAndGet();
+            final CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private static final class Lane {
+
+        private final ExecutorService executor;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+        private Lane(final int index) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "agent-event-lane-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private void record(final long latencyNanos) {
+            this.queueDepth.decrementAndGet();
+            this.completed.increment();
+            this.totalLatencyNanos.add(latencyNanos);
+            this.maxLatencyNanos.accumulate(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.power.dialer.compute;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.power.dialer.exception.AgentSessionTerminationException;
+
+/*
+ * Non-blocking flavour of the PowerDialer. Every action returns as soon as it is started and completes its future once
+ * all the resulting state transitions are written. Failures complete the future exceptionally with the same
+ * exceptions the PowerDialer throws
+ */
+public interface AsyncPowerDialer {
+
+    /**
+     * Action when an Agent logs in. Automatically pulls in dial ratio leads in the Agent's queue and dials all but one of them
+     * @param agentId agent id
+     * @return completes once the first lead is dialed
+     */
+    CompletableFuture<Void> onAgentLogin(final String agentId);
+
+    /**
+     * Action when an Agent logs out. Checks if the Agent's status is not ENGAGED and resets all the pending leads in the Agent's queue
+     * @param agentId agent id
+     * @return completes once the leads are back in the pool, fails with {@link AgentSessionTerminationException} when the Agent is ENGAGED
+     */
+    CompletableFuture<Void> onAgentLogout(final String agentId);
+
+    /**
+     * Action when a communication channel is established between agent and the lead. Updates the status of both agent and lead
+     * @param agentId
+     * @param phoneNumber
+     * @return completes once both statuses are updated
+     */
+    CompletableFuture<Void> onCallStarted(final String agentId, final String phoneNumber);
+
+    /**
+     * Action when a call could not be completed. Dials the next lead, then puts the failed one back in the pool
+     * @param agentId
+     * @param phoneNumber
+     * @return completes once the next lead is dialed and the Agent's queue replenished
+     */
+    CompletableFuture<Void> onCallFailed(final String agentId, final String phoneNumber);
+
+    /**
+     * Action when a call successfully completed. Dials the next lead and completes the current one at the same time
+     * @param agentId
+     * @param phoneNumber
+     * @return completes once the next lead is dialed and the Agent's queue replenished
+     */
+    CompletableFuture<Void> onCallEnded(final String agentId, final String phoneNumber);
+}
@@ -0,0 +1,330 @@
+package com.power.dialer.compute;
+
+import static com.power.dialer.compute.ExpectedStatuses.ANY_AGENT_STATUS;
+import static com.power.dialer.compute.ExpectedStatuses.DIALED_LEAD;
+import static com.power.dialer.compute.ExpectedStatuses.IDLE_AGENT;
+import static com.power.dialer.compute.ExpectedStatuses.NOT_ENGAGED;
+import static com.power.dialer.compute.ExpectedStatuses.ON_DUTY;
+import static com.power.dialer.compute.ExpectedStatuses.QUEUED_LEAD;
+import static com.power.dialer.compute.ExpectedStatuses.WAITING_AGENT;
+import static com.power.dialer.compute.ExpectedStatuses.WAITING_LEAD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.power.dialer.dao.AsyncPowerDialerDao;
+import com.power.dialer.dao.TransitionBatch;
+import com.power.dialer.exception.AgentSessionTerminationException;
+import com.power.dialer.exception.CallToLeadFailedException;
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * Same workflow as the PowerDialerImpl, without blocking a thread on any DynamoDB call. Steps which do not depend
+ * on each other run at the same time, e.g. dialing the next lead while the ended call's lead is completed.
+ * At most maxConcurrentEvents events are in flight, any further event fails fast with a RejectedExecutionException
+ * so callers can back off instead of piling up requests on a throttled table
+ */
+public class AsyncPowerDialerImpl implements AsyncPowerDialer {
+
+    private static final int DIAL_RATIO = 2;
+    private static final int MAX_DIAL_ATTEMPTS = 5;
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    // In Production, use dependency injection(Guice/Spring/Dagger) to inject a singleton bean of this object
+    private final AsyncPowerDialerDao asyncPowerDialerDao;
+    private final int maxConcurrentEvents;
+    private final Semaphore eventPermits;
+    // Number of leads kept in an Agent's queue
+    private final DialRatioStrategy dialRatioStrategy;
+
+    public AsyncPowerDialerImpl(@NonNull final AsyncPowerDialerDao asyncPowerDialerDao, final int maxConcurrentEvents) {
+        this(asyncPowerDialerDao, maxConcurrentEvents, new FixedDialRatio(DIAL_RATIO));
+    }
+
+    public AsyncPowerDialerImpl(@NonNull final AsyncPowerDialerDao asyncPowerDialerDao, final int maxConcurrentEvents,
+            @NonNull final DialRatioStrategy dialRatioStrategy) {
+        if (maxConcurrentEvents <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of concurrent events %d", maxConcurrentEvents));
+        }
+        this.asyncPowerDialerDao = asyncPowerDialerDao;
+        this.maxConcurrentEvents = maxConcurrentEvents;
+        this.eventPermits = new Semaphore(maxConcurrentEvents);
+        this.dialRatioStrategy = dialRatioStrategy;
+    }
+
+    /**
+     * @return number of events currently in flight
+     */
+    public int getEventsInFlight() {
+        return this.maxConcurrentEvents - this.eventPermits.availablePermits();
+    }
+
+    @Override
+    public CompletableFuture<Void> onAgentLogin(final String agentId) {
+        return this.withPermit(() -> this.asyncPowerDialerDao.transitionAgentStatus(agentId, ANY_AGENT_STATUS, AgentStatus.AVAILABLE)
+            .thenCompose(moved -> {
+                if (!moved) {
+                    throw new IllegalArgumentException(String.format("Unknown agent %s", agentId));
+                }
+                // All the leads of the Agent's queue are claimed at the same time
+                final int dialRatio = this.dialRatioStrategy.getDialRatio(agentId);
+                final List<CompletableFuture<String>> claims = new ArrayList<>();
+                for (int i = 0; i < dialRatio; i++) {
+                    claims.add(this.asyncPowerDialerDao.claimLead(agentId));
+                }
+                return CompletableFuture.allOf(claims.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> claims.stream()
+                    .map(CompletableFuture::join)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+            })
+            .thenCompose(queuedLeads -> {
+                if (queuedLeads.isEmpty()) {
+                    throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId));
+                }
+                final String leadToDial = queuedLeads.get(0);
+                final int dialRatio = this.dialRatioStrategy.getDialRatio(agentId);
+                return this.makeCall(agentId, leadToDial, ON_DUTY)
+                    // Dials the rest of the queue but the last lead
+                    .thenCompose(ignored -> queuedLeads.size() == dialRatio && dialRatio > DIAL_RATIO
+                        ? this.makeNextCall(agentId, null, false) : DONE)
+                    .handle((ignored, e) -> isCallToLeadFailure(e) ? this.callFailed(agentId, leadToDial) : complete(e))
+                    .thenCompose(Function.identity());
+            }));
+    }
+
+    @Override
+    public CompletableFuture<Void> onAgentLogout(final String agentId) {
+        return this.withPermit(() -> this.asyncPowerDialerDao.transitionAgentStatus(agentId, NOT_ENGAGED, AgentStatus.OFF_DUTY)
+            .thenCompose(moved -> {
+                if (!moved) {
+                    // The agent is only read to report why the session could not be terminated
+                    return this.asyncPowerDialerDao.getAgent(agentId).thenAccept(agent -> {
+                        throw new AgentSessionTerminationException(String.format("Agent %s status %s. Could not terminate session",
+                            agentId, agent == null ? null : agent.getAgentStatus()));
+                    });
+                }
+                // Reset all the leads in Agent's queue at once
+                return this.asyncPowerDialerDao.getAllLeads(agentId).thenCompose(leads -> CompletableFuture.allOf(leads.stream()
+                    .map(lead -> this.resetLead(agentId, lead.getPhoneNumber()))
+                    .toArray(CompletableFuture<?>[]::new)));
+            }));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallStarted(final String agentId, final String phoneNumber) {
+        final TransitionBatch engage = TransitionBatch.builder()
+            .agent(agentId, WAITING_AGENT, AgentStatus.ENGAGED)
+            .lead(phoneNumber, WAITING_LEAD, LeadStatus.ENGAGED, agentId)
+            .build();
+        // The agent and the lead move together, an agent is never left ENGAGED on a lead which did not start
+        return this.withPermit(() -> this.asyncPowerDialerDao.transitionBatch(engage)
+            .thenCompose(moved -> {
+                if (moved) {
+                    this.dialRatioStrategy.onCallAnswered(agentId);
+                    return CompletableFuture.completedFuture(true);
+                }
+                // The agent took another of its dialed leads first, nobody is there to talk to this one
+                return this.asyncPowerDialerDao.releaseLead(phoneNumber, agentId).thenApply(released -> {
+                    if (released) {
+                        // A lead another event released or engaged first was not abandoned by this call
+                        this.dialRatioStrategy.onCallAbandoned(agentId);
+                    }
+                    return released;
+                });
+            })
+            .thenApply(ignored -> null));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallFailed(final String agentId, final String phoneNumber) {
+        return this.withPermit(() -> this.callFailed(agentId, phoneNumber));
+    }
+
+    @Override
+    public CompletableFuture<Void> onCallEnded(final String agentId, final String phoneNumber) {
+        return this.withPermit(() -> CompletableFuture.allOf(
+            this.makeNextCall(agentId, phoneNumber, false),
+            this.asyncPowerDialerDao.transitionLeadStatus(phoneNumber, DIALED_LEAD, LeadStatus.COMPLETED, agentId)));
+    }
+
+    private CompletableFuture<Void> callFailed(final String agentId, final String phoneNumber) {
+        // The lead goes back to the pool only after the agent's queue is replenished, otherwise the agent could claim it again
+        return this.makeNextCall(agentId, phoneNumber, true)
+            .handle((ignored, e) -> this.resetLead(agentId, phoneNumber).thenCompose(reset -> complete(e)))
+            .thenCompose(Function.identity());
+    }
+
+    /**
+     * Dials the agent's queued leads until all but one of its dial ratio are dialed, then fills the queue back up
+     * @param agentId agent id
+     * @param endedPhoneNumber lead whose call just ended or failed, null if none
+     * @param failed whether the call failed
+     * @return completion of the dials and claims
+     */
+    private CompletableFuture<Void> makeNextCall(final String agentId, final String endedPhoneNumber, final boolean failed) {
+        return this.asyncPowerDialerDao.getAllLeads(agentId).thenCompose(leads -> {
+            final AgentQueue queue = new AgentQueue(leads, endedPhoneNumber);
+            if (queue.endedWhileDialed && failed) {
+                this.dialRatioStrategy.onCallFailed(agentId);
+            }
+            // A lead which failed while it was dialed leaves the agent on its current call
+            final Set<AgentStatus> agentStatuses = queue.endedWhileDialed ? IDLE_AGENT : ON_DUTY;
+            final int dialRatio = this.dialRatioStrategy.getDialRatio(agentId);
+            if (!queue.endedWhileDialed) {
+                return this.dialNextLeads(agentId, queue, dialRatio, agentStatuses);
+            }
+            // The agent's status is checked before dialing, once the agent is waiting the dials leave it alone
+            return this.updateAgentStatus(agentId, IDLE_AGENT, AgentStatus.WAITING_TO_BE_ENGAGED).thenCompose(moved -> {
+                queue.agentWaiting = moved;
+                return moved ? this.dialNextLeads(agentId, queue, dialRatio, agentStatuses)
+                    // The agent took another of its dialed leads, a lead dialed now could only be abandoned
+                    : this.fillQueue(agentId, dialRatio - queue.size(), agentStatuses);
+            });
+        });
+    }
+
+    private CompletableFuture<Void> dialNextLeads(final String agentId, final AgentQueue queue, final int dialRatio,
+            final Set<AgentStatus> agentStatuses) {
+        return this.dialQueuedLeads(agentId, queue, Math.max(1, dialRatio - 1), agentStatuses, 1).thenCompose(ignored -> {
+            if (queue.dialedLeads == 0) {
+                return this.updateAgentStatus(agentId, agentStatuses, AgentStatus.AVAILABLE).thenAccept(moved -> {
+                    if (moved || !queue.endedWhileDialed) {
+                        throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId));
+                    }
+                });
+            }
+            // The agent waits for the leads which are still dialed
+            final CompletableFuture<Boolean> waiting = queue.dialed || queue.agentWaiting ? CompletableFuture.completedFuture(true)
+                : this.updateAgentStatus(agentId, agentStatuses, AgentStatus.WAITING_TO_BE_ENGAGED);
+            return waiting.thenCompose(moved -> this.fillQueue(agentId, dialRatio - queue.size(), agentStatuses));
+        });
+    }
+
+    private CompletableFuture<Void> dialQueuedLeads(final String agentId, final AgentQueue queue, final int leadsToDial,
+            final Set<AgentStatus> agentStatuses, final int attempt) {
+        if (queue.dialedLeads >= leadsToDial || queue.queuedLeads.isEmpty()) {
+            return DONE;
+        }
+        final String phoneNumber = queue.queuedLeads.peek();
+        return (queue.agentWaiting ? this.dialLead(agentId, phoneNumber) : this.makeCall(agentId, phoneNumber, agentStatuses))
+            .handle((ignored, e) -> {
+                if (e == null) {
+                    queue.queuedLeads.poll();
+                    queue.dialedLeads++;
+                    queue.dialed = true;
+                    return this.dialQueuedLeads(agentId, queue, leadsToDial, agentStatuses, attempt);
+                }
+                return isCallToLeadFailure(e) && attempt < MAX_DIAL_ATTEMPTS
+                    ? this.dialQueuedLeads(agentId, queue, leadsToDial, agentStatuses, attempt + 1) : complete(e);
+            })
+            .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Void> fillQueue(final String agentId, final int leads, final Set<AgentStatus> agentStatuses) {
+        // Update agent's queue with new leads to ensure that there are dial ratio leads in an agent's queue at any given time
+        final List<CompletableFuture<String>> claims = new ArrayList<>();
+        for (int i = 0; i < leads; i++) {
+            claims.add(this.asyncPowerDialerDao.claimLead(agentId));
+        }
+        return CompletableFuture.allOf(claims.toArray(new CompletableFuture<?>[0]))
+            .thenCompose(ignored -> claims.stream().anyMatch(claim -> claim.join() == null)
+                ? this.updateAgentStatus(agentId, agentStatuses, AgentStatus.AVAILABLE).thenApply(moved -> null) : DONE);
+    }
+
+    private CompletableFuture<Void> makeCall(final String agentId, final String phoneNumber, final Set<AgentStatus> agentStatuses) {
+        return this.asyncPowerDialerDao.dial(agentId, phoneNumber).thenCompose(ignored -> CompletableFuture.allOf(
+            this.asyncPowerDialerDao.transitionLeadStatus(phoneNumber, QUEUED_LEAD, LeadStatus.WAITING_TO_BE_ENGAGED, agentId),
+            this.updateAgentStatus(agentId, agentStatuses, AgentStatus.WAITING_TO_BE_ENGAGED)));
+    }
+
+    private CompletableFuture<Void> dialLead(final String agentId, final String phoneNumber) {
+        return this.asyncPowerDialerDao.dial(agentId, phoneNumber).thenCompose(ignored ->
+            this.asyncPowerDialerDao.transitionLeadStatus(phoneNumber, QUEUED_LEAD, LeadStatus.WAITING_TO_BE_ENGAGED, agentId))
+            .thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Boolean> updateAgentStatus(final String agentId, final Set<AgentStatus> agentStatuses, final AgentStatus status) {
+        // A logged out agent stays OFF_DUTY
+        return this.asyncPowerDialerDao.transitionAgentStatus(agentId, agentStatuses, status);
+    }
+
+    private CompletableFuture<Void> resetLead(final String agentId, final String phoneNumber) {
+        // A lead which left the agent meanwhile, or whose call started, is not the agent's to release
+        return this.asyncPowerDialerDao.releaseLead(phoneNumber, agentId).thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Void> withPermit(final Supplier<CompletableFuture<Void>> event) {
+        if (!this.eventPermits.tryAcquire()) {
+            return complete(new RejectedExecutionException(String.format("%d events already in flight", this.maxConcurrentEvents)));
+        }
+        CompletableFuture<Void> result;
+        try {
+            result = event.get();
+        } catch (final RuntimeException e) {
+            result = complete(e);
+        }
+        return result.whenComplete((ignored, e) -> this.eventPermits.release());
+    }
+
+    private static boolean isCallToLeadFailure(final Throwable e) {
+        return unwrap(e) instanceof CallToLeadFailedException;
+    }
+
+    private static CompletableFuture<Void> complete(final Throwable e) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        if (e == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(unwrap(e));
+        }
+        return future;
+    }
+
+    private static Throwable unwrap(final Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /*
+     * The leads of an agent's queue while the next calls are dialed. Only touched by one step of the event at a time
+     */
+    private static final class AgentQueue {
+
+        private final Deque<String> queuedLeads = new ArrayDeque<>();
+        private int dialedLeads;
+        private boolean endedWhileDialed;
+        private boolean dialed;
+        private boolean agentWaiting;
+
+        private AgentQueue(final List<Lead> leads, final String endedPhoneNumber) {
+            for (final Lead lead : leads) {
+                if (lead.getPhoneNumber().equals(endedPhoneNumber)) {
+                    this.endedWhileDialed = true;
+                } else if (LeadStatus.QUEUED.equals(lead.getCurrentStatus())) {
+                    this.queuedLeads.add(lead.getPhoneNumber());
+                } else {
+                    this.dialedLeads++;
+                }
+            }
+        }
+
+        private int size() {
+            return this.dialedLeads + this.queuedLeads.size();
+        }
+    }
+}
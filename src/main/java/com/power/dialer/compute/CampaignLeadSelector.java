@@ -0,0 +1,127 @@
+package com.power.dialer.compute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.model.LeadPools;
+
+import lombok.NonNull;
+
+/*
+ * LeadSelector claiming the leads of an agent from the pool of the campaign it is bound to, see LeadPools. A claim
+ * reads fanOut shards of the campaign pool in parallel, starting from the shard after the one the previous claim
+ * started from, and claims the first candidate it can. The next fanOut shards are read when every candidate was
+ * claimed meanwhile or the shards are empty, until the whole pool was read. The claims of a campaign are thus spread
+ * evenly over its shards, each one a partition of the agentId-leadStatus index of its own.
+ *
+ * Agents not bound to a campaign claim from the shared pool of the leads without a campaign
+ */
+public class CampaignLeadSelector implements LeadSelector, AutoCloseable {
+
+    public static final int DEFAULT_FAN_OUT = 4;
+    // Candidates read from each shard, a few in case some are claimed by other agents meanwhile
+    public static final int DEFAULT_CANDIDATES_PER_SHARD = 4;
+
+    private final PowerDialerDao powerDialerDao;
+    private final int fanOut;
+    private final int candidatesPerShard;
+    private final Map<String, String> campaigns = new ConcurrentHashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ExecutorService scatter;
+
+    public CampaignLeadSelector(final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, DEFAULT_FAN_OUT, DEFAULT_CANDIDATES_PER_SHARD);
+    }
+
+    public CampaignLeadSelector(@NonNull final PowerDialerDao powerDialerDao, final int fanOut, final int candidatesPerShard) {
+        if (fanOut <= 0 || fanOut > LeadPools.SHARDS || candidatesPerShard <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid fan out %d or candidates per shard %d", fanOut,
+                candidatesPerShard));
+        }
+        this.powerDialerDao = powerDialerDao;
+        this.fanOut = fanOut;
+        this.candidatesPerShard = candidatesPerShard;
+        this.scatter = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "campaign-pool-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Binds the agent to a campaign, its next claims take leads of that campaign only
+     * @param agentId agent id
+     * @param campaign campaign
+     */
+    public void bind(@NonNull final String agentId, @NonNull final String campaign) {
+        this.campaigns.put(agentId, campaign);
+    }
+
+    /**
+     * @param agentId agent id, claiming from the leads without a campaign from now on
+     */
+    public void unbind(final String agentId) {
+        this.campaigns.remove(agentId);
+    }
+
+    /**
+     * @param agentId agent id
+     * @return campaign the agent is bound to, null if it is not bound
+     */
+    @Override
+    public String getCampaign(final String agentId) {
+        return this.campaigns.get(agentId);
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        final String campaign = this.campaigns.get(agentId);
+        if (campaign == null) {
+            return this.powerDialerDao.claimLead(agentId);
+        }
+        final int start = Math.floorMod(this.nextShard.getAndIncrement(), LeadPools.SHARDS);
+        for (int read = 0; read < LeadPools.SHARDS; read += this.fanOut) {
+            final List<CompletableFuture<List<String>>> pages = new ArrayList<>();
+            for (int i = read; i < Math.min(read + this.fanOut, LeadPools.SHARDS); i++) {
+                final int shard = (start + i) % LeadPools.SHARDS;
+                pages.add(CompletableFuture.supplyAsync(
+                    () -> this.powerDialerDao.getLeadPhoneNumbersToDial(campaign, shard, this.candidatesPerShard, null),
+                    this.scatter));
+            }
+            // Pages are claimed from in shard order as they come in
+            for (final CompletableFuture<List<String>> page : pages) {
+                for (final String phoneNumber : join(page)) {
+                    if (this.powerDialerDao.claimLead(agentId, phoneNumber)) {
+                        return phoneNumber;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        this.scatter.shutdownNow();
+    }
+
+    private static List<String> join(final CompletableFuture<List<String>> page) {
+        try {
+            return page.join();
+        } catch (final CompletionException e) {
+            // The dao's own exception, such as a PowerDialerDependencyException, is what callers expect
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.power.dialer.compute;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.power.dialer.dao.PowerDialerDao;
+
+import lombok.NonNull;
+
+/*
+ * LeadSelector claiming straight from the dao's pool of AVAILABLE leads. The leads of several agents are claimed in
+ * bulk: one page of as many candidates as leads are missing is read, the candidates are dealt out one per agent in
+ * turn and claimed by concurrent conditional writes. Claims lost to other agents are made up from the next page, until
+ * every agent has its leads or the pool is read to its end
+ */
+public class DaoLeadSelector implements LeadSelector {
+
+    private final PowerDialerDao powerDialerDao;
+
+    public DaoLeadSelector(@NonNull final PowerDialerDao powerDialerDao) {
+        this.powerDialerDao = powerDialerDao;
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        return this.powerDialerDao.claimLead(agentId);
+    }
+
+    @Override
+    public Map<String, List<String>> claimLeads(final Map<String, Integer> leadsPerAgent, final Executor executor) {
+        final Map<String, List<String>> claimed = new LinkedHashMap<>();
+        final Map<String, Integer> missing = new LinkedHashMap<>();
+        leadsPerAgent.forEach((agentId, leads) -> {
+            claimed.put(agentId, new ArrayList<>());
+            if (leads > 0) {
+                missing.put(agentId, leads);
+            }
+        });
+
+        String exclusiveStartPhoneNumber = null;
+        while (!missing.isEmpty()) {
+            final int wanted = missing.values().stream().mapToInt(Integer::intValue).sum();
+            final List<String> candidates = this.powerDialerDao.getLeadPhoneNumbersToDial(wanted, exclusiveStartPhoneNumber);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            exclusiveStartPhoneNumber = candidates.get(candidates.size() - 1);
+
+            // Every agent gets a candidate for its first lead before any agent gets one for its second
+            final List<String> agentIds = new ArrayList<>();
+            final List<CompletableFuture<Boolean>> claims = new ArrayList<>();
+            int next = 0;
+            for (int round = 0; next < candidates.size(); round++) {
+                for (final Map.Entry<String, Integer> agent : missing.entrySet()) {
+                    if (agent.getValue() > round && next < candidates.size()) {
+                        final String agentId = agent.getKey();
+                        final String phoneNumber = candidates.get(next++);
+                        agentIds.add(agentId);
+                        claims.add(CompletableFuture.supplyAsync(() -> this.powerDialerDao.claimLead(agentId, phoneNumber), executor));
+                    }
+                }
+            }
+            for (int i = 0; i < claims.size(); i++) {
+                if (join(claims.get(i))) {
+                    final String agentId = agentIds.get(i);
+                    claimed.get(agentId).add(candidates.get(i));
+                    missing.computeIfPresent(agentId, (ignored, leads) -> leads == 1 ? null : leads - 1);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
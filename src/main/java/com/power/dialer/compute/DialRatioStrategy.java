@@ -0,0 +1,37 @@
+package com.power.dialer.compute;
+
+/*
+ * Decides how many leads the dialer keeps for an agent. The agent's queue holds getDialRatio leads, all but one of them
+ * are dialed at the same time and the last one stays QUEUED so the next call is dialed without claiming a lead first.
+ * The dialer reports the outcome of every dial so implementations can adapt the ratio. The dialer calls them on every
+ * event, they have to be cheap and thread safe
+ */
+public interface DialRatioStrategy {
+
+    /**
+     * @param agentId agent id
+     * @return number of leads to keep in the agent's queue, at least 1
+     */
+    int getDialRatio(final String agentId);
+
+    /**
+     * A dialed lead picked up and was put through to the agent
+     * @param agentId agent id
+     */
+    default void onCallAnswered(final String agentId) {
+    }
+
+    /**
+     * A dialed lead picked up while the agent was busy with another call, so nobody took it
+     * @param agentId agent id
+     */
+    default void onCallAbandoned(final String agentId) {
+    }
+
+    /**
+     * A dialed lead did not pick up (voicemail, no answer, network error)
+     * @param agentId agent id
+     */
+    default void onCallFailed(final String agentId) {
+    }
+}
@@ -0,0 +1,69 @@
+package com.power.dialer.compute;
+
+import java.util.Collection;
+
+import com.power.dialer.dao.CachingPowerDialerDao;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/*
+ * Runs every event of the wrapped PowerDialer as one CachingPowerDialerDao event, so the agents and leads it touches
+ * are read at most once and written once when the event completes. The wrapped PowerDialer has to be built on the
+ * same CachingPowerDialerDao
+ */
+@AllArgsConstructor
+public class EventScopedPowerDialer implements PowerDialer {
+
+    @NonNull private final PowerDialer powerDialer;
+    @NonNull private final CachingPowerDialerDao cachingPowerDialerDao;
+
+    @Override
+    public void onAgentLogin(final String agentId) {
+        this.inEvent(() -> this.powerDialer.onAgentLogin(agentId));
+    }
+
+    @Override
+    public void onAgentsLogin(final Collection<String> agentIds) {
+        this.inEvent(() -> this.powerDialer.onAgentsLogin(agentIds));
+    }
+
+    @Override
+    public void onAgentLogout(final String agentId) {
+        this.inEvent(() -> this.powerDialer.onAgentLogout(agentId));
+    }
+
+    @Override
+    public void onAgentsLogout(final Collection<String> agentIds) {
+        this.inEvent(() -> this.powerDialer.onAgentsLogout(agentIds));
+    }
+
+    @Override
+    public void onCallStarted(final String agentId, final String phoneNumber) {
+        this.inEvent(() -> this.powerDialer.onCallStarted(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onCallFailed(final String agentId, final String phoneNumber) {
+        this.inEvent(() -> this.powerDialer.onCallFailed(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onCallEnded(final String agentId, final String phoneNumber) {
+        this.inEvent(() -> this.powerDialer.onCallEnded(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onLeadAssigned(final String agentId, final String phoneNumber) {
+        this.inEvent(() -> this.powerDialer.onLeadAssigned(agentId, phoneNumber));
+    }
+
+    private void inEvent(final Runnable event) {
+        this.cachingPowerDialerDao.beginEvent();
+        try {
+            event.run();
+        } finally {
+            this.cachingPowerDialerDao.endEvent();
+        }
+    }
+}
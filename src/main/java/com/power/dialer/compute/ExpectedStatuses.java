@@ -0,0 +1,26 @@
+package com.power.dialer.compute;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Statuses an agent or a lead is expected to be in before the dialer moves it to its next status
+ */
+final class ExpectedStatuses {
+
+    static final Set<AgentStatus> ANY_AGENT_STATUS = EnumSet.allOf(AgentStatus.class);
+    static final Set<AgentStatus> ON_DUTY = EnumSet.of(AgentStatus.AVAILABLE, AgentStatus.WAITING_TO_BE_ENGAGED, AgentStatus.ENGAGED);
+    static final Set<AgentStatus> NOT_ENGAGED = EnumSet.of(AgentStatus.AVAILABLE, AgentStatus.WAITING_TO_BE_ENGAGED, AgentStatus.OFF_DUTY);
+    static final Set<AgentStatus> WAITING_AGENT = EnumSet.of(AgentStatus.WAITING_TO_BE_ENGAGED);
+    static final Set<AgentStatus> IDLE_AGENT = EnumSet.of(AgentStatus.AVAILABLE, AgentStatus.WAITING_TO_BE_ENGAGED);
+    static final Set<LeadStatus> QUEUED_LEAD = EnumSet.of(LeadStatus.QUEUED);
+    static final Set<LeadStatus> WAITING_LEAD = EnumSet.of(LeadStatus.WAITING_TO_BE_ENGAGED);
+    static final Set<LeadStatus> LEASED_LEAD = EnumSet.of(LeadStatus.QUEUED, LeadStatus.WAITING_TO_BE_ENGAGED);
+    static final Set<LeadStatus> DIALED_LEAD = EnumSet.of(LeadStatus.WAITING_TO_BE_ENGAGED, LeadStatus.ENGAGED);
+
+    private ExpectedStatuses() {
+    }
+}
@@ -0,0 +1,21 @@
+package com.power.dialer.compute;
+
+/*
+ * The same dial ratio for every agent whatever the call outcomes
+ */
+public class FixedDialRatio implements DialRatioStrategy {
+
+    private final int dialRatio;
+
+    public FixedDialRatio(final int dialRatio) {
+        if (dialRatio <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid dial ratio %d", dialRatio));
+        }
+        this.dialRatio = dialRatio;
+    }
+
+    @Override
+    public int getDialRatio(final String agentId) {
+        return this.dialRatio;
+    }
+}
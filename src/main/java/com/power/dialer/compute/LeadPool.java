@@ -0,0 +1,178 @@
+package com.power.dialer.compute;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.power.dialer.dao.PowerDialerDao;
+
+import lombok.NonNull;
+
+/*
+ * In-memory pool of AVAILABLE lead candidates in front of the lead table. Whenever the pool drops below its low
+ * watermark, a background refiller pages bounded batches from the agentId-leadStatus index until the high watermark
+ * is reached, so picking a candidate on the dial path does not query the index. Candidates are spread over per-core
+ * stripes to keep concurrent agents off a single queue head.
+ */
+public class LeadPool implements LeadSelector, AutoCloseable {
+
+    public static final int DEFAULT_LOW_WATERMARK = 64;
+    public static final int DEFAULT_HIGH_WATERMARK = 512;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    // A candidate may have been claimed through another pool since it was fetched, the next one is tried instead
+    private static final int MAX_CLAIM_ATTEMPTS = 8;
+
+    private final PowerDialerDao powerDialerDao;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final int batchSize;
+
+    private final List<Queue<String>> stripes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    // Leads sitting in the pool or being claimed, a refill never queues them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService refiller;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+    private final ReentrantLock refillLock = new ReentrantLock();
+    // Last phone number paged from the index, null to start over from the beginning. Guarded by refillLock
+    private String cursor;
+
+    public LeadPool(@NonNull final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK, DEFAULT_BATCH_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public LeadPool(@NonNull final PowerDialerDao powerDialerDao, final int lowWatermark, final int highWatermark, final int batchSize) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark || batchSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid lead pool watermarks %d/%d or batch size %d",
+                lowWatermark, highWatermark, batchSize));
+        }
+        this.powerDialerDao = powerDialerDao;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.batchSize = batchSize;
+
+        final int stripeCount = Runtime.getRuntime().availableProcessors();
+        this.stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes.add(new ConcurrentLinkedQueue<>());
+        }
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lead-pool-refiller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            String phoneNumber = this.poll();
+            if (phoneNumber == null) {
+                // Nothing was pre-fetched, the caller has to wait for the index
+                this.refill();
+                phoneNumber = this.poll();
+                if (phoneNumber == null) {
+                    return null;
+                }
+            }
+            try {
+                if (this.powerDialerDao.claimLead(agentId, phoneNumber)) {
+                    return phoneNumber;
+                }
+            } finally {
+                this.inFlight.remove(phoneNumber);
+            }
+        }
+        // Every candidate was stale, let the lead table pick one
+        return this.powerDialerDao.claimLead(agentId);
+    }
+
+    /**
+     * @return number of candidates currently pre-fetched
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Pages AVAILABLE leads from the index until the pool reaches its high watermark or the index is exhausted
+     */
+    public void refill() {
+        this.refillLock.lock();
+        try {
+            final boolean fromBeginning = this.cursor == null;
+            boolean wrapped = false;
+            while (this.size.get() < this.highWatermark) {
+                final List<String> page = this.powerDialerDao.getLeadPhoneNumbersToDial(this.batchSize, this.cursor);
+                for (final String phoneNumber : page) {
+                    if (this.inFlight.add(phoneNumber)) {
+                        this.stripes.get(Math.floorMod(this.nextStripe.getAndIncrement(), this.stripes.size())).offer(phoneNumber);
+                        this.size.incrementAndGet();
+                    }
+                }
+                if (page.size() == this.batchSize) {
+                    this.cursor = page.get(page.size() - 1);
+                } else {
+                    // End of the index. Leads released since the pass started are before the cursor, so go around once
+                    this.cursor = null;
+                    if (fromBeginning || wrapped) {
+                        break;
+                    }
+                    wrapped = true;
+                }
+            }
+        } finally {
+            this.refillLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.refiller.shutdownNow();
+    }
+
+    private String poll() {
+        final int home = (int) (Thread.currentThread().getId() % this.stripes.size());
+        for (int i = 0; i < this.stripes.size(); i++) {
+            final String phoneNumber = this.stripes.get((home + i) % this.stripes.size()).poll();
+            if (phoneNumber != null) {
+                if (this.size.decrementAndGet() < this.lowWatermark) {
+                    this.scheduleRefill();
+                }
+                return phoneNumber;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleRefill() {
+        if (this.refillScheduled.compareAndSet(false, true)) {
+            try {
+                this.refiller.execute(() -> {
+                    this.refillScheduled.set(false);
+                    try {
+                        this.refill();
+                    } catch (final RuntimeException e) {
+                        // The next candidate taken below the low watermark schedules another refill
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // The pool was closed
+                this.refillScheduled.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.power.dialer.compute;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * When a PriorityLeadSelector may call a lead. Durations are milliseconds
+ */
+@Value
+@Builder(toBuilder = true)
+public class LeadSelectionPolicy {
+
+    // Local time of the lead from which it may be called
+    @NonNull
+    @Builder.Default
+    private final LocalTime callingWindowStart = LocalTime.of(8, 0);
+
+    // Local time of the lead from which it may not be called anymore, before the start for a window over
+    // midnight, equal to the start to call at any time
+    @NonNull
+    @Builder.Default
+    private final LocalTime callingWindowEnd = LocalTime.of(21, 0);
+
+    // Timezone of the leads without a valid timezone in their metadata
+    @NonNull
+    @Builder.Default
+    private final ZoneId defaultTimezone = ZoneOffset.UTC;
+
+    // A lead is not claimed again until this long after its last attempt
+    @Builder.Default
+    private final long retryDelayMillis = 3_600_000;
+
+    // AVAILABLE leads are read from the lead table again after this long, to index the leads released meanwhile
+    @Builder.Default
+    private final long refreshIntervalMillis = 60_000;
+
+    /**
+     * @param localTime local time of a lead
+     * @return true if the lead may be called at that time
+     */
+    public boolean isCallable(final LocalTime localTime) {
+        if (this.callingWindowStart.isBefore(this.callingWindowEnd)) {
+            return !localTime.isBefore(this.callingWindowStart) && localTime.isBefore(this.callingWindowEnd);
+        }
+        return !localTime.isBefore(this.callingWindowStart) || localTime.isBefore(this.callingWindowEnd);
+    }
+}
@@ -0,0 +1,64 @@
+package com.power.dialer.compute;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/*
+ * Picks the next AVAILABLE lead for an agent and claims it, i.e. attaches it to the agent under QUEUED status
+ */
+@FunctionalInterface
+public interface LeadSelector {
+
+    /**
+     * Claims an AVAILABLE lead for the agent
+     * @param agentId agent id
+     * @return phone number of the claimed lead, null if there are no AVAILABLE leads
+     */
+    String claimLead(final String agentId);
+
+    /**
+     * @param agentId agent id
+     * @return campaign whose leads the agent claims, see LeadPools, null if it claims the leads without a campaign
+     */
+    default String getCampaign(final String agentId) {
+        return null;
+    }
+
+    /**
+     * Claims the leads of several agents at once, e.g. when a shift logs in. Every claim runs on its own on the
+     * executor by default
+     * @param leadsPerAgent number of leads to claim by agent id
+     * @param executor runs the independent claims in parallel
+     * @return phone numbers claimed by agent id, in claim order, fewer than asked for once no AVAILABLE lead is left
+     */
+    default Map<String, List<String>> claimLeads(final Map<String, Integer> leadsPerAgent, final Executor executor) {
+        final Map<String, List<CompletableFuture<String>>> claims = new LinkedHashMap<>();
+        leadsPerAgent.forEach((agentId, leads) -> {
+            final List<CompletableFuture<String>> agentClaims = new ArrayList<>();
+            for (int i = 0; i < leads; i++) {
+                agentClaims.add(CompletableFuture.supplyAsync(() -> this.claimLead(agentId), executor));
+            }
+            claims.put(agentId, agentClaims);
+        });
+        try {
+            CompletableFuture.allOf(claims.values().stream().flatMap(List::stream).toArray(CompletableFuture<?>[]::new)).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        final Map<String, List<String>> claimed = new LinkedHashMap<>();
+        claims.forEach((agentId, agentClaims) -> {
+            final List<String> phoneNumbers = new ArrayList<>();
+            agentClaims.stream().map(CompletableFuture::join).filter(phoneNumber -> phoneNumber != null).forEach(phoneNumbers::add);
+            claimed.put(agentId, phoneNumbers);
+        });
+        return claimed;
+    }
+}
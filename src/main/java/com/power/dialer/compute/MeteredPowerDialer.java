@@ -0,0 +1,99 @@
+package com.power.dialer.compute;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.metrics.LatencyHistogram;
+import com.power.dialer.metrics.PowerDialerMetrics;
+
+import lombok.NonNull;
+
+/*
+ * Records the latency of every event of the wrapped PowerDialer in an event.<name> histogram, failed events included,
+ * and counts the events ending with a NoLeadsAvailableException or another error. Wrap the PowerDialer's dao in a
+ * MeteredPowerDialerDao to see which dao calls an event's latency is made of
+ */
+public class MeteredPowerDialer implements PowerDialer {
+
+    private final PowerDialer powerDialer;
+    private final LatencyHistogram agentLogin;
+    private final LatencyHistogram agentsLogin;
+    private final LatencyHistogram agentLogout;
+    private final LatencyHistogram agentsLogout;
+    private final LatencyHistogram callStarted;
+    private final LatencyHistogram callFailed;
+    private final LatencyHistogram callEnded;
+    private final LatencyHistogram leadAssigned;
+    private final LongAdder noLeadsAvailable;
+    private final LongAdder errors;
+
+    public MeteredPowerDialer(@NonNull final PowerDialer powerDialer, @NonNull final PowerDialerMetrics metrics) {
+        this.powerDialer = powerDialer;
+        this.agentLogin = metrics.histogram("event.onAgentLogin");
+        this.agentsLogin = metrics.histogram("event.onAgentsLogin");
+        this.agentLogout = metrics.histogram("event.onAgentLogout");
+        this.agentsLogout = metrics.histogram("event.onAgentsLogout");
+        this.callStarted = metrics.histogram("event.onCallStarted");
+        this.callFailed = metrics.histogram("event.onCallFailed");
+        this.callEnded = metrics.histogram("event.onCallEnded");
+        this.leadAssigned = metrics.histogram("event.onLeadAssigned");
+        this.noLeadsAvailable = metrics.counter("event.noLeadsAvailable");
+        this.errors = metrics.counter("event.errors");
+    }
+
+    @Override
+    public void onAgentLogin(final String agentId) {
+        this.record(this.agentLogin, () -> this.powerDialer.onAgentLogin(agentId));
+    }
+
+    @Override
+    public void onAgentsLogin(final Collection<String> agentIds) {
+        this.record(this.agentsLogin, () -> this.powerDialer.onAgentsLogin(agentIds));
+    }
+
+    @Override
+    public void onAgentLogout(final String agentId) {
+        this.record(this.agentLogout, () -> this.powerDialer.onAgentLogout(agentId));
+    }
+
+    @Override
+    public void onAgentsLogout(final Collection<String> agentIds) {
+        this.record(this.agentsLogout, () -> this.powerDialer.onAgentsLogout(agentIds));
+    }
+
+    @Override
+    public void onCallStarted(final String agentId, final String phoneNumber) {
+        this.record(this.callStarted, () -> this.powerDialer.onCallStarted(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onCallFailed(final String agentId, final String phoneNumber) {
+        this.record(this.callFailed, () -> this.powerDialer.onCallFailed(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onCallEnded(final String agentId, final String phoneNumber) {
+        this.record(this.callEnded, () -> this.powerDialer.onCallEnded(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onLeadAssigned(final String agentId, final String phoneNumber) {
+        this.record(this.leadAssigned, () -> this.powerDialer.onLeadAssigned(agentId, phoneNumber));
+    }
+
+    private void record(final LatencyHistogram histogram, final Runnable event) {
+        final long start = System.nanoTime();
+        try {
+            event.run();
+        } catch (final NoLeadsAvailableException e) {
+            this.noLeadsAvailable.increment();
+            throw e;
+        } catch (final RuntimeException e) {
+            this.errors.increment();
+            throw e;
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+}
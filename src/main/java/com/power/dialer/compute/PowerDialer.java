@@ -1,6 +1,9 @@
 package com.power.dialer.compute;
 
+import java.util.Collection;
+
 import com.power.dialer.exception.AgentSessionTerminationException;
+import com.power.dialer.exception.NoLeadsAvailableException;
 
 /*
  * The PowerDialer interface allows us to perform agent actions. Ideally it should be hooked up
@@ -10,11 +13,19 @@ import com.power.dialer.exception.AgentSessionTerminationException;
 public interface PowerDialer {
 
     /**
-     * Action when an Agent logs in. Automatically pulls in 2 leads in the Agent's queue and dials one of them 
+     * Action when an Agent logs in. Automatically pulls in dial ratio leads in the Agent's queue and dials all but one of them 
      * @param agentId agent id
      */
     void onAgentLogin(final String agentId);
 
+    /**
+     * Action when a batch of Agents logs in at once, e.g. at the start of a shift. Pulls in dial ratio leads per Agent, saves the
+     * Agent and lead statuses in bulk and dials the first lead of every Agent in parallel. Unknown agents are ignored
+     * @param agentIds agent ids
+     * @throws NoLeadsAvailableException error thrown when some of the Agents could not get any lead. The other Agents are dialing
+     */
+    void onAgentsLogin(final Collection<String> agentIds);
+
     /**
      * Action when an Agent logs out. Checks if the Agent's status is not ENGAGED and resets all the pending leads in the Agen'ts queue to make them available in the pool
      * @param agentId agent id
@@ -22,6 +33,14 @@ public interface PowerDialer {
      */
     void onAgentLogout(final String agentId) throws AgentSessionTerminationException;
 
+    /**
+     * Action when a batch of Agents logs out at once, e.g. at the end of a shift. Every Agent which is not ENGAGED goes
+     * OFF_DUTY and the leads in its queue are released in bulk, the Agents are logged out in parallel. Unknown agents are ignored
+     * @param agentIds agent ids
+     * @throws AgentSessionTerminationException error thrown when some of the Agents are ENGAGED. The other Agents are logged out
+     */
+    void onAgentsLogout(final Collection<String> agentIds) throws AgentSessionTerminationException;
+
     /**
      * Action when a communication channel is established between agent and the lead. Updates the status of both agent and lead
      * @param agentId
@@ -43,4 +62,12 @@ public interface PowerDialer {
      * @param phoneNumber
      */
     void onCallEnded(final String agentId, final String phoneNumber);
+
+    /**
+     * Action when a lead was claimed for an AVAILABLE Agent outside of its own events, e.g. handed over while the Agent was
+     * waiting for leads. Dials the Agent's queue and fills it up, or releases the lead if the Agent is not AVAILABLE anymore
+     * @param agentId agent id
+     * @param phoneNumber lead phone number
+     */
+    void onLeadAssigned(final String agentId, final String phoneNumber);
 }
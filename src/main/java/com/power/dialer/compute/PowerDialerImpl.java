@@ -1,8 +1,34 @@
 package com.power.dialer.compute;
 
+import static com.power.dialer.compute.ExpectedStatuses.ANY_AGENT_STATUS;
+import static com.power.dialer.compute.ExpectedStatuses.DIALED_LEAD;
+import static com.power.dialer.compute.ExpectedStatuses.IDLE_AGENT;
+import static com.power.dialer.compute.ExpectedStatuses.LEASED_LEAD;
+import static com.power.dialer.compute.ExpectedStatuses.NOT_ENGAGED;
+import static com.power.dialer.compute.ExpectedStatuses.ON_DUTY;
+import static com.power.dialer.compute.ExpectedStatuses.QUEUED_LEAD;
+import static com.power.dialer.compute.ExpectedStatuses.WAITING_AGENT;
+import static com.power.dialer.compute.ExpectedStatuses.WAITING_LEAD;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.dao.TransitionBatch;
+import com.power.dialer.dao.TransitionBatch.LeadTransition;
 import com.power.dialer.exception.AgentSessionTerminationException;
 import com.power.dialer.exception.CallToLeadFailedException;
 import com.power.dialer.exception.NoLeadsAvailableException;
@@ -18,140 +44,494 @@ import lombok.NonNull;
 public class PowerDialerImpl implements PowerDialer {
 
     private static final String DEFAULT_AGENT = "NONE";
+    private static final int DIAL_RATIO = 2;
+    private static final int MAX_DIAL_ATTEMPTS = 5;
 
     // In Production, use dependency injection(Guice/Spring/Dagger) to inject a singleton bean of this object
     @NonNull private final PowerDialerDao powerDialerDao;
+    // Use a LeadPool to pick candidates from pre-fetched leads instead of querying the lead table on every claim
+    @NonNull private final LeadSelector leadSelector;
+    // Runs the independent claims and dials of a batch of agents in parallel
+    @NonNull private final Executor executor;
+    // Number of leads kept in an Agent's queue
+    @NonNull private final DialRatioStrategy dialRatioStrategy;
+    // Refills the agent's queue on the executor while the dialed call rings, instead of before the event returns
+    private final boolean pipelined;
+
+    // Queue refills still running on the executor, the next event of the agent waits for its refill
+    private final Map<String, CompletableFuture<Void>> refills = new ConcurrentHashMap<>();
+    // Queue of the agent as its last pipelined event and refill left it, the next event dials without reading it back.
+    // Only holds for the node handling the agent's events, a write of an event rejected for a stale queue drops it
+    private final Map<String, List<Lead>> pipelinedQueues = new ConcurrentHashMap<>();
+
+    public PowerDialerImpl(final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, new DaoLeadSelector(powerDialerDao));
+    }
+
+    public PowerDialerImpl(final PowerDialerDao powerDialerDao, final LeadSelector leadSelector) {
+        this(powerDialerDao, leadSelector, ForkJoinPool.commonPool());
+    }
+
+    public PowerDialerImpl(final PowerDialerDao powerDialerDao, final LeadSelector leadSelector, final Executor executor) {
+        this(powerDialerDao, leadSelector, executor, new FixedDialRatio(DIAL_RATIO));
+    }
+
+    public PowerDialerImpl(final PowerDialerDao powerDialerDao, final LeadSelector leadSelector, final Executor executor,
+            final DialRatioStrategy dialRatioStrategy) {
+        this(powerDialerDao, leadSelector, executor, dialRatioStrategy, false);
+    }
 
     @Override
     public void onAgentLogin(final String agentId) {
-        this.updateAgentStatus(agentId, AgentStatus.AVAILABLE);
+        this.pipelinedQueues.remove(agentId);
+        if (!this.powerDialerDao.transitionAgentStatus(agentId, ANY_AGENT_STATUS, AgentStatus.AVAILABLE)) {
+            throw new IllegalArgumentException(String.format("Unknown agent %s", agentId));
+        }
 
+        final int dialRatio = this.dialRatioStrategy.getDialRatio(agentId);
         final String leadToDial = this.getLeadToDial(agentId);
         if (leadToDial == null || leadToDial.length() == 0) {
             throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId)); 
         }
 
-        // Generating another lead to dial for the agent
-        this.getLeadToDial(agentId);
+        // Generating the other leads of the agent's queue
+        final List<String> queuedLeads = new ArrayList<>();
+        String queuedLead;
+        while (queuedLeads.size() + 1 < dialRatio && (queuedLead = this.getLeadToDial(agentId)) != null) {
+            queuedLeads.add(queuedLead);
+        }
+        final int queueSize = queuedLeads.size() + 1;
 
+        final boolean dialed;
         try {
-            this.makeCall(agentId, leadToDial);
+            dialed = this.makeCall(agentId, leadToDial, ON_DUTY, new ArrayList<>());
         } catch (CallToLeadFailedException e) {
             this.onCallFailed(agentId, leadToDial);
+            return;
+        }
+        if (this.pipelined && dialed) {
+            final List<Lead> queue = new CopyOnWriteArrayList<>();
+            queue.add(lead(agentId, leadToDial, LeadStatus.WAITING_TO_BE_ENGAGED));
+            queuedLeads.forEach(phoneNumber -> queue.add(lead(agentId, phoneNumber, LeadStatus.QUEUED)));
+            this.pipelinedQueues.put(agentId, queue);
+        }
+        if (queueSize == dialRatio && dialRatio > DIAL_RATIO) {
+            // Dials the rest of the queue but the last lead
+            this.makeNextCall(agentId, null, false);
+        }
+    }
+
+    @Override
+    public void onAgentsLogin(final Collection<String> agentIds) {
+        agentIds.forEach(this.pipelinedQueues::remove);
+        // Unknown agents fail the whole batch before anything is written, as they fail a single login
+        final Set<String> knownAgents = this.powerDialerDao.getAgents(agentIds).stream()
+            .map(Agent::getAgentId)
+            .collect(Collectors.toSet());
+        final List<String> unknownAgents = agentIds.stream()
+            .filter(agentId -> !knownAgents.contains(agentId))
+            .collect(Collectors.toList());
+        if (!unknownAgents.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Unknown agents %s", unknownAgents));
+        }
+
+        // Fill the queue of every agent at once, the queued leads are dialed as the agents' calls end
+        final Map<String, Integer> queueSizes = new LinkedHashMap<>();
+        agentIds.forEach(agentId -> queueSizes.put(agentId, this.dialRatioStrategy.getDialRatio(agentId)));
+        final Map<String, List<String>> queues = this.leadSelector.claimLeads(queueSizes, this.executor);
+
+        // Dial the first lead of every agent, the agent and the lead then move with conditional writes
+        final Map<String, String> firstLeads = new LinkedHashMap<>();
+        final List<String> agentsWithoutLeads = new ArrayList<>();
+        agentIds.forEach(agentId -> {
+            final List<String> queue = queues.get(agentId);
+            if (queue == null || queue.isEmpty()) {
+                agentsWithoutLeads.add(agentId);
+            } else {
+                firstLeads.put(agentId, queue.get(0));
+            }
+        });
+        final Map<String, CompletableFuture<Boolean>> logins = new LinkedHashMap<>();
+        agentsWithoutLeads.forEach(agentId -> logins.put(agentId,
+            CompletableFuture.supplyAsync(() -> this.updateAgentStatus(agentId, NOT_ENGAGED, AgentStatus.AVAILABLE), this.executor)));
+        firstLeads.forEach((agentId, phoneNumber) -> logins.put(agentId,
+            CompletableFuture.supplyAsync(() -> this.logIn(agentId, phoneNumber), this.executor)));
+        final List<String> agentsWithFailedCalls = firstLeads.keySet().stream()
+            .filter(agentId -> !join(logins.get(agentId)))
+            .collect(Collectors.toList());
+        agentsWithoutLeads.forEach(agentId -> join(logins.get(agentId)));
+
+        // Agents whose first call failed move on to their queued leads, like a single login would. The failed leads only
+        // go back to the pool once every queue was filled, so no agent claims them again
+        try {
+            final List<CompletableFuture<Void>> nextCalls = agentsWithFailedCalls.stream()
+                .map(agentId -> CompletableFuture.runAsync(() -> this.makeNextCall(agentId, firstLeads.get(agentId), true), this.executor))
+                .collect(Collectors.toList());
+            nextCalls.forEach(nextCall -> {
+                try {
+                    join(nextCall);
+                } catch (final NoLeadsAvailableException e) {
+                    // makeNextCall already marked the agent AVAILABLE
+                }
+            });
+        } finally {
+            agentsWithFailedCalls.forEach(agentId -> this.resetLead(agentId, firstLeads.get(agentId)));
+        }
+
+        if (!agentsWithoutLeads.isEmpty()) {
+            throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentsWithoutLeads));
         }
     }
 
     @Override
     public void onAgentLogout(final String agentId) {
-        final Agent agent = this.powerDialerDao.getAgent(agentId);
-        if (AgentStatus.ENGAGED.equals(agent.getAgentStatus())) {
+        this.awaitRefill(agentId);
+        this.pipelinedQueues.remove(agentId);
+        // The agent goes OFF_DUTY and all the leads in its queue are reset in one write. The queue is read from an
+        // eventually consistent index, a lead whose call started meanwhile fails the write
+        final List<Lead> leads = this.powerDialerDao.getAllLeads(agentId);
+        if (leads.size() < TransitionBatch.MAX_TRANSITIONS) {
+            final TransitionBatch.TransitionBatchBuilder logout = TransitionBatch.builder().agent(agentId, NOT_ENGAGED, AgentStatus.OFF_DUTY);
+            leads.forEach(lead -> logout.lead(lead.getPhoneNumber(), LEASED_LEAD, LeadStatus.AVAILABLE, DEFAULT_AGENT));
+            if (this.powerDialerDao.transitionBatch(logout.build())) {
+                return;
+            }
+        }
+
+        // The agent is engaged, or its queue changed or is too long for one write
+        if (!this.logOut(agentId)) {
+            // The agent is only read to report why the session could not be terminated
+            final Agent agent = this.powerDialerDao.getAgent(agentId);
             throw new AgentSessionTerminationException(String.format("Agent %s status %s. Could not terminate session", agentId, agent.getAgentStatus()));
-        } else {
-            this.updateAgentStatus(agentId, AgentStatus.OFF_DUTY);
+        }
+    }
 
-            // Reset all the leads in Agent's queue
-            List<Lead> leads = this.powerDialerDao.getAllLeads(agentId);
-            if (leads != null) {
-                leads.forEach(lead -> this.resetLead(lead.getPhoneNumber()));
-            }
+    @Override
+    public void onAgentsLogout(final Collection<String> agentIds) {
+        agentIds.forEach(this::awaitRefill);
+        agentIds.forEach(this.pipelinedQueues::remove);
+        final Map<String, CompletableFuture<Boolean>> logouts = new LinkedHashMap<>();
+        agentIds.forEach(agentId -> logouts.put(agentId, CompletableFuture.supplyAsync(() -> this.logOut(agentId), this.executor)));
+        final List<String> agentsNotLoggedOut = logouts.entrySet().stream()
+            .filter(logout -> !join(logout.getValue()))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+        if (agentsNotLoggedOut.isEmpty()) {
+            return;
+        }
+
+        // The agents are only read to report which ones could not be logged out, unknown agents are ignored
+        final List<String> engagedAgents = this.powerDialerDao.getAgents(agentsNotLoggedOut).stream()
+            .filter(agent -> AgentStatus.ENGAGED.equals(agent.getAgentStatus()))
+            .map(Agent::getAgentId)
+            .collect(Collectors.toList());
+        if (!engagedAgents.isEmpty()) {
+            throw new AgentSessionTerminationException(String.format("Agents %s status ENGAGED. Could not terminate sessions", engagedAgents));
         }
     }
 
     @Override
     public void onCallStarted(final String agentId, final String phoneNumber) {
-        final Agent agent = this.powerDialerDao.getAgent(agentId);
-
-        if (AgentStatus.WAITING_TO_BE_ENGAGED.equals(agent.getAgentStatus())) {
-            this.updateAgentStatus(agentId, AgentStatus.ENGAGED);
-            this.updateLead(phoneNumber, LeadStatus.ENGAGED, agentId);
+        final TransitionBatch engage = TransitionBatch.builder()
+            .agent(agentId, WAITING_AGENT, AgentStatus.ENGAGED)
+            .lead(phoneNumber, WAITING_LEAD, LeadStatus.ENGAGED, agentId)
+            .build();
+        if (this.powerDialerDao.transitionBatch(engage)) {
+            this.dialRatioStrategy.onCallAnswered(agentId);
+            // The queue only holds QUEUED and WAITING_TO_BE_ENGAGED leads
+            final List<Lead> queue = this.pipelinedQueues.get(agentId);
+            if (queue != null) {
+                queue.removeIf(lead -> phoneNumber.equals(lead.getPhoneNumber()));
+            }
+        } else {
+            // The agent took another of its dialed leads first, nobody is there to talk to this one
+            this.pipelinedQueues.remove(agentId);
+            if (this.resetLead(agentId, phoneNumber)) {
+                // A lead another event released or engaged first was not abandoned by this call
+                this.dialRatioStrategy.onCallAbandoned(agentId);
+            }
         }
     }
 
     @Override
     public void onCallFailed(final String agentId, final String phoneNumber) {
-        this.makeNextCall(agentId);
-        this.resetLead(phoneNumber);
+        this.awaitRefill(agentId);
+        try {
+            this.makeNextCall(agentId, phoneNumber, true);
+        } finally {
+            // Even an agent left without leads lets go of the failed lead
+            this.resetLead(agentId, phoneNumber);
+        }
     }
 
     @Override
     public void onCallEnded(final String agentId, final String phoneNumber) {
-        this.makeNextCall(agentId);
-        this.updateLeadStatus(phoneNumber, LeadStatus.COMPLETED);
+        this.awaitRefill(agentId);
+        this.makeNextCall(agentId, phoneNumber, false);
+    }
+
+    @Override
+    public void onLeadAssigned(final String agentId, final String phoneNumber) {
+        this.awaitRefill(agentId);
+        // The assigned lead is not in the queue the agent's last event left
+        this.pipelinedQueues.remove(agentId);
+        final Agent agent = this.powerDialerDao.getAgent(agentId);
+        if (agent == null || !AgentStatus.AVAILABLE.equals(agent.getAgentStatus())) {
+            // The agent logged out or got leads of its own meanwhile
+            this.powerDialerDao.releaseLead(phoneNumber, agentId);
+            return;
+        }
+        this.makeNextCall(agentId, null, false);
+    }
+
+    /**
+     * Moves the agent OFF_DUTY unless it is ENGAGED, then releases the leads in its queue in bulk
+     * @param agentId agent id
+     * @return true if the agent was logged out
+     */
+    private boolean logOut(final String agentId) {
+        if (!this.powerDialerDao.transitionAgentStatus(agentId, NOT_ENGAGED, AgentStatus.OFF_DUTY)) {
+            return false;
+        }
+        this.powerDialerDao.releaseLeads(agentId);
+        return true;
+    }
+
+    /**
+     * Dials the first lead of a logging in agent, which waits for the call unless a concurrent event engaged it
+     * @param agentId agent id
+     * @param phoneNumber lead claimed for the agent
+     * @return false if the call failed, the agent is then AVAILABLE and the lead still QUEUED
+     */
+    private boolean logIn(final String agentId, final String phoneNumber) {
+        try {
+            this.makeCall(agentId, phoneNumber, NOT_ENGAGED, new ArrayList<>());
+            return true;
+        } catch (final CallToLeadFailedException e) {
+            this.updateAgentStatus(agentId, NOT_ENGAGED, AgentStatus.AVAILABLE);
+            return false;
+        }
     }
 
-    private void updateLead(final String phoneNumber, final LeadStatus status, final String agentId) {
-        final Lead lead = this.powerDialerDao.getLead(phoneNumber);
-        this.powerDialerDao.updateLead(lead.toBuilder().currentStatus(status).agentId(agentId).build());
+    /**
+     * @return true if the agent moved to WAITING_TO_BE_ENGAGED
+     */
+    private boolean makeCall(final String agentId, final String phoneNumber, final Set<AgentStatus> agentStatuses,
+            final List<LeadTransition> pendingLeads) {
+        this.powerDialerDao.dial(agentId, phoneNumber);
+        pendingLeads.add(new LeadTransition(phoneNumber, QUEUED_LEAD, LeadStatus.WAITING_TO_BE_ENGAGED, agentId));
+        return this.transitionAgent(agentId, agentStatuses, AgentStatus.WAITING_TO_BE_ENGAGED, pendingLeads);
     }
 
-    private void makeCall(final String agentId, final String phoneNumber) {
+    /**
+     * @return false if the lead was no longer QUEUED for the agent
+     */
+    private boolean dialLead(final String agentId, final String phoneNumber) {
         this.powerDialerDao.dial(agentId, phoneNumber);
-        this.updateLeadStatus(phoneNumber, LeadStatus.WAITING_TO_BE_ENGAGED);
-        this.updateAgentStatus(agentId, AgentStatus.WAITING_TO_BE_ENGAGED);
+        return this.powerDialerDao.transitionLeadStatus(phoneNumber, QUEUED_LEAD, LeadStatus.WAITING_TO_BE_ENGAGED, agentId);
     }
 
-    private void updateLeadStatus(final String phoneNumber, final LeadStatus status) {
-        final Lead lead = this.powerDialerDao.getLead(phoneNumber);
-        this.powerDialerDao.updateLead(lead.toBuilder().currentStatus(status).build());
+    private boolean updateAgentStatus(final String agentId, final Set<AgentStatus> agentStatuses, final AgentStatus status) {
+        // A logged out agent stays OFF_DUTY
+        return this.powerDialerDao.transitionAgentStatus(agentId, agentStatuses, status);
     }
 
-    private void updateAgentStatus(final String agentId, final AgentStatus status) {
-        final Agent agent = this.powerDialerDao.getAgent(agentId);
-        this.powerDialerDao.updateAgent(agent.toBuilder().agentStatus(status).build());
+    /**
+     * Moves the agent and the pending leads in one atomic write. When one of them is not in its expected status they
+     * are moved one at a time instead, so the leads move whatever the agent's status
+     * @param agentId agent id
+     * @param from statuses the agent is expected to be in
+     * @param to new status
+     * @param pendingLeads lead transitions waiting for the agent's next write, cleared once written
+     * @return true if the agent moved
+     */
+    private boolean transitionAgent(final String agentId, final Set<AgentStatus> from, final AgentStatus to,
+            final List<LeadTransition> pendingLeads) {
+        if (pendingLeads.isEmpty()) {
+            return this.updateAgentStatus(agentId, from, to);
+        }
+        final TransitionBatch batch = TransitionBatch.builder().agent(agentId, from, to).leadTransitions(pendingLeads).build();
+        pendingLeads.clear();
+        if (this.powerDialerDao.transitionBatch(batch)) {
+            return true;
+        }
+        batch.getLeadTransitions().forEach(this::transitionLead);
+        return this.updateAgentStatus(agentId, from, to);
+    }
+
+    private void transitionLead(final LeadTransition transition) {
+        this.powerDialerDao.transitionLeadStatus(transition.getPhoneNumber(), transition.getFrom(), transition.getTo(), transition.getAgentId());
     }
 
-    private void resetLead(final String phoneNumber) {
-        final Lead lead = this.powerDialerDao.getLead(phoneNumber);
-        this.powerDialerDao.updateLead(lead.toBuilder().currentStatus(LeadStatus.AVAILABLE).agentId(DEFAULT_AGENT).build());
+    private boolean resetLead(final String agentId, final String phoneNumber) {
+        // A lead which left the agent meanwhile, or whose call started, is not the agent's to release
+        return this.powerDialerDao.releaseLead(phoneNumber, agentId);
     }
 
-    private void makeNextCall(final String agentId) {
-        int count = 0;
-        int maxRetries = 5;
-        while(true) {
+    /**
+     * Dials the agent's queued leads until all but one of its dial ratio are dialed, then fills the queue back up
+     * @param agentId agent id
+     * @param endedPhoneNumber lead whose call just ended or failed, null if none
+     * @param failed whether the call failed
+     */
+    private void makeNextCall(final String agentId, final String endedPhoneNumber, final boolean failed) {
+        final Deque<String> queuedLeads = new ArrayDeque<>();
+        final List<Lead> dialedLeads = new ArrayList<>();
+        boolean endedWhileDialed = false;
+        for (final Lead lead : this.getQueue(agentId)) {
+            if (lead.getPhoneNumber().equals(endedPhoneNumber)) {
+                endedWhileDialed = true;
+            } else if (LeadStatus.QUEUED.equals(lead.getCurrentStatus())) {
+                queuedLeads.add(lead.getPhoneNumber());
+            } else {
+                dialedLeads.add(lead);
+            }
+        }
+        if (endedWhileDialed && failed) {
+            this.dialRatioStrategy.onCallFailed(agentId);
+        }
+        // A lead which failed while it was dialed leaves the agent on its current call
+        final Set<AgentStatus> agentStatuses = endedWhileDialed ? IDLE_AGENT : ON_DUTY;
+        // A completed lead is moved with the next write of the agent's status. A failed one only goes back to the pool
+        // once the queue is filled, so the agent does not claim it again
+        final List<LeadTransition> endedLeads = new ArrayList<>();
+        if (endedPhoneNumber != null && !failed) {
+            endedLeads.add(new LeadTransition(endedPhoneNumber, DIALED_LEAD, LeadStatus.COMPLETED, agentId));
+        }
+
+        final int dialRatio = this.dialRatioStrategy.getDialRatio(agentId);
+        // The agent's status is checked before dialing, once the agent is waiting the dials leave it alone
+        final boolean agentWaiting = endedWhileDialed
+            && this.transitionAgent(agentId, IDLE_AGENT, AgentStatus.WAITING_TO_BE_ENGAGED, endedLeads);
+        if (endedWhileDialed && !agentWaiting) {
+            // The agent took another of its dialed leads, a lead dialed now could only be abandoned
+            this.fillQueue(agentId, dialRatio - dialedLeads.size() - queuedLeads.size(), null);
+            return;
+        }
+        final int leadsToDial = Math.max(1, dialRatio - 1);
+        boolean dialed = false;
+        // Whether every write went as the queue expected, the queue is only kept for the next event if so
+        boolean settled = true;
+        int attempts = 0;
+        while (dialedLeads.size() < leadsToDial && !queuedLeads.isEmpty()) {
             try {
-                final Lead lead = this.powerDialerDao.getNextLead(agentId);
-                if (lead == null) {
-                    this.updateAgentStatus(agentId, AgentStatus.AVAILABLE);
-                    throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId));
+                if (agentWaiting) {
+                    settled &= this.dialLead(agentId, queuedLeads.peek());
                 } else {
-                    this.makeCall(agentId, lead.getPhoneNumber());
-                    break;
+                    settled &= this.makeCall(agentId, queuedLeads.peek(), agentStatuses, endedLeads);
                 }
+                dialedLeads.add(lead(agentId, queuedLeads.poll(), LeadStatus.WAITING_TO_BE_ENGAGED));
+                dialed = true;
             } catch (CallToLeadFailedException e) {
-                if (++count == maxRetries) {
+                if (++attempts == MAX_DIAL_ATTEMPTS) {
+                    endedLeads.forEach(this::transitionLead);
                     throw e;
                 }
             }
         }
-        // Update agent's queue with a new lead to ensure that there are 2 leads in an agent's queue at any given time
-        final String newPhoneNumber = this.getLeadToDial(agentId);
-        if (newPhoneNumber == null) {
-            this.updateAgentStatus(agentId, AgentStatus.AVAILABLE);
-        } else {
-            this.updateLead(newPhoneNumber, LeadStatus.QUEUED, agentId);
+        if (dialedLeads.isEmpty()) {
+            if (this.transitionAgent(agentId, agentStatuses, AgentStatus.AVAILABLE, endedLeads) || !endedWhileDialed) {
+                throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId));
+            }
+            return;
+        }
+        if (!dialed && !agentWaiting) {
+            // The agent waits for the leads which are still dialed
+            settled &= this.transitionAgent(agentId, agentStatuses, AgentStatus.WAITING_TO_BE_ENGAGED, endedLeads);
         }
+
+        List<Lead> queue = null;
+        if (this.pipelined && settled) {
+            queue = new CopyOnWriteArrayList<>(dialedLeads);
+            for (final String phoneNumber : queuedLeads) {
+                queue.add(lead(agentId, phoneNumber, LeadStatus.QUEUED));
+            }
+            this.pipelinedQueues.put(agentId, queue);
+        }
+        this.fillQueue(agentId, dialRatio - dialedLeads.size() - queuedLeads.size(), queue);
     }
 
-    private String getLeadToDial(final String agentId) {
+    /**
+     * @param agentId agent id
+     * @param leads number of leads missing from the agent's queue
+     * @param queue queue kept for the agent's next event, the claimed leads are added to it, null if none is kept
+     */
+    private void fillQueue(final String agentId, final int leads, final List<Lead> queue) {
+        if (leads <= 0) {
+            return;
+        }
+        if (!this.pipelined) {
+            this.claimLeads(agentId, leads, queue);
+            return;
+        }
+        // The claims overlap the ringing and talk time of the dialed call, so the next event of the agent finds its
+        // queue full and only has to dial
+        final CompletableFuture<Void> refill = CompletableFuture.runAsync(() -> this.claimLeads(agentId, leads, queue), this.executor);
+        this.refills.put(agentId, refill);
+        refill.whenComplete((ignored, e) -> this.refills.remove(agentId, refill));
+    }
+
+    private void claimLeads(final String agentId, final int leads, final List<Lead> queue) {
+        // Update agent's queue with new leads to ensure that there are dial ratio leads in an agent's queue at any given time.
+        // A short queue leaves the agent's status alone, an agent made AVAILABLE would abandon the call it is waiting for
+        for (int i = 0; i < leads; i++) {
+            final String phoneNumber = this.getLeadToDial(agentId);
+            if (phoneNumber == null) {
+                break;
+            }
+            if (queue != null) {
+                queue.add(lead(agentId, phoneNumber, LeadStatus.QUEUED));
+            }
+        }
+    }
 
-        String phoneNumber = this.powerDialerDao.getLeadPhoneNumberToDial();
-        if (phoneNumber == null) {
-            return null;
+    /**
+     * @param agentId agent id
+     * @return the queue the agent's last pipelined event left, read from the dao if there is none
+     */
+    private List<Lead> getQueue(final String agentId) {
+        final List<Lead> queue = this.pipelinedQueues.remove(agentId);
+        return queue != null ? queue : this.powerDialerDao.getAllLeads(agentId);
+    }
+
+    /**
+     * Waits for the pipelined refill of the agent's queue, if one is still running, so the event reads a settled queue
+     * @param agentId agent id
+     */
+    private void awaitRefill(final String agentId) {
+        final CompletableFuture<Void> refill = this.refills.get(agentId);
+        if (refill == null) {
+            return;
         }
-        Lead lead = this.powerDialerDao.getLead(phoneNumber);
-        int maxRetries = 5;
-        int counter = 0;
-        while (!lead.getCurrentStatus().equals(LeadStatus.AVAILABLE) && ++counter < maxRetries) {
-            phoneNumber = this.powerDialerDao.getLeadPhoneNumberToDial();
-            lead = this.powerDialerDao.getLead(phoneNumber);
+        try {
+            refill.join();
+        } catch (final CompletionException e) {
+            // The queue stays short, the event fills it back up
         }
-        if (phoneNumber == null) {
-            throw new NoLeadsAvailableException(String.format("Could not find any leads for the agents %s", agentId));
+    }
+
+    private String getLeadToDial(final String agentId) {
+        // The lead is queued and attached to the agent in a single conditional write, so no other agent can be assigned to it
+        return this.leadSelector.claimLead(agentId);
+    }
+
+    private static Lead lead(final String agentId, final String phoneNumber, final LeadStatus leadStatus) {
+        return Lead.builder()
+            .agentId(agentId)
+            .phoneNumber(phoneNumber)
+            .currentStatus(leadStatus)
+            .build();
+    }
+
+    private static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        // At this point the lead gets attached to an agent, so no other agent can be assigned to it
-        this.updateLead(phoneNumber, LeadStatus.QUEUED, agentId);
-        return phoneNumber;
     }
 
 }
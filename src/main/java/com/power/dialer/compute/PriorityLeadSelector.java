@@ -0,0 +1,283 @@
+package com.power.dialer.compute;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * LeadSelector claiming the AVAILABLE lead of highest priority which may be called right now, instead of the lead the
+ * lead table returns first. The priority, timezone, attempts and last attempt of a lead are read from its metadata.
+ *
+ * AVAILABLE leads are indexed in one heap per timezone ordered by priority, then fewest attempts. A claim takes the
+ * best head among the timezones inside their calling window, so the leads of a timezone outside its window are never
+ * looked at, and costs O(timezones + log(leads)). Leads attempted less than retryDelayMillis ago wait in a heap
+ * ordered by the end of their delay and move to their timezone once it is over.
+ *
+ * The index is filled from the lead table when it is empty and refreshed in the background every
+ * refreshIntervalMillis, which picks up the leads released by failed calls and logouts. Leads can also be offered as
+ * they are uploaded. A lead claimed through another selector meanwhile fails its claim and is dropped
+ */
+public class PriorityLeadSelector implements LeadSelector, AutoCloseable {
+
+    // Metadata keys. Priority and attempts are integers, the last attempt epoch milliseconds and the timezone a zone
+    // id such as America/New_York or a short id such as PST
+    public static final String PRIORITY = "priority";
+    public static final String TIMEZONE = "timezone";
+    public static final String ATTEMPTS = "attempts";
+    public static final String LAST_ATTEMPT = "lastAttempt";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final Comparator<Entry> PRIORITY_ORDER = Comparator.comparingInt((Entry entry) -> entry.priority).reversed()
+        .thenComparingInt(entry -> entry.attempts)
+        .thenComparing(entry -> entry.phoneNumber);
+    private static final Comparator<Entry> RETRY_ORDER = Comparator.comparingLong(entry -> entry.retryAt);
+
+    private final PowerDialerDao powerDialerDao;
+    private final LeadSelectionPolicy policy;
+    private final Clock clock;
+    private final int batchSize;
+
+    // Guarded by this
+    private final Map<ZoneId, Zone> zones = new HashMap<>();
+    private final Map<String, ZoneId> zoneIds = new HashMap<>();
+    private final PriorityQueue<Entry> retries = new PriorityQueue<>(RETRY_ORDER);
+    private final Set<String> indexed = new HashSet<>();
+    // Last claim of the leads claimed through this selector within the retry delay
+    private final Map<String, Long> claims = new HashMap<>();
+
+    private final ExecutorService refresher;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile long lastRefresh;
+
+    public PriorityLeadSelector(final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, LeadSelectionPolicy.builder().build());
+    }
+
+    public PriorityLeadSelector(final PowerDialerDao powerDialerDao, final LeadSelectionPolicy policy) {
+        this(powerDialerDao, policy, Clock.systemUTC(), DEFAULT_BATCH_SIZE);
+    }
+
+    public PriorityLeadSelector(@NonNull final PowerDialerDao powerDialerDao, @NonNull final LeadSelectionPolicy policy,
+            @NonNull final Clock clock, final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid batch size %d", batchSize));
+        }
+        this.powerDialerDao = powerDialerDao;
+        this.policy = policy;
+        this.clock = clock;
+        this.batchSize = batchSize;
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lead-index-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        if (this.clock.millis() - this.lastRefresh >= this.policy.getRefreshIntervalMillis() && this.size() > 0) {
+            this.scheduleRefresh();
+        }
+        Entry entry = this.poll();
+        if (entry == null && this.size() == 0) {
+            // Nothing was indexed, the caller has to wait for the lead table
+            this.refresh();
+            entry = this.poll();
+        }
+        // Stale entries are dropped until a claim succeeds, falling back to the lead table would ignore the calling windows
+        for (; entry != null; entry = this.poll()) {
+            if (this.powerDialerDao.claimLead(agentId, entry.phoneNumber)) {
+                this.recordClaim(entry.phoneNumber);
+                return entry.phoneNumber;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexes an AVAILABLE lead
+     * @param lead lead, ignored unless AVAILABLE
+     * @return true if the lead was not indexed yet
+     */
+    public synchronized boolean offer(@NonNull final Lead lead) {
+        if (!LeadStatus.AVAILABLE.equals(lead.getCurrentStatus()) || !this.indexed.add(lead.getPhoneNumber())) {
+            return false;
+        }
+        final Map<String, String> metadata = lead.getMetadata() == null ? new HashMap<>() : lead.getMetadata();
+        final Long lastClaim = this.claims.get(lead.getPhoneNumber());
+        final long lastAttempt = Math.max(parseLong(metadata.get(LAST_ATTEMPT)), lastClaim == null ? 0 : lastClaim);
+        final Entry entry = new Entry(lead.getPhoneNumber(), (int) parseLong(metadata.get(PRIORITY)),
+            (int) parseLong(metadata.get(ATTEMPTS)), this.zone(metadata.get(TIMEZONE)),
+            lastAttempt == 0 ? 0 : lastAttempt + this.policy.getRetryDelayMillis());
+        if (entry.retryAt > this.clock.millis()) {
+            this.retries.add(entry);
+        } else {
+            entry.zone.leads.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of leads indexed, whether they may be called right now or not
+     */
+    public synchronized int size() {
+        return this.indexed.size();
+    }
+
+    /**
+     * Pages every AVAILABLE lead from the lead table and indexes the ones which are not indexed yet
+     */
+    public void refresh() {
+        this.refreshLock.lock();
+        try {
+            this.lastRefresh = this.clock.millis();
+            this.forgetClaimsBefore(this.lastRefresh - this.policy.getRetryDelayMillis());
+            String cursor = null;
+            long read = 0;
+            List<String> page;
+            do {
+                page = this.powerDialerDao.getLeadPhoneNumbersToDial(this.batchSize, cursor);
+                final List<String> unindexed = this.unindexed(page);
+                if (!unindexed.isEmpty()) {
+                    this.powerDialerDao.getLeads(unindexed).forEach(this::offer);
+                }
+                cursor = page.isEmpty() ? null : page.get(page.size() - 1);
+                read += page.size();
+                // A page starts over when its start lead was claimed meanwhile, which could keep a busy pass going forever
+            } while (page.size() == this.batchSize && read <= 2L * (this.size() + this.batchSize));
+        } finally {
+            this.refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.refresher.shutdownNow();
+    }
+
+    private synchronized Entry poll() {
+        final long now = this.clock.millis();
+        while (!this.retries.isEmpty() && this.retries.peek().retryAt <= now) {
+            final Entry entry = this.retries.poll();
+            entry.zone.leads.add(entry);
+        }
+        final Instant instant = Instant.ofEpochMilli(now);
+        Zone best = null;
+        for (final Zone zone : this.zones.values()) {
+            if (!zone.leads.isEmpty() && (best == null || PRIORITY_ORDER.compare(zone.leads.peek(), best.leads.peek()) < 0)
+                    && this.policy.isCallable(instant.atZone(zone.zoneId).toLocalTime())) {
+                best = zone;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        final Entry entry = best.leads.poll();
+        this.indexed.remove(entry.phoneNumber);
+        return entry;
+    }
+
+    private synchronized void recordClaim(final String phoneNumber) {
+        this.claims.put(phoneNumber, this.clock.millis());
+    }
+
+    private synchronized void forgetClaimsBefore(final long millis) {
+        this.claims.values().removeIf(claim -> claim < millis);
+    }
+
+    private synchronized List<String> unindexed(final List<String> phoneNumbers) {
+        return phoneNumbers.stream().filter(phoneNumber -> !this.indexed.contains(phoneNumber)).collect(Collectors.toList());
+    }
+
+    private Zone zone(final String timezone) {
+        final ZoneId zoneId = timezone == null ? this.policy.getDefaultTimezone() : this.zoneIds.computeIfAbsent(timezone, id -> {
+            try {
+                return ZoneId.of(id, ZoneId.SHORT_IDS);
+            } catch (final DateTimeException e) {
+                return this.policy.getDefaultTimezone();
+            }
+        });
+        return this.zones.computeIfAbsent(zoneId, Zone::new);
+    }
+
+    private void scheduleRefresh() {
+        if (this.refreshScheduled.compareAndSet(false, true)) {
+            try {
+                this.refresher.execute(() -> {
+                    try {
+                        this.refresh();
+                    } catch (final RuntimeException e) {
+                        // The next claim after the refresh interval schedules another refresh
+                        this.lastRefresh = this.clock.millis();
+                    } finally {
+                        this.refreshScheduled.set(false);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // The selector was closed
+                this.refreshScheduled.set(false);
+            }
+        }
+    }
+
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final class Zone {
+
+        private final ZoneId zoneId;
+        private final PriorityQueue<Entry> leads = new PriorityQueue<>(PRIORITY_ORDER);
+
+        private Zone(final ZoneId zoneId) {
+            this.zoneId = zoneId;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String phoneNumber;
+        private final int priority;
+        private final int attempts;
+        private final Zone zone;
+        // Epoch milliseconds from which the lead may be attempted again, 0 if it was never attempted
+        private final long retryAt;
+
+        private Entry(final String phoneNumber, final int priority, final int attempts, final Zone zone, final long retryAt) {
+            this.phoneNumber = phoneNumber;
+            this.priority = priority;
+            this.attempts = attempts;
+            this.zone = zone;
+            this.retryAt = retryAt;
+        }
+    }
+}
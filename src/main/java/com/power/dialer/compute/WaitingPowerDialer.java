@@ -0,0 +1,268 @@
+package com.power.dialer.compute;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.power.dialer.dao.LeadAvailabilityListener;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadPools;
+
+import lombok.NonNull;
+
+/*
+ * Keeps the agents left without leads waiting instead of having the client retry their events. An event of the
+ * wrapped PowerDialer ending with a NoLeadsAvailableException, which is still thrown, adds the agent to the waiters.
+ * Subscribe the WaitingPowerDialer to a NotifyingPowerDialerDao or a LeadChangeFeedPoller: a lead becoming AVAILABLE is
+ * claimed for the longest waiting agent and its queue dialed through onLeadAssigned, on the executor. Any other
+ * successful event or a logout of the agent ends its wait.
+ *
+ * The agents wait in line per campaign, the one their lead selector claims from (see LeadSelector.getCampaign). The
+ * lead is read once before it is handed over, to match the campaign of its metadata, so a lead only goes to an agent
+ * of its own campaign and a lead without a campaign to an agent bound to none.
+ *
+ * A lead could become AVAILABLE between the agent's last claim and its wait, so every new waiter claims once more
+ * through the lead selector before it waits.
+ *
+ * When the WaitingPowerDialer runs behind an AgentEventDispatcher, pass the dispatcher to dispatchHandOversTo so the
+ * onLeadAssigned of a hand over runs on the agent's lane, after the events already dispatched for the agent, rather
+ * than on the executor next to them
+ */
+public class WaitingPowerDialer implements PowerDialer, LeadAvailabilityListener {
+
+    private final PowerDialer powerDialer;
+    private final PowerDialerDao powerDialerDao;
+    private final LeadSelector leadSelector;
+    private final Executor executor;
+
+    // Key of the agents bound to no campaign, a campaign is never empty
+    private static final String NO_CAMPAIGN = "";
+
+    // Waiting agents by campaign, longest waiting first, and the campaign each agent waits in. Guarded by this, there
+    // are at most as many as idle agents
+    private final Map<String, Deque<String>> waiters = new HashMap<>();
+    private final Map<String, String> waitingCampaigns = new HashMap<>();
+    // Lanes the hand overs run on, null to run them on the executor
+    private volatile AgentEventDispatcher dispatcher;
+
+    public WaitingPowerDialer(final PowerDialer powerDialer, final PowerDialerDao powerDialerDao, final LeadSelector leadSelector) {
+        this(powerDialer, powerDialerDao, leadSelector, ForkJoinPool.commonPool());
+    }
+
+    public WaitingPowerDialer(@NonNull final PowerDialer powerDialer, @NonNull final PowerDialerDao powerDialerDao,
+            @NonNull final LeadSelector leadSelector, @NonNull final Executor executor) {
+        this.powerDialer = powerDialer;
+        this.powerDialerDao = powerDialerDao;
+        this.leadSelector = leadSelector;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onAgentLogin(final String agentId) {
+        this.waitOnNoLeads(agentId, () -> this.powerDialer.onAgentLogin(agentId));
+    }
+
+    @Override
+    public void onAgentsLogin(final Collection<String> agentIds) {
+        try {
+            this.powerDialer.onAgentsLogin(agentIds);
+            agentIds.forEach(this::stopWaiting);
+        } catch (final NoLeadsAvailableException e) {
+            // The agents without leads are the ones left AVAILABLE
+            for (final Agent agent : this.powerDialerDao.getAgents(agentIds)) {
+                if (AgentStatus.AVAILABLE.equals(agent.getAgentStatus())) {
+                    this.startWaiting(agent.getAgentId());
+                } else {
+                    this.stopWaiting(agent.getAgentId());
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void onAgentLogout(final String agentId) {
+        this.stopWaiting(agentId);
+        this.powerDialer.onAgentLogout(agentId);
+    }
+
+    @Override
+    public void onAgentsLogout(final Collection<String> agentIds) {
+        agentIds.forEach(this::stopWaiting);
+        this.powerDialer.onAgentsLogout(agentIds);
+    }
+
+    @Override
+    public void onCallStarted(final String agentId, final String phoneNumber) {
+        this.powerDialer.onCallStarted(agentId, phoneNumber);
+    }
+
+    @Override
+    public void onCallFailed(final String agentId, final String phoneNumber) {
+        this.waitOnNoLeads(agentId, () -> this.powerDialer.onCallFailed(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onCallEnded(final String agentId, final String phoneNumber) {
+        this.waitOnNoLeads(agentId, () -> this.powerDialer.onCallEnded(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onLeadAssigned(final String agentId, final String phoneNumber) {
+        this.waitOnNoLeads(agentId, () -> this.powerDialer.onLeadAssigned(agentId, phoneNumber));
+    }
+
+    @Override
+    public void onLeadAvailable(final String phoneNumber) {
+        if (this.waitingAgents() > 0) {
+            this.execute(() -> this.handOver(phoneNumber));
+        }
+    }
+
+    /**
+     * Runs the onLeadAssigned of every hand over on the agent's lane of the dispatcher wrapping this WaitingPowerDialer
+     * @param dispatcher dispatcher the events of the agents go through
+     */
+    public void dispatchHandOversTo(@NonNull final AgentEventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return number of agents waiting for a lead
+     */
+    public synchronized int waitingAgents() {
+        return this.waitingCampaigns.size();
+    }
+
+    private void waitOnNoLeads(final String agentId, final Runnable event) {
+        try {
+            event.run();
+            this.stopWaiting(agentId);
+        } catch (final NoLeadsAvailableException e) {
+            this.startWaiting(agentId);
+            throw e;
+        }
+    }
+
+    private void startWaiting(final String agentId) {
+        final String campaign = campaignKey(this.leadSelector.getCampaign(agentId));
+        synchronized (this) {
+            if (this.waitingCampaigns.containsKey(agentId)) {
+                return;
+            }
+            this.waitingCampaigns.put(agentId, campaign);
+            this.waiters.computeIfAbsent(campaign, ignored -> new ArrayDeque<>()).addLast(agentId);
+        }
+        this.execute(() -> {
+            final String phoneNumber = this.isWaiting(agentId) ? this.leadSelector.claimLead(agentId) : null;
+            if (phoneNumber == null) {
+                return;
+            }
+            if (this.stopWaiting(agentId)) {
+                this.assign(agentId, phoneNumber);
+            } else {
+                // The agent got a lead handed over or logged out meanwhile
+                this.powerDialerDao.releaseLead(phoneNumber, agentId);
+            }
+        });
+    }
+
+    private synchronized boolean isWaiting(final String agentId) {
+        return this.waitingCampaigns.containsKey(agentId);
+    }
+
+    private synchronized boolean stopWaiting(final String agentId) {
+        final String campaign = this.waitingCampaigns.remove(agentId);
+        if (campaign == null) {
+            return false;
+        }
+        final Deque<String> campaignWaiters = this.waiters.get(campaign);
+        campaignWaiters.remove(agentId);
+        if (campaignWaiters.isEmpty()) {
+            this.waiters.remove(campaign);
+        }
+        return true;
+    }
+
+    private synchronized void resumeWaiting(final String agentId, final String campaign) {
+        // The agent was first in line and keeps its place
+        if (!this.waitingCampaigns.containsKey(agentId)) {
+            this.waitingCampaigns.put(agentId, campaign);
+            this.waiters.computeIfAbsent(campaign, ignored -> new ArrayDeque<>()).addFirst(agentId);
+        }
+    }
+
+    private synchronized String nextWaiter(final String campaign) {
+        final Deque<String> campaignWaiters = this.waiters.get(campaign);
+        if (campaignWaiters == null) {
+            return null;
+        }
+        final String agentId = campaignWaiters.pollFirst();
+        if (campaignWaiters.isEmpty()) {
+            this.waiters.remove(campaign);
+        }
+        this.waitingCampaigns.remove(agentId);
+        return agentId;
+    }
+
+    private void handOver(final String phoneNumber) {
+        final Lead lead = this.powerDialerDao.getLead(phoneNumber);
+        if (lead == null || !LeadStatus.AVAILABLE.equals(lead.getCurrentStatus())) {
+            // The lead was claimed again meanwhile
+            return;
+        }
+        final String campaign = campaignKey(LeadPools.campaign(lead.getMetadata()));
+        final String agentId = this.nextWaiter(campaign);
+        if (agentId == null) {
+            return;
+        }
+        if (this.powerDialerDao.claimLead(agentId, phoneNumber)) {
+            this.assign(agentId, phoneNumber);
+        } else {
+            // Another agent claimed the lead first
+            this.resumeWaiting(agentId, campaign);
+        }
+    }
+
+    private void assign(final String agentId, final String phoneNumber) {
+        final AgentEventDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            // Nobody waits for the outcome of a hand over, a NoLeadsAvailableException already made the agent wait again
+            dispatcher.onLeadAssigned(agentId, phoneNumber).exceptionally(e -> {
+                if (e instanceof RejectedExecutionException || e.getCause() instanceof RejectedExecutionException) {
+                    // The dispatcher was closed, the lead goes back to the pool
+                    this.powerDialerDao.releaseLead(phoneNumber, agentId);
+                }
+                return null;
+            });
+            return;
+        }
+        try {
+            this.onLeadAssigned(agentId, phoneNumber);
+        } catch (final RuntimeException e) {
+            // Nobody waits for the outcome of a hand over, a NoLeadsAvailableException already made the agent wait again
+        }
+    }
+
+    private static String campaignKey(final String campaign) {
+        return campaign == null ? NO_CAMPAIGN : campaign;
+    }
+
+    private void execute(final Runnable task) {
+        try {
+            this.executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            // The executor was shut down
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.power.dialer.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.power.dialer.dao.TransitionBatch.AgentTransition;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+
+/*
+ * Keeps the status of the agents this node reads and writes, so reading an agent does not cost a consistent read. The
+ * node handling an agent's events is usually the only one writing its status, every write of the node updates the
+ * cache once it returned. Every status write is conditional on the status it expects, a write rejected by the dao means
+ * another writer got there first and the agent is read again on its next read, as is an agent whose write failed.
+ * The least recently used agent is evicted beyond maxAgents.
+ *
+ * Wrap the dao below any CachingPowerDialerDao, whose writes only reach the dao when the event completes
+ */
+public class AgentCachingPowerDialerDao extends ForwardingPowerDialerDao {
+
+    public static final int DEFAULT_MAX_AGENTS = 100_000;
+
+    // Guarded by itself, in access order
+    private final Map<String, Agent> agents;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AgentCachingPowerDialerDao(final PowerDialerDao delegate) {
+        this(delegate, DEFAULT_MAX_AGENTS);
+    }
+
+    public AgentCachingPowerDialerDao(final PowerDialerDao delegate, final int maxAgents) {
+        super(delegate);
+        if (maxAgents <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid max agents %d", maxAgents));
+        }
+        this.agents = new LinkedHashMap<String, Agent>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Agent> eldest) {
+                return this.size() > maxAgents;
+            }
+        };
+    }
+
+    /**
+     * @return number of agents read from the cache
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return number of agents read from the wrapped dao
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        final Agent cached = this.get(agentId);
+        if (cached != null) {
+            this.hits.increment();
+            return cached;
+        }
+        this.misses.increment();
+        final Agent agent = super.getAgent(agentId);
+        this.putIfAbsent(agent);
+        return agent;
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        final List<Agent> agents = new ArrayList<>();
+        final List<String> missing = new ArrayList<>();
+        for (final String agentId : agentIds) {
+            final Agent cached = this.get(agentId);
+            if (cached == null) {
+                missing.add(agentId);
+            } else {
+                agents.add(cached);
+            }
+        }
+        this.hits.add(agents.size());
+        if (!missing.isEmpty()) {
+            this.misses.add(missing.size());
+            final List<Agent> loaded = super.getAgents(missing);
+            loaded.forEach(this::putIfAbsent);
+            agents.addAll(loaded);
+        }
+        return agents;
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        try {
+            super.updateAgent(agent);
+        } catch (final RuntimeException e) {
+            this.invalidate(agent.getAgentId());
+            throw e;
+        }
+        this.put(agent);
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        try {
+            super.updateAgents(agents);
+        } catch (final RuntimeException e) {
+            agents.forEach(agent -> this.invalidate(agent.getAgentId()));
+            throw e;
+        }
+        agents.forEach(this::put);
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        final boolean moved;
+        try {
+            moved = super.transitionAgentStatus(agentId, from, to);
+        } catch (final RuntimeException e) {
+            this.invalidate(agentId);
+            throw e;
+        }
+        this.record(agentId, to, moved);
+        return moved;
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        final boolean moved;
+        try {
+            moved = super.transitionBatch(batch);
+        } catch (final RuntimeException e) {
+            batch.getAgentTransitions().forEach(transition -> this.invalidate(transition.getAgentId()));
+            throw e;
+        }
+        // A rejected batch does not tell which of its conditions failed, none of its agents is trusted
+        for (final AgentTransition transition : batch.getAgentTransitions()) {
+            this.record(transition.getAgentId(), transition.getTo(), moved);
+        }
+        return moved;
+    }
+
+    private void record(final String agentId, final AgentStatus to, final boolean moved) {
+        if (moved) {
+            this.put(Agent.builder().agentId(agentId).agentStatus(to).build());
+        } else {
+            this.invalidate(agentId);
+        }
+    }
+
+    private Agent get(final String agentId) {
+        synchronized (this.agents) {
+            return this.agents.get(agentId);
+        }
+    }
+
+    private void put(final Agent agent) {
+        synchronized (this.agents) {
+            this.agents.put(agent.getAgentId(), agent);
+        }
+    }
+
+    private void putIfAbsent(final Agent agent) {
+        if (agent == null) {
+            return;
+        }
+        // A write which returned while the agent was read is newer than the read
+        synchronized (this.agents) {
+            this.agents.putIfAbsent(agent.getAgentId(), agent);
+        }
+    }
+
+    private void invalidate(final String agentId) {
+        synchronized (this.agents) {
+            this.agents.remove(agentId);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.power.dialer.dao;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Non-blocking counterpart of the PowerDialerDao operations used by the dialer events. Every operation returns
+ * immediately, errors complete the future exceptionally with a PowerDialerDependencyException
+ */
+public interface AsyncPowerDialerDao {
+
+    /**
+     * Returns the agent given an agentId
+     * @param agentId Agent id
+     * @return Agent, null if the agent does not exist
+     */
+    CompletableFuture<Agent> getAgent(final String agentId);
+
+    /**
+     * Return the next lead to be dialed for the agent
+     * @param agentId agent id
+     * @return next Lead, null if the Agent's queue is empty
+     */
+    CompletableFuture<Lead> getNextLead(final String agentId);
+
+    /**
+     * Return all the leads in the Agent's queue
+     * @param agentId agent id
+     * @return all leads in Agent's queue
+     */
+    CompletableFuture<List<Lead>> getAllLeads(final String agentId);
+
+    /**
+     * Assigns the next AVAILABLE lead to the agent under QUEUED status in a single conditional write
+     * @param agentId agent id
+     * @return phone number of the claimed lead, null if there are no AVAILABLE leads
+     */
+    CompletableFuture<String> claimLead(final String agentId);
+
+    /**
+     * Moves the lead to a new status and agent in a single write without reading it first
+     * @param phoneNumber lead phone number
+     * @param from statuses the lead is expected to be in
+     * @param to new status
+     * @param agentId agent the lead is assigned to after the transition
+     * @return true if the lead moved, false if it does not exist or is in none of the expected statuses
+     */
+    CompletableFuture<Boolean> transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to,
+        final String agentId);
+
+    /**
+     * Moves the agent to a new status in a single write without reading it first
+     * @param agentId agent id
+     * @param from statuses the agent is expected to be in
+     * @param to new status
+     * @return true if the agent moved, false if it does not exist or is in none of the expected statuses
+     */
+    CompletableFuture<Boolean> transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to);
+
+    /**
+     * Moves every agent and lead of the batch to its new status in a single atomic write
+     * @param batch transitions of one event, at most TransitionBatch.MAX_TRANSITIONS
+     * @return true if they all moved, false if none did because one of them does not exist or is in none of its
+     * expected statuses
+     */
+    CompletableFuture<Boolean> transitionBatch(final TransitionBatch batch);
+
+    /**
+     * Moves the lead back to AVAILABLE if it is still QUEUED or WAITING_TO_BE_ENGAGED for the agent
+     * @param phoneNumber lead phone number
+     * @param agentId agent the lead is expected to be assigned to
+     * @return true if the lead was released
+     */
+    CompletableFuture<Boolean> releaseLead(final String phoneNumber, final String agentId);
+
+    /**
+     * Attempts to establish the communication between agent and lead
+     * @param agentId agent id
+     * @param phoneNumber lead phone number
+     * @return completes once the lead is being dialed
+     */
+    CompletableFuture<Void> dial(final String agentId, final String phoneNumber);
+}
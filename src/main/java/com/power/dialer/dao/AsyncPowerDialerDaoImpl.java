@@ -0,0 +1,283 @@
+package com.power.dialer.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.AgentRecord;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+@AllArgsConstructor
+public class AsyncPowerDialerDaoImpl implements AsyncPowerDialerDao {
+
+    // In Production, use dependency injection(Guice/Spring/Dagger) to inject a singleton bean of these objects
+    @NonNull private final AmazonDynamoDBAsync amazonDynamoDBAsync;
+    // Only used to convert the items returned by the low level client into records
+    @NonNull private final DynamoDBMapper dynamoDBMapper;
+
+    @Getter private final LeadClaimCounters leadClaimCounters = new LeadClaimCounters();
+
+    public AsyncPowerDialerDaoImpl(final AmazonDynamoDBAsync amazonDynamoDBAsync) {
+        this(amazonDynamoDBAsync, new DynamoDBMapper(amazonDynamoDBAsync));
+    }
+
+    @Override
+    public CompletableFuture<Agent> getAgent(final String agentId) {
+        final GetItemRequest getItemRequest = new GetItemRequest()
+            .withTableName(AgentRecord.TABLE_NAME)
+            .withKey(DynamoDBRequests.agentKey(agentId))
+            .withConsistentRead(true);
+
+        final Supplier<String> eventMessage = () -> String.format("Getting the agent record for %s", agentId);
+        return this.<GetItemRequest, GetItemResult>call(eventMessage, this.amazonDynamoDBAsync::getItemAsync, getItemRequest)
+            .thenApply(result -> result.getItem() == null ? null
+                : this.dynamoDBMapper.marshallIntoObject(AgentRecord.class, result.getItem()).toAgent());
+    }
+
+    @Override
+    public CompletableFuture<Lead> getNextLead(final String agentId) {
+        // One item is read, whatever the agent's history
+        final QueryRequest queryRequest = DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.QUEUED).withLimit(1);
+        final Supplier<String> eventMessage = () -> String.format("Getting the next lead for %s", agentId);
+        return this.<QueryRequest, QueryResult>call(eventMessage, this.amazonDynamoDBAsync::queryAsync, queryRequest)
+            .thenApply(result -> result.getItems().stream()
+                .map(item -> this.dynamoDBMapper.marshallIntoObject(LeadRecord.class, item).toLead())
+                .findFirst()
+                .orElse(null));
+    }
+
+    @Override
+    public CompletableFuture<List<Lead>> getAllLeads(final String agentId) {
+        final Supplier<String> eventMessage = () -> String.format("Getting all the leads of %s", agentId);
+        final CompletableFuture<List<Lead>> waitingLeads = this.queryAll(eventMessage,
+            DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.WAITING_TO_BE_ENGAGED));
+        return this.queryAll(eventMessage, DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.QUEUED))
+            .thenCombine(waitingLeads, (leads, waiting) -> {
+                leads.addAll(waiting);
+                return leads;
+            });
+    }
+
+    @Override
+    public CompletableFuture<String> claimLead(final String agentId) {
+        return this.claimPage(agentId, null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to,
+            final String agentId) {
+        return this.updateItem(() -> String.format("Moving lead %s from %s to %s", phoneNumber, from, to),
+            DynamoDBRequests.leadTransition(phoneNumber, from, to, agentId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        return this.updateItem(() -> String.format("Moving agent %s from %s to %s", agentId, from, to),
+            DynamoDBRequests.agentTransition(agentId, from, to));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transitionBatch(final TransitionBatch batch) {
+        if (batch.size() > TransitionBatch.MAX_TRANSITIONS) {
+            throw new IllegalArgumentException(String.format("A batch holds at most %d transitions, got %d",
+                TransitionBatch.MAX_TRANSITIONS, batch.size()));
+        }
+        if (batch.size() == 0) {
+            return CompletableFuture.completedFuture(true);
+        }
+        // A single transition does not need a transaction, which costs twice the write capacity
+        if (batch.getLeadTransitions().isEmpty() && batch.getAgentTransitions().size() == 1) {
+            final TransitionBatch.AgentTransition transition = batch.getAgentTransitions().get(0);
+            return this.transitionAgentStatus(transition.getAgentId(), transition.getFrom(), transition.getTo());
+        }
+        if (batch.getAgentTransitions().isEmpty() && batch.getLeadTransitions().size() == 1) {
+            final TransitionBatch.LeadTransition transition = batch.getLeadTransitions().get(0);
+            return this.transitionLeadStatus(transition.getPhoneNumber(), transition.getFrom(), transition.getTo(), transition.getAgentId());
+        }
+
+        return this.transactWriteItems(
+            () -> String.format("Moving %d agents and %d leads", batch.getAgentTransitions().size(), batch.getLeadTransitions().size()),
+            DynamoDBRequests.transitionBatch(batch), 1);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> releaseLead(final String phoneNumber, final String agentId) {
+        return this.updateItem(() -> String.format("Releasing lead %s of %s", phoneNumber, agentId),
+            DynamoDBRequests.leadRelease(phoneNumber, agentId));
+    }
+
+    @Override
+    public CompletableFuture<Void> dial(final String agentId, final String phoneNumber) {
+        // Not implemented
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<String> claimPage(final String agentId, final Map<String, AttributeValue> exclusiveStartKey) {
+        final QueryRequest queryRequest = DynamoDBRequests.availableLeadsQuery(PowerDialerDaoImpl.CLAIM_CANDIDATES)
+            .withExclusiveStartKey(exclusiveStartKey);
+        final Supplier<String> eventMessage = () -> String.format("Getting leads to claim for %s", agentId);
+        return this.<QueryRequest, QueryResult>call(eventMessage, this.amazonDynamoDBAsync::queryAsync, queryRequest)
+            .thenCompose(result -> this.claimLead(agentId, result.getItems().stream()
+                .map(item -> item.get(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME).getS())
+                .collect(Collectors.toList()), 0, result.getLastEvaluatedKey()));
+    }
+
+    private CompletableFuture<String> claimLead(final String agentId, final List<String> candidates, final int index,
+            final Map<String, AttributeValue> lastEvaluatedKey) {
+        if (index == candidates.size()) {
+            if (lastEvaluatedKey != null) {
+                // Every candidate of the page was claimed by other agents, the pool goes on
+                return this.claimPage(agentId, lastEvaluatedKey);
+            }
+            this.leadClaimCounters.recordExhausted();
+            return CompletableFuture.completedFuture(null);
+        }
+        final String phoneNumber = candidates.get(index);
+        return this.updateItem(() -> String.format("Claiming lead %s for agent %s", phoneNumber, agentId),
+                DynamoDBRequests.leadClaim(agentId, phoneNumber))
+            .thenCompose(claimed -> {
+                if (claimed) {
+                    this.leadClaimCounters.recordClaimed();
+                    return CompletableFuture.completedFuture(phoneNumber);
+                }
+                // Another agent claimed the lead between the query and the write
+                this.leadClaimCounters.recordContended();
+                return this.claimLead(agentId, candidates, index + 1, lastEvaluatedKey);
+            });
+    }
+
+    private CompletableFuture<List<Lead>> queryAll(final Supplier<String> eventMessage, final QueryRequest queryRequest) {
+        return this.queryAll(eventMessage, queryRequest, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<Lead>> queryAll(final Supplier<String> eventMessage, final QueryRequest queryRequest, final List<Lead> leads) {
+        return this.<QueryRequest, QueryResult>call(eventMessage, this.amazonDynamoDBAsync::queryAsync, queryRequest)
+            .thenCompose(result -> {
+                result.getItems().forEach(item -> leads.add(this.dynamoDBMapper.marshallIntoObject(LeadRecord.class, item).toLead()));
+                final Map<String, AttributeValue> lastEvaluatedKey = result.getLastEvaluatedKey();
+                if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+                    return CompletableFuture.completedFuture(leads);
+                }
+                return this.queryAll(eventMessage, queryRequest.clone().withExclusiveStartKey(lastEvaluatedKey), leads);
+            });
+    }
+
+    private CompletableFuture<Boolean> updateItem(final Supplier<String> eventMessage, final UpdateItemRequest updateItemRequest) {
+        final CompletableFuture<Boolean> updated = new CompletableFuture<>();
+        this.<UpdateItemRequest, UpdateItemResult>call(eventMessage, this.amazonDynamoDBAsync::updateItemAsync, updateItemRequest)
+            .whenComplete((result, e) -> {
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause == null) {
+                    updated.complete(true);
+                } else if (cause.getCause() instanceof ConditionalCheckFailedException) {
+                    // The record is missing or was not in any of the expected statuses
+                    updated.complete(false);
+                } else {
+                    updated.completeExceptionally(cause);
+                }
+            });
+        return updated;
+    }
+
+    private CompletableFuture<Boolean> transactWriteItems(final Supplier<String> eventMessage,
+            final TransactWriteItemsRequest transactWriteItemsRequest, final int attempt) {
+        // The SDK retries a timeout or a server error with the same token, so a transaction which was already written is
+        // not written twice. A cancelled transaction wrote nothing and takes a new token
+        transactWriteItemsRequest.setClientRequestToken(UUID.randomUUID().toString());
+        return this.<TransactWriteItemsRequest, TransactWriteItemsResult>call(eventMessage, this.amazonDynamoDBAsync::transactWriteItemsAsync,
+                transactWriteItemsRequest)
+            .handle((result, e) -> {
+                final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause == null) {
+                    return CompletableFuture.completedFuture(true);
+                }
+                final List<String> reasons = cancellationReasons(cause.getCause());
+                if (reasons.contains("ConditionalCheckFailed")) {
+                    // A record is missing or was not in any of the expected statuses
+                    return CompletableFuture.completedFuture(false);
+                }
+                if (reasons.contains("TransactionConflict") && attempt < PowerDialerDaoImpl.MAX_TRANSACTION_ATTEMPTS) {
+                    return this.transactWriteItems(eventMessage, transactWriteItemsRequest, attempt + 1);
+                }
+                final CompletableFuture<Boolean> failed = new CompletableFuture<>();
+                failed.completeExceptionally(cause);
+                return failed;
+            })
+            .thenCompose(Function.identity());
+    }
+
+    private <Q extends AmazonWebServiceRequest, R> CompletableFuture<R> call(final Supplier<String> eventMessage,
+            final BiFunction<Q, AsyncHandler<Q, R>, Future<R>> asyncCall, final Q request) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final AsyncHandler<Q, R> asyncHandler = new AsyncHandler<Q, R>() {
+            @Override
+            public void onError(final Exception exception) {
+                future.completeExceptionally(dependencyException(eventMessage, exception));
+            }
+
+            @Override
+            public void onSuccess(final Q request, final R result) {
+                future.complete(result);
+            }
+        };
+        try {
+            asyncCall.apply(request, asyncHandler);
+        } catch (final Exception e) {
+            future.completeExceptionally(dependencyException(eventMessage, e));
+        }
+        return future;
+    }
+
+    private static List<String> cancellationReasons(final Throwable e) {
+        if (!(e instanceof TransactionCanceledException) || ((TransactionCanceledException) e).getCancellationReasons() == null) {
+            return new ArrayList<>();
+        }
+        return ((TransactionCanceledException) e).getCancellationReasons().stream()
+            .map(CancellationReason::getCode)
+            .collect(Collectors.toList());
+    }
+
+    private static PowerDialerDependencyException dependencyException(final Supplier<String> eventMessage, final Exception e) {
+        if (e instanceof ConditionalCheckFailedException) {
+            return new PowerDialerDependencyException(String.format("Condition check failed when: %s", eventMessage.get()), e);
+        } else if (e instanceof AmazonServiceException) {
+            return new PowerDialerDependencyException(String.format("An AWS error occured when: %s", eventMessage.get()), e);
+        }
+        return new PowerDialerDependencyException(String.format("An unexpected error occured when: %s", eventMessage.get()), e);
+    }
+}
@@ -0,0 +1,471 @@
+package com.power.dialer.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Keeps the agents and leads read or written during one PowerDialer event. Repeated reads are served from memory and
+ * updates are buffered until the event ends, so several updates to the same record go out as a single write and
+ * updates to different records go out as one batch. Queries flush the buffered updates first so they see them.
+ * A buffered record the event read goes out as a status transition conditional on the status it was read in.
+ * The event is bound to the calling thread, calls made outside of an event go straight to the wrapped dao
+ */
+public class CachingPowerDialerDao extends ForwardingPowerDialerDao {
+
+    private final ThreadLocal<EventCache> currentEvent = new ThreadLocal<>();
+    private final ThreadLocal<Integer> lastEventRoundTrips = ThreadLocal.withInitial(() -> 0);
+    private final LongAdder events = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+
+    public CachingPowerDialerDao(final PowerDialerDao delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Starts an event on the calling thread. Events started while another one is in progress are part of the outer one
+     */
+    public void beginEvent() {
+        EventCache event = this.currentEvent.get();
+        if (event == null) {
+            event = new EventCache();
+            this.currentEvent.set(event);
+        }
+        event.depth++;
+    }
+
+    /**
+     * Ends the event on the calling thread and writes the buffered updates
+     */
+    public void endEvent() {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            throw new IllegalStateException("No event in progress");
+        }
+        if (--event.depth > 0) {
+            return;
+        }
+        try {
+            this.flush(event);
+        } finally {
+            this.currentEvent.remove();
+            this.events.increment();
+            this.roundTrips.add(event.roundTrips);
+            this.lastEventRoundTrips.set(event.roundTrips);
+        }
+    }
+
+    /**
+     * @return number of calls made to the wrapped dao by the last event which ended on the calling thread
+     */
+    public int getLastEventRoundTrips() {
+        return this.lastEventRoundTrips.get();
+    }
+
+    /**
+     * @return average number of calls made to the wrapped dao per event
+     */
+    public double getRoundTripsPerEvent() {
+        final long eventCount = this.events.sum();
+        return eventCount == 0 ? 0 : (double) this.roundTrips.sum() / eventCount;
+    }
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.getAgent(agentId);
+        }
+        Agent agent = event.agents.get(agentId);
+        if (agent == null) {
+            event.roundTrips++;
+            agent = super.getAgent(agentId);
+            event.agents.put(agentId, agent);
+        }
+        return agent;
+    }
+
+    @Override
+    public Lead getLead(final String phoneNumber) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.getLead(phoneNumber);
+        }
+        Lead lead = event.leads.get(phoneNumber);
+        if (lead == null) {
+            event.roundTrips++;
+            lead = super.getLead(phoneNumber);
+            event.leads.put(phoneNumber, lead);
+        }
+        return lead;
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.getAgents(agentIds);
+        }
+        final List<String> misses = agentIds.stream()
+            .filter(agentId -> !event.agents.containsKey(agentId))
+            .collect(Collectors.toList());
+        if (!misses.isEmpty()) {
+            event.roundTrips++;
+            super.getAgents(misses).forEach(agent -> event.agents.put(agent.getAgentId(), agent));
+        }
+        return agentIds.stream()
+            .map(event.agents::get)
+            .filter(agent -> agent != null)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.getLeads(phoneNumbers);
+        }
+        final List<String> misses = phoneNumbers.stream()
+            .filter(phoneNumber -> !event.leads.containsKey(phoneNumber))
+            .collect(Collectors.toList());
+        if (!misses.isEmpty()) {
+            event.roundTrips++;
+            super.getLeads(misses).forEach(lead -> event.leads.put(lead.getPhoneNumber(), lead));
+        }
+        return phoneNumbers.stream()
+            .map(event.leads::get)
+            .filter(lead -> lead != null)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        final EventCache event = this.flushForQuery();
+        return event == null ? super.getNextLead(agentId) : event.count(super.getNextLead(agentId));
+    }
+
+    @Override
+    public List<Lead> getAllLeads(final String agentId) {
+        final EventCache event = this.flushForQuery();
+        return event == null ? super.getAllLeads(agentId) : event.count(super.getAllLeads(agentId));
+    }
+
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        final EventCache event = this.flushForQuery();
+        return event == null ? super.getLeadPhoneNumberToDial() : event.count(super.getLeadPhoneNumberToDial());
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        final EventCache event = this.flushForQuery();
+        return event == null ? super.getLeadPhoneNumbersToDial(limit, exclusiveStartPhoneNumber)
+            : event.count(super.getLeadPhoneNumbersToDial(limit, exclusiveStartPhoneNumber));
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        final EventCache event = this.flushForQuery();
+        return event == null ? super.getLeadPhoneNumbersToDial(campaign, shard, limit, exclusiveStartPhoneNumber)
+            : event.count(super.getLeadPhoneNumbersToDial(campaign, shard, limit, exclusiveStartPhoneNumber));
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        final EventCache event = this.flushForClaim();
+        if (event == null) {
+            return super.claimLead(agentId);
+        }
+        final String phoneNumber = event.count(super.claimLead(agentId));
+        event.leads.remove(phoneNumber);
+        return phoneNumber;
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        final EventCache event = this.flushForClaim();
+        if (event == null) {
+            return super.claimLead(agentId, phoneNumber);
+        }
+        event.leads.remove(phoneNumber);
+        return event.count(super.claimLead(agentId, phoneNumber));
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            super.updateLead(lead);
+        } else {
+            event.bufferLead(lead);
+        }
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            super.updateAgent(agent);
+        } else {
+            event.bufferAgent(agent);
+        }
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            super.updateLeads(leads);
+        } else {
+            leads.forEach(event::bufferLead);
+        }
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            super.updateAgents(agents);
+        } else {
+            agents.forEach(event::bufferAgent);
+        }
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.transitionLeadStatus(phoneNumber, from, to, agentId);
+        }
+        if (event.dirtyLeads.contains(phoneNumber)) {
+            // The buffered update has to land before the transition checks the status
+            this.flush(event);
+        }
+        final boolean moved = event.count(super.transitionLeadStatus(phoneNumber, from, to, agentId));
+        final Lead lead = event.leads.remove(phoneNumber);
+        if (moved && lead != null) {
+            event.leads.put(phoneNumber, lead.toBuilder().currentStatus(to).agentId(agentId).build());
+        }
+        return moved;
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.transitionAgentStatus(agentId, from, to);
+        }
+        if (event.dirtyAgents.contains(agentId)) {
+            this.flush(event);
+        }
+        final boolean moved = event.count(super.transitionAgentStatus(agentId, from, to));
+        final Agent agent = event.agents.remove(agentId);
+        if (moved && agent != null) {
+            event.agents.put(agentId, agent.toBuilder().agentStatus(to).build());
+        }
+        return moved;
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.transitionBatch(batch);
+        }
+        if (batch.getAgentTransitions().stream().anyMatch(transition -> event.dirtyAgents.contains(transition.getAgentId()))
+                || batch.getLeadTransitions().stream().anyMatch(transition -> event.dirtyLeads.contains(transition.getPhoneNumber()))) {
+            this.flush(event);
+        }
+        final boolean moved = event.count(super.transitionBatch(batch));
+        batch.getAgentTransitions().forEach(transition -> {
+            final Agent agent = event.agents.remove(transition.getAgentId());
+            if (moved && agent != null) {
+                event.agents.put(transition.getAgentId(), agent.toBuilder().agentStatus(transition.getTo()).build());
+            }
+        });
+        batch.getLeadTransitions().forEach(transition -> {
+            final Lead lead = event.leads.remove(transition.getPhoneNumber());
+            if (moved && lead != null) {
+                event.leads.put(transition.getPhoneNumber(),
+                    lead.toBuilder().currentStatus(transition.getTo()).agentId(transition.getAgentId()).build());
+            }
+        });
+        return moved;
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        final EventCache event = this.currentEvent.get();
+        if (event == null) {
+            return super.releaseLead(phoneNumber, agentId);
+        }
+        if (event.dirtyLeads.contains(phoneNumber)) {
+            // The buffered update has to land before the release checks the status
+            this.flush(event);
+        }
+        final boolean released = event.count(super.releaseLead(phoneNumber, agentId));
+        final Lead lead = event.leads.remove(phoneNumber);
+        if (released && lead != null) {
+            event.leads.put(phoneNumber, lead.toBuilder().currentStatus(LeadStatus.AVAILABLE).agentId(PowerDialerDaoImpl.DEFAULT_AGENT).build());
+        }
+        return released;
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        final EventCache event = this.flushForQuery();
+        if (event == null) {
+            return super.releaseLeads(agentId);
+        }
+        final List<String> released = event.count(super.releaseLeads(agentId));
+        released.forEach(phoneNumber -> {
+            final Lead lead = event.leads.remove(phoneNumber);
+            if (lead != null) {
+                event.leads.put(phoneNumber, lead.toBuilder().currentStatus(LeadStatus.AVAILABLE).agentId(PowerDialerDaoImpl.DEFAULT_AGENT).build());
+            }
+        });
+        return released;
+    }
+
+    private EventCache flushForQuery() {
+        final EventCache event = this.currentEvent.get();
+        if (event != null) {
+            this.flush(event);
+        }
+        return event;
+    }
+
+    private EventCache flushForClaim() {
+        // Only leads released back to the pool can change the outcome of a claim
+        final EventCache event = this.currentEvent.get();
+        if (event != null && event.dirtyLeads.stream()
+                .anyMatch(phoneNumber -> LeadStatus.AVAILABLE.equals(event.leads.get(phoneNumber).getCurrentStatus()))) {
+            this.flush(event);
+        }
+        return event;
+    }
+
+    private void flush(final EventCache event) {
+        // An update racing with another writer is dropped instead of overwriting the other write
+        final TransitionBatch.TransitionBatchBuilder transitions = TransitionBatch.builder();
+        final List<Agent> agents = new ArrayList<>();
+        event.dirtyAgents.forEach(agentId -> {
+            final Agent agent = event.agents.get(agentId);
+            final Agent stored = event.storedAgents.get(agentId);
+            if (stored == null) {
+                if (!event.lostAgents.contains(agentId)) {
+                    agents.add(agent);
+                }
+            } else if (!stored.getAgentStatus().equals(agent.getAgentStatus())) {
+                transitions.agent(agentId, EnumSet.of(stored.getAgentStatus()), agent.getAgentStatus());
+            }
+        });
+        final List<Lead> leads = new ArrayList<>();
+        event.dirtyLeads.forEach(phoneNumber -> {
+            final Lead lead = event.leads.get(phoneNumber);
+            final Lead stored = event.storedLeads.get(phoneNumber);
+            if (stored == null) {
+                if (!event.lostLeads.contains(phoneNumber)) {
+                    leads.add(lead);
+                }
+            } else if (!Objects.equals(stored.getMetadata(), lead.getMetadata())) {
+                leads.add(lead);
+            } else if (!stored.getCurrentStatus().equals(lead.getCurrentStatus()) || !stored.getAgentId().equals(lead.getAgentId())) {
+                transitions.lead(phoneNumber, EnumSet.of(stored.getCurrentStatus()), lead.getCurrentStatus(), lead.getAgentId());
+            }
+        });
+        event.dirtyAgents.clear();
+        event.dirtyLeads.clear();
+        event.storedAgents.clear();
+        event.storedLeads.clear();
+
+        final TransitionBatch batch = transitions.build();
+        final boolean written = batch.size() == 0
+            || batch.size() <= TransitionBatch.MAX_TRANSITIONS && event.count(super.transitionBatch(batch));
+        if (!written) {
+            // Written one at a time when they do not fit in one write or one of them was not as read
+            batch.getAgentTransitions().forEach(transition -> {
+                event.roundTrips++;
+                if (!super.transitionAgentStatus(transition.getAgentId(), transition.getFrom(), transition.getTo())) {
+                    event.agents.remove(transition.getAgentId());
+                    event.lostAgents.add(transition.getAgentId());
+                }
+            });
+            batch.getLeadTransitions().forEach(transition -> {
+                event.roundTrips++;
+                if (!super.transitionLeadStatus(transition.getPhoneNumber(), transition.getFrom(), transition.getTo(), transition.getAgentId())) {
+                    event.leads.remove(transition.getPhoneNumber());
+                    event.lostLeads.add(transition.getPhoneNumber());
+                }
+            });
+        }
+
+        // Records the event did not read, or leads with new metadata, can only be written whole. A record whose
+        // transition lost a race is not written whole until the event reads it again
+        if (!agents.isEmpty()) {
+            event.roundTrips++;
+            if (agents.size() == 1) {
+                super.updateAgent(agents.get(0));
+            } else {
+                super.updateAgents(agents);
+            }
+        }
+        if (!leads.isEmpty()) {
+            event.roundTrips++;
+            if (leads.size() == 1) {
+                super.updateLead(leads.get(0));
+            } else {
+                super.updateLeads(leads);
+            }
+        }
+    }
+
+    private static class EventCache {
+        private final Map<String, Agent> agents = new HashMap<>();
+        private final Map<String, Lead> leads = new HashMap<>();
+        private final Set<String> dirtyAgents = new LinkedHashSet<>();
+        private final Set<String> dirtyLeads = new LinkedHashSet<>();
+        // Buffered records as the event last read or moved them in the wrapped dao, absent if it did not
+        private final Map<String, Agent> storedAgents = new HashMap<>();
+        private final Map<String, Lead> storedLeads = new HashMap<>();
+        // Records another writer moved before a flush of the event could, their later blind updates are dropped
+        private final Set<String> lostAgents = new HashSet<>();
+        private final Set<String> lostLeads = new HashSet<>();
+        private int depth;
+        private int roundTrips;
+
+        private <T> T count(final T result) {
+            this.roundTrips++;
+            return result;
+        }
+
+        private void bufferAgent(final Agent agent) {
+            final Agent stored = this.agents.put(agent.getAgentId(), agent);
+            if (this.dirtyAgents.add(agent.getAgentId()) && stored != null) {
+                this.storedAgents.put(agent.getAgentId(), stored);
+            }
+        }
+
+        private void bufferLead(final Lead lead) {
+            final Lead stored = this.leads.put(lead.getPhoneNumber(), lead);
+            if (this.dirtyLeads.add(lead.getPhoneNumber()) && stored != null) {
+                this.storedLeads.put(lead.getPhoneNumber(), stored);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.power.dialer.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Counts the dao calls made by the calling thread, so a benchmark or a simulation can attribute them to the event it runs.
+ * The events measured here run on the calling thread, onAgentsLogin and onAgentsLogout work on an executor and are
+ * not covered
+ */
+public class CountingPowerDialerDao extends ForwardingPowerDialerDao {
+
+    private final ThreadLocal<long[]> calls = ThreadLocal.withInitial(() -> new long[1]);
+
+    public CountingPowerDialerDao(final PowerDialerDao delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @return number of dao calls made by the calling thread so far
+     */
+    public long getCalls() {
+        return this.calls.get()[0];
+    }
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        this.count();
+        return super.getAgent(agentId);
+    }
+
+    @Override
+    public Lead getLead(final String phoneNumber) {
+        this.count();
+        return super.getLead(phoneNumber);
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        this.count();
+        return super.getAgents(agentIds);
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        this.count();
+        return super.getLeads(phoneNumbers);
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        this.count();
+        return super.getNextLead(agentId);
+    }
+
+    @Override
+    public List<Lead> getAllLeads(final String agentId) {
+        this.count();
+        return super.getAllLeads(agentId);
+    }
+
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        this.count();
+        return super.getLeadPhoneNumberToDial();
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        this.count();
+        return super.claimLead(agentId);
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        this.count();
+        return super.claimLead(agentId, phoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        this.count();
+        return super.getLeadPhoneNumbersToDial(limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        this.count();
+        return super.getLeadPhoneNumbersToDial(campaign, shard, limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        this.count();
+        super.updateLead(lead);
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        this.count();
+        super.updateAgent(agent);
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        this.count();
+        super.updateLeads(leads);
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        this.count();
+        super.updateAgents(agents);
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        this.count();
+        return super.transitionLeadStatus(phoneNumber, from, to, agentId);
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        this.count();
+        return super.transitionAgentStatus(agentId, from, to);
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        this.count();
+        return super.transitionBatch(batch);
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        this.count();
+        return super.releaseExpiredLeases(leasedBefore, limit);
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        this.count();
+        return super.releaseLead(phoneNumber, agentId);
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        this.count();
+        return super.releaseLeads(agentId);
+    }
+
+    @Override
+    public void dial(final String agentId, final String phoneNumber) {
+        this.count();
+        super.dial(agentId, phoneNumber);
+    }
+
+    private void count() {
+        this.calls.get()[0]++;
+    }
+}
@@ -0,0 +1,45 @@
+package com.power.dialer.dao;
+
+import java.nio.file.Path;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * How the DurablePowerDialerDao persists its state. The sync policy trades how long a write waits against how many
+ * acknowledged writes a power loss can take away
+ */
+@Value
+@Builder(toBuilder = true)
+public class DurabilityConfig {
+
+    /*
+     * EVERY_WRITE: A write returns once it is on disk. Writes waiting at the same time share one sync (group commit)
+     * INTERVAL: A background sync runs every syncIntervalMillis, a power loss drops at most that much of the writes
+     * NEVER: The operating system decides when to write, a process crash loses nothing but a power loss can
+     */
+    public enum SyncPolicy {
+        EVERY_WRITE,
+        INTERVAL,
+        NEVER
+    }
+
+    @NonNull
+    private final Path directory;
+
+    @NonNull
+    @Builder.Default
+    private final SyncPolicy syncPolicy = SyncPolicy.EVERY_WRITE;
+
+    @Builder.Default
+    private final long syncIntervalMillis = 10;
+
+    // Size of a memory mapped log segment
+    @Builder.Default
+    private final int segmentSize = 64 << 20;
+
+    // A snapshot is taken in the background after this many logged writes, 0 to only take them on demand
+    @Builder.Default
+    private final long snapshotEveryWrites = 1_000_000;
+}
@@ -0,0 +1,351 @@
+package com.power.dialer.dao;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.Getter;
+
+/*
+ * Keeps the leads and agents in an InMemoryPowerDialerDao and logs every change to a write-ahead log, so a restarted
+ * process gets its state back. On start the latest snapshot is loaded and the log after it is replayed.
+ * Each write is applied and logged under the lock of its lead or agent, which keeps the log order of a record the
+ * order its changes were made in. The lock is released before waiting for the log to sync, so writes of different
+ * records share syncs. Snapshots are taken in the background without stopping writes, they may hold some changes made
+ * after their sequence number but replaying those again is harmless since every log record is the whole record.
+ * A transition batch is logged as a single record, a torn one is dropped on replay with all of its changes.
+ * Leases are not logged, the leased leads recovered on start are leased again at that time
+ */
+public class DurablePowerDialerDao extends ForwardingPowerDialerDao implements AutoCloseable {
+
+    private static final int LOCK_STRIPES = 1024;
+    private static final int INITIAL_RECORD_SIZE = 256;
+
+    @Getter private final InMemoryPowerDialerDao state;
+    private final DurabilityConfig config;
+    private final WriteAheadLog log;
+    private final Object[] leadLocks = new Object[LOCK_STRIPES];
+    private final Object[] agentLocks = new Object[LOCK_STRIPES];
+    private final ThreadLocal<ByteBuffer> records = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_RECORD_SIZE));
+    private final ExecutorService snapshotExecutor;
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+    private volatile long lastSnapshotSequence;
+
+    /**
+     * Opens the store in the configured directory, recovering the state found there
+     * @param config durability config
+     */
+    public DurablePowerDialerDao(final DurabilityConfig config) {
+        this(config, new InMemoryPowerDialerDao());
+    }
+
+    private DurablePowerDialerDao(final DurabilityConfig config, final InMemoryPowerDialerDao state) {
+        super(state);
+        this.state = state;
+        this.config = config;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.leadLocks[i] = new Object();
+            this.agentLocks[i] = new Object();
+        }
+        this.lastSnapshotSequence = StateSnapshot.load(config.getDirectory(), state);
+        final long nextSequence = WriteAheadLog.replay(config.getDirectory(), this.lastSnapshotSequence,
+            record -> StateCodec.apply(record, state));
+        WriteAheadLog.discardFrom(config.getDirectory(), nextSequence);
+        this.log = new WriteAheadLog(config, nextSequence);
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "state-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        while (true) {
+            final String phoneNumber = this.state.getLeadPhoneNumberToDial();
+            if (phoneNumber == null) {
+                this.state.getLeadClaimCounters().recordExhausted();
+                return null;
+            }
+            if (this.claimLead(agentId, phoneNumber)) {
+                this.state.getLeadClaimCounters().recordClaimed();
+                return phoneNumber;
+            }
+            // Another agent claimed the head between reading it and locking it
+            this.state.getLeadClaimCounters().recordContended();
+        }
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        final long sequence;
+        synchronized (this.leadLock(phoneNumber)) {
+            if (!this.state.claimLead(agentId, phoneNumber)) {
+                return false;
+            }
+            sequence = this.logLead(phoneNumber);
+        }
+        this.awaitDurable(sequence);
+        return true;
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        final long sequence;
+        synchronized (this.leadLock(lead.getPhoneNumber())) {
+            this.state.updateLead(lead);
+            sequence = this.logLead(lead.getPhoneNumber());
+        }
+        this.awaitDurable(sequence);
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        final long sequence;
+        synchronized (this.agentLock(agent.getAgentId())) {
+            this.state.updateAgent(agent);
+            sequence = this.logAgent(agent.getAgentId());
+        }
+        this.awaitDurable(sequence);
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        long sequence = -1;
+        for (final Lead lead : leads) {
+            synchronized (this.leadLock(lead.getPhoneNumber())) {
+                this.state.updateLead(lead);
+                sequence = this.logLead(lead.getPhoneNumber());
+            }
+        }
+        // The batch waits for a single sync
+        this.awaitDurable(sequence);
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        long sequence = -1;
+        for (final Agent agent : agents) {
+            synchronized (this.agentLock(agent.getAgentId())) {
+                this.state.updateAgent(agent);
+                sequence = this.logAgent(agent.getAgentId());
+            }
+        }
+        this.awaitDurable(sequence);
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        final long sequence;
+        synchronized (this.leadLock(phoneNumber)) {
+            if (!this.state.transitionLeadStatus(phoneNumber, from, to, agentId)) {
+                return false;
+            }
+            sequence = this.logLead(phoneNumber);
+        }
+        this.awaitDurable(sequence);
+        return true;
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        final long sequence;
+        synchronized (this.agentLock(agentId)) {
+            if (!this.state.transitionAgentStatus(agentId, from, to)) {
+                return false;
+            }
+            sequence = this.logAgent(agentId);
+        }
+        this.awaitDurable(sequence);
+        return true;
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        if (batch.size() == 0) {
+            return true;
+        }
+        final List<String> phoneNumbers = batch.getLeadTransitions().stream()
+            .map(TransitionBatch.LeadTransition::getPhoneNumber)
+            .collect(Collectors.toList());
+        final List<String> agentIds = batch.getAgentTransitions().stream()
+            .map(TransitionBatch.AgentTransition::getAgentId)
+            .collect(Collectors.toList());
+        // Lead locks are taken before agent locks, each in stripe order
+        final List<Object> locks = new ArrayList<>();
+        phoneNumbers.stream().mapToInt(this::leadStripe).distinct().sorted().forEach(stripe -> locks.add(this.leadLocks[stripe]));
+        agentIds.stream().mapToInt(this::agentStripe).distinct().sorted().forEach(stripe -> locks.add(this.agentLocks[stripe]));
+
+        final long sequence = holding(locks, 0, () -> {
+            if (!this.state.transitionBatch(batch)) {
+                return -1;
+            }
+            final List<Lead> leads = phoneNumbers.stream().map(this.state::getLead).collect(Collectors.toList());
+            final List<Agent> agents = agentIds.stream().map(this.state::getAgent).collect(Collectors.toList());
+            return this.append(buffer -> StateCodec.encode(leads, agents, buffer));
+        });
+        this.awaitDurable(sequence);
+        return sequence >= 0;
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> released = new ArrayList<>();
+        long sequence = -1;
+        for (final String phoneNumber : this.state.getExpiredLeases(leasedBefore, limit)) {
+            synchronized (this.leadLock(phoneNumber)) {
+                if (this.state.releaseLease(phoneNumber, leasedBefore)) {
+                    released.add(phoneNumber);
+                    sequence = this.logLead(phoneNumber);
+                }
+            }
+        }
+        this.awaitDurable(sequence);
+        return released;
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        final long sequence;
+        synchronized (this.leadLock(phoneNumber)) {
+            if (!this.state.releaseLead(phoneNumber, agentId)) {
+                return false;
+            }
+            sequence = this.logLead(phoneNumber);
+        }
+        this.awaitDurable(sequence);
+        return true;
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        final List<String> released = new ArrayList<>();
+        long sequence = -1;
+        for (final Lead lead : this.state.getAllLeads(agentId)) {
+            synchronized (this.leadLock(lead.getPhoneNumber())) {
+                if (this.state.releaseLead(lead.getPhoneNumber(), agentId)) {
+                    released.add(lead.getPhoneNumber());
+                    sequence = this.logLead(lead.getPhoneNumber());
+                }
+            }
+        }
+        // The released leads wait for a single sync
+        this.awaitDurable(sequence);
+        return released;
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the snapshots and log segments it replaces
+     */
+    public synchronized void snapshot() {
+        final long sequence = this.log.getNextSequence();
+        StateSnapshot.write(this.config.getDirectory(), sequence, this.state);
+        StateSnapshot.deleteBefore(this.config.getDirectory(), sequence);
+        this.log.truncateBefore(sequence);
+        this.lastSnapshotSequence = sequence;
+    }
+
+    /**
+     * Syncs the log and stops the background snapshots. The state is recovered by opening the directory again
+     */
+    @Override
+    public void close() {
+        this.snapshotExecutor.shutdown();
+        try {
+            this.snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.log.close();
+    }
+
+    // Caller holds the lead lock
+    private long logLead(final String phoneNumber) {
+        final Lead lead = this.state.getLead(phoneNumber);
+        return this.append(buffer -> StateCodec.encode(lead, buffer));
+    }
+
+    // Caller holds the agent lock
+    private long logAgent(final String agentId) {
+        final Agent agent = this.state.getAgent(agentId);
+        return this.append(buffer -> StateCodec.encode(agent, buffer));
+    }
+
+    private long append(final Consumer<ByteBuffer> encoder) {
+        ByteBuffer record = this.records.get();
+        while (true) {
+            record.clear();
+            try {
+                encoder.accept(record);
+                break;
+            } catch (final BufferOverflowException e) {
+                record = ByteBuffer.allocate(record.capacity() * 2);
+                this.records.set(record);
+            }
+        }
+        record.flip();
+        final long sequence = this.log.append(record);
+        this.maybeSnapshot(sequence);
+        return sequence;
+    }
+
+    private void maybeSnapshot(final long sequence) {
+        final long snapshotEveryWrites = this.config.getSnapshotEveryWrites();
+        if (snapshotEveryWrites > 0 && sequence - this.lastSnapshotSequence >= snapshotEveryWrites
+                && this.snapshotInProgress.compareAndSet(false, true)) {
+            this.snapshotExecutor.execute(() -> {
+                try {
+                    this.snapshot();
+                } finally {
+                    this.snapshotInProgress.set(false);
+                }
+            });
+        }
+    }
+
+    private void awaitDurable(final long sequence) {
+        if (sequence >= 0) {
+            this.log.awaitDurable(sequence);
+        }
+    }
+
+    private static long holding(final List<Object> locks, final int held, final LongSupplier action) {
+        if (held == locks.size()) {
+            return action.getAsLong();
+        }
+        synchronized (locks.get(held)) {
+            return holding(locks, held + 1, action);
+        }
+    }
+
+    private Object leadLock(final String phoneNumber) {
+        return this.leadLocks[this.leadStripe(phoneNumber)];
+    }
+
+    private Object agentLock(final String agentId) {
+        return this.agentLocks[this.agentStripe(agentId)];
+    }
+
+    private int leadStripe(final String phoneNumber) {
+        return Math.floorMod(phoneNumber.hashCode(), LOCK_STRIPES);
+    }
+
+    private int agentStripe(final String agentId) {
+        return Math.floorMod(agentId.hashCode(), LOCK_STRIPES);
+    }
+}
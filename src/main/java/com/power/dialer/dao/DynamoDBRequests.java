@@ -0,0 +1,290 @@
+package com.power.dialer.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItem;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.Update;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.AgentRecord;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+/*
+ * Low level DynamoDB requests shared by the synchronous and the asynchronous daos
+ */
+final class DynamoDBRequests {
+
+    // Attributes read into a Lead
+    private static final String LEAD_PROJECTION = String.join(", ", LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME,
+        LeadRecord.AGENT_ID_ATTRIBUTE_NAME, LeadRecord.LEAD_STATUS_ATTRIBUTE_NAME, LeadRecord.METADATA_ATTRIBUTE_NAME,
+        LeadRecord.LEAD_POOL_ATTRIBUTE_NAME);
+    private static final Set<LeadStatus> LEASED_STATUSES = Arrays.stream(LeadStatus.values())
+        .filter(LeadStatus::isLeased)
+        .collect(Collectors.toCollection(() -> EnumSet.noneOf(LeadStatus.class)));
+
+    private DynamoDBRequests() {
+    }
+
+    /**
+     * Conditional update moving a lead, which also takes or renews its lease when the new status is leased and drops it
+     * otherwise. A lead of a campaign moved to the default agent goes to its lead pool
+     * @param phoneNumber lead phone number
+     * @param from statuses the lead is expected to be in
+     * @param to new status
+     * @param agentId agent the lead is assigned to after the transition
+     * @return update request
+     */
+    static UpdateItemRequest leadTransition(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":to", new AttributeValue().withS(to.toString()));
+        eav.put(":agentId", new AttributeValue().withS(agentId));
+
+        final UpdateItemRequest updateItemRequest = new UpdateItemRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withKey(leadKey(phoneNumber))
+            .withConditionExpression(expectedStatusCondition(from, eav))
+            .addExpressionAttributeNamesEntry("#status", LeadRecord.LEAD_STATUS_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#agentId", LeadRecord.AGENT_ID_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav);
+        if (!PowerDialerDaoImpl.DEFAULT_AGENT.equals(agentId)) {
+            return withLease(updateItemRequest, "SET #status = :to, #agentId = :agentId", phoneNumber, to.isLeased());
+        }
+        updateItemRequest.addExpressionAttributeNamesEntry("#leadPool", LeadRecord.LEAD_POOL_ATTRIBUTE_NAME);
+        return withLease(updateItemRequest, "SET #status = :to, #agentId = if_not_exists(#leadPool, :agentId)", phoneNumber,
+            to.isLeased());
+    }
+
+    static UpdateItemRequest agentTransition(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":to", new AttributeValue().withS(to.toString()));
+
+        return new UpdateItemRequest()
+            .withTableName(AgentRecord.TABLE_NAME)
+            .withKey(agentKey(agentId))
+            .withUpdateExpression("SET #status = :to")
+            .withConditionExpression(expectedStatusCondition(from, eav))
+            .addExpressionAttributeNamesEntry("#status", AgentRecord.AGENT_STATUS_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav);
+    }
+
+    /**
+     * Transaction made of the conditional updates transitionLeadStatus and transitionAgentStatus would make one at a time
+     * @param batch transitions of one event
+     * @return transaction request
+     */
+    static TransactWriteItemsRequest transitionBatch(final TransitionBatch batch) {
+        final List<TransactWriteItem> items = new ArrayList<>();
+        batch.getAgentTransitions().forEach(transition ->
+            items.add(transactWriteItem(agentTransition(transition.getAgentId(), transition.getFrom(), transition.getTo()))));
+        batch.getLeadTransitions().forEach(transition -> items.add(transactWriteItem(
+            leadTransition(transition.getPhoneNumber(), transition.getFrom(), transition.getTo(), transition.getAgentId()))));
+        return new TransactWriteItemsRequest().withTransactItems(items);
+    }
+
+    static UpdateItemRequest leadClaim(final String agentId, final String phoneNumber) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":queued", new AttributeValue().withS(LeadStatus.QUEUED.toString()));
+        eav.put(":available", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
+        eav.put(":agentId", new AttributeValue().withS(agentId));
+        eav.put(":defaultAgent", new AttributeValue().withS(PowerDialerDaoImpl.DEFAULT_AGENT));
+
+        return withLease(new UpdateItemRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withKey(leadKey(phoneNumber))
+            .withConditionExpression("#status = :available AND (#agentId = :defaultAgent OR #agentId = #leadPool)")
+            .addExpressionAttributeNamesEntry("#status", LeadRecord.LEAD_STATUS_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#agentId", LeadRecord.AGENT_ID_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leadPool", LeadRecord.LEAD_POOL_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav), "SET #status = :queued, #agentId = :agentId", phoneNumber, true);
+    }
+
+    /**
+     * Query for the leases of one partition of the lease index taken before a time, oldest first
+     * @param shard lease index partition
+     * @param leasedBefore epoch milliseconds
+     * @return query request, without a limit
+     */
+    static QueryRequest expiredLeasesQuery(final int shard, final long leasedBefore) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":shard", new AttributeValue().withN(Integer.toString(shard)));
+        eav.put(":before", new AttributeValue().withN(Long.toString(leasedBefore)));
+
+        return new QueryRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withIndexName(LeadRecord.LEASE_INDEX_NAME)
+            .withKeyConditionExpression("#shard = :shard and #leasedAt < :before")
+            .addExpressionAttributeNamesEntry("#shard", LeadRecord.LEASE_SHARD_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leasedAt", LeadRecord.LEASED_AT_ATTRIBUTE_NAME)
+            .withProjectionExpression(String.join(", ", LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME, "#leasedAt"))
+            .withExpressionAttributeValues(eav);
+    }
+
+    /**
+     * Conditional update moving a leased lead back to AVAILABLE, provided its lease was not renewed since it was read
+     * from the lease index
+     * @param phoneNumber lead phone number
+     * @param leasedAt lease read from the lease index
+     * @return update request
+     */
+    static UpdateItemRequest leaseRelease(final String phoneNumber, final long leasedAt) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":available", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
+        eav.put(":defaultAgent", new AttributeValue().withS(PowerDialerDaoImpl.DEFAULT_AGENT));
+        eav.put(":leasedAt", new AttributeValue().withN(Long.toString(leasedAt)));
+
+        return new UpdateItemRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withKey(leadKey(phoneNumber))
+            .withUpdateExpression("SET #status = :available, #agentId = if_not_exists(#leadPool, :defaultAgent) "
+                + "REMOVE #leaseShard, #leasedAt")
+            .withConditionExpression(String.format("#leasedAt = :leasedAt AND %s", expectedStatusCondition(LEASED_STATUSES, eav)))
+            .addExpressionAttributeNamesEntry("#status", LeadRecord.LEAD_STATUS_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#agentId", LeadRecord.AGENT_ID_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leadPool", LeadRecord.LEAD_POOL_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leaseShard", LeadRecord.LEASE_SHARD_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leasedAt", LeadRecord.LEASED_AT_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav);
+    }
+
+    /**
+     * Conditional update moving a QUEUED or WAITING_TO_BE_ENGAGED lead back to AVAILABLE, provided it is still assigned
+     * to the agent
+     * @param phoneNumber lead phone number
+     * @param agentId agent the lead is expected to be assigned to
+     * @return update request
+     */
+    static UpdateItemRequest leadRelease(final String phoneNumber, final String agentId) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":available", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
+        eav.put(":defaultAgent", new AttributeValue().withS(PowerDialerDaoImpl.DEFAULT_AGENT));
+        eav.put(":agentId", new AttributeValue().withS(agentId));
+
+        return new UpdateItemRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withKey(leadKey(phoneNumber))
+            .withUpdateExpression("SET #status = :available, #agentId = if_not_exists(#leadPool, :defaultAgent) "
+                + "REMOVE #leaseShard, #leasedAt")
+            .withConditionExpression(String.format("#agentId = :agentId AND %s", expectedStatusCondition(LEASED_STATUSES, eav)))
+            .addExpressionAttributeNamesEntry("#status", LeadRecord.LEAD_STATUS_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#agentId", LeadRecord.AGENT_ID_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leadPool", LeadRecord.LEAD_POOL_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leaseShard", LeadRecord.LEASE_SHARD_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leasedAt", LeadRecord.LEASED_AT_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav);
+    }
+
+    /**
+     * Transaction made of the leadRelease updates of the leads
+     * @param phoneNumbers phone numbers of the leads, at most TransitionBatch.MAX_TRANSITIONS
+     * @param agentId agent the leads are expected to be assigned to
+     * @return transaction request
+     */
+    static TransactWriteItemsRequest leadsRelease(final List<String> phoneNumbers, final String agentId) {
+        return new TransactWriteItemsRequest().withTransactItems(phoneNumbers.stream()
+            .map(phoneNumber -> transactWriteItem(leadRelease(phoneNumber, agentId)))
+            .collect(Collectors.toList()));
+    }
+
+    static QueryRequest availableLeadsQuery(final int limit) {
+        return availableLeadsQuery(PowerDialerDaoImpl.DEFAULT_AGENT, limit);
+    }
+
+    /**
+     * Query for the AVAILABLE leads of the default agent or of a lead pool
+     * @param unassignedAgent default agent or lead pool key
+     * @param limit maximum number of leads
+     * @return query request for the phone numbers
+     */
+    static QueryRequest availableLeadsQuery(final String unassignedAgent, final int limit) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":agentId", new AttributeValue().withS(unassignedAgent));
+        eav.put(":leadStatus", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
+
+        return new QueryRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withIndexName(LeadRecord.INDEX_KEY_ATTRIBUTE_NAME)
+            .withKeyConditionExpression("agentId = :agentId and leadStatus = :leadStatus")
+            .withProjectionExpression(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME)
+            .withExpressionAttributeValues(eav)
+            .withLimit(limit);
+    }
+
+    /**
+     * Query for the leads of an agent in one status. The status is part of the index key, so the leads the agent
+     * completed earlier are never read however many there are
+     * @param agentId agent id
+     * @param status lead status
+     * @return query request, without a limit
+     */
+    static QueryRequest agentLeadsQuery(final String agentId, final LeadStatus status) {
+        final Map<String, AttributeValue> eav = new HashMap<>();
+        eav.put(":agentId", new AttributeValue().withS(agentId));
+        eav.put(":leadStatus", new AttributeValue().withS(status.toString()));
+
+        return new QueryRequest()
+            .withTableName(LeadRecord.TABLE_NAME)
+            .withIndexName(LeadRecord.INDEX_KEY_ATTRIBUTE_NAME)
+            .withKeyConditionExpression("agentId = :agentId and leadStatus = :leadStatus")
+            .withProjectionExpression(LEAD_PROJECTION)
+            .withExpressionAttributeValues(eav);
+    }
+
+    static Map<String, AttributeValue> leadKey(final String phoneNumber) {
+        return Collections.singletonMap(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME, new AttributeValue().withS(phoneNumber));
+    }
+
+    static Map<String, AttributeValue> agentKey(final String agentId) {
+        return Collections.singletonMap(AgentRecord.PARTITION_KEY_ATTRIBUTE_NAME, new AttributeValue().withS(agentId));
+    }
+
+    // Completes the update of a lead with the lease attributes, set to now when the lead ends up leased, removed otherwise
+    private static UpdateItemRequest withLease(final UpdateItemRequest updateItemRequest, final String setExpression,
+            final String phoneNumber, final boolean leased) {
+        updateItemRequest
+            .addExpressionAttributeNamesEntry("#leaseShard", LeadRecord.LEASE_SHARD_ATTRIBUTE_NAME)
+            .addExpressionAttributeNamesEntry("#leasedAt", LeadRecord.LEASED_AT_ATTRIBUTE_NAME);
+        if (!leased) {
+            return updateItemRequest.withUpdateExpression(setExpression + " REMOVE #leaseShard, #leasedAt");
+        }
+        updateItemRequest.getExpressionAttributeValues().put(":leaseShard",
+            new AttributeValue().withN(Integer.toString(LeadRecord.leaseShard(phoneNumber))));
+        updateItemRequest.getExpressionAttributeValues().put(":leasedAt",
+            new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+        return updateItemRequest.withUpdateExpression(setExpression + ", #leaseShard = :leaseShard, #leasedAt = :leasedAt");
+    }
+
+    private static TransactWriteItem transactWriteItem(final UpdateItemRequest updateItemRequest) {
+        return new TransactWriteItem().withUpdate(new Update()
+            .withTableName(updateItemRequest.getTableName())
+            .withKey(updateItemRequest.getKey())
+            .withUpdateExpression(updateItemRequest.getUpdateExpression())
+            .withConditionExpression(updateItemRequest.getConditionExpression())
+            .withExpressionAttributeNames(updateItemRequest.getExpressionAttributeNames())
+            .withExpressionAttributeValues(updateItemRequest.getExpressionAttributeValues()));
+    }
+
+    private static String expectedStatusCondition(final Set<? extends Enum<?>> from, final Map<String, AttributeValue> eav) {
+        if (from.isEmpty()) {
+            throw new IllegalArgumentException("At least one expected status is required");
+        }
+        final List<String> placeholders = new ArrayList<>();
+        for (final Enum<?> status : from) {
+            final String placeholder = ":from" + placeholders.size();
+            eav.put(placeholder, new AttributeValue().withS(status.toString()));
+            placeholders.add(placeholder);
+        }
+        return String.format("#status IN (%s)", String.join(", ", placeholders));
+    }
+}
@@ -0,0 +1,379 @@
+package com.power.dialer.dao;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.metrics.PowerDialerMetrics;
+
+import lombok.NonNull;
+
+/*
+ * Guards the DynamoDB calls of a PowerDialerDaoImpl, see ResilienceConfig:
+ * - Each attempt takes a token of the rate limit of its table or index, waiting for one up to maxRateLimitWaitMillis,
+ *   so a spike is smoothed on the client instead of being throttled by DynamoDB
+ * - Throttling and server errors are retried after a decorrelated jitter backoff, so throttled callers spread out
+ *   instead of retrying in lockstep. Anything else, e.g. a failed condition, is thrown at once
+ * - Server and connection errors in a row open the circuit, every call then fails at once until a single probe call
+ *   goes through. Throttling does not open it, DynamoDB answers
+ * - A consistent load can be sent again when the first one is slow, the first answer wins
+ *
+ * The SDK client retries throttled requests too, give it a retry policy with few retries so the two do not multiply
+ */
+public class DynamoDBResilience implements AutoCloseable {
+
+    private final ResilienceConfig config;
+    private final Map<String, TokenBucket> rateLimits = new HashMap<>();
+    private final CircuitBreaker circuitBreaker;
+    // Null when loads are not hedged
+    private final ExecutorService hedger;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public DynamoDBResilience(final ResilienceConfig config) {
+        this(config, Clock.systemUTC());
+    }
+
+    public DynamoDBResilience(@NonNull final ResilienceConfig config, @NonNull final Clock clock) {
+        if (config.getMaxAttempts() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid max attempts %d", config.getMaxAttempts()));
+        }
+        if (config.getBaseBackoffMillis() < 0 || config.getMaxBackoffMillis() < config.getBaseBackoffMillis()) {
+            throw new IllegalArgumentException(String.format("Invalid backoff from %d to %d", config.getBaseBackoffMillis(),
+                config.getMaxBackoffMillis()));
+        }
+        if (config.getCircuitBreakerFailures() < 0 || config.getCircuitBreakerOpenMillis() <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid circuit breaker of %d failures open for %d",
+                config.getCircuitBreakerFailures(), config.getCircuitBreakerOpenMillis()));
+        }
+        if (config.getHedgeAfterMillis() < 0 || config.getMaxRateLimitWaitMillis() < 0) {
+            throw new IllegalArgumentException(String.format("Invalid hedge delay %d or rate limit wait %d",
+                config.getHedgeAfterMillis(), config.getMaxRateLimitWaitMillis()));
+        }
+        config.getRequestsPerSecond().forEach((resource, rate) -> {
+            if (rate == null || !(rate > 0)) {
+                throw new IllegalArgumentException(String.format("Invalid rate %s of %s", rate, resource));
+            }
+            this.rateLimits.put(resource, new TokenBucket(rate));
+        });
+        this.config = config;
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitBreakerFailures(), config.getCircuitBreakerOpenMillis(), clock);
+        this.hedger = config.getHedgeAfterMillis() == 0 ? null : Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "dynamodb-hedged-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param table table name
+     * @param index index name, null for the table itself
+     * @return resource the calls are rate limited under
+     */
+    public static String resource(@NonNull final String table, final String index) {
+        return index == null ? table : table + "/" + index;
+    }
+
+    /**
+     * Calls DynamoDB, retrying throttling and server errors
+     * @param resource table or table/index called
+     * @param eventMessage what the call does, for the error messages
+     * @param dynamoLambda DynamoDB call
+     * @return result of the call
+     * @throws PowerDialerDependencyException if the call was rate limited, the circuit is open or the wait interrupted,
+     * the last error of the call otherwise
+     */
+    public <T> T call(final String resource, final Supplier<String> eventMessage, final Supplier<T> dynamoLambda) {
+        long backoffMillis = this.config.getBaseBackoffMillis();
+        for (int attempt = 1; ; attempt++) {
+            this.acquire(resource, eventMessage);
+            if (!this.circuitBreaker.allow()) {
+                this.shortCircuited.increment();
+                throw new PowerDialerDependencyException(String.format("Circuit open, DynamoDB not called when: %s",
+                    eventMessage.get()));
+            }
+            final Failure failure;
+            boolean recorded = false;
+            try {
+                final T result = dynamoLambda.get();
+                this.circuitBreaker.recordAnswer();
+                recorded = true;
+                return result;
+            } catch (final RuntimeException e) {
+                failure = classify(e);
+                if (failure == Failure.UNAVAILABLE) {
+                    this.circuitBreaker.recordFailure();
+                } else {
+                    this.circuitBreaker.recordAnswer();
+                }
+                recorded = true;
+                if (failure == Failure.FINAL || attempt == this.config.getMaxAttempts()) {
+                    throw e;
+                }
+            } finally {
+                if (!recorded) {
+                    // An Error thrown by the call still ends a probe, or the circuit would stay open for good
+                    this.circuitBreaker.recordFailure();
+                }
+            }
+            if (failure == Failure.THROTTLED) {
+                this.throttled.increment();
+            }
+            this.retries.increment();
+            backoffMillis = Math.min(this.config.getMaxBackoffMillis(),
+                ThreadLocalRandom.current().nextLong(this.config.getBaseBackoffMillis(), Math.max(backoffMillis * 3, 1) + 1));
+            sleep(backoffMillis, eventMessage);
+        }
+    }
+
+    /**
+     * Calls DynamoDB for an idempotent read, sending the call again if it has not answered after hedgeAfterMillis
+     * @param resource table or table/index called
+     * @param eventMessage what the call does, for the error messages
+     * @param dynamoLambda DynamoDB read
+     * @return first result of the calls
+     */
+    public <T> T hedgedCall(final String resource, final Supplier<String> eventMessage, final Supplier<T> dynamoLambda) {
+        if (this.hedger == null) {
+            return this.call(resource, eventMessage, dynamoLambda);
+        }
+        final CompletableFuture<T> first = CompletableFuture.supplyAsync(() -> this.call(resource, eventMessage, dynamoLambda),
+            this.hedger);
+        try {
+            return first.get(this.config.getHedgeAfterMillis(), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // Hedged below
+        } catch (final ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PowerDialerDependencyException(String.format("Interrupted when: %s", eventMessage.get()), e);
+        }
+        this.hedged.increment();
+        final CompletableFuture<T> second = CompletableFuture.supplyAsync(() -> this.call(resource, eventMessage, dynamoLambda),
+            this.hedger);
+        // Completed by the first call to answer, or with the last error if both fail
+        final CompletableFuture<T> answer = new CompletableFuture<>();
+        final AtomicBoolean answered = new AtomicBoolean();
+        final AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((result, failure) -> {
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    answer.complete(result);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                answer.completeExceptionally(failure);
+            }
+        });
+        second.whenComplete((result, failure) -> {
+            if (failure == null) {
+                // The win is counted before the caller is woken up
+                if (answered.compareAndSet(false, true)) {
+                    this.hedgeWins.increment();
+                    answer.complete(result);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                answer.completeExceptionally(failure);
+            }
+        });
+        try {
+            return answer.join();
+        } catch (final CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Reports the retries, throttled calls, rate limited calls, circuit state and hedged loads as dynamodb.* metrics
+     * @param metrics metrics of the dialer
+     */
+    public void registerMetrics(@NonNull final PowerDialerMetrics metrics) {
+        metrics.gauge("dynamodb.retries", this.retries::sum);
+        metrics.gauge("dynamodb.throttled", this.throttled::sum);
+        metrics.gauge("dynamodb.rateLimited", this.rateLimited::sum);
+        metrics.gauge("dynamodb.circuit.open", () -> this.circuitBreaker.isOpen() ? 1 : 0);
+        metrics.gauge("dynamodb.circuit.opened", this.circuitBreaker::getOpened);
+        metrics.gauge("dynamodb.circuit.rejected", this.shortCircuited::sum);
+        metrics.gauge("dynamodb.hedged", this.hedged::sum);
+        metrics.gauge("dynamodb.hedge.wins", this.hedgeWins::sum);
+    }
+
+    @Override
+    public void close() {
+        if (this.hedger != null) {
+            this.hedger.shutdownNow();
+        }
+    }
+
+    private void acquire(final String resource, final Supplier<String> eventMessage) {
+        final TokenBucket rateLimit = this.rateLimits.get(resource);
+        if (rateLimit == null) {
+            return;
+        }
+        final long waitNanos = rateLimit.reserve(TimeUnit.MILLISECONDS.toNanos(this.config.getMaxRateLimitWaitMillis()));
+        if (waitNanos < 0) {
+            this.rateLimited.increment();
+            throw new PowerDialerDependencyException(String.format("Rate limit of %s reached, DynamoDB not called when: %s",
+                resource, eventMessage.get()));
+        }
+        if (waitNanos > 0) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1, eventMessage);
+        }
+    }
+
+    private static Failure classify(final RuntimeException e) {
+        if (e instanceof TransactionCanceledException) {
+            final List<CancellationReason> reasons = ((TransactionCanceledException) e).getCancellationReasons();
+            final List<String> codes = reasons == null ? null : reasons.stream().map(CancellationReason::getCode).collect(Collectors.toList());
+            return codes != null && (codes.contains("ThrottlingError") || codes.contains("ProvisionedThroughputExceeded"))
+                ? Failure.THROTTLED : Failure.FINAL;
+        }
+        if (e instanceof AmazonServiceException) {
+            final AmazonServiceException ase = (AmazonServiceException) e;
+            if (RetryUtils.isThrottlingException(ase)) {
+                return Failure.THROTTLED;
+            }
+            return ErrorType.Service.equals(ase.getErrorType()) || RetryUtils.isRetryableServiceException(ase)
+                ? Failure.UNAVAILABLE : Failure.FINAL;
+        }
+        // No answer from DynamoDB, e.g. a connection or timeout error
+        return e instanceof SdkClientException && ((SdkClientException) e).isRetryable() ? Failure.UNAVAILABLE : Failure.FINAL;
+    }
+
+    private static RuntimeException rethrow(final Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            return (RuntimeException) failure;
+        }
+        return new PowerDialerDependencyException("A hedged DynamoDB load failed", failure);
+    }
+
+    private static void sleep(final long millis, final Supplier<String> eventMessage) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PowerDialerDependencyException(String.format("Interrupted while backing off when: %s", eventMessage.get()), e);
+        }
+    }
+
+    /*
+     * THROTTLED: DynamoDB is up but out of capacity, retried
+     * UNAVAILABLE: A server error or no answer at all, retried and counted by the circuit breaker
+     * FINAL: Retrying would fail the same way
+     */
+    private enum Failure {
+        THROTTLED,
+        UNAVAILABLE,
+        FINAL
+    }
+
+    /*
+     * Holds up to a second worth of tokens. A call short of a token reserves the next one and waits for it, which
+     * keeps the callers in arrival order
+     */
+    private static class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(final double tokensPerSecond) {
+            this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, tokensPerSecond);
+            this.tokens = this.capacity;
+        }
+
+        // Nanos to wait for the reserved token, -1 if it would take longer than maxWaitNanos
+        private synchronized long reserve(final long maxWaitNanos) {
+            final long now = System.nanoTime();
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.refilledAt) * this.tokensPerNano);
+            this.refilledAt = now;
+            final long waitNanos = this.tokens >= 1 ? 0 : (long) Math.ceil((1 - this.tokens) / this.tokensPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            this.tokens -= 1;
+            return waitNanos;
+        }
+    }
+
+    private static class CircuitBreaker {
+
+        private final int failureThreshold;
+        private final long openMillis;
+        private final Clock clock;
+        // Guarded by this. openUntil is 0 while the circuit is closed
+        private int failures;
+        private long openUntil;
+        private boolean probing;
+        private long opened;
+
+        private CircuitBreaker(final int failureThreshold, final long openMillis, final Clock clock) {
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+            this.clock = clock;
+        }
+
+        private synchronized boolean allow() {
+            if (this.openUntil == 0) {
+                return true;
+            }
+            if (this.probing || this.clock.millis() < this.openUntil) {
+                return false;
+            }
+            this.probing = true;
+            return true;
+        }
+
+        private synchronized void recordAnswer() {
+            this.failures = 0;
+            this.openUntil = 0;
+            this.probing = false;
+        }
+
+        private synchronized void recordFailure() {
+            this.failures++;
+            // The calls already in flight when the circuit opened do not open it again
+            if (this.failureThreshold > 0 && (this.probing || this.openUntil == 0 && this.failures >= this.failureThreshold)) {
+                this.openUntil = this.clock.millis() + this.openMillis;
+                this.probing = false;
+                this.opened++;
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return this.openUntil != 0;
+        }
+
+        private synchronized long getOpened() {
+            return this.opened;
+        }
+    }
+}
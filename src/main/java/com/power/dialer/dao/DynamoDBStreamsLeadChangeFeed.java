@@ -0,0 +1,139 @@
+package com.power.dialer.dao;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.LeadRecord;
+
+import lombok.NonNull;
+
+/*
+ * LeadChangeFeed reading the DynamoDB stream of the lead table, which has to be enabled with the NEW_IMAGE or
+ * NEW_AND_OLD_IMAGES view type. The shards open when the feed first polls are read from their latest record, the
+ * shards created afterwards, e.g. the children of a split shard, from their first one. A lead's changes are all in
+ * one shard lineage, so they are returned in order. Not thread safe, poll from a single thread
+ */
+public class DynamoDBStreamsLeadChangeFeed implements LeadChangeFeed {
+
+    // Most records a GetRecords request can return
+    private static final int MAX_RECORDS = 1000;
+
+    private final AmazonDynamoDBStreams amazonDynamoDBStreams;
+    // Only used to convert the stream images into records
+    private final DynamoDBMapper dynamoDBMapper;
+    private final String streamArn;
+
+    // Next iterator of every open shard followed
+    private final Map<String, String> shardIterators = new LinkedHashMap<>();
+    private final Set<String> closedShards = new HashSet<>();
+    private boolean described;
+
+    public DynamoDBStreamsLeadChangeFeed(@NonNull final AmazonDynamoDBStreams amazonDynamoDBStreams,
+            @NonNull final DynamoDBMapper dynamoDBMapper, @NonNull final String streamArn) {
+        this.amazonDynamoDBStreams = amazonDynamoDBStreams;
+        this.dynamoDBMapper = dynamoDBMapper;
+        this.streamArn = streamArn;
+    }
+
+    @Override
+    public List<Lead> poll() {
+        if (!this.described) {
+            this.describeShards();
+        }
+        final List<Lead> leads = new ArrayList<>();
+        boolean shardsChanged = false;
+        for (final Map.Entry<String, String> shard : new ArrayList<>(this.shardIterators.entrySet())) {
+            final GetRecordsResult result;
+            try {
+                result = this.call(() -> String.format("Reading the lead stream shard %s", shard.getKey()),
+                    () -> this.amazonDynamoDBStreams.getRecords(new GetRecordsRequest()
+                        .withShardIterator(shard.getValue())
+                        .withLimit(MAX_RECORDS)));
+            } catch (final PowerDialerDependencyException e) {
+                if (!(e.getCause() instanceof ExpiredIteratorException)) {
+                    throw e;
+                }
+                // The shard was not read for too long, it is read again from its first record
+                this.shardIterators.remove(shard.getKey());
+                shardsChanged = true;
+                continue;
+            }
+            result.getRecords().forEach(record -> {
+                final Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
+                // A deleted lead has no new image
+                if (newImage != null) {
+                    leads.add(this.dynamoDBMapper.marshallIntoObject(LeadRecord.class, newImage).toLead());
+                }
+            });
+            if (result.getNextShardIterator() == null) {
+                // The shard was split or merged, its children carry on
+                this.shardIterators.remove(shard.getKey());
+                this.closedShards.add(shard.getKey());
+                shardsChanged = true;
+            } else {
+                this.shardIterators.put(shard.getKey(), result.getNextShardIterator());
+            }
+        }
+        if (shardsChanged) {
+            this.describeShards();
+        }
+        return leads;
+    }
+
+    private void describeShards() {
+        final ShardIteratorType iteratorType = this.described ? ShardIteratorType.TRIM_HORIZON : ShardIteratorType.LATEST;
+        String lastShardId = null;
+        do {
+            final String exclusiveStartShardId = lastShardId;
+            final DescribeStreamResult result = this.call(() -> String.format("Describing the lead stream %s", this.streamArn),
+                () -> this.amazonDynamoDBStreams.describeStream(new DescribeStreamRequest()
+                    .withStreamArn(this.streamArn)
+                    .withExclusiveStartShardId(exclusiveStartShardId)));
+            for (final Shard shard : result.getStreamDescription().getShards()) {
+                final String shardId = shard.getShardId();
+                if (this.shardIterators.containsKey(shardId) || this.closedShards.contains(shardId)) {
+                    continue;
+                }
+                if (!this.described && shard.getSequenceNumberRange().getEndingSequenceNumber() != null) {
+                    // Closed before the feed started, it has nothing after its latest record
+                    this.closedShards.add(shardId);
+                    continue;
+                }
+                this.shardIterators.put(shardId, this.call(() -> String.format("Getting an iterator of the lead stream shard %s", shardId),
+                    () -> this.amazonDynamoDBStreams.getShardIterator(new GetShardIteratorRequest()
+                        .withStreamArn(this.streamArn)
+                        .withShardId(shardId)
+                        .withShardIteratorType(iteratorType))).getShardIterator());
+            }
+            lastShardId = result.getStreamDescription().getLastEvaluatedShardId();
+        } while (lastShardId != null);
+        this.described = true;
+    }
+
+    private <T> T call(final Supplier<String> eventMessage, final Supplier<T> streamsLambda) {
+        try {
+            return streamsLambda.get();
+        } catch (final AmazonServiceException ase) {
+            throw new PowerDialerDependencyException(String.format("An AWS error occured when: %s", eventMessage.get()), ase);
+        }
+    }
+}
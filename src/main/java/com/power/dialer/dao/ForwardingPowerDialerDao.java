@@ -0,0 +1,137 @@
+package com.power.dialer.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/*
+ * Base class for PowerDialerDao decorators. Forwards every call to the wrapped dao, so decorators only override
+ * the operations they are interested in
+ */
+@AllArgsConstructor
+public abstract class ForwardingPowerDialerDao implements PowerDialerDao {
+
+    @Getter(AccessLevel.PROTECTED)
+    @NonNull private final PowerDialerDao delegate;
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        return this.delegate.getAgent(agentId);
+    }
+
+    @Override
+    public Lead getLead(final String phoneNumber) {
+        return this.delegate.getLead(phoneNumber);
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        return this.delegate.getAgents(agentIds);
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        return this.delegate.getLeads(phoneNumbers);
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        return this.delegate.getNextLead(agentId);
+    }
+
+    @Override
+    public List<Lead> getAllLeads(final String agentId) {
+        return this.delegate.getAllLeads(agentId);
+    }
+
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        return this.delegate.getLeadPhoneNumberToDial();
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        return this.delegate.claimLead(agentId);
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        return this.delegate.claimLead(agentId, phoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        return this.delegate.getLeadPhoneNumbersToDial(limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        return this.delegate.getLeadPhoneNumbersToDial(campaign, shard, limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        this.delegate.updateLead(lead);
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        this.delegate.updateAgent(agent);
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        this.delegate.updateLeads(leads);
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        this.delegate.updateAgents(agents);
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        return this.delegate.transitionLeadStatus(phoneNumber, from, to, agentId);
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        return this.delegate.transitionAgentStatus(agentId, from, to);
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        return this.delegate.transitionBatch(batch);
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        return this.delegate.releaseExpiredLeases(leasedBefore, limit);
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        return this.delegate.releaseLead(phoneNumber, agentId);
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        return this.delegate.releaseLeads(agentId);
+    }
+
+    @Override
+    public void dial(final String agentId, final String phoneNumber) {
+        this.delegate.dial(agentId, phoneNumber);
+    }
+}
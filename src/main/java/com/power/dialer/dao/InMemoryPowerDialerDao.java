@@ -0,0 +1,746 @@
+package com.power.dialer.dao;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadPools;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/*
+ * PowerDialerDao keeping every lead and agent in memory, for tests, simulations and single node deployments.
+ *
+ * Phone numbers are encoded as long keys and mapped to a lead slot by a primitive open addressing map. The fields of a
+ * lead live in primitive columns at its slot, about 61 bytes per lead including the map, so millions of leads fit in a
+ * modest heap. Agent ids are interned to ints. Every (agent, status) pair has a bucket linking the slots of its leads
+ * through the previous/next columns, which makes getNextLead, getLeadPhoneNumberToDial and claimLead O(1) and
+ * getAllLeads O(leads in the agent's queue). Leased leads are also linked in lease order into one of LEASE_SHARDS lease
+ * lists, so releaseExpiredLeases only reads the leases it releases. The unassigned leads of a campaign are kept under
+ * the agent entry of their lead pool rather than the default agent, which gives every campaign shard its own bucket.
+ *
+ * Locking: the fields of a lead are written under one of LOCK_STRIPES lead locks, the links of a bucket or a lease list
+ * under its monitor. A lead lock is always taken before a bucket or lease list monitor and at most one of those is held
+ * at a time. A transition batch holds the lead locks of its leads in stripe order, then the monitors of its agents in
+ * index order
+ */
+public class InMemoryPowerDialerDao implements PowerDialerDao {
+
+    public static final int DEFAULT_EXPECTED_LEADS = 1 << 16;
+
+    private static final LeadStatus[] LEAD_STATUSES = LeadStatus.values();
+    // Slot allocated, lead not written yet
+    private static final byte NO_STATUS = -1;
+    // End of a bucket list
+    private static final int NO_SLOT = -1;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int LOCK_STRIPES = 1024;
+    private static final int LEASE_SHARDS = 16;
+    private static final Comparator<Lead> LEAD_ORDER = Comparator.comparing(Lead::getPhoneNumber);
+    private static final Comparator<AgentEntry> AGENT_ORDER = Comparator.comparingInt(entry -> entry.index);
+
+    private final PhoneNumberKeys phoneNumberKeys = new PhoneNumberKeys();
+    private final LongIntHashMap slots;
+    // Columns are allocated a chunk at a time, growing never copies lead data. Guarded by slotAllocation when growing
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int leadCount;
+    private final Object slotAllocation = new Object();
+    private final Object[] leadLocks = new Object[LOCK_STRIPES];
+    // Most leads have no metadata, so it is kept off the columns
+    private final Map<Integer, Map<String, String>> metadata = new ConcurrentHashMap<>();
+    private final LeaseList[] leases = new LeaseList[LEASE_SHARDS];
+    private final Clock clock;
+
+    private final Map<String, AgentEntry> agents = new ConcurrentHashMap<>();
+    private volatile AgentEntry[] agentsByIndex = new AgentEntry[0];
+    private final AgentEntry defaultAgent;
+
+    @Getter private final LeadClaimCounters leadClaimCounters = new LeadClaimCounters();
+
+    public InMemoryPowerDialerDao() {
+        this(DEFAULT_EXPECTED_LEADS);
+    }
+
+    public InMemoryPowerDialerDao(final int expectedLeads) {
+        this(expectedLeads, Clock.systemUTC());
+    }
+
+    /**
+     * @param expectedLeads number of leads the lead map is sized for, it grows past it
+     * @param clock clock the leases are taken with
+     */
+    public InMemoryPowerDialerDao(final int expectedLeads, @NonNull final Clock clock) {
+        this.slots = new LongIntHashMap(expectedLeads);
+        this.clock = clock;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            this.leadLocks[i] = new Object();
+        }
+        for (int i = 0; i < LEASE_SHARDS; i++) {
+            this.leases[i] = new LeaseList();
+        }
+        this.defaultAgent = this.intern(PowerDialerDaoImpl.DEFAULT_AGENT);
+    }
+
+    /**
+     * @return number of leads stored
+     */
+    public int size() {
+        return this.leadCount;
+    }
+
+    /**
+     * Visits every lead, each one is a consistent copy but leads changing meanwhile may be seen before or after the change
+     * @param consumer lead consumer
+     */
+    void forEachLead(final Consumer<Lead> consumer) {
+        final int leads = this.leadCount;
+        for (int slot = 0; slot < leads; slot++) {
+            final Lead lead;
+            synchronized (this.leadLock(slot)) {
+                lead = this.toLead(slot);
+            }
+            if (lead != null) {
+                consumer.accept(lead);
+            }
+        }
+    }
+
+    /**
+     * Visits every agent with a record
+     * @param consumer agent consumer
+     */
+    void forEachAgent(final Consumer<Agent> consumer) {
+        for (final AgentEntry entry : this.agentsByIndex) {
+            final Agent agent = this.getAgent(entry.agentId);
+            if (agent != null) {
+                consumer.accept(agent);
+            }
+        }
+    }
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        final AgentEntry entry = this.agents.get(agentId);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            return entry.status == null ? null : Agent.builder().agentId(agentId).agentStatus(entry.status).build();
+        }
+    }
+
+    @Override
+    public Lead getLead(final String phoneNumber) {
+        final int slot = this.findSlot(phoneNumber);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return null;
+        }
+        synchronized (this.leadLock(slot)) {
+            return this.toLead(slot);
+        }
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        return agentIds.stream().map(this::getAgent).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        return phoneNumbers.stream().map(this::getLead).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        final AgentEntry entry = this.agents.get(agentId);
+        if (entry == null) {
+            return null;
+        }
+        final Bucket queued = entry.bucket(LeadStatus.QUEUED);
+        synchronized (queued) {
+            // A lead only changes while it is out of every bucket, so the fields of a linked lead are stable
+            return queued.head == NO_SLOT ? null : this.toLead(queued.head);
+        }
+    }
+
+    @Override
+    public List<Lead> getAllLeads(final String agentId) {
+        final AgentEntry entry = this.agents.get(agentId);
+        final List<Lead> leads = new ArrayList<>();
+        if (entry != null) {
+            this.collect(entry.bucket(LeadStatus.QUEUED), leads);
+            this.collect(entry.bucket(LeadStatus.WAITING_TO_BE_ENGAGED), leads);
+        }
+        leads.sort(LEAD_ORDER);
+        return leads;
+    }
+
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        final Bucket available = this.defaultAgent.bucket(LeadStatus.AVAILABLE);
+        synchronized (available) {
+            return available.head == NO_SLOT ? null : this.phoneNumber(available.head);
+        }
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        final AgentEntry entry = this.intern(agentId);
+        final Bucket available = this.defaultAgent.bucket(LeadStatus.AVAILABLE);
+        while (true) {
+            final int slot;
+            synchronized (available) {
+                slot = available.head;
+            }
+            if (slot == NO_SLOT) {
+                this.leadClaimCounters.recordExhausted();
+                return null;
+            }
+            if (this.claimSlot(entry, slot)) {
+                this.leadClaimCounters.recordClaimed();
+                return this.phoneNumber(slot);
+            }
+            // Another agent claimed the head between reading it and locking it
+            this.leadClaimCounters.recordContended();
+        }
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        final int slot = this.findSlot(phoneNumber);
+        return slot != LongIntHashMap.NO_VALUE && this.claimSlot(this.intern(agentId), slot);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        return this.page(this.defaultAgent, limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        final AgentEntry leadPool = this.agents.get(LeadPools.leadPool(campaign, shard));
+        return leadPool == null ? new ArrayList<>() : this.page(leadPool, limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        final int slot = this.allocateSlot(lead.getPhoneNumber());
+        synchronized (this.leadLock(slot)) {
+            // The campaign in the metadata decides the lead pool of an unassigned lead
+            if (lead.getMetadata() == null) {
+                this.metadata.remove(slot);
+            } else {
+                this.metadata.put(slot, lead.getMetadata());
+            }
+            this.move(slot, lead.getCurrentStatus(), this.intern(lead.getAgentId()));
+        }
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        final AgentEntry entry = this.intern(agent.getAgentId());
+        synchronized (entry) {
+            entry.status = agent.getAgentStatus();
+        }
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        leads.forEach(this::updateLead);
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        agents.forEach(this::updateAgent);
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        final int slot = this.findSlot(phoneNumber);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        synchronized (this.leadLock(slot)) {
+            final byte status = this.chunk(slot).statuses[slot & CHUNK_MASK];
+            if (status == NO_STATUS || !from.contains(LEAD_STATUSES[status])) {
+                return false;
+            }
+            this.move(slot, to, this.intern(agentId));
+            return true;
+        }
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        final AgentEntry entry = this.agents.get(agentId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            if (entry.status == null || !from.contains(entry.status)) {
+                return false;
+            }
+            entry.status = to;
+            return true;
+        }
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        final List<TransitionBatch.LeadTransition> leadTransitions = batch.getLeadTransitions();
+        final int[] slots = new int[leadTransitions.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = this.findSlot(leadTransitions.get(i).getPhoneNumber());
+            if (slots[i] == LongIntHashMap.NO_VALUE) {
+                return false;
+            }
+        }
+        final List<TransitionBatch.AgentTransition> agentTransitions = batch.getAgentTransitions();
+        final AgentEntry[] entries = new AgentEntry[agentTransitions.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = this.agents.get(agentTransitions.get(i).getAgentId());
+            if (entries[i] == null) {
+                return false;
+            }
+        }
+
+        // Distinct lead lock stripes in ascending order, then the agents in index order
+        final int[] stripes = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            stripes[i] = slots[i] & (LOCK_STRIPES - 1);
+        }
+        Arrays.sort(stripes);
+        final Object[] locks = new Object[slots.length + entries.length];
+        int lockCount = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (i == 0 || stripes[i] != stripes[i - 1]) {
+                locks[lockCount++] = this.leadLocks[stripes[i]];
+            }
+        }
+        final AgentEntry[] agentLocks = entries.clone();
+        Arrays.sort(agentLocks, AGENT_ORDER);
+        System.arraycopy(agentLocks, 0, locks, lockCount, agentLocks.length);
+        lockCount += agentLocks.length;
+        return holding(locks, lockCount, 0, () -> {
+            for (int i = 0; i < slots.length; i++) {
+                final byte status = this.chunk(slots[i]).statuses[slots[i] & CHUNK_MASK];
+                if (status == NO_STATUS || !leadTransitions.get(i).getFrom().contains(LEAD_STATUSES[status])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].status == null || !agentTransitions.get(i).getFrom().contains(entries[i].status)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < slots.length; i++) {
+                this.move(slots[i], leadTransitions.get(i).getTo(), this.intern(leadTransitions.get(i).getAgentId()));
+            }
+            for (int i = 0; i < entries.length; i++) {
+                entries[i].status = agentTransitions.get(i).getTo();
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> released = new ArrayList<>();
+        for (final String phoneNumber : this.getExpiredLeases(leasedBefore, limit)) {
+            if (this.releaseLease(phoneNumber, leasedBefore)) {
+                released.add(phoneNumber);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        final List<String> released = new ArrayList<>();
+        for (final Lead lead : this.getAllLeads(agentId)) {
+            if (this.releaseLead(lead.getPhoneNumber(), agentId)) {
+                released.add(lead.getPhoneNumber());
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public void dial(final String agentId, final String phoneNumber) {
+        // Not implemented
+    }
+
+    /**
+     * Reads the expired leases without releasing them, a lease may be renewed or released before releaseLease is called
+     * @param leasedBefore epoch milliseconds, leases taken or renewed before it are expired
+     * @param limit maximum number of leases to return
+     * @return phone numbers of the leads holding the oldest expired leases of each lease list
+     */
+    List<String> getExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> phoneNumbers = new ArrayList<>();
+        for (int i = 0; i < LEASE_SHARDS && phoneNumbers.size() < limit; i++) {
+            this.leases[i].collectBefore(this, leasedBefore, limit, phoneNumbers);
+        }
+        return phoneNumbers;
+    }
+
+    /**
+     * Moves the lead back to AVAILABLE if it still holds a lease taken before leasedBefore
+     * @param phoneNumber lead phone number
+     * @param leasedBefore epoch milliseconds
+     * @return true if the lead was released
+     */
+    boolean releaseLease(final String phoneNumber, final long leasedBefore) {
+        final int slot = this.findSlot(phoneNumber);
+        if (slot == LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        synchronized (this.leadLock(slot)) {
+            final Chunk chunk = this.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            if (chunk.statuses[offset] == NO_STATUS || !LEAD_STATUSES[chunk.statuses[offset]].isLeased()
+                    || chunk.leasedAt[offset] >= leasedBefore) {
+                return false;
+            }
+            this.move(slot, LeadStatus.AVAILABLE, this.defaultAgent);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        final int slot = this.findSlot(phoneNumber);
+        final AgentEntry entry = this.agents.get(agentId);
+        if (slot == LongIntHashMap.NO_VALUE || entry == null) {
+            return false;
+        }
+        synchronized (this.leadLock(slot)) {
+            final Chunk chunk = this.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            if (chunk.statuses[offset] == NO_STATUS || !LEAD_STATUSES[chunk.statuses[offset]].isLeased()
+                    || chunk.agents[offset] != entry.index) {
+                return false;
+            }
+            this.move(slot, LeadStatus.AVAILABLE, this.defaultAgent);
+            return true;
+        }
+    }
+
+    private boolean claimSlot(final AgentEntry entry, final int slot) {
+        synchronized (this.leadLock(slot)) {
+            if (!this.isAvailable(slot)) {
+                return false;
+            }
+            this.move(slot, LeadStatus.QUEUED, entry);
+            return true;
+        }
+    }
+
+    // Caller holds the lead lock of the slot
+    private boolean isAvailable(final int slot) {
+        final Chunk chunk = this.chunk(slot);
+        final int offset = slot & CHUNK_MASK;
+        return chunk.statuses[offset] == LeadStatus.AVAILABLE.ordinal()
+            && (chunk.agents[offset] == this.defaultAgent.index || this.agentsByIndex[chunk.agents[offset]].leadPool);
+    }
+
+    private List<String> page(final AgentEntry unassigned, final int limit, final String exclusiveStartPhoneNumber) {
+        if (exclusiveStartPhoneNumber != null) {
+            final int start = this.findSlot(exclusiveStartPhoneNumber);
+            if (start != LongIntHashMap.NO_VALUE) {
+                synchronized (this.leadLock(start)) {
+                    // The start lead can not leave the AVAILABLE leads while its lock is held, the page continues after it
+                    final Chunk chunk = this.chunk(start);
+                    final int offset = start & CHUNK_MASK;
+                    if (chunk.statuses[offset] == LeadStatus.AVAILABLE.ordinal() && chunk.agents[offset] == unassigned.index) {
+                        return this.pageAfter(unassigned, start, limit);
+                    }
+                }
+            }
+            // A start lead which left the AVAILABLE leads has no position any more, the page starts over
+        }
+        return this.pageAfter(unassigned, NO_SLOT, limit);
+    }
+
+    private List<String> pageAfter(final AgentEntry unassigned, final int after, final int limit) {
+        final List<String> phoneNumbers = new ArrayList<>(limit);
+        final Bucket available = unassigned.bucket(LeadStatus.AVAILABLE);
+        synchronized (available) {
+            int slot = after == NO_SLOT ? available.head : this.chunk(after).next[after & CHUNK_MASK];
+            for (; slot != NO_SLOT && phoneNumbers.size() < limit; slot = this.chunk(slot).next[slot & CHUNK_MASK]) {
+                phoneNumbers.add(this.phoneNumber(slot));
+            }
+        }
+        return phoneNumbers;
+    }
+
+    // Caller holds the lead lock of the slot. Every move into a leased status takes a new lease
+    private void move(final int slot, final LeadStatus status, final AgentEntry target) {
+        final AgentEntry agent = target == this.defaultAgent ? this.unassigned(slot) : target;
+        final Chunk chunk = this.chunk(slot);
+        final int offset = slot & CHUNK_MASK;
+        if (chunk.statuses[offset] != NO_STATUS) {
+            final LeadStatus previous = LEAD_STATUSES[chunk.statuses[offset]];
+            this.agentsByIndex[chunk.agents[offset]].bucket(previous).unlink(this, slot);
+            if (previous.isLeased()) {
+                this.leases[slot & (LEASE_SHARDS - 1)].unlink(this, slot);
+            }
+        }
+        chunk.statuses[offset] = (byte) status.ordinal();
+        chunk.agents[offset] = agent.index;
+        agent.bucket(status).link(this, slot);
+        if (status.isLeased()) {
+            this.leases[slot & (LEASE_SHARDS - 1)].link(this, slot);
+        }
+    }
+
+    // Caller holds the lead lock of the slot. The phone number is only decoded for the leads of a campaign
+    private AgentEntry unassigned(final int slot) {
+        final String campaign = LeadPools.campaign(this.metadata.get(slot));
+        return campaign == null ? this.defaultAgent : this.intern(LeadPools.leadPool(campaign, LeadPools.shard(this.phoneNumber(slot))));
+    }
+
+    private void collect(final Bucket bucket, final List<Lead> leads) {
+        synchronized (bucket) {
+            for (int slot = bucket.head; slot != NO_SLOT; slot = this.chunk(slot).next[slot & CHUNK_MASK]) {
+                leads.add(this.toLead(slot));
+            }
+        }
+    }
+
+    private Lead toLead(final int slot) {
+        final Chunk chunk = this.chunk(slot);
+        final int offset = slot & CHUNK_MASK;
+        if (chunk.statuses[offset] == NO_STATUS) {
+            return null;
+        }
+        final AgentEntry agent = this.agentsByIndex[chunk.agents[offset]];
+        return Lead.builder()
+            .phoneNumber(this.phoneNumberKeys.decode(chunk.keys[offset]))
+            .currentStatus(LEAD_STATUSES[chunk.statuses[offset]])
+            .agentId(agent.leadPool ? this.defaultAgent.agentId : agent.agentId)
+            .metadata(this.metadata.get(slot))
+            .build();
+    }
+
+    private String phoneNumber(final int slot) {
+        return this.phoneNumberKeys.decode(this.chunk(slot).keys[slot & CHUNK_MASK]);
+    }
+
+    private int findSlot(final String phoneNumber) {
+        final long key = this.phoneNumberKeys.find(phoneNumber);
+        return key == PhoneNumberKeys.NO_KEY ? LongIntHashMap.NO_VALUE : this.slots.get(key);
+    }
+
+    private int allocateSlot(final String phoneNumber) {
+        final long key = this.phoneNumberKeys.encode(phoneNumber);
+        final int slot = this.slots.get(key);
+        if (slot != LongIntHashMap.NO_VALUE) {
+            return slot;
+        }
+        synchronized (this.slotAllocation) {
+            final int existing = this.slots.get(key);
+            if (existing != LongIntHashMap.NO_VALUE) {
+                return existing;
+            }
+            final int newSlot = this.leadCount;
+            if ((newSlot >>> CHUNK_BITS) == this.chunks.length) {
+                final Chunk[] grown = new Chunk[this.chunks.length + 1];
+                System.arraycopy(this.chunks, 0, grown, 0, this.chunks.length);
+                grown[this.chunks.length] = new Chunk();
+                this.chunks = grown;
+            }
+            final Chunk chunk = this.chunk(newSlot);
+            chunk.keys[newSlot & CHUNK_MASK] = key;
+            // The slot is published by the map only once its columns are initialized
+            this.slots.putIfAbsent(key, newSlot);
+            this.leadCount = newSlot + 1;
+            return newSlot;
+        }
+    }
+
+    private static boolean holding(final Object[] locks, final int count, final int held, final BooleanSupplier action) {
+        if (held == count) {
+            return action.getAsBoolean();
+        }
+        synchronized (locks[held]) {
+            return holding(locks, count, held + 1, action);
+        }
+    }
+
+    private Chunk chunk(final int slot) {
+        return this.chunks[slot >>> CHUNK_BITS];
+    }
+
+    private Object leadLock(final int slot) {
+        return this.leadLocks[slot & (LOCK_STRIPES - 1)];
+    }
+
+    private AgentEntry intern(final String agentId) {
+        final AgentEntry entry = this.agents.get(agentId);
+        return entry != null ? entry : this.agents.computeIfAbsent(agentId, this::register);
+    }
+
+    private synchronized AgentEntry register(final String agentId) {
+        final AgentEntry[] registered = new AgentEntry[this.agentsByIndex.length + 1];
+        System.arraycopy(this.agentsByIndex, 0, registered, 0, this.agentsByIndex.length);
+        final AgentEntry entry = new AgentEntry(agentId, this.agentsByIndex.length);
+        registered[entry.index] = entry;
+        this.agentsByIndex = registered;
+        return entry;
+    }
+
+    private static final class Chunk {
+
+        private final long[] keys = new long[CHUNK_SIZE];
+        private final byte[] statuses = new byte[CHUNK_SIZE];
+        private final int[] agents = new int[CHUNK_SIZE];
+        private final int[] previous = new int[CHUNK_SIZE];
+        private final int[] next = new int[CHUNK_SIZE];
+        private final long[] leasedAt = new long[CHUNK_SIZE];
+        private final int[] leasePrevious = new int[CHUNK_SIZE];
+        private final int[] leaseNext = new int[CHUNK_SIZE];
+
+        private Chunk() {
+            Arrays.fill(this.statuses, NO_STATUS);
+            Arrays.fill(this.previous, NO_SLOT);
+            Arrays.fill(this.next, NO_SLOT);
+            Arrays.fill(this.leasePrevious, NO_SLOT);
+            Arrays.fill(this.leaseNext, NO_SLOT);
+        }
+    }
+
+    private static final class AgentEntry {
+
+        private final String agentId;
+        private final int index;
+        // Entry of a campaign lead pool, which only holds unassigned leads and has no agent record
+        private final boolean leadPool;
+        private final Bucket[] buckets = new Bucket[LEAD_STATUSES.length];
+        // Null until the agent record is written. Guarded by this
+        private AgentStatus status;
+
+        private AgentEntry(final String agentId, final int index) {
+            this.agentId = agentId;
+            this.index = index;
+            this.leadPool = LeadPools.isLeadPool(agentId);
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new Bucket();
+            }
+        }
+
+        private Bucket bucket(final LeadStatus status) {
+            return this.buckets[status.ordinal()];
+        }
+    }
+
+    /*
+     * Doubly linked list of lead slots, new leads go to the tail. Guarded by the bucket monitor
+     */
+    private static final class Bucket {
+
+        private int head = NO_SLOT;
+        private int tail = NO_SLOT;
+
+        private synchronized void link(final InMemoryPowerDialerDao dao, final int slot) {
+            final Chunk chunk = dao.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            chunk.previous[offset] = this.tail;
+            chunk.next[offset] = NO_SLOT;
+            if (this.tail == NO_SLOT) {
+                this.head = slot;
+            } else {
+                dao.chunk(this.tail).next[this.tail & CHUNK_MASK] = slot;
+            }
+            this.tail = slot;
+        }
+
+        private synchronized void unlink(final InMemoryPowerDialerDao dao, final int slot) {
+            final Chunk chunk = dao.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            final int previous = chunk.previous[offset];
+            final int next = chunk.next[offset];
+            if (previous == NO_SLOT) {
+                this.head = next;
+            } else {
+                dao.chunk(previous).next[previous & CHUNK_MASK] = next;
+            }
+            if (next == NO_SLOT) {
+                this.tail = previous;
+            } else {
+                dao.chunk(next).previous[next & CHUNK_MASK] = previous;
+            }
+            chunk.previous[offset] = NO_SLOT;
+            chunk.next[offset] = NO_SLOT;
+        }
+    }
+
+    /*
+     * Doubly linked list of leased lead slots in lease order, through the lease previous/next columns. A slot is leased
+     * when it is linked, so the leases of a list grow from head to tail. Guarded by the list monitor
+     */
+    private static final class LeaseList {
+
+        private int head = NO_SLOT;
+        private int tail = NO_SLOT;
+
+        private synchronized void link(final InMemoryPowerDialerDao dao, final int slot) {
+            final Chunk chunk = dao.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            chunk.leasedAt[offset] = dao.clock.millis();
+            chunk.leasePrevious[offset] = this.tail;
+            chunk.leaseNext[offset] = NO_SLOT;
+            if (this.tail == NO_SLOT) {
+                this.head = slot;
+            } else {
+                dao.chunk(this.tail).leaseNext[this.tail & CHUNK_MASK] = slot;
+            }
+            this.tail = slot;
+        }
+
+        private synchronized void unlink(final InMemoryPowerDialerDao dao, final int slot) {
+            final Chunk chunk = dao.chunk(slot);
+            final int offset = slot & CHUNK_MASK;
+            final int previous = chunk.leasePrevious[offset];
+            final int next = chunk.leaseNext[offset];
+            if (previous == NO_SLOT) {
+                this.head = next;
+            } else {
+                dao.chunk(previous).leaseNext[previous & CHUNK_MASK] = next;
+            }
+            if (next == NO_SLOT) {
+                this.tail = previous;
+            } else {
+                dao.chunk(next).leasePrevious[next & CHUNK_MASK] = previous;
+            }
+            chunk.leasePrevious[offset] = NO_SLOT;
+            chunk.leaseNext[offset] = NO_SLOT;
+        }
+
+        private synchronized void collectBefore(final InMemoryPowerDialerDao dao, final long leasedBefore, final int limit,
+                final List<String> phoneNumbers) {
+            for (int slot = this.head; slot != NO_SLOT && phoneNumbers.size() < limit
+                    && dao.chunk(slot).leasedAt[slot & CHUNK_MASK] < leasedBefore; slot = dao.chunk(slot).leaseNext[slot & CHUNK_MASK]) {
+                phoneNumbers.add(dao.phoneNumber(slot));
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.power.dialer.dao;
+
+/*
+ * Told about leads which became AVAILABLE, e.g. reset after a failed call, released by a logout or uploaded
+ */
+@FunctionalInterface
+public interface LeadAvailabilityListener {
+
+    /**
+     * Called after the lead became AVAILABLE. The lead may have been claimed again by the time the listener runs
+     * @param phoneNumber phone number of the lead
+     */
+    void onLeadAvailable(final String phoneNumber);
+}
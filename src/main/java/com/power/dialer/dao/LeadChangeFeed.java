@@ -0,0 +1,20 @@
+package com.power.dialer.dao;
+
+import java.util.List;
+
+import com.power.dialer.model.Lead;
+
+/*
+ * Ordered feed of the changes made to the lead table by every node, e.g. a DynamoDB stream of the lead table. Stub it
+ * with a queue to run without one
+ */
+@FunctionalInterface
+public interface LeadChangeFeed {
+
+    /**
+     * Returns the leads changed since the previous poll as they are after the change. The changes of a lead are returned
+     * in the order they were made
+     * @return changed leads, empty if nothing changed
+     */
+    List<Lead> poll();
+}
@@ -0,0 +1,61 @@
+package com.power.dialer.dao;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * Polls a LeadChangeFeed in the background and tells the listener about every lead which changed to AVAILABLE
+ */
+public class LeadChangeFeedPoller implements AutoCloseable {
+
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 500;
+
+    private final LeadChangeFeed leadChangeFeed;
+    private final LeadAvailabilityListener listener;
+    private final ScheduledExecutorService poller;
+
+    public LeadChangeFeedPoller(final LeadChangeFeed leadChangeFeed, final LeadAvailabilityListener listener) {
+        this(leadChangeFeed, listener, DEFAULT_POLL_INTERVAL_MILLIS);
+    }
+
+    public LeadChangeFeedPoller(@NonNull final LeadChangeFeed leadChangeFeed, @NonNull final LeadAvailabilityListener listener,
+            final long pollIntervalMillis) {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid poll interval %d", pollIntervalMillis));
+        }
+        this.leadChangeFeed = leadChangeFeed;
+        this.listener = listener;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lead-change-feed-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Polls the feed once and tells the listener about the leads which changed to AVAILABLE
+     */
+    public synchronized void poll() {
+        try {
+            for (final Lead lead : this.leadChangeFeed.poll()) {
+                if (LeadStatus.AVAILABLE.equals(lead.getCurrentStatus())) {
+                    this.listener.onLeadAvailable(lead.getPhoneNumber());
+                }
+            }
+        } catch (final RuntimeException e) {
+            // A failed poll is tried again after the poll interval, a scheduled task throwing would never run again
+        }
+    }
+
+    @Override
+    public void close() {
+        this.poller.shutdownNow();
+    }
+}
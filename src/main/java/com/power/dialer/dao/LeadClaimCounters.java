@@ -0,0 +1,47 @@
+package com.power.dialer.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Keeps track of how lead claims resolve. A high contention count relative to the claimed count means
+ * agents keep racing for the same AVAILABLE leads
+ */
+public class LeadClaimCounters {
+
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    void recordClaimed() {
+        this.claimed.increment();
+    }
+
+    void recordContended() {
+        this.contended.increment();
+    }
+
+    void recordExhausted() {
+        this.exhausted.increment();
+    }
+
+    /**
+     * @return number of leads successfully claimed
+     */
+    public long getClaimed() {
+        return this.claimed.sum();
+    }
+
+    /**
+     * @return number of claims rejected because another agent got to the lead first
+     */
+    public long getContended() {
+        return this.contended.sum();
+    }
+
+    /**
+     * @return number of claims which found no AVAILABLE lead
+     */
+    public long getExhausted() {
+        return this.exhausted.sum();
+    }
+}
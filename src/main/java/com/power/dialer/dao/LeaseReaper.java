@@ -0,0 +1,83 @@
+package com.power.dialer.dao;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.NonNull;
+
+/*
+ * Releases the expired lead leases in the background, which returns the leads orphaned by a handler dying between
+ * claiming and dialing them, or by an agent disconnecting without a logout, to the AVAILABLE pool. A lease has to
+ * outlast the longest time a lead legitimately stays QUEUED or WAITING_TO_BE_ENGAGED, such as the queue of an agent
+ * on a long call
+ */
+public class LeaseReaper implements AutoCloseable {
+
+    public static final long DEFAULT_LEASE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_REAP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final PowerDialerDao powerDialerDao;
+    private final long leaseMillis;
+    private final int batchSize;
+    private final Clock clock;
+    private final ScheduledExecutorService reaper;
+
+    public LeaseReaper(final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, DEFAULT_LEASE_MILLIS, DEFAULT_REAP_INTERVAL_MILLIS, DEFAULT_BATCH_SIZE, Clock.systemUTC());
+    }
+
+    public LeaseReaper(@NonNull final PowerDialerDao powerDialerDao, final long leaseMillis, final long reapIntervalMillis,
+            final int batchSize, @NonNull final Clock clock) {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid lease %d", leaseMillis));
+        }
+        if (reapIntervalMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid reap interval %d", reapIntervalMillis));
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid batch size %d", batchSize));
+        }
+        this.powerDialerDao = powerDialerDao;
+        this.leaseMillis = leaseMillis;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lead-lease-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reaper.scheduleWithFixedDelay(this::reapQuietly, reapIntervalMillis, reapIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Releases every lease expired by now, a batch at a time until a batch comes back short
+     * @return number of leads released
+     */
+    public synchronized int reap() {
+        final long leasedBefore = this.clock.millis() - this.leaseMillis;
+        int released = 0;
+        List<String> batch;
+        do {
+            batch = this.powerDialerDao.releaseExpiredLeases(leasedBefore, this.batchSize);
+            released += batch.size();
+        } while (batch.size() == this.batchSize);
+        return released;
+    }
+
+    @Override
+    public void close() {
+        this.reaper.shutdownNow();
+    }
+
+    private void reapQuietly() {
+        try {
+            this.reap();
+        } catch (final RuntimeException e) {
+            // A failed pass is tried again after the reap interval, a scheduled task throwing would never run again
+        }
+    }
+}
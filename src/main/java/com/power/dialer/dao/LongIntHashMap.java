@@ -0,0 +1,118 @@
+package com.power.dialer.dao;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * Open addressing map from long keys to int values without boxing. Lookups are lock free unless they race with a
+ * write, writes are serialized. Long.MIN_VALUE marks an empty slot and can not be used as a key
+ */
+final class LongIntHashMap {
+
+    static final int NO_VALUE = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final StampedLock lock = new StampedLock();
+    // Keys and values are swapped together on resize, so a reader never probes keys of one table in the values of another
+    private volatile Table table;
+    private int size;
+
+    LongIntHashMap(final int expectedSize) {
+        this.table = new Table(tableSize(expectedSize));
+    }
+
+    int get(final long key) {
+        final long stamp = this.lock.tryOptimisticRead();
+        final int value = this.table.get(key);
+        if (this.lock.validate(stamp)) {
+            return value;
+        }
+        final long readStamp = this.lock.readLock();
+        try {
+            return this.table.get(key);
+        } finally {
+            this.lock.unlockRead(readStamp);
+        }
+    }
+
+    /**
+     * @param key key
+     * @param value value stored when the key is missing
+     * @return value already mapped to the key, NO_VALUE if the given value was stored
+     */
+    int putIfAbsent(final long key, final int value) {
+        final long stamp = this.lock.writeLock();
+        try {
+            final int existing = this.table.get(key);
+            if (existing != NO_VALUE) {
+                return existing;
+            }
+            if (this.size + 1 > this.table.keys.length * LOAD_FACTOR) {
+                this.table = this.table.resize(this.table.keys.length * 2);
+            }
+            this.table.put(key, value);
+            this.size++;
+            return NO_VALUE;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int tableSize(final int expectedSize) {
+        final int minimum = (int) Math.min(1 << 30, (long) Math.ceil(Math.max(expectedSize, 16) / LOAD_FACTOR));
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+
+    private static final class Table {
+
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        private Table(final int capacity) {
+            this.keys = new long[capacity];
+            this.values = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(this.keys, EMPTY);
+        }
+
+        private int get(final long key) {
+            for (int i = index(key, this.mask); ; i = (i + 1) & this.mask) {
+                final long candidate = this.keys[i];
+                if (candidate == key) {
+                    return this.values[i];
+                } else if (candidate == EMPTY) {
+                    return NO_VALUE;
+                }
+            }
+        }
+
+        private void put(final long key, final int value) {
+            int i = index(key, this.mask);
+            while (this.keys[i] != EMPTY) {
+                i = (i + 1) & this.mask;
+            }
+            // The value is written first, an optimistic reader seeing the key sees a complete entry or fails validation
+            this.values[i] = value;
+            this.keys[i] = key;
+        }
+
+        private Table resize(final int capacity) {
+            final Table resized = new Table(capacity);
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] != EMPTY) {
+                    resized.put(this.keys[i], this.values[i]);
+                }
+            }
+            return resized;
+        }
+
+        private static int index(final long key, final int mask) {
+            // Phone numbers are dense, mix the bits so consecutive numbers do not cluster
+            final long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.power.dialer.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.power.dialer.exception.CallToLeadFailedException;
+import com.power.dialer.metrics.LatencyHistogram;
+import com.power.dialer.metrics.PowerDialerMetrics;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * Records the latency of every dao call in a dao.<operation> histogram. Failed dials are the retries of the dialer's
+ * dial loops and claims returning no lead the misses of its lead claims, both are counted. Transitions whose
+ * expected status did not match are counted too, a high count means events race on the same agent or lead. So are the
+ * expired leases released, which count the leads orphaned by crashed handlers and vanished agents
+ */
+public class MeteredPowerDialerDao extends ForwardingPowerDialerDao {
+
+    private final LatencyHistogram getAgent;
+    private final LatencyHistogram getLead;
+    private final LatencyHistogram getAgents;
+    private final LatencyHistogram getLeads;
+    private final LatencyHistogram getNextLead;
+    private final LatencyHistogram getAllLeads;
+    private final LatencyHistogram getLeadPhoneNumberToDial;
+    private final LatencyHistogram claimLead;
+    private final LatencyHistogram getLeadPhoneNumbersToDial;
+    private final LatencyHistogram updateLead;
+    private final LatencyHistogram updateAgent;
+    private final LatencyHistogram updateLeads;
+    private final LatencyHistogram updateAgents;
+    private final LatencyHistogram transitionLeadStatus;
+    private final LatencyHistogram transitionAgentStatus;
+    private final LatencyHistogram transitionBatch;
+    private final LatencyHistogram releaseExpiredLeases;
+    private final LatencyHistogram releaseLead;
+    private final LatencyHistogram releaseLeads;
+    private final LatencyHistogram dial;
+    private final LongAdder failedDials;
+    private final LongAdder emptyClaims;
+    private final LongAdder rejectedTransitions;
+    private final LongAdder releasedLeases;
+    private final LongAdder errors;
+
+    public MeteredPowerDialerDao(final PowerDialerDao delegate, @NonNull final PowerDialerMetrics metrics) {
+        super(delegate);
+        this.getAgent = metrics.histogram("dao.getAgent");
+        this.getLead = metrics.histogram("dao.getLead");
+        this.getAgents = metrics.histogram("dao.getAgents");
+        this.getLeads = metrics.histogram("dao.getLeads");
+        this.getNextLead = metrics.histogram("dao.getNextLead");
+        this.getAllLeads = metrics.histogram("dao.getAllLeads");
+        this.getLeadPhoneNumberToDial = metrics.histogram("dao.getLeadPhoneNumberToDial");
+        this.claimLead = metrics.histogram("dao.claimLead");
+        this.getLeadPhoneNumbersToDial = metrics.histogram("dao.getLeadPhoneNumbersToDial");
+        this.updateLead = metrics.histogram("dao.updateLead");
+        this.updateAgent = metrics.histogram("dao.updateAgent");
+        this.updateLeads = metrics.histogram("dao.updateLeads");
+        this.updateAgents = metrics.histogram("dao.updateAgents");
+        this.transitionLeadStatus = metrics.histogram("dao.transitionLeadStatus");
+        this.transitionAgentStatus = metrics.histogram("dao.transitionAgentStatus");
+        this.transitionBatch = metrics.histogram("dao.transitionBatch");
+        this.releaseExpiredLeases = metrics.histogram("dao.releaseExpiredLeases");
+        this.releaseLead = metrics.histogram("dao.releaseLead");
+        this.releaseLeads = metrics.histogram("dao.releaseLeads");
+        this.dial = metrics.histogram("dao.dial");
+        this.failedDials = metrics.counter("dao.dial.failed");
+        this.emptyClaims = metrics.counter("dao.claimLead.empty");
+        this.rejectedTransitions = metrics.counter("dao.transition.rejected");
+        this.releasedLeases = metrics.counter("dao.leases.released");
+        this.errors = metrics.counter("dao.errors");
+    }
+
+    @Override
+    public Agent getAgent(final String agentId) {
+        return this.record(this.getAgent, () -> super.getAgent(agentId));
+    }
+
+    @Override
+    public Lead getLead(final String phoneNumber) {
+        return this.record(this.getLead, () -> super.getLead(phoneNumber));
+    }
+
+    @Override
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        return this.record(this.getAgents, () -> super.getAgents(agentIds));
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        return this.record(this.getLeads, () -> super.getLeads(phoneNumbers));
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        return this.record(this.getNextLead, () -> super.getNextLead(agentId));
+    }
+
+    @Override
+    public List<Lead> getAllLeads(final String agentId) {
+        return this.record(this.getAllLeads, () -> super.getAllLeads(agentId));
+    }
+
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        return this.record(this.getLeadPhoneNumberToDial, super::getLeadPhoneNumberToDial);
+    }
+
+    @Override
+    public String claimLead(final String agentId) {
+        final String phoneNumber = this.record(this.claimLead, () -> super.claimLead(agentId));
+        if (phoneNumber == null) {
+            this.emptyClaims.increment();
+        }
+        return phoneNumber;
+    }
+
+    @Override
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        return this.record(this.claimLead, () -> super.claimLead(agentId, phoneNumber));
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        return this.record(this.getLeadPhoneNumbersToDial, () -> super.getLeadPhoneNumbersToDial(limit, exclusiveStartPhoneNumber));
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        return this.record(this.getLeadPhoneNumbersToDial,
+            () -> super.getLeadPhoneNumbersToDial(campaign, shard, limit, exclusiveStartPhoneNumber));
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        this.record(this.updateLead, () -> {
+            super.updateLead(lead);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAgent(final Agent agent) {
+        this.record(this.updateAgent, () -> {
+            super.updateAgent(agent);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        this.record(this.updateLeads, () -> {
+            super.updateLeads(leads);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        this.record(this.updateAgents, () -> {
+            super.updateAgents(agents);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        return this.countRejected(this.record(this.transitionLeadStatus, () -> super.transitionLeadStatus(phoneNumber, from, to, agentId)));
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        return this.countRejected(this.record(this.transitionAgentStatus, () -> super.transitionAgentStatus(agentId, from, to)));
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        return this.countRejected(this.record(this.transitionBatch, () -> super.transitionBatch(batch)));
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> released = this.record(this.releaseExpiredLeases, () -> super.releaseExpiredLeases(leasedBefore, limit));
+        this.releasedLeases.add(released.size());
+        return released;
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        return this.countRejected(this.record(this.releaseLead, () -> super.releaseLead(phoneNumber, agentId)));
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        return this.record(this.releaseLeads, () -> super.releaseLeads(agentId));
+    }
+
+    @Override
+    public void dial(final String agentId, final String phoneNumber) {
+        try {
+            this.record(this.dial, () -> {
+                super.dial(agentId, phoneNumber);
+                return null;
+            });
+        } catch (final CallToLeadFailedException e) {
+            this.failedDials.increment();
+            throw e;
+        }
+    }
+
+    private boolean countRejected(final boolean moved) {
+        if (!moved) {
+            this.rejectedTransitions.increment();
+        }
+        return moved;
+    }
+
+    private <T> T record(final LatencyHistogram histogram, final Supplier<T> call) {
+        final long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (final CallToLeadFailedException e) {
+            throw e;
+        } catch (final RuntimeException e) {
+            this.errors.increment();
+            throw e;
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+}
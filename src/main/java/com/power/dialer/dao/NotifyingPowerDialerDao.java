@@ -0,0 +1,100 @@
+package com.power.dialer.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.power.dialer.dao.TransitionBatch.LeadTransition;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * Tells its listeners about every lead this node makes AVAILABLE, once the write returned. Wrap the dao below any
+ * CachingPowerDialerDao, whose writes only reach the lead table when the event completes. Follow a LeadChangeFeed
+ * instead to hear about the leads released by other nodes
+ */
+public class NotifyingPowerDialerDao extends ForwardingPowerDialerDao {
+
+    private final List<LeadAvailabilityListener> listeners = new CopyOnWriteArrayList<>();
+
+    public NotifyingPowerDialerDao(final PowerDialerDao delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @param listener listener told about the leads made AVAILABLE from now on, on the writing thread
+     */
+    public void subscribe(@NonNull final LeadAvailabilityListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void updateLead(final Lead lead) {
+        super.updateLead(lead);
+        this.notifyIfAvailable(lead);
+    }
+
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        super.updateLeads(leads);
+        leads.forEach(this::notifyIfAvailable);
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        final boolean moved = super.transitionLeadStatus(phoneNumber, from, to, agentId);
+        if (moved && LeadStatus.AVAILABLE.equals(to)) {
+            this.notifyListeners(phoneNumber);
+        }
+        return moved;
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        final boolean moved = super.transitionBatch(batch);
+        if (moved) {
+            for (final LeadTransition transition : batch.getLeadTransitions()) {
+                if (LeadStatus.AVAILABLE.equals(transition.getTo())) {
+                    this.notifyListeners(transition.getPhoneNumber());
+                }
+            }
+        }
+        return moved;
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> released = super.releaseExpiredLeases(leasedBefore, limit);
+        released.forEach(this::notifyListeners);
+        return released;
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        final boolean released = super.releaseLead(phoneNumber, agentId);
+        if (released) {
+            this.notifyListeners(phoneNumber);
+        }
+        return released;
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        final List<String> released = super.releaseLeads(agentId);
+        released.forEach(this::notifyListeners);
+        return released;
+    }
+
+    private void notifyIfAvailable(final Lead lead) {
+        if (LeadStatus.AVAILABLE.equals(lead.getCurrentStatus())) {
+            this.notifyListeners(lead.getPhoneNumber());
+        }
+    }
+
+    private void notifyListeners(final String phoneNumber) {
+        this.listeners.forEach(listener -> listener.onLeadAvailable(phoneNumber));
+    }
+}
@@ -0,0 +1,70 @@
+package com.power.dialer.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Encodes phone numbers as long keys. Digit only numbers without a leading zero are their own key, anything else,
+ * e.g. "+1 555 0100" or "0800", gets a negative id from an overflow table so it still round trips
+ */
+final class PhoneNumberKeys {
+
+    // Up to 18 digits always fit in a positive long
+    private static final int MAX_DIGITS = 18;
+    // Key of a phone number which never got an overflow key, overflow keys count down from -1 and never reach it
+    static final long NO_KEY = Long.MIN_VALUE;
+
+    private final Map<String, Long> overflowKeys = new ConcurrentHashMap<>();
+    private final Map<Long, String> overflowPhoneNumbers = new ConcurrentHashMap<>();
+    private final AtomicLong nextOverflowKey = new AtomicLong(-1);
+
+    /**
+     * @param phoneNumber phone number
+     * @return key of the phone number, assigning an overflow key if needed
+     */
+    long encode(final String phoneNumber) {
+        final long key = parse(phoneNumber);
+        if (key >= 0) {
+            return key;
+        }
+        return this.overflowKeys.computeIfAbsent(phoneNumber, ignored -> {
+            final long overflowKey = this.nextOverflowKey.getAndDecrement();
+            this.overflowPhoneNumbers.put(overflowKey, phoneNumber);
+            return overflowKey;
+        });
+    }
+
+    /**
+     * @param phoneNumber phone number
+     * @return key of the phone number, NO_KEY if it never got an overflow key
+     */
+    long find(final String phoneNumber) {
+        final long key = parse(phoneNumber);
+        if (key >= 0) {
+            return key;
+        }
+        final Long overflowKey = this.overflowKeys.get(phoneNumber);
+        return overflowKey == null ? NO_KEY : overflowKey;
+    }
+
+    String decode(final long key) {
+        return key >= 0 ? Long.toString(key) : this.overflowPhoneNumbers.get(key);
+    }
+
+    private static long parse(final String phoneNumber) {
+        final int length = phoneNumber.length();
+        if (length == 0 || length > MAX_DIGITS || (length > 1 && phoneNumber.charAt(0) == '0')) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            final char digit = phoneNumber.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            key = key * 10 + (digit - '0');
+        }
+        return key;
+    }
+}
@@ -1,9 +1,13 @@
 package com.power.dialer.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
 import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
 
 public interface PowerDialerDao {
 
@@ -21,6 +25,20 @@ public interface PowerDialerDao {
      */
     Lead getLead(final String phoneNumber);
 
+    /**
+     * Returns the agents given their agentIds in a single batch. Unknown agents are left out
+     * @param agentIds Agent ids
+     * @return Agents
+     */
+    List<Agent> getAgents(final Collection<String> agentIds);
+
+    /**
+     * Returns the leads given their phone numbers in a single batch. Unknown leads are left out
+     * @param phoneNumbers phone numbers
+     * @return Leads
+     */
+    List<Lead> getLeads(final Collection<String> phoneNumbers);
+
     /**
      * Return the next lead to be dialed for the agent
      * @param agentId agent id
@@ -41,6 +59,42 @@ public interface PowerDialerDao {
      */
     String getLeadPhoneNumberToDial();
 
+    /**
+     * Assigns the next AVAILABLE lead to the agent under QUEUED status in a single conditional write.
+     * Candidates claimed concurrently by another agent are skipped
+     * @param agentId agent id
+     * @return phone number of the claimed lead, null if there are no AVAILABLE leads
+     */
+    String claimLead(final String agentId);
+
+    /**
+     * Assigns the given lead to the agent under QUEUED status, provided it is still AVAILABLE
+     * @param agentId agent id
+     * @param phoneNumber phone number of a lead previously returned as AVAILABLE
+     * @return true if the lead was claimed, false if another agent claimed it first
+     */
+    boolean claimLead(final String agentId, final String phoneNumber);
+
+    /**
+     * Returns a page of AVAILABLE lead phone numbers. A page shorter than the limit means the end of the pool was reached
+     * @param limit maximum number of phone numbers to return
+     * @param exclusiveStartPhoneNumber last phone number of the previous page, null to start from the beginning
+     * @return phone numbers of AVAILABLE leads
+     */
+    List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber);
+
+    /**
+     * Returns a page of AVAILABLE lead phone numbers of one shard of a campaign pool, see LeadPools. A page shorter than
+     * the limit means the end of the shard was reached
+     * @param campaign campaign
+     * @param shard shard of the campaign pool, from 0 to LeadPools.SHARDS - 1
+     * @param limit maximum number of phone numbers to return
+     * @param exclusiveStartPhoneNumber last phone number of the previous page, null to start from the beginning
+     * @return phone numbers of AVAILABLE leads of the campaign
+     */
+    List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+        final String exclusiveStartPhoneNumber);
+
     /**
      * Updates the Lead
      * @param lead Lead
@@ -53,6 +107,72 @@ public interface PowerDialerDao {
      */
     void updateAgent(final Agent agent);
 
+    /**
+     * Saves the leads in batches, overwriting the whole lead
+     * @param leads Leads
+     */
+    void updateLeads(final Collection<Lead> leads);
+
+    /**
+     * Saves the agents in batches, overwriting the whole agent
+     * @param agents Agents
+     */
+    void updateAgents(final Collection<Agent> agents);
+
+    /**
+     * Moves the lead to a new status and agent in a single write without reading it first
+     * @param phoneNumber lead phone number
+     * @param from statuses the lead is expected to be in
+     * @param to new status
+     * @param agentId agent the lead is assigned to after the transition
+     * @return true if the lead moved, false if it does not exist or is in none of the expected statuses
+     */
+    boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId);
+
+    /**
+     * Moves the agent to a new status in a single write without reading it first
+     * @param agentId agent id
+     * @param from statuses the agent is expected to be in
+     * @param to new status
+     * @return true if the agent moved, false if it does not exist or is in none of the expected statuses
+     */
+    boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to);
+
+    /**
+     * Moves every agent and lead of the batch to its new status in a single atomic write
+     * @param batch transitions of one event, at most TransitionBatch.MAX_TRANSITIONS
+     * @return true if they all moved, false if none did because one of them does not exist or is in none of its
+     * expected statuses
+     */
+    boolean transitionBatch(final TransitionBatch batch);
+
+    /**
+     * Moves the QUEUED and WAITING_TO_BE_ENGAGED leads whose lease is older than leasedBefore back to AVAILABLE, oldest
+     * leases first. A lead is leased whenever a write moves it into one of those statuses, so the leases of the leads
+     * still being worked on keep being renewed
+     * @param leasedBefore epoch milliseconds, leases taken or renewed before it are expired
+     * @param limit maximum number of leads to release
+     * @return phone numbers of the leads released, fewer than the limit once no expired lease is left
+     */
+    List<String> releaseExpiredLeases(final long leasedBefore, final int limit);
+
+    /**
+     * Moves the lead back to AVAILABLE if it is still QUEUED or WAITING_TO_BE_ENGAGED for the agent, e.g. when its call
+     * failed. A lead another agent claimed meanwhile or whose call started stays where it is
+     * @param phoneNumber lead phone number
+     * @param agentId agent the lead is expected to be assigned to
+     * @return true if the lead was released
+     */
+    boolean releaseLead(final String phoneNumber, final String agentId);
+
+    /**
+     * Moves every QUEUED and WAITING_TO_BE_ENGAGED lead of the agent back to AVAILABLE, e.g. when the agent logs out.
+     * A lead only moves if it is still assigned to the agent, the ENGAGED lead of a call in progress stays
+     * @param agentId agent id
+     * @return phone numbers of the leads released
+     */
+    List<String> releaseLeads(final String agentId);
+
     /**
      * Attempts to establish the communication between agent and lead
      * @param agentId agent id
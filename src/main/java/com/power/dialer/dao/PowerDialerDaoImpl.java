@@ -1,26 +1,40 @@
 package com.power.dialer.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.power.dialer.exception.PowerDialerDependencyException;
 import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
 import com.power.dialer.model.AgentRecord;
 import com.power.dialer.model.Lead;
 import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadPools;
 import com.power.dialer.model.LeadRecord;
 
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.NonNull;
 
 @AllArgsConstructor
@@ -29,14 +43,36 @@ public class PowerDialerDaoImpl implements PowerDialerDao {
     public final static String DEFAULT_AGENT = "NONE";
     final static DynamoDBMapperConfig READ_CONFIG = DynamoDBMapperConfig.ConsistentReads.CONSISTENT.config();
     final static DynamoDBMapperConfig WRITE_CONFIG = DynamoDBMapperConfig.SaveBehavior.UPDATE.config();
+    // Number of AVAILABLE leads read per page of a claim, the next one is tried when a claim loses the race and the next
+    // page once the whole page was claimed by other agents
+    final static int CLAIM_CANDIDATES = 5;
+    // A transaction conflicting with another write to one of its items is tried again this many times
+    final static int MAX_TRANSACTION_ATTEMPTS = 3;
+    // Resources the calls are rate limited under, see ResilienceConfig. Transactions count against the lead table
+    final static String AGENT_TABLE = AgentRecord.TABLE_NAME;
+    final static String LEAD_TABLE = LeadRecord.TABLE_NAME;
+    final static String AGENT_LEADS_INDEX = DynamoDBResilience.resource(LeadRecord.TABLE_NAME, LeadRecord.INDEX_KEY_ATTRIBUTE_NAME);
 
-    // In Production, use dependency injection(Guice/Spring/Dagger) to inject a singleton bean of this object
+    // In Production, use dependency injection(Guice/Spring/Dagger) to inject a singleton bean of these objects
+    @NonNull private final AmazonDynamoDB amazonDynamoDB;
     @NonNull private final DynamoDBMapper dynamoDBMapper;
+    // Retries, rate limits and circuit breaking of every call, register its metrics to watch them
+    @NonNull @Getter private final DynamoDBResilience resilience;
+
+    @Getter private final LeadClaimCounters leadClaimCounters = new LeadClaimCounters();
+
+    public PowerDialerDaoImpl(final AmazonDynamoDB amazonDynamoDB) {
+        this(amazonDynamoDB, new DynamoDBMapper(amazonDynamoDB));
+    }
+
+    public PowerDialerDaoImpl(final AmazonDynamoDB amazonDynamoDB, final DynamoDBMapper dynamoDBMapper) {
+        this(amazonDynamoDB, dynamoDBMapper, new DynamoDBResilience(ResilienceConfig.DEFAULT));
+    }
 
     @Override
     public Agent getAgent(final String agentId) {
-        final AgentRecord agentRecord = this.makeCallToDynamoDB(
-            String.format("Getting the agent record for %s", agentId),
+        final AgentRecord agentRecord = this.loadFromDynamoDB(AGENT_TABLE,
+            () -> String.format("Getting the agent record for %s", agentId),
             () -> this.dynamoDBMapper.load(AgentRecord.class, agentId, READ_CONFIG));
 
         return agentRecord.toAgent();
@@ -44,40 +80,66 @@ public class PowerDialerDaoImpl implements PowerDialerDao {
 
     @Override
     public Lead getLead(final String phoneNumber) {
-        final LeadRecord leadRecord = this.makeCallToDynamoDB(
-            String.format("Getting the lead record for %s", phoneNumber),
+        final LeadRecord leadRecord = this.loadFromDynamoDB(LEAD_TABLE,
+            () -> String.format("Getting the lead record for %s", phoneNumber),
             () -> this.dynamoDBMapper.load(LeadRecord.class, phoneNumber, READ_CONFIG));
 
         return leadRecord.toLead();
     }
 
     @Override
-    public Lead getNextLead(final String agentId) {
-        final Map<String, AttributeValue> eav = new HashMap<>();
-        eav.put(":agentId",  new AttributeValue().withS(agentId));
+    public List<Agent> getAgents(final Collection<String> agentIds) {
+        final List<AgentRecord> keys = agentIds.stream()
+            .map(agentId -> {
+                final AgentRecord key = new AgentRecord();
+                key.setAgentId(agentId);
+                return key;
+            })
+            .collect(Collectors.toList());
 
-        final DynamoDBQueryExpression<LeadRecord> queryExpression = new DynamoDBQueryExpression<LeadRecord>()
-            .withIndexName(LeadRecord.INDEX_KEY_ATTRIBUTE_NAME)
-            .withKeyConditionExpression("agentId = :agentId")
-            .withConsistentRead(false)
-            .withExpressionAttributeValues(eav);
-
-        final List<LeadRecord> records =  this.dynamoDBMapper.query(LeadRecord.class, queryExpression);
-        Optional<Lead> optionalLead =  records.stream()
-            .filter(record -> LeadStatus.QUEUED.toString().equals(record.getLeadStatus()))
-            .map(LeadRecord::toLead)
-            .findFirst();
-        if (optionalLead.isPresent()) {
-            return optionalLead.get();
-        }
-        return null;
+        final Map<String, List<Object>> records = this.makeCallToDynamoDB(AGENT_TABLE,
+            () -> String.format("Getting the agent records for %d agents", keys.size()),
+            () -> this.dynamoDBMapper.batchLoad(keys, READ_CONFIG));
+
+        return records.values().stream()
+            .flatMap(List::stream)
+            .map(record -> ((AgentRecord) record).toAgent())
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Lead> getLeads(final Collection<String> phoneNumbers) {
+        final List<LeadRecord> keys = phoneNumbers.stream()
+            .map(phoneNumber -> {
+                final LeadRecord key = new LeadRecord();
+                key.setPhoneNumber(phoneNumber);
+                return key;
+            })
+            .collect(Collectors.toList());
+
+        final Map<String, List<Object>> records = this.makeCallToDynamoDB(LEAD_TABLE,
+            () -> String.format("Getting the lead records for %d leads", keys.size()),
+            () -> this.dynamoDBMapper.batchLoad(keys, READ_CONFIG));
+
+        return records.values().stream()
+            .flatMap(List::stream)
+            .map(record -> ((LeadRecord) record).toLead())
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Lead getNextLead(final String agentId) {
+        // One item is read, whatever the agent's history
+        final QueryRequest queryRequest = DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.QUEUED).withLimit(1);
+        final List<Lead> leads = this.queryLeads(() -> String.format("Getting the next lead for %s", agentId), queryRequest, 1);
+        return leads.isEmpty() ? null : leads.get(0);
     }
 
     @Override
     public void updateLead(final Lead lead) {
-        this.makeCallToDynamoDB(String.format("Updating lead %s", lead.getPhoneNumber()),
+        this.makeCallToDynamoDB(LEAD_TABLE, () -> String.format("Updating lead %s", lead.getPhoneNumber()),
             () -> {
-                this.dynamoDBMapper.save(lead.toLeadRecord(), WRITE_CONFIG);
+                this.dynamoDBMapper.save(lead.toLeadRecord().withLease(System.currentTimeMillis()), WRITE_CONFIG);
                 return null;
             }
         );
@@ -85,7 +147,7 @@ public class PowerDialerDaoImpl implements PowerDialerDao {
 
     @Override
     public void updateAgent(final Agent agent) { 
-        this.makeCallToDynamoDB(String.format("Updating agent %s", agent.getAgentId()),
+        this.makeCallToDynamoDB(AGENT_TABLE, () -> String.format("Updating agent %s", agent.getAgentId()),
             () -> {
                 this.dynamoDBMapper.save(agent.toRecord(), WRITE_CONFIG);
                 return null;
@@ -93,6 +155,103 @@ public class PowerDialerDaoImpl implements PowerDialerDao {
         );
     }
 
+    @Override
+    public void updateLeads(final Collection<Lead> leads) {
+        final long now = System.currentTimeMillis();
+        this.batchSave(LEAD_TABLE, () -> String.format("Updating %d leads", leads.size()),
+            leads.stream().map(lead -> lead.toLeadRecord().withLease(now)).collect(Collectors.toList()));
+    }
+
+    @Override
+    public void updateAgents(final Collection<Agent> agents) {
+        this.batchSave(AGENT_TABLE, () -> String.format("Updating %d agents", agents.size()),
+            agents.stream().map(Agent::toRecord).collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean transitionLeadStatus(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+        return this.updateItem(() -> String.format("Moving lead %s from %s to %s", phoneNumber, from, to),
+            DynamoDBRequests.leadTransition(phoneNumber, from, to, agentId));
+    }
+
+    @Override
+    public boolean transitionAgentStatus(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+        return this.updateItem(() -> String.format("Moving agent %s from %s to %s", agentId, from, to),
+            DynamoDBRequests.agentTransition(agentId, from, to));
+    }
+
+    @Override
+    public boolean transitionBatch(final TransitionBatch batch) {
+        if (batch.size() > TransitionBatch.MAX_TRANSITIONS) {
+            throw new IllegalArgumentException(String.format("A batch holds at most %d transitions, got %d",
+                TransitionBatch.MAX_TRANSITIONS, batch.size()));
+        }
+        if (batch.size() == 0) {
+            return true;
+        }
+        // A single transition does not need a transaction, which costs twice the write capacity
+        if (batch.getLeadTransitions().isEmpty() && batch.getAgentTransitions().size() == 1) {
+            final TransitionBatch.AgentTransition transition = batch.getAgentTransitions().get(0);
+            return this.transitionAgentStatus(transition.getAgentId(), transition.getFrom(), transition.getTo());
+        }
+        if (batch.getAgentTransitions().isEmpty() && batch.getLeadTransitions().size() == 1) {
+            final TransitionBatch.LeadTransition transition = batch.getLeadTransitions().get(0);
+            return this.transitionLeadStatus(transition.getPhoneNumber(), transition.getFrom(), transition.getTo(), transition.getAgentId());
+        }
+
+        return this.transactWriteItems(
+            () -> String.format("Moving %d agents and %d leads", batch.getAgentTransitions().size(), batch.getLeadTransitions().size()),
+            DynamoDBRequests.transitionBatch(batch));
+    }
+
+    @Override
+    public List<String> releaseExpiredLeases(final long leasedBefore, final int limit) {
+        final List<String> released = new ArrayList<>();
+        for (int shard = 0; shard < LeadRecord.LEASE_SHARDS && released.size() < limit; shard++) {
+            final QueryRequest queryRequest = DynamoDBRequests.expiredLeasesQuery(shard, leasedBefore).withLimit(limit - released.size());
+            final QueryResult result = this.makeCallToDynamoDB(resource(queryRequest),
+                () -> String.format("Getting the leases taken before %d", leasedBefore), () -> this.amazonDynamoDB.query(queryRequest));
+            for (final Map<String, AttributeValue> item : result.getItems()) {
+                final String phoneNumber = item.get(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME).getS();
+                final long leasedAt = Long.parseLong(item.get(LeadRecord.LEASED_AT_ATTRIBUTE_NAME).getN());
+                // The index lags the table, a lease renewed meanwhile fails the condition and is kept
+                if (this.updateItem(() -> String.format("Releasing the lease of lead %s", phoneNumber),
+                        DynamoDBRequests.leaseRelease(phoneNumber, leasedAt))) {
+                    released.add(phoneNumber);
+                }
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public boolean releaseLead(final String phoneNumber, final String agentId) {
+        return this.updateItem(() -> String.format("Releasing lead %s of %s", phoneNumber, agentId),
+            DynamoDBRequests.leadRelease(phoneNumber, agentId));
+    }
+
+    @Override
+    public List<String> releaseLeads(final String agentId) {
+        final List<String> phoneNumbers = this.getAllLeads(agentId).stream().map(Lead::getPhoneNumber).collect(Collectors.toList());
+        final List<String> released = new ArrayList<>();
+        // Each transaction releases up to MAX_TRANSITIONS leads at once. A lead which left the agent meanwhile cancels
+        // it, the leads of that transaction are then released one at a time
+        for (int start = 0; start < phoneNumbers.size(); start += TransitionBatch.MAX_TRANSITIONS) {
+            final List<String> leads = phoneNumbers.subList(start, Math.min(start + TransitionBatch.MAX_TRANSITIONS, phoneNumbers.size()));
+            if (leads.size() > 1 && this.transactWriteItems(() -> String.format("Releasing %d leads of %s", leads.size(), agentId),
+                    DynamoDBRequests.leadsRelease(leads, agentId))) {
+                released.addAll(leads);
+                continue;
+            }
+            for (final String phoneNumber : leads) {
+                if (this.releaseLead(phoneNumber, agentId)) {
+                    released.add(phoneNumber);
+                }
+            }
+        }
+        return released;
+    }
+
     @Override
     public void dial(final String agentId, final String phoneNumber) {
         // Not implemented
@@ -101,61 +260,183 @@ public class PowerDialerDaoImpl implements PowerDialerDao {
 
     @Override
     public List<Lead> getAllLeads(final String agentId) {
-        // Dummy implementation to make the test work
-        final Map<String, AttributeValue> eav = new HashMap<>();
-        eav.put(":agentId",  new AttributeValue().withS(agentId));
+        final Supplier<String> eventMessage = () -> String.format("Getting all the leads of %s", agentId);
+        final List<Lead> leads = this.queryLeads(eventMessage, DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.QUEUED),
+            Integer.MAX_VALUE);
+        leads.addAll(this.queryLeads(eventMessage, DynamoDBRequests.agentLeadsQuery(agentId, LeadStatus.WAITING_TO_BE_ENGAGED),
+            Integer.MAX_VALUE));
+        return leads;
+    }
 
-        final DynamoDBQueryExpression<LeadRecord> queryExpression = new DynamoDBQueryExpression<LeadRecord>()
-            .withIndexName(LeadRecord.INDEX_KEY_ATTRIBUTE_NAME)
-            .withKeyConditionExpression("agentId = :agentId")
-            .withConsistentRead(false)
-            .withExpressionAttributeValues(eav);
+    @Override
+    public String getLeadPhoneNumberToDial() {
+        final List<String> phoneNumbers = this.getAvailableLeads(DEFAULT_AGENT, 1, null);
+        return phoneNumbers.isEmpty() ? null : phoneNumbers.get(0);
+    }
 
-        final List<LeadRecord> records =  this.dynamoDBMapper.query(LeadRecord.class, queryExpression);
-        // Ordering the results by phone number to make the unit tests deterministic
-        return records.stream()
-            .map(LeadRecord::toLead)
-            .filter(lead -> lead.getCurrentStatus().equals(LeadStatus.QUEUED) ||
-                  lead.getCurrentStatus().equals(LeadStatus.WAITING_TO_BE_ENGAGED))
-            .collect(Collectors.toList());
+    @Override
+    public String claimLead(final String agentId) {
+        // Each page only reads CLAIM_CANDIDATES leads of the pool, the claim pages on until the pool was read to its end
+        List<String> candidates;
+        String exclusiveStartPhoneNumber = null;
+        do {
+            candidates = this.getAvailableLeads(DEFAULT_AGENT, CLAIM_CANDIDATES, exclusiveStartPhoneNumber);
+            for (final String phoneNumber : candidates) {
+                if (this.claimLead(agentId, phoneNumber)) {
+                    this.leadClaimCounters.recordClaimed();
+                    return phoneNumber;
+                }
+                this.leadClaimCounters.recordContended();
+                exclusiveStartPhoneNumber = phoneNumber;
+            }
+        } while (candidates.size() == CLAIM_CANDIDATES);
+        this.leadClaimCounters.recordExhausted();
+        return null;
     }
 
     @Override
-    public String getLeadPhoneNumberToDial() {
-        // Dummy implementation to make the test work
+    public boolean claimLead(final String agentId, final String phoneNumber) {
+        // Only the status, the agent and the lease are written, the rest of the lead (metadata) is left untouched
+        return this.updateItem(() -> String.format("Claiming lead %s for agent %s", phoneNumber, agentId),
+            DynamoDBRequests.leadClaim(agentId, phoneNumber));
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final int limit, final String exclusiveStartPhoneNumber) {
+        return this.getAvailableLeads(DEFAULT_AGENT, limit, exclusiveStartPhoneNumber);
+    }
+
+    @Override
+    public List<String> getLeadPhoneNumbersToDial(final String campaign, final int shard, final int limit,
+            final String exclusiveStartPhoneNumber) {
+        return this.getAvailableLeads(LeadPools.leadPool(campaign, shard), limit, exclusiveStartPhoneNumber);
+    }
+
+    private List<String> getAvailableLeads(final String unassignedAgent, final int limit, final String exclusiveStartPhoneNumber) {
         final Map<String, AttributeValue> eav = new HashMap<>();
-        eav.put(":agentId",  new AttributeValue().withS(DEFAULT_AGENT));
+        eav.put(":agentId",  new AttributeValue().withS(unassignedAgent));
         eav.put(":leadStatus", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
 
         final DynamoDBQueryExpression<LeadRecord> queryExpression = new DynamoDBQueryExpression<LeadRecord>()
             .withIndexName(LeadRecord.INDEX_KEY_ATTRIBUTE_NAME)
             .withKeyConditionExpression("agentId = :agentId and  leadStatus = :leadStatus")
+            .withProjectionExpression(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME)
             .withConsistentRead(false)
-            .withExpressionAttributeValues(eav);
-
-        final List<LeadRecord> records =  this.dynamoDBMapper.query(LeadRecord.class, queryExpression);
-        // Ordering the results by phone number to make the unit tests deterministic
-        Optional<LeadRecord> optionalLead =  records.stream()
-            .sorted((o1, o2) -> o1.getPhoneNumber().compareTo(o2.getPhoneNumber()))
-            .findFirst();
-        if (optionalLead.isPresent()) {
-            return optionalLead.get().getPhoneNumber();
+            .withExpressionAttributeValues(eav)
+            .withLimit(limit);
+
+        if (exclusiveStartPhoneNumber != null) {
+            // The start key of an index query is made of the table key and the index key
+            final Map<String, AttributeValue> exclusiveStartKey = new HashMap<>();
+            exclusiveStartKey.put(LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME, new AttributeValue().withS(exclusiveStartPhoneNumber));
+            exclusiveStartKey.put("agentId", new AttributeValue().withS(unassignedAgent));
+            exclusiveStartKey.put("leadStatus", new AttributeValue().withS(LeadStatus.AVAILABLE.toString()));
+            queryExpression.setExclusiveStartKey(exclusiveStartKey);
         }
-        return null;
+
+        final List<LeadRecord> records = this.makeCallToDynamoDB(AGENT_LEADS_INDEX,
+            () -> String.format("Getting %d leads to dial from %s", limit, unassignedAgent),
+            () -> this.dynamoDBMapper.queryPage(LeadRecord.class, queryExpression).getResults());
+        return records.stream()
+            .map(LeadRecord::getPhoneNumber)
+            .collect(Collectors.toList());
+    }
+
+    private List<Lead> queryLeads(final Supplier<String> eventMessage, final QueryRequest queryRequest, final int maxLeads) {
+        final List<Lead> leads = new ArrayList<>();
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            final QueryRequest pageRequest = queryRequest.clone().withExclusiveStartKey(exclusiveStartKey);
+            final QueryResult result = this.makeCallToDynamoDB(resource(queryRequest), eventMessage,
+                () -> this.amazonDynamoDB.query(pageRequest));
+            result.getItems().forEach(item -> leads.add(this.dynamoDBMapper.marshallIntoObject(LeadRecord.class, item).toLead()));
+            exclusiveStartKey = result.getLastEvaluatedKey();
+        } while (leads.size() < maxLeads && exclusiveStartKey != null && !exclusiveStartKey.isEmpty());
+        return leads;
+    }
+
+    private boolean updateItem(final Supplier<String> eventMessage, final UpdateItemRequest updateItemRequest) {
+        return this.makeCallToDynamoDB(updateItemRequest.getTableName(), eventMessage,
+            () -> {
+                try {
+                    this.amazonDynamoDB.updateItem(updateItemRequest);
+                    return true;
+                } catch (final ConditionalCheckFailedException ccfe) {
+                    // The record is missing or was not in any of the expected statuses
+                    return false;
+                }
+            }
+        );
+    }
+
+    private boolean transactWriteItems(final Supplier<String> eventMessage, final TransactWriteItemsRequest transactWriteItemsRequest) {
+        // A retry after a timeout or a server error sends the same token, so a transaction which was already written is
+        // not written twice. A cancelled transaction wrote nothing and takes a new token
+        transactWriteItemsRequest.setClientRequestToken(UUID.randomUUID().toString());
+        return this.makeCallToDynamoDB(LEAD_TABLE, eventMessage,
+            () -> {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        this.amazonDynamoDB.transactWriteItems(transactWriteItemsRequest);
+                        return true;
+                    } catch (final TransactionCanceledException tce) {
+                        final List<String> reasons = tce.getCancellationReasons() == null ? new ArrayList<>()
+                            : tce.getCancellationReasons().stream().map(CancellationReason::getCode).collect(Collectors.toList());
+                        if (reasons.contains("ConditionalCheckFailed")) {
+                            // A record is missing or was not in any of the expected statuses
+                            return false;
+                        }
+                        if (!reasons.contains("TransactionConflict") || attempt == MAX_TRANSACTION_ATTEMPTS) {
+                            throw tce;
+                        }
+                        transactWriteItemsRequest.setClientRequestToken(UUID.randomUUID().toString());
+                    }
+                }
+            }
+        );
+    }
+
+    private void batchSave(final String table, final Supplier<String> eventMessage, final List<?> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        // The mapper already retries unprocessed items, whatever is left over is a failure
+        final List<FailedBatch> failedBatches = this.makeCallToDynamoDB(table, eventMessage,
+            () -> this.dynamoDBMapper.batchSave(records));
+        if (!failedBatches.isEmpty()) {
+            throw new PowerDialerDependencyException(String.format("Batch write failed when: %s", eventMessage.get()),
+                failedBatches.get(0).getException());
+        }
+    }
+
+    private static String resource(final QueryRequest queryRequest) {
+        return DynamoDBResilience.resource(queryRequest.getTableName(), queryRequest.getIndexName());
+    }
+
+    private <T> T loadFromDynamoDB(final String table, final Supplier<String> eventMessage, final Supplier<T> dynamoLambda) {
+        // A consistent load is idempotent, a slow one can be sent again
+        return this.wrapErrors(eventMessage, () -> this.resilience.hedgedCall(table, eventMessage, dynamoLambda));
+    }
+
+    private <T> T makeCallToDynamoDB(final String resource, final Supplier<String> eventMessage, final Supplier<T> dynamoLambda) {
+        return this.wrapErrors(eventMessage, () -> this.resilience.call(resource, eventMessage, dynamoLambda));
     }
 
-    private <T> T makeCallToDynamoDB(final String eventMessage, final Supplier<T> dynamoLambda) {
+    private <T> T wrapErrors(final Supplier<String> eventMessage, final Supplier<T> dynamoLambda) {
         try {
             final T result = dynamoLambda.get();
             return result;
+        } catch (final PowerDialerDependencyException pde) {
+            // Rate limited, short circuited or interrupted before DynamoDB answered
+            throw pde;
         } catch (final ConditionalCheckFailedException ccfe) {
-            final String errorMsg = String.format("Condition check failed when: %s", eventMessage);
+            final String errorMsg = String.format("Condition check failed when: %s", eventMessage.get());
             throw new PowerDialerDependencyException(errorMsg, ccfe);
         } catch (final AmazonServiceException ase) {
-            final String errorMsg = String.format("An AWS error occured when: %s", eventMessage);
+            final String errorMsg = String.format("An AWS error occured when: %s", eventMessage.get());
             throw new PowerDialerDependencyException(errorMsg, ase);
         } catch (final Exception e) {
-            final String errorMsg = String.format("An unexpected error occured when: %s", eventMessage);
+            final String errorMsg = String.format("An unexpected error occured when: %s", eventMessage.get());
             throw new PowerDialerDependencyException(errorMsg, e);
         }
     }
@@ -0,0 +1,52 @@
+package com.power.dialer.dao;
+
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * How the PowerDialerDaoImpl copes with a throttled, slow or failing DynamoDB, see DynamoDBResilience. The defaults
+ * retry and break the circuit but neither rate limit nor hedge, both depend on the capacity of the tables
+ */
+@Value
+@Builder(toBuilder = true)
+public class ResilienceConfig {
+
+    public static final ResilienceConfig DEFAULT = ResilienceConfig.builder().build();
+
+    // Attempts of a call failing with a throttling or server error, 1 to never retry
+    @Builder.Default
+    private final int maxAttempts = 4;
+
+    // Decorrelated jitter: each backoff is random between the base and three times the previous one, up to the max
+    @Builder.Default
+    private final long baseBackoffMillis = 25;
+
+    @Builder.Default
+    private final long maxBackoffMillis = 1000;
+
+    // Requests per second by table, or by table/index for the queries of an index, e.g. lead/agentId-leadStatus.
+    // A resource without a rate is not limited
+    @NonNull
+    @Builder.Default
+    private final Map<String, Double> requestsPerSecond = Collections.emptyMap();
+
+    // Longest a call waits for the rate limit of its resource before failing without being sent
+    @Builder.Default
+    private final long maxRateLimitWaitMillis = 100;
+
+    // Attempts failing in a row which open the circuit, every retry counts as one. 0 to never open it
+    @Builder.Default
+    private final int circuitBreakerFailures = 10;
+
+    // An open circuit fails every call for this long, then lets a single call through to probe DynamoDB
+    @Builder.Default
+    private final long circuitBreakerOpenMillis = 5000;
+
+    // A consistent load not answered after this long is sent again, the first answer wins. 0 to never hedge
+    @Builder.Default
+    private final long hedgeAfterMillis = 0;
+}
@@ -0,0 +1,103 @@
+package com.power.dialer.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+/*
+ * Compact binary form of the lead and agent state shared by the write-ahead log and the snapshots. A record is the
+ * whole state of one lead or agent, or of the leads and agents of a transition batch, so applying it twice or over a
+ * newer snapshot is harmless
+ */
+final class StateCodec {
+
+    static final byte LEAD = 1;
+    static final byte AGENT = 2;
+    static final byte BATCH = 3;
+
+    private static final LeadStatus[] LEAD_STATUSES = LeadStatus.values();
+    private static final AgentStatus[] AGENT_STATUSES = AgentStatus.values();
+
+    private StateCodec() {
+    }
+
+    static void encode(final Lead lead, final ByteBuffer buffer) {
+        buffer.put(LEAD);
+        putString(lead.getPhoneNumber(), buffer);
+        buffer.put((byte) lead.getCurrentStatus().ordinal());
+        putString(lead.getAgentId(), buffer);
+        final Map<String, String> metadata = lead.getMetadata();
+        buffer.putShort((short) (metadata == null ? -1 : metadata.size()));
+        if (metadata != null) {
+            metadata.forEach((key, value) -> {
+                putString(key, buffer);
+                putString(value, buffer);
+            });
+        }
+    }
+
+    static void encode(final Agent agent, final ByteBuffer buffer) {
+        buffer.put(AGENT);
+        putString(agent.getAgentId(), buffer);
+        buffer.put((byte) agent.getAgentStatus().ordinal());
+    }
+
+    static void encode(final List<Lead> leads, final List<Agent> agents, final ByteBuffer buffer) {
+        buffer.put(BATCH);
+        buffer.putShort((short) (leads.size() + agents.size()));
+        leads.forEach(lead -> encode(lead, buffer));
+        agents.forEach(agent -> encode(agent, buffer));
+    }
+
+    /**
+     * Reads one record and writes it into the store
+     * @param buffer buffer positioned at the start of a record
+     * @param store store the record is applied to
+     */
+    static void apply(final ByteBuffer buffer, final PowerDialerDao store) {
+        final byte type = buffer.get();
+        if (type == LEAD) {
+            final String phoneNumber = getString(buffer);
+            final LeadStatus status = LEAD_STATUSES[buffer.get()];
+            final String agentId = getString(buffer);
+            final short entries = buffer.getShort();
+            Map<String, String> metadata = null;
+            if (entries >= 0) {
+                metadata = new HashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    metadata.put(getString(buffer), getString(buffer));
+                }
+            }
+            store.updateLead(Lead.builder().phoneNumber(phoneNumber).currentStatus(status).agentId(agentId).metadata(metadata).build());
+        } else if (type == AGENT) {
+            final String agentId = getString(buffer);
+            store.updateAgent(Agent.builder().agentId(agentId).agentStatus(AGENT_STATUSES[buffer.get()]).build());
+        } else if (type == BATCH) {
+            final short records = buffer.getShort();
+            for (int i = 0; i < records; i++) {
+                apply(buffer, store);
+            }
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown state record type %d", type));
+        }
+    }
+
+    private static void putString(final String value, final ByteBuffer buffer) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
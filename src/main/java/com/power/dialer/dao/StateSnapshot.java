@@ -0,0 +1,182 @@
+package com.power.dialer.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.power.dialer.exception.PowerDialerDependencyException;
+
+/*
+ * Snapshot files of the whole state, named after the first log sequence number which is not in them. A snapshot is
+ * [magic][sequence number] followed by length prefixed StateCodec records, a zero length and the CRC32 of everything
+ * before it. Snapshots are written to a temporary file and renamed, so a crash leaves either the old or the new one
+ */
+final class StateSnapshot {
+
+    private static final int MAGIC = 0x50445331;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private StateSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the store. Records changing while it is written may be seen before or after the change,
+     * replaying the log from the sequence number makes them consistent again
+     * @param directory snapshot directory
+     * @param sequence first log sequence number replayed over the snapshot
+     * @param store store to snapshot
+     */
+    static void write(final Path directory, final long sequence, final InMemoryPowerDialerDao store) {
+        final Path target = path(directory, sequence);
+        final Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            final CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            final DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            final RecordWriter writer = new RecordWriter(out);
+            store.forEachAgent(agent -> writer.write(buffer -> StateCodec.encode(agent, buffer)));
+            store.forEachLead(lead -> writer.write(buffer -> StateCodec.encode(lead, buffer)));
+            out.writeInt(0);
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        } catch (final IOException | UncheckedIOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not write snapshot %s", target), e);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not rename snapshot %s", temporary), e);
+        }
+    }
+
+    /**
+     * Applies the latest snapshot to the store
+     * @param directory snapshot directory
+     * @param store store the snapshot is applied to
+     * @return first log sequence number to replay, 0 if there is no snapshot
+     */
+    static long load(final Path directory, final PowerDialerDao store) {
+        final List<Path> snapshots = list(directory);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        final Path latest = snapshots.get(snapshots.size() - 1);
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(latest), 1 << 16),
+                new CRC32())) {
+            final DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new PowerDialerDependencyException(String.format("%s is not a snapshot", latest));
+            }
+            final long sequence = in.readLong();
+            byte[] record = new byte[256];
+            for (int length = in.readInt(); length != 0; length = in.readInt()) {
+                if (length < 0) {
+                    throw new PowerDialerDependencyException(String.format("Snapshot %s is corrupt", latest));
+                }
+                if (length > record.length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                in.readFully(record, 0, length);
+                StateCodec.apply(ByteBuffer.wrap(record, 0, length), store);
+            }
+            final long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new PowerDialerDependencyException(String.format("Snapshot %s is corrupt", latest));
+            }
+            return sequence;
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not read snapshot %s", latest), e);
+        }
+    }
+
+    /**
+     * Deletes the snapshots older than the given one
+     * @param directory snapshot directory
+     * @param sequence sequence number of the snapshot to keep
+     */
+    static void deleteBefore(final Path directory, final long sequence) {
+        for (final Path snapshot : list(directory)) {
+            if (sequence(snapshot) < sequence) {
+                try {
+                    Files.deleteIfExists(snapshot);
+                } catch (final IOException e) {
+                    throw new PowerDialerDependencyException(String.format("Could not delete snapshot %s", snapshot), e);
+                }
+            }
+        }
+    }
+
+    private static Path path(final Path directory, final long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    private static long sequence(final Path snapshot) {
+        final String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static List<Path> list(final Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX) && path.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not list snapshots in %s", directory), e);
+        }
+    }
+
+    /*
+     * Encodes records into a reused buffer, growing it for records with large metadata
+     */
+    private static final class RecordWriter {
+
+        private final DataOutputStream out;
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        private RecordWriter(final DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void write(final Consumer<ByteBuffer> encoder) {
+            while (true) {
+                this.buffer.clear();
+                try {
+                    encoder.accept(this.buffer);
+                    break;
+                } catch (final BufferOverflowException e) {
+                    this.buffer = ByteBuffer.allocate(this.buffer.capacity() * 2);
+                }
+            }
+            try {
+                this.out.writeInt(this.buffer.position());
+                this.out.write(this.buffer.array(), 0, this.buffer.position());
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
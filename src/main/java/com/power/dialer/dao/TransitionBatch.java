@@ -0,0 +1,63 @@
+package com.power.dialer.dao;
+
+import java.util.List;
+import java.util.Set;
+
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+
+/*
+ * Status transitions of the agents and leads touched by one event, written all together or not at all by
+ * PowerDialerDao.transitionBatch. An agent or a lead appears at most once in a batch
+ */
+@Value
+@Builder(toBuilder = true)
+public class TransitionBatch {
+
+    // Most items a DynamoDB transaction can write
+    public static final int MAX_TRANSITIONS = 100;
+
+    @Singular
+    private final List<AgentTransition> agentTransitions;
+
+    @Singular
+    private final List<LeadTransition> leadTransitions;
+
+    /**
+     * @return number of agents and leads in the batch
+     */
+    public int size() {
+        return this.agentTransitions.size() + this.leadTransitions.size();
+    }
+
+    @Value
+    public static class AgentTransition {
+        @NonNull private final String agentId;
+        @NonNull private final Set<AgentStatus> from;
+        @NonNull private final AgentStatus to;
+    }
+
+    @Value
+    public static class LeadTransition {
+        @NonNull private final String phoneNumber;
+        @NonNull private final Set<LeadStatus> from;
+        @NonNull private final LeadStatus to;
+        @NonNull private final String agentId;
+    }
+
+    public static class TransitionBatchBuilder {
+
+        public TransitionBatchBuilder agent(final String agentId, final Set<AgentStatus> from, final AgentStatus to) {
+            return this.agentTransition(new AgentTransition(agentId, from, to));
+        }
+
+        public TransitionBatchBuilder lead(final String phoneNumber, final Set<LeadStatus> from, final LeadStatus to, final String agentId) {
+            return this.leadTransition(new LeadTransition(phoneNumber, from, to, agentId));
+        }
+    }
+}
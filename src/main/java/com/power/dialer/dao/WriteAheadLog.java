@@ -0,0 +1,338 @@
+package com.power.dialer.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.power.dialer.dao.DurabilityConfig.SyncPolicy;
+import com.power.dialer.exception.PowerDialerDependencyException;
+
+/*
+ * Append-only log of state records in memory mapped segment files named after the sequence number of their first
+ * record. A record is [payload length][sequence number][payload][CRC32 of the payload], a zero length ends a segment.
+ * Appends only copy into the mapped segment, a single sync thread forces the segments to disk so concurrent writers
+ * waiting for durability share one sync
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final DurabilityConfig config;
+
+    // Guarded by this
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long segmentFirstSequence;
+    private long nextSequence;
+    private final List<MappedByteBuffer> unsyncedSegments = new ArrayList<>();
+
+    private final Object durability = new Object();
+    // Guarded by durability
+    private long appendedSequence;
+    private long durableSequence;
+    // Stops the sync thread, the log is closed once the final sync after it ran
+    private boolean closing;
+    private boolean closed;
+    private final Thread syncer;
+
+    /**
+     * Opens the log for appending, new records start a new segment after the last record on disk
+     * @param config durability config
+     * @param nextSequence sequence number of the first appended record
+     */
+    WriteAheadLog(final DurabilityConfig config, final long nextSequence) {
+        this.directory = config.getDirectory();
+        this.config = config;
+        this.nextSequence = nextSequence;
+        this.appendedSequence = nextSequence - 1;
+        this.durableSequence = nextSequence - 1;
+        synchronized (this) {
+            this.openSegment();
+        }
+        if (SyncPolicy.NEVER.equals(config.getSyncPolicy())) {
+            this.syncer = null;
+        } else {
+            this.syncer = new Thread(this::syncLoop, "write-ahead-log-sync");
+            this.syncer.setDaemon(true);
+            this.syncer.start();
+        }
+    }
+
+    /**
+     * Appends a record, it is durable once awaitDurable returns for its sequence number
+     * @param payload encoded record, between position and limit
+     * @return sequence number of the record
+     */
+    long append(final ByteBuffer payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        final int length = payload.remaining();
+        final long sequence;
+        MappedByteBuffer rolledSegment = null;
+        synchronized (this) {
+            if (this.segment.remaining() < RECORD_OVERHEAD + length + Integer.BYTES) {
+                if (RECORD_OVERHEAD + length + Integer.BYTES > this.config.getSegmentSize()) {
+                    throw new IllegalArgumentException(String.format("Record of %d bytes does not fit in a segment", length));
+                }
+                if (this.syncer == null) {
+                    // Nothing else syncs it before close, force it once below so its mapping is not kept until then
+                    rolledSegment = this.segment;
+                } else {
+                    this.unsyncedSegments.add(this.segment);
+                }
+                this.closeSegmentChannel();
+                this.openSegment();
+            }
+            sequence = this.nextSequence++;
+            this.segment.putInt(length);
+            this.segment.putLong(sequence);
+            this.segment.put(payload);
+            this.segment.putInt((int) crc.getValue());
+        }
+        if (rolledSegment != null) {
+            rolledSegment.force();
+        }
+        synchronized (this.durability) {
+            this.appendedSequence = Math.max(this.appendedSequence, sequence);
+            if (SyncPolicy.EVERY_WRITE.equals(this.config.getSyncPolicy())) {
+                this.durability.notifyAll();
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits until the record is on disk. Returns at once unless the sync policy is EVERY_WRITE
+     * @param sequence sequence number of the record
+     */
+    void awaitDurable(final long sequence) {
+        if (!SyncPolicy.EVERY_WRITE.equals(this.config.getSyncPolicy())) {
+            return;
+        }
+        synchronized (this.durability) {
+            while (this.durableSequence < sequence) {
+                if (this.closed) {
+                    throw new PowerDialerDependencyException(String.format("Write-ahead log in %s closed before record %d was synced",
+                        this.directory, sequence));
+                }
+                try {
+                    this.durability.wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PowerDialerDependencyException(String.format("Interrupted waiting for record %d to sync", sequence), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return sequence number the next appended record gets
+     */
+    synchronized long getNextSequence() {
+        return this.nextSequence;
+    }
+
+    /**
+     * Deletes the segments holding only records before the given sequence number
+     * @param sequence first sequence number to keep
+     */
+    synchronized void truncateBefore(final long sequence) {
+        final List<Path> segments = listSegments(this.directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            final long nextFirstSequence = firstSequence(segments.get(i + 1));
+            if (nextFirstSequence > sequence || firstSequence(segments.get(i)) == this.segmentFirstSequence) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (final IOException e) {
+                throw new PowerDialerDependencyException(String.format("Could not delete log segment %s", segments.get(i)), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this.durability) {
+            this.closing = true;
+            this.durability.notifyAll();
+        }
+        if (this.syncer != null) {
+            try {
+                this.syncer.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.sync();
+        synchronized (this.durability) {
+            // Writers still waiting appended after the final sync
+            this.closed = true;
+            this.durability.notifyAll();
+        }
+        synchronized (this) {
+            this.closeSegmentChannel();
+        }
+    }
+
+    /**
+     * Reads the records of the log in order. A torn record ends its segment, the log continues in the segment starting
+     * at its sequence number if it was reopened since
+     * @param directory log directory
+     * @param fromSequence first sequence number passed to the consumer
+     * @param consumer record payload consumer
+     * @return sequence number following the last valid record, fromSequence if there is none
+     */
+    static long replay(final Path directory, final long fromSequence, final Consumer<ByteBuffer> consumer) {
+        final List<Path> segments = listSegments(directory);
+        long nextSequence = fromSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                // Every record of the segment is before fromSequence
+                continue;
+            }
+            if (firstSequence(segments.get(i)) > nextSequence) {
+                // Segment written after a torn record, nothing in it was acknowledged
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= RECORD_OVERHEAD) {
+                    final int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() - Long.BYTES - Integer.BYTES) {
+                        break;
+                    }
+                    final long sequence = buffer.getLong();
+                    final ByteBuffer payload = buffer.slice();
+                    payload.limit(length);
+                    buffer.position(buffer.position() + length);
+                    final CRC32 crc = new CRC32();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != buffer.getInt()) {
+                        // Torn write, the log reopened after it continues in a segment starting at its sequence number
+                        break;
+                    }
+                    if (sequence >= fromSequence) {
+                        consumer.accept(payload);
+                        nextSequence = sequence + 1;
+                    }
+                }
+            } catch (final IOException e) {
+                throw new PowerDialerDependencyException(String.format("Could not read log segment %s", segments.get(i)), e);
+            }
+        }
+        return nextSequence;
+    }
+
+    /**
+     * Deletes the segments starting at or after the given sequence number, left behind by a log which did not close
+     * @param directory log directory
+     * @param sequence sequence number following the last valid record
+     */
+    static void discardFrom(final Path directory, final long sequence) {
+        for (final Path segment : listSegments(directory)) {
+            if (firstSequence(segment) >= sequence) {
+                try {
+                    Files.delete(segment);
+                } catch (final IOException e) {
+                    throw new PowerDialerDependencyException(String.format("Could not delete log segment %s", segment), e);
+                }
+            }
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            synchronized (this.durability) {
+                try {
+                    if (SyncPolicy.INTERVAL.equals(this.config.getSyncPolicy())) {
+                        if (!this.closing) {
+                            this.durability.wait(this.config.getSyncIntervalMillis());
+                        }
+                    } else {
+                        while (!this.closing && this.durableSequence == this.appendedSequence) {
+                            this.durability.wait();
+                        }
+                    }
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                if (this.closing) {
+                    return;
+                }
+            }
+            this.sync();
+        }
+    }
+
+    private void sync() {
+        final long sequence;
+        final List<MappedByteBuffer> segments;
+        synchronized (this) {
+            sequence = this.nextSequence - 1;
+            segments = new ArrayList<>(this.unsyncedSegments);
+            segments.add(this.segment);
+            this.unsyncedSegments.clear();
+        }
+        // Every record up to sequence was copied into one of these segments before the lock was released
+        segments.forEach(MappedByteBuffer::force);
+        synchronized (this.durability) {
+            this.durableSequence = Math.max(this.durableSequence, sequence);
+            this.durability.notifyAll();
+        }
+    }
+
+    // Caller holds the lock on this
+    private void openSegment() {
+        final Path path = this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, this.nextSequence, SEGMENT_SUFFIX));
+        try {
+            Files.createDirectories(this.directory);
+            this.segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.segment = this.segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.config.getSegmentSize());
+            this.segmentFirstSequence = this.nextSequence;
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not create log segment %s", path), e);
+        }
+    }
+
+    // Caller holds the lock on this. The mapping stays valid after the channel is closed
+    private void closeSegmentChannel() {
+        try {
+            this.segmentChannel.close();
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException("Could not close log segment", e);
+        }
+    }
+
+    private static List<Path> listSegments(final Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX) && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not list log segments in %s", directory), e);
+        }
+    }
+
+    private static long firstSequence(final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
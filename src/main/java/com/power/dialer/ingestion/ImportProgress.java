@@ -0,0 +1,36 @@
+package com.power.dialer.ingestion;
+
+import lombok.Builder;
+import lombok.Value;
+
+/*
+ * Counts of a LeadImporter since it was created, read while imports are running or once they are done
+ */
+@Value
+@Builder
+public class ImportProgress {
+
+    // Records read from the files, header lines and blank lines left out
+    private final long records;
+    private final long leadsWritten;
+    // Phone numbers seen earlier in the same or another file of the importer
+    private final long duplicates;
+    // Records without a phone number, or with one which is not a phone number
+    private final long invalid;
+    // Batch writes tried again after a failure
+    private final long retries;
+    private final long elapsedMillis;
+
+    /**
+     * @return leads written per second of importing
+     */
+    public double getLeadsPerSecond() {
+        return this.elapsedMillis == 0 ? 0 : this.leadsWritten * 1000.0 / this.elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("records=%d leadsWritten=%d duplicates=%d invalid=%d retries=%d elapsed=%dms leads/s=%.0f",
+            this.records, this.leadsWritten, this.duplicates, this.invalid, this.retries, this.elapsedMillis, this.getLeadsPerSecond());
+    }
+}
@@ -0,0 +1,337 @@
+package com.power.dialer.ingestion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.dao.PowerDialerDaoImpl;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+import lombok.NonNull;
+
+/*
+ * Loads uploaded leads into the lead table as AVAILABLE leads of no agent. Files are read a line at a time and written
+ * in batches of BATCH_SIZE leads, one BatchWriteItem each on DynamoDB, by parallel writers. The reader waits whenever
+ * twice as many batches as writers are in flight, so memory stays bounded whatever the size of the file.
+ *
+ * Phone numbers are normalized to their digits and only the first occurrence of a number is imported, across all the
+ * files of the importer. Every column of a CSV file, or field of an NDJSON record, other than the phone number goes
+ * into the lead's metadata. A lead already in the table is overwritten, so upload a campaign before dialing it
+ */
+public class LeadImporter {
+
+    /*
+     * CSV: A header line naming the columns, one of them phoneNumber, then one lead per line
+     * NDJSON: One JSON object per line with a phoneNumber field
+     */
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    public static final int DEFAULT_WRITERS = 16;
+    // Most items a BatchWriteItem request can write
+    public static final int BATCH_SIZE = 25;
+
+    private static final String PHONE_NUMBER = LeadRecord.PARTITION_KEY_ATTRIBUTE_NAME;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final int EXPECTED_LEADS = 1 << 20;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final PowerDialerDao powerDialerDao;
+    private final int writers;
+
+    private final LongHashSet phoneNumbers = new LongHashSet(EXPECTED_LEADS);
+    private final LongAdder records = new LongAdder();
+    private final LongAdder leadsWritten = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final AtomicLong importNanos = new AtomicLong();
+    // Start of the import in progress, 0 if none
+    private volatile long importStart;
+
+    public LeadImporter(final PowerDialerDao powerDialerDao) {
+        this(powerDialerDao, DEFAULT_WRITERS);
+    }
+
+    public LeadImporter(@NonNull final PowerDialerDao powerDialerDao, final int writers) {
+        if (writers <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of writers %d", writers));
+        }
+        this.powerDialerDao = powerDialerDao;
+        this.writers = writers;
+    }
+
+    /**
+     * Imports a .csv, .ndjson or .jsonl file
+     * @param file file to import
+     * @return progress of the importer once the file is imported
+     */
+    public ImportProgress importLeads(final Path file) {
+        final String name = file.getFileName().toString().toLowerCase();
+        final Format format;
+        if (name.endsWith(".csv")) {
+            format = Format.CSV;
+        } else if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            format = Format.NDJSON;
+        } else {
+            throw new IllegalArgumentException(String.format("Unknown lead file format %s", file));
+        }
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return this.importLeads(reader, format);
+        } catch (final IOException e) {
+            throw new PowerDialerDependencyException(String.format("Could not read lead file %s", file), e);
+        }
+    }
+
+    /**
+     * Imports the leads read from the reader. If a batch still fails after MAX_WRITE_ATTEMPTS the import stops, the
+     * batches written until then stay written and the leads not written are no duplicates of a later import
+     * @param reader lead records
+     * @param format format of the records
+     * @return progress of the importer once the records are imported
+     * @throws IOException if the records cannot be read
+     */
+    public synchronized ImportProgress importLeads(@NonNull final BufferedReader reader, @NonNull final Format format) throws IOException {
+        final AtomicInteger writerCount = new AtomicInteger();
+        final ExecutorService writerPool = Executors.newFixedThreadPool(this.writers, runnable -> {
+            final Thread thread = new Thread(runnable, "lead-importer-" + writerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final int maxInFlight = this.writers * 2;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Queue<List<Lead>> failedBatches = new ConcurrentLinkedQueue<>();
+        this.importStart = System.nanoTime();
+        try {
+            List<String> header = null;
+            List<Lead> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (format == Format.CSV && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+                this.records.increment();
+                final Lead lead = this.toLead(format == Format.CSV ? parseCsv(header, line) : parseJson(line));
+                if (lead != null) {
+                    batch.add(lead);
+                    if (batch.size() == BATCH_SIZE) {
+                        this.submit(batch, writerPool, inFlight, failure, failedBatches);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            }
+            if (failure.get() != null) {
+                failedBatches.add(batch);
+            } else if (!batch.isEmpty()) {
+                this.submit(batch, writerPool, inFlight, failure, failedBatches);
+            }
+            // Every permit is back once the last batch is written
+            inFlight.acquireUninterruptibly(maxInFlight);
+        } finally {
+            writerPool.shutdown();
+            this.importNanos.addAndGet(System.nanoTime() - this.importStart);
+            this.importStart = 0;
+        }
+        if (failure.get() != null) {
+            // The phone numbers are only taken by the leads written, a retry of the import writes the others
+            for (final List<Lead> failedBatch : failedBatches) {
+                failedBatch.forEach(lead -> this.phoneNumbers.remove(PhoneNumbers.key(lead.getPhoneNumber())));
+            }
+            throw new PowerDialerDependencyException(String.format("Lead import stopped after %d leads", this.leadsWritten.sum()),
+                failure.get());
+        }
+        return this.getProgress();
+    }
+
+    /**
+     * @return counts of the importer, safe to call while an import is running
+     */
+    public ImportProgress getProgress() {
+        final long start = this.importStart;
+        final long nanos = this.importNanos.get() + (start == 0 ? 0 : System.nanoTime() - start);
+        return ImportProgress.builder()
+            .records(this.records.sum())
+            .leadsWritten(this.leadsWritten.sum())
+            .duplicates(this.duplicates.sum())
+            .invalid(this.invalid.sum())
+            .retries(this.retries.sum())
+            .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(nanos))
+            .build();
+    }
+
+    private Lead toLead(final Map<String, String> fields) {
+        final String phoneNumber = fields == null || fields.get(PHONE_NUMBER) == null ? null : PhoneNumbers.normalize(fields.get(PHONE_NUMBER));
+        if (phoneNumber == null) {
+            this.invalid.increment();
+            return null;
+        }
+        if (!this.phoneNumbers.add(PhoneNumbers.key(phoneNumber))) {
+            this.duplicates.increment();
+            return null;
+        }
+        fields.remove(PHONE_NUMBER);
+        fields.values().removeIf(String::isEmpty);
+        return Lead.builder()
+            .phoneNumber(phoneNumber)
+            .currentStatus(LeadStatus.AVAILABLE)
+            .agentId(PowerDialerDaoImpl.DEFAULT_AGENT)
+            .metadata(fields.isEmpty() ? null : fields)
+            .build();
+    }
+
+    private void submit(final List<Lead> batch, final ExecutorService writerPool, final Semaphore inFlight,
+            final AtomicReference<RuntimeException> failure, final Queue<List<Lead>> failedBatches) {
+        inFlight.acquireUninterruptibly();
+        writerPool.execute(() -> {
+            try {
+                this.write(batch);
+            } catch (final RuntimeException e) {
+                failedBatches.add(batch);
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void write(final List<Lead> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // The dao retries the items DynamoDB leaves unprocessed, a batch failing anyway is throttled or failing
+                this.powerDialerDao.updateLeads(batch);
+                this.leadsWritten.add(batch.size());
+                return;
+            } catch (final PowerDialerDependencyException e) {
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                this.retries.increment();
+                backOff(attempt);
+            }
+        }
+    }
+
+    private static void backOff(final int attempt) {
+        // Exponential backoff with full jitter, so throttled writers do not retry in lockstep
+        final long maxBackoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxBackoff + 1));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PowerDialerDependencyException("Interrupted while backing off a lead batch write", e);
+        }
+    }
+
+    private static List<String> parseHeader(final String line) {
+        final List<String> header = parseCsvLine(line);
+        if (header == null || !header.contains(PHONE_NUMBER)) {
+            throw new IllegalArgumentException(String.format("No %s column in the header %s", PHONE_NUMBER, line));
+        }
+        return header;
+    }
+
+    private static Map<String, String> parseCsv(final List<String> header, final String line) {
+        final List<String> values = parseCsvLine(line);
+        if (values == null || values.size() != header.size()) {
+            return null;
+        }
+        final Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            fields.put(header.get(i), values.get(i));
+        }
+        return fields;
+    }
+
+    /**
+     * Splits a CSV line on commas. Values may be quoted, a quote inside a quoted value is doubled
+     * @param line CSV line
+     * @return values, null if a quoted value is not closed
+     */
+    private static List<String> parseCsvLine(final String line) {
+        if (line.indexOf('"') < 0) {
+            final List<String> values = new ArrayList<>(Arrays.asList(line.split(",", -1)));
+            values.replaceAll(String::trim);
+            return values;
+        }
+        final List<String> values = new ArrayList<>();
+        final StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    private static Map<String, String> parseJson(final String line) {
+        final JsonNode record;
+        try {
+            record = OBJECT_MAPPER.readTree(line);
+        } catch (final IOException e) {
+            return null;
+        }
+        if (record == null || !record.isObject()) {
+            return null;
+        }
+        final Map<String, String> fields = new LinkedHashMap<>();
+        record.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) {
+                fields.put(field.getKey(), field.getValue().isValueNode() ? field.getValue().asText() : field.getValue().toString());
+            }
+        });
+        return fields;
+    }
+}
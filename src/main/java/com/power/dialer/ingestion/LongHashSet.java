@@ -0,0 +1,93 @@
+package com.power.dialer.ingestion;
+
+/*
+ * Open addressing set of positive longs, 8 to 16 bytes per key instead of the ~60 of a HashSet<Long>. Not thread safe
+ */
+final class LongHashSet {
+
+    private static final long EMPTY = 0;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+
+    LongHashSet(final int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param key positive key
+     * @return true if the key was not in the set yet
+     */
+    boolean add(final long key) {
+        if (key <= EMPTY) {
+            throw new IllegalArgumentException(String.format("Invalid key %d", key));
+        }
+        int i = index(key, this.mask);
+        while (this.keys[i] != EMPTY) {
+            if (this.keys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & this.mask;
+        }
+        this.keys[i] = key;
+        if (++this.size > this.keys.length * LOAD_FACTOR) {
+            this.resize();
+        }
+        return true;
+    }
+
+    /**
+     * @param key positive key
+     * @return true if the key was in the set
+     */
+    boolean remove(final long key) {
+        int i = index(key, this.mask);
+        while (this.keys[i] != key) {
+            if (this.keys[i] == EMPTY) {
+                return false;
+            }
+            i = (i + 1) & this.mask;
+        }
+        // Moves back the keys probed past the removed one, so every key stays reachable from its index
+        for (int j = (i + 1) & this.mask; this.keys[j] != EMPTY; j = (j + 1) & this.mask) {
+            if (((j - index(this.keys[j], this.mask)) & this.mask) >= ((j - i) & this.mask)) {
+                this.keys[i] = this.keys[j];
+                i = j;
+            }
+        }
+        this.keys[i] = EMPTY;
+        this.size--;
+        return true;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    private void resize() {
+        final long[] previous = this.keys;
+        this.keys = new long[previous.length << 1];
+        this.mask = this.keys.length - 1;
+        for (final long key : previous) {
+            if (key != EMPTY) {
+                int i = index(key, this.mask);
+                while (this.keys[i] != EMPTY) {
+                    i = (i + 1) & this.mask;
+                }
+                this.keys[i] = key;
+            }
+        }
+    }
+
+    private static int index(final long key, final int mask) {
+        // Fibonacci hashing spreads the sequential numbers of an upload over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
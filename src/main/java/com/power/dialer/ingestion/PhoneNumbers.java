@@ -0,0 +1,57 @@
+package com.power.dialer.ingestion;
+
+/*
+ * Normalizes the phone numbers of an upload to their digits, so "+1 (555) 010-0100", "1.555.010.0100" and
+ * "15550100100" are the same lead. Formatting characters are dropped, anything else makes the number invalid
+ */
+final class PhoneNumbers {
+
+    // Longest E.164 number
+    static final int MAX_DIGITS = 15;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * @param phoneNumber phone number as uploaded
+     * @return digits of the phone number, null if it is not a phone number
+     */
+    static String normalize(final String phoneNumber) {
+        final StringBuilder digits = new StringBuilder(MAX_DIGITS);
+        final int start = phoneNumber.startsWith("+") ? 1 : 0;
+        for (int i = start; i < phoneNumber.length(); i++) {
+            final char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits.length() == MAX_DIGITS) {
+                    return null;
+                }
+                digits.append(c);
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    /**
+     * Key of a normalized phone number, numbers differing only by leading zeros get different keys
+     * @param digits normalized phone number
+     * @return positive key
+     */
+    static long key(final String digits) {
+        long value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            value = value * 10 + (digits.charAt(i) - '0');
+        }
+        return digits.length() * POWERS_OF_TEN[MAX_DIGITS] + value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.power.dialer.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Lock-free latency histogram laid out like an HdrHistogram: every power of two of nanoseconds is split into SUB_BUCKETS
+ * linear buckets, so a percentile is within 1 / SUB_BUCKETS (about 3%) of the recorded latencies at any magnitude.
+ * Recording is an index computation and two atomic increments, it never allocates or blocks. The buckets take about
+ * 10KB. Latencies above 2^MAX_MAGNITUDE nanoseconds (about 18 minutes) are recorded as the maximum
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+    private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param nanos latency in nanoseconds, negative latencies are recorded as 0
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, Math.min(MAX_VALUE, nanos));
+        this.counts.incrementAndGet(bucketIndex(value));
+        this.sum.add(value);
+    }
+
+    /**
+     * Copies the buckets. Latencies recorded while copying may or may not be in the snapshot
+     * @return latencies recorded so far
+     */
+    public Snapshot snapshot() {
+        final long[] snapshotCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshotCounts[i] = this.counts.get(i);
+        }
+        return new Snapshot(snapshotCounts, this.sum.sum());
+    }
+
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Middle of the latencies counted in the bucket
+    private static long bucketValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (subBucket << shift) + ((1L << shift) >> 1);
+    }
+
+    /*
+     * Immutable copy of a histogram, values are in nanoseconds
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(final long[] counts, final long sum) {
+            this.counts = counts;
+            long total = 0;
+            for (final long bucketCount : counts) {
+                total += bucketCount;
+            }
+            this.count = total;
+            this.sum = sum;
+        }
+
+        /**
+         * @return number of recorded latencies
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return mean latency, 0 if none was recorded
+         */
+        public double getMean() {
+            return this.count == 0 ? 0 : (double) this.sum / this.count;
+        }
+
+        /**
+         * @return highest recorded latency, 0 if none was recorded
+         */
+        public long getMax() {
+            for (int i = this.counts.length - 1; i >= 0; i--) {
+                if (this.counts[i] != 0) {
+                    return bucketValue(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 99.9
+         * @return latency which percentile % of the recorded latencies are at or below, 0 if none was recorded
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(String.format("Invalid percentile %f", percentile));
+            }
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return bucketValue(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param earlier snapshot of the same histogram taken before this one
+         * @return latencies recorded between the two snapshots
+         */
+        public Snapshot minus(final Snapshot earlier) {
+            final long[] difference = new long[this.counts.length];
+            for (int i = 0; i < difference.length; i++) {
+                difference[i] = this.counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(difference, this.sum - earlier.sum);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.power.dialer.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/*
+ * Read-only MBean with an attribute per counter and gauge, and count, mean, p50, p99, p99.9 and max attributes per
+ * histogram (latencies in microseconds since the metrics were created). Metrics created after the registration show up
+ * the next time a JMX client reads the MBean info
+ */
+@AllArgsConstructor
+class MetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_ATTRIBUTES = {"count", "mean", "p50", "p99", "p99.9", "max"};
+
+    @NonNull private final PowerDialerMetrics metrics;
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Long count = this.metrics.getCounts().get(attribute);
+        if (count != null) {
+            return count;
+        }
+        for (final String suffix : HISTOGRAM_ATTRIBUTES) {
+            if (attribute.endsWith("." + suffix)) {
+                final LatencyHistogram.Snapshot histogram = this.metrics.getHistograms()
+                    .get(attribute.substring(0, attribute.length() - suffix.length() - 1));
+                if (histogram != null) {
+                    return value(histogram, suffix);
+                }
+            }
+        }
+        throw new AttributeNotFoundException(String.format("Unknown metric %s", attribute));
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList values = new AttributeList();
+        for (final String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, this.getAttribute(attribute)));
+            } catch (final AttributeNotFoundException e) {
+                // Left out, as the DynamicMBean contract asks
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(String.format("Metric %s is read-only", attribute.getName()));
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+        throw new UnsupportedOperationException(String.format("Unknown operation %s", actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (final Map.Entry<String, Long> count : this.metrics.getCounts().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(count.getKey(), Long.class.getName(), count.getKey(), true, false, false));
+        }
+        for (final String histogram : this.metrics.getHistograms().keySet()) {
+            for (final String suffix : HISTOGRAM_ATTRIBUTES) {
+                final String type = "count".equals(suffix) ? Long.class.getName() : Double.class.getName();
+                attributes.add(new MBeanAttributeInfo(histogram + "." + suffix, type, histogram + " " + suffix, true, false, false));
+            }
+        }
+        return new MBeanInfo(PowerDialerMetrics.class.getName(), "PowerDialer metrics", attributes.toArray(new MBeanAttributeInfo[0]),
+            null, new MBeanOperationInfo[0], null);
+    }
+
+    private static Object value(final LatencyHistogram.Snapshot histogram, final String attribute) {
+        switch (attribute) {
+            case "count":
+                return histogram.getCount();
+            case "mean":
+                return histogram.getMean() / 1000;
+            case "p50":
+                return histogram.getValueAtPercentile(50) / 1000.0;
+            case "p99":
+                return histogram.getValueAtPercentile(99) / 1000.0;
+            case "p99.9":
+                return histogram.getValueAtPercentile(99.9) / 1000.0;
+            default:
+                return histogram.getMax() / 1000.0;
+        }
+    }
+}
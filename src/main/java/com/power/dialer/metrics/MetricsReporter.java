@@ -0,0 +1,17 @@
+package com.power.dialer.metrics;
+
+import java.util.Map;
+
+/*
+ * Destination of the periodic reports of a PowerDialerMetrics, e.g. a log, a CloudWatch or a StatsD client.
+ * Reports run on the metrics' reporting thread, never on an event path
+ */
+@FunctionalInterface
+public interface MetricsReporter {
+
+    /**
+     * @param histograms latencies recorded since the previous report, by metric name
+     * @param counts counters and gauges since the metrics were created, by metric name
+     */
+    void report(final Map<String, LatencyHistogram.Snapshot> histograms, final Map<String, Long> counts);
+}
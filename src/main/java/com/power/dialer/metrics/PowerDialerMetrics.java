@@ -0,0 +1,141 @@
+package com.power.dialer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import lombok.NonNull;
+
+/*
+ * Named latency histograms, counters and gauges of a dialer. Instrumented classes look their metrics up once when they
+ * are built and record on the event path without touching the registry. The metrics are readable over JMX and pushed
+ * to any number of MetricsReporters on a background thread
+ */
+public class PowerDialerMetrics implements AutoCloseable {
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private ScheduledExecutorService reportingExecutor;
+
+    /**
+     * @param name metric name
+     * @return histogram of the name, created on first use
+     */
+    public LatencyHistogram histogram(@NonNull final String name) {
+        return this.histograms.computeIfAbsent(name, ignored -> new LatencyHistogram());
+    }
+
+    /**
+     * @param name metric name
+     * @return counter of the name, created on first use
+     */
+    public LongAdder counter(@NonNull final String name) {
+        return this.counters.computeIfAbsent(name, ignored -> new LongAdder());
+    }
+
+    /**
+     * Reports a value owned by another class, e.g. the LeadClaimCounters of a dao
+     * @param name metric name
+     * @param value read on every report
+     */
+    public void gauge(@NonNull final String name, @NonNull final LongSupplier value) {
+        this.gauges.put(name, value);
+    }
+
+    /**
+     * @return latencies recorded so far by metric name, in name order
+     */
+    public Map<String, LatencyHistogram.Snapshot> getHistograms() {
+        final Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        this.histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * @return counters and gauges by metric name, in name order
+     */
+    public Map<String, Long> getCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        this.counters.forEach((name, counter) -> counts.put(name, counter.sum()));
+        this.gauges.forEach((name, gauge) -> counts.put(name, gauge.getAsLong()));
+        return counts;
+    }
+
+    /**
+     * Exposes the metrics as the attributes of an MBean of the platform MBean server
+     * @param objectName e.g. com.power.dialer:type=PowerDialerMetrics
+     */
+    public synchronized void registerMBean(@NonNull final String objectName) {
+        try {
+            final ObjectName name = new ObjectName(objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), name);
+            this.registeredNames.add(name);
+        } catch (final JMException e) {
+            throw new IllegalArgumentException(String.format("Could not register the metrics as %s", objectName), e);
+        }
+    }
+
+    /**
+     * @param reporter receives the latencies recorded during each period
+     * @param period time between two reports
+     * @param unit unit of the period
+     */
+    public synchronized void startReporting(@NonNull final MetricsReporter reporter, final long period, @NonNull final TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid reporting period %d", period));
+        }
+        if (this.reportingExecutor == null) {
+            this.reportingExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "power-dialer-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        final Map<String, LatencyHistogram.Snapshot> previous = new HashMap<>();
+        this.reportingExecutor.scheduleAtFixedRate(() -> {
+            final Map<String, LatencyHistogram.Snapshot> interval = new TreeMap<>();
+            this.getHistograms().forEach((name, snapshot) -> {
+                final LatencyHistogram.Snapshot earlier = previous.put(name, snapshot);
+                interval.put(name, earlier == null ? snapshot : snapshot.minus(earlier));
+            });
+            try {
+                reporter.report(interval, this.getCounts());
+            } catch (final RuntimeException e) {
+                // A failed report must not cancel the next ones
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops the reports and unregisters the MBeans
+     */
+    @Override
+    public synchronized void close() {
+        if (this.reportingExecutor != null) {
+            this.reportingExecutor.shutdownNow();
+            this.reportingExecutor = null;
+        }
+        for (final ObjectName name : this.registeredNames) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (final JMException e) {
+                // Already unregistered
+            }
+        }
+        this.registeredNames.clear();
+    }
+}
@@ -0,0 +1,28 @@
+package com.power.dialer.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/*
+ * Prints one line per metric, latencies in microseconds. Histograms without any latency in the interval are skipped
+ */
+@AllArgsConstructor
+public class PrintStreamMetricsReporter implements MetricsReporter {
+
+    @NonNull private final PrintStream out;
+
+    @Override
+    public void report(final Map<String, LatencyHistogram.Snapshot> histograms, final Map<String, Long> counts) {
+        histograms.forEach((name, histogram) -> {
+            if (histogram.getCount() > 0) {
+                this.out.println(String.format("%s count=%d mean=%.1f p50=%.1f p99=%.1f p99.9=%.1f max=%.1f", name, histogram.getCount(),
+                    histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+            }
+        });
+        counts.forEach((name, count) -> this.out.println(String.format("%s %d", name, count)));
+    }
+}
@@ -15,10 +15,12 @@ import lombok.NonNull;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@DynamoDBTable(tableName = "agent")
+@DynamoDBTable(tableName = AgentRecord.TABLE_NAME)
 public class AgentRecord {
 
+    public static final String TABLE_NAME = "agent";
     public static final String PARTITION_KEY_ATTRIBUTE_NAME = "agentId";
+    public static final String AGENT_STATUS_ATTRIBUTE_NAME = "agentStatus";
 
     @NonNull private String agentId;
     @NonNull private String agentStatus;
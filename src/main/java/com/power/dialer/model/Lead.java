@@ -16,13 +16,26 @@ public class Lead {
      * WAITING_TO_BE_ENGAGED: The call to lead is ringing/in progress, but the lead hasn't picked it yet
      * ENGAGED: An agent is communicating with the lead
      * COMPLETED: Indicates a successful completion of the call between an agent and a lead
+     *
+     * QUEUED and WAITING_TO_BE_ENGAGED leads are leased: they are held for an agent which may never come back for them,
+     * so they go back to AVAILABLE once their lease expires
      */
     public enum LeadStatus {
-        AVAILABLE,
-        QUEUED,
-        ENGAGED,
-        WAITING_TO_BE_ENGAGED,
-        COMPLETED,
+        AVAILABLE(false),
+        QUEUED(true),
+        ENGAGED(false),
+        WAITING_TO_BE_ENGAGED(true),
+        COMPLETED(false);
+
+        private final boolean leased;
+
+        LeadStatus(final boolean leased) {
+            this.leased = leased;
+        }
+
+        public boolean isLeased() {
+            return this.leased;
+        }
     }
 
     @NonNull
@@ -38,11 +51,14 @@ public class Lead {
     private Map<String, String> metadata;
 
     public LeadRecord toLeadRecord() {
+        // An unassigned lead of a campaign is stored under its lead pool, see LeadPools
+        final String leadPool = LeadPools.leadPool(this.metadata, this.phoneNumber);
         return LeadRecord.builder()
-            .agentId(this.agentId)
+            .agentId(leadPool != null && LeadPools.UNASSIGNED_AGENT.equals(this.agentId) ? leadPool : this.agentId)
             .phoneNumber(this.phoneNumber)
             .leadStatus(this.currentStatus.toString())
             .metadata(this.metadata)
+            .leadPool(leadPool)
             .build();
     }
 }
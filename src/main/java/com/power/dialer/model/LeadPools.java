@@ -0,0 +1,72 @@
+package com.power.dialer.model;
+
+import java.util.Map;
+
+/*
+ * Campaign scoped pools of AVAILABLE leads. A lead joins the pool of the campaign named in its metadata, leads without
+ * a campaign stay in the shared pool of the "NONE" agent. Each campaign pool is split over SHARDS lead pool keys of the
+ * form NONE#campaign#shard-k, which the unassigned leads of the campaign are stored under in place of "NONE", so the
+ * claims and releases of a campaign are spread over SHARDS partitions of the agentId-leadStatus index instead of one.
+ * The pool of a lead only depends on its campaign and phone number, changing SHARDS requires rewriting the AVAILABLE
+ * leads of every campaign
+ */
+public final class LeadPools {
+
+    // Metadata key of the campaign of a lead
+    public static final String CAMPAIGN = "campaign";
+    public static final int SHARDS = 16;
+
+    // Agent id of the unassigned leads, as seen by the callers of the daos
+    public static final String UNASSIGNED_AGENT = "NONE";
+    private static final String PREFIX = UNASSIGNED_AGENT + "#";
+
+    private LeadPools() {
+    }
+
+    /**
+     * @param metadata lead metadata, may be null
+     * @return campaign of the lead, null if it has none
+     */
+    public static String campaign(final Map<String, String> metadata) {
+        final String campaign = metadata == null ? null : metadata.get(CAMPAIGN);
+        return campaign == null || campaign.isEmpty() ? null : campaign;
+    }
+
+    /**
+     * @param phoneNumber lead phone number
+     * @return shard of the campaign pool the lead belongs to
+     */
+    public static int shard(final String phoneNumber) {
+        return Math.floorMod(phoneNumber.hashCode(), SHARDS);
+    }
+
+    /**
+     * @param campaign campaign
+     * @param shard shard of the campaign pool
+     * @return key the unassigned leads of the shard are stored under
+     */
+    public static String leadPool(final String campaign, final int shard) {
+        if (shard < 0 || shard >= SHARDS) {
+            throw new IllegalArgumentException(String.format("Invalid lead pool shard %d", shard));
+        }
+        return String.format("%s%s#shard-%d", PREFIX, campaign, shard);
+    }
+
+    /**
+     * @param metadata lead metadata, may be null
+     * @param phoneNumber lead phone number
+     * @return key the lead is stored under while unassigned, null if it has no campaign
+     */
+    public static String leadPool(final Map<String, String> metadata, final String phoneNumber) {
+        final String campaign = campaign(metadata);
+        return campaign == null ? null : leadPool(campaign, shard(phoneNumber));
+    }
+
+    /**
+     * @param agentId agent id stored on a lead
+     * @return true if it is a lead pool key rather than an agent
+     */
+    public static boolean isLeadPool(final String agentId) {
+        return agentId.startsWith(PREFIX);
+    }
+}
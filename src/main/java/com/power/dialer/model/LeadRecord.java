@@ -19,16 +19,31 @@ import lombok.NonNull;
 @AllArgsConstructor
 @Data
 @NoArgsConstructor
-@DynamoDBTable(tableName = "lead")
+@DynamoDBTable(tableName = LeadRecord.TABLE_NAME)
 public class LeadRecord {
 
+    public static final String TABLE_NAME = "lead";
     public static final String PARTITION_KEY_ATTRIBUTE_NAME = "phoneNumber";
     public static final String INDEX_KEY_ATTRIBUTE_NAME = "agentId-leadStatus";
+    public static final String AGENT_ID_ATTRIBUTE_NAME = "agentId";
+    public static final String LEAD_STATUS_ATTRIBUTE_NAME = "leadStatus";
+    public static final String METADATA_ATTRIBUTE_NAME = "metadata";
+    public static final String LEAD_POOL_ATTRIBUTE_NAME = "leadPool";
+    public static final String LEASE_INDEX_NAME = "leaseShard-leasedAt";
+    public static final String LEASE_SHARD_ATTRIBUTE_NAME = "leaseShard";
+    public static final String LEASED_AT_ATTRIBUTE_NAME = "leasedAt";
+    // Leased leads are spread over this many partitions of the lease index, a single one would take every claim
+    public static final int LEASE_SHARDS = 16;
 
     @NonNull private String phoneNumber;
     @NonNull private String leadStatus;
     @NonNull private String agentId;
     private Map<String, String> metadata;
+    // Lead pool of the campaign of the lead, null without a campaign. The agent id of the lead while it is unassigned
+    private String leadPool;
+    // Set while the lead is leased only, which keeps the lease index down to the QUEUED and WAITING_TO_BE_ENGAGED leads
+    private Integer leaseShard;
+    private Long leasedAt;
 
     @DynamoDBHashKey(attributeName = PARTITION_KEY_ATTRIBUTE_NAME)
     public String getPhoneNumber() {
@@ -45,14 +60,50 @@ public class LeadRecord {
         return this.leadStatus;
     }
 
-    @DynamoDBAttribute
+    @DynamoDBAttribute(attributeName = METADATA_ATTRIBUTE_NAME)
     public Map<String, String> getMetadata() {
         return this.metadata;
     }
 
+    @DynamoDBAttribute(attributeName = LEAD_POOL_ATTRIBUTE_NAME)
+    public String getLeadPool() {
+        return this.leadPool;
+    }
+
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = LEASE_INDEX_NAME, attributeName = LEASE_SHARD_ATTRIBUTE_NAME)
+    public Integer getLeaseShard() {
+        return this.leaseShard;
+    }
+
+    // Epoch milliseconds of the write which last moved the lead into a leased status
+    @DynamoDBIndexRangeKey(globalSecondaryIndexName = LEASE_INDEX_NAME, attributeName = LEASED_AT_ATTRIBUTE_NAME)
+    public Long getLeasedAt() {
+        return this.leasedAt;
+    }
+
+    /**
+     * @param now epoch milliseconds of the write
+     * @return copy of the record leased at now if its status is leased, without a lease otherwise
+     */
+    public LeadRecord withLease(final long now) {
+        final boolean leased = LeadStatus.valueOf(this.leadStatus).isLeased();
+        return this.toBuilder()
+            .leaseShard(leased ? leaseShard(this.phoneNumber) : null)
+            .leasedAt(leased ? now : null)
+            .build();
+    }
+
+    /**
+     * @param phoneNumber lead phone number
+     * @return partition of the lease index the lead is leased in
+     */
+    public static int leaseShard(final String phoneNumber) {
+        return Math.floorMod(phoneNumber.hashCode(), LEASE_SHARDS);
+    }
+
     public Lead toLead() {
         return Lead.builder()
-            .agentId(this.getAgentId())
+            .agentId(this.getAgentId().equals(this.getLeadPool()) ? LeadPools.UNASSIGNED_AGENT : this.getAgentId())
             .phoneNumber(this.getPhoneNumber())
             .currentStatus(LeadStatus.valueOf(this.getLeadStatus()))
             .metadata(this.getMetadata())
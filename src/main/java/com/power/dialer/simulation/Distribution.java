@@ -0,0 +1,54 @@
+package com.power.dialer.simulation;
+
+import java.util.SplittableRandom;
+
+/*
+ * Distribution of a duration in milliseconds, e.g. how long a lead's phone rings or how long a call lasts
+ */
+@FunctionalInterface
+public interface Distribution {
+
+    /**
+     * @param random random numbers of the simulation
+     * @return sampled duration in milliseconds, never negative
+     */
+    long sample(final SplittableRandom random);
+
+    static Distribution constant(final long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid duration %d", millis));
+        }
+        return random -> millis;
+    }
+
+    static Distribution uniform(final long minMillis, final long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException(String.format("Invalid range [%d, %d]", minMillis, maxMillis));
+        }
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    static Distribution exponential(final double meanMillis) {
+        if (meanMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid mean %f", meanMillis));
+        }
+        return random -> (long) (-meanMillis * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * Long tailed, the usual shape of call handle times
+     * @param medianMillis median duration
+     * @param sigma standard deviation of the logarithm of the duration
+     * @return log normal distribution
+     */
+    static Distribution logNormal(final double medianMillis, final double sigma) {
+        if (medianMillis <= 0 || sigma < 0) {
+            throw new IllegalArgumentException(String.format("Invalid median %f or sigma %f", medianMillis, sigma));
+        }
+        return random -> {
+            // Box-Muller transform
+            final double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+            return (long) (medianMillis * Math.exp(sigma * gaussian));
+        };
+    }
+}
@@ -0,0 +1,286 @@
+package com.power.dialer.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import com.power.dialer.compute.AdaptiveDialRatio;
+import com.power.dialer.compute.DialRatioStrategy;
+import com.power.dialer.compute.FixedDialRatio;
+import com.power.dialer.compute.PowerDialer;
+import com.power.dialer.compute.PowerDialerImpl;
+import com.power.dialer.dao.CountingPowerDialerDao;
+import com.power.dialer.dao.ForwardingPowerDialerDao;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.exception.CallToLeadFailedException;
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+import lombok.NonNull;
+
+/*
+ * Discrete event simulation of a PowerDialer against any PowerDialerDao. The dao's dial() is replaced by a fake telephony
+ * which rings the lead for a sampled ring time and then reports onCallStarted or onCallFailed, an answered call reports
+ * onCallEnded after a sampled talk time. Events run one at a time on the calling thread in simulated time order, so a
+ * run lasts as long as the dialer and the dao take to handle its events, whatever the simulated duration.
+ *
+ * The dialer is built by the caller on top of the simulation's dao and has to handle onAgentLogin and the call events
+ * on the calling thread, which PowerDialerImpl does. A simulator runs once
+ */
+public class PowerDialerSimulator {
+
+    private static final String DEFAULT_AGENT = "NONE";
+    // Phone numbers are fixed width, so their order is the same as the lead order
+    private static final long FIRST_PHONE_NUMBER = 1_000_000_000L;
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final long NOT_ON_A_CALL = -1;
+
+    private final SimulationConfig config;
+    private final PowerDialerDao powerDialerDao;
+    private final CountingPowerDialerDao countingPowerDialerDao;
+    private final PowerDialer powerDialer;
+    private final SplittableRandom random;
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final Map<String, AgentState> agents = new HashMap<>();
+    private boolean ran;
+    private long now;
+    private long sequence;
+
+    private long handledEvents;
+    private long dials;
+    private long failedDials;
+    private long connectedCalls;
+    private long abandonedCalls;
+    private long unansweredCalls;
+    private long noLeadsAvailable;
+    private long talkTimeMillis;
+
+    /**
+     * @param config agents, leads and call outcomes
+     * @param powerDialerDao empty dao, seeded with the agents and leads of the config
+     * @param powerDialerFactory builds the dialer under test on top of the dao it is given
+     */
+    public PowerDialerSimulator(@NonNull final SimulationConfig config, @NonNull final PowerDialerDao powerDialerDao,
+            @NonNull final Function<PowerDialerDao, PowerDialer> powerDialerFactory) {
+        this.config = config;
+        this.powerDialerDao = powerDialerDao;
+        this.countingPowerDialerDao = new CountingPowerDialerDao(new Telephony(powerDialerDao));
+        this.powerDialer = powerDialerFactory.apply(this.countingPowerDialerDao);
+        this.random = new SplittableRandom(config.getSeed());
+    }
+
+    /**
+     * Seeds the dao and runs the simulated duration
+     * @return agent utilization, abandon rate and cost of the events
+     */
+    public SimulationReport run() {
+        if (this.ran) {
+            throw new IllegalStateException("The simulation already ran");
+        }
+        this.ran = true;
+        this.seed();
+        for (final String agentId : this.agents.keySet()) {
+            final long loginTime = this.config.getLoginSpreadMillis() == 0 ? 0 : this.random.nextLong(this.config.getLoginSpreadMillis());
+            this.schedule(loginTime, EventType.LOGIN, agentId, null);
+        }
+
+        final long daoCalls = this.countingPowerDialerDao.getCalls();
+        final long start = System.nanoTime();
+        while (!this.events.isEmpty() && this.events.peek().time <= this.config.getDurationMillis()) {
+            final Event event = this.events.poll();
+            this.now = event.time;
+            this.handle(event);
+        }
+        final long wallClockMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Calls still going on at the end of the run
+        for (final AgentState agent : this.agents.values()) {
+            if (agent.callStartedAt != NOT_ON_A_CALL) {
+                this.talkTimeMillis += this.config.getDurationMillis() - agent.callStartedAt;
+            }
+        }
+        return SimulationReport.builder()
+            .agents(this.config.getAgents())
+            .simulatedMillis(this.config.getDurationMillis())
+            .wallClockMillis(wallClockMillis)
+            .events(this.handledEvents)
+            .daoCalls(this.countingPowerDialerDao.getCalls() - daoCalls)
+            .dials(this.dials)
+            .failedDials(this.failedDials)
+            .connectedCalls(this.connectedCalls)
+            .abandonedCalls(this.abandonedCalls)
+            .unansweredCalls(this.unansweredCalls)
+            .noLeadsAvailable(this.noLeadsAvailable)
+            .talkTimeMillis(this.talkTimeMillis)
+            .build();
+    }
+
+    private void seed() {
+        final List<Lead> leads = new ArrayList<>();
+        for (int i = 0; i < this.config.getLeads(); i++) {
+            leads.add(Lead.builder().phoneNumber(String.valueOf(FIRST_PHONE_NUMBER + i)).currentStatus(LeadStatus.AVAILABLE)
+                .agentId(DEFAULT_AGENT).build());
+            if (leads.size() == SEED_BATCH_SIZE) {
+                this.powerDialerDao.updateLeads(leads);
+                leads.clear();
+            }
+        }
+        if (!leads.isEmpty()) {
+            this.powerDialerDao.updateLeads(leads);
+        }
+        final List<Agent> agents = new ArrayList<>();
+        for (int i = 0; i < this.config.getAgents(); i++) {
+            agents.add(Agent.builder().agentId("agent" + i).agentStatus(AgentStatus.OFF_DUTY).build());
+            this.agents.put("agent" + i, new AgentState());
+        }
+        if (!agents.isEmpty()) {
+            this.powerDialerDao.updateAgents(agents);
+        }
+    }
+
+    private void handle(final Event event) {
+        final AgentState agent = this.agents.get(event.agentId);
+        switch (event.type) {
+            case LOGIN:
+                agent.retryScheduled = false;
+                // A retry only logs in an agent the dialer left without any call
+                if (agent.ringingLeads == 0 && agent.callStartedAt == NOT_ON_A_CALL) {
+                    this.dispatch(event, () -> this.powerDialer.onAgentLogin(event.agentId));
+                }
+                break;
+            case RING_ENDED:
+                agent.ringingLeads--;
+                if (this.random.nextDouble() < this.config.getAnswerRate()) {
+                    this.dispatch(event, () -> this.powerDialer.onCallStarted(event.agentId, event.phoneNumber));
+                    // Read without counting, the dialer decided whether the agent took the call
+                    final Lead lead = this.powerDialerDao.getLead(event.phoneNumber);
+                    if (LeadStatus.ENGAGED.equals(lead.getCurrentStatus()) && event.agentId.equals(lead.getAgentId())) {
+                        this.connectedCalls++;
+                        agent.callStartedAt = this.now;
+                        this.schedule(this.now + this.config.getTalkTime().sample(this.random), EventType.CALL_ENDED, event.agentId,
+                            event.phoneNumber);
+                    } else {
+                        this.abandonedCalls++;
+                    }
+                } else {
+                    this.unansweredCalls++;
+                    this.dispatch(event, () -> this.powerDialer.onCallFailed(event.agentId, event.phoneNumber));
+                }
+                break;
+            case CALL_ENDED:
+                this.talkTimeMillis += this.now - agent.callStartedAt;
+                agent.callStartedAt = NOT_ON_A_CALL;
+                this.dispatch(event, () -> this.powerDialer.onCallEnded(event.agentId, event.phoneNumber));
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown event %s", event.type));
+        }
+    }
+
+    private void dispatch(final Event event, final Runnable action) {
+        this.handledEvents++;
+        try {
+            action.run();
+        } catch (final NoLeadsAvailableException | CallToLeadFailedException e) {
+            // Out of leads, or the dialer gave up dialing. The client retries later
+            if (e instanceof NoLeadsAvailableException) {
+                this.noLeadsAvailable++;
+            }
+            final AgentState agent = this.agents.get(event.agentId);
+            if (!agent.retryScheduled) {
+                agent.retryScheduled = true;
+                this.schedule(this.now + this.config.getRetryMillis(), EventType.LOGIN, event.agentId, null);
+            }
+        }
+    }
+
+    private void schedule(final long time, final EventType type, final String agentId, final String phoneNumber) {
+        this.events.add(new Event(time, this.sequence++, type, agentId, phoneNumber));
+    }
+
+    /**
+     * Runs a simulation against an InMemoryPowerDialerDao and prints its report
+     * @param args agents, leads, simulated minutes, answer rate and optionally an abandon rate ceiling to use an
+     *     AdaptiveDialRatio instead of the fixed dial ratio of 2
+     */
+    public static void main(final String[] args) {
+        final SimulationConfig config = SimulationConfig.builder()
+            .agents(args.length > 0 ? Integer.parseInt(args[0]) : 1000)
+            .leads(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000)
+            .durationMillis(args.length > 2 ? Long.parseLong(args[2]) * 60_000 : 3_600_000)
+            .answerRate(args.length > 3 ? Double.parseDouble(args[3]) : 0.3)
+            .build();
+        final DialRatioStrategy dialRatioStrategy = args.length > 4 ? new AdaptiveDialRatio(Double.parseDouble(args[4])) : new FixedDialRatio(2);
+        final PowerDialerSimulator simulator = new PowerDialerSimulator(config, new InMemoryPowerDialerDao(config.getLeads()),
+            powerDialerDao -> new PowerDialerImpl(powerDialerDao, powerDialerDao::claimLead, Runnable::run, dialRatioStrategy));
+        System.out.println(simulator.run());
+    }
+
+    private enum EventType {
+        LOGIN,
+        RING_ENDED,
+        CALL_ENDED
+    }
+
+    private static final class Event implements Comparable<Event> {
+
+        private final long time;
+        // Events at the same time run in the order they were scheduled
+        private final long sequence;
+        private final EventType type;
+        private final String agentId;
+        private final String phoneNumber;
+
+        private Event(final long time, final long sequence, final EventType type, final String agentId, final String phoneNumber) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.agentId = agentId;
+            this.phoneNumber = phoneNumber;
+        }
+
+        @Override
+        public int compareTo(final Event other) {
+            final int byTime = Long.compare(this.time, other.time);
+            return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private static final class AgentState {
+
+        private int ringingLeads;
+        private long callStartedAt = NOT_ON_A_CALL;
+        private boolean retryScheduled;
+    }
+
+    /*
+     * Fake telephony behind the dialer's dial(). Fails the dial at once or rings the lead until the ring time is over
+     */
+    private final class Telephony extends ForwardingPowerDialerDao {
+
+        private Telephony(final PowerDialerDao delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void dial(final String agentId, final String phoneNumber) {
+            final PowerDialerSimulator simulator = PowerDialerSimulator.this;
+            if (simulator.random.nextDouble() < simulator.config.getDialFailureRate()) {
+                simulator.failedDials++;
+                throw new CallToLeadFailedException(String.format("Could not reach lead %s", phoneNumber));
+            }
+            simulator.dials++;
+            simulator.agents.get(agentId).ringingLeads++;
+            simulator.schedule(simulator.now + simulator.config.getRingTime().sample(simulator.random), EventType.RING_ENDED, agentId,
+                phoneNumber);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.power.dialer.simulation;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/*
+ * Synthetic agents, leads and call outcomes of a PowerDialerSimulator run. Durations are simulated milliseconds
+ */
+@Value
+@Builder(toBuilder = true)
+public class SimulationConfig {
+
+    // Agents named agent0 to agent{agents - 1}, all of them log in during the first loginSpreadMillis
+    @Builder.Default
+    private final int agents = 100;
+
+    // AVAILABLE leads seeded before the run
+    @Builder.Default
+    private final int leads = 100_000;
+
+    @Builder.Default
+    private final long durationMillis = 3_600_000;
+
+    @Builder.Default
+    private final long loginSpreadMillis = 60_000;
+
+    // Share of the rung leads which pick up
+    @Builder.Default
+    private final double answerRate = 0.3;
+
+    // Share of the dials which fail at once with a CallToLeadFailedException, e.g. an invalid number
+    @Builder.Default
+    private final double dialFailureRate = 0.02;
+
+    // Time from the dial to the lead picking up or the call failing
+    @NonNull
+    @Builder.Default
+    private final Distribution ringTime = Distribution.uniform(5_000, 25_000);
+
+    @NonNull
+    @Builder.Default
+    private final Distribution talkTime = Distribution.logNormal(180_000, 0.8);
+
+    // An agent left without leads logs in again after this long, like the client retrying a NoLeadsAvailableException
+    @Builder.Default
+    private final long retryMillis = 5_000;
+
+    @Builder.Default
+    private final long seed = 1;
+}
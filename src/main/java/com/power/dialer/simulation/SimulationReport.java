@@ -0,0 +1,76 @@
+package com.power.dialer.simulation;
+
+import lombok.Builder;
+import lombok.Value;
+
+/*
+ * Outcome of a PowerDialerSimulator run. Counts are over the simulated duration, wallClockMillis is how long the run took
+ */
+@Value
+@Builder
+public class SimulationReport {
+
+    private final int agents;
+    private final long simulatedMillis;
+    private final long wallClockMillis;
+    // PowerDialer events handled: logins, call started, failed and ended
+    private final long events;
+    private final long daoCalls;
+    private final long dials;
+    // Dials failing at once with a CallToLeadFailedException
+    private final long failedDials;
+    // Leads which picked up and were put through to their agent
+    private final long connectedCalls;
+    // Leads which picked up while their agent was on another call
+    private final long abandonedCalls;
+    private final long unansweredCalls;
+    // Events ending with a NoLeadsAvailableException
+    private final long noLeadsAvailable;
+    // Time the agents spent on calls
+    private final long talkTimeMillis;
+
+    /**
+     * @return share of the agents' logged in time spent on calls
+     */
+    public double getAgentUtilization() {
+        return this.agents == 0 || this.simulatedMillis == 0 ? 0 : (double) this.talkTimeMillis / this.agents / this.simulatedMillis;
+    }
+
+    /**
+     * @return share of the leads which picked up and found no agent
+     */
+    public double getAbandonRate() {
+        final long answeredCalls = this.connectedCalls + this.abandonedCalls;
+        return answeredCalls == 0 ? 0 : (double) this.abandonedCalls / answeredCalls;
+    }
+
+    /**
+     * @return events handled per second of wall clock time
+     */
+    public double getEventsPerSecond() {
+        return this.events * 1000.0 / Math.max(1, this.wallClockMillis);
+    }
+
+    /**
+     * @return average number of dao calls per event
+     */
+    public double getDaoCallsPerEvent() {
+        return this.events == 0 ? 0 : (double) this.daoCalls / this.events;
+    }
+
+    /**
+     * @return simulated time per wall clock time
+     */
+    public double getSpeedup() {
+        return (double) this.simulatedMillis / Math.max(1, this.wallClockMillis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("agents=%d simulated=%ds wallClock=%dms speedup=%.0fx events=%d events/s=%.0f daoCalls/event=%.2f "
+            + "dials=%d failedDials=%d connected=%d abandoned=%d unanswered=%d noLeadsAvailable=%d utilization=%.1f%% abandonRate=%.2f%%",
+            this.agents, this.simulatedMillis / 1000, this.wallClockMillis, this.getSpeedup(), this.events, this.getEventsPerSecond(),
+            this.getDaoCallsPerEvent(), this.dials, this.failedDials, this.connectedCalls, this.abandonedCalls, this.unansweredCalls,
+            this.noLeadsAvailable, 100 * this.getAgentUtilization(), 100 * this.getAbandonRate());
+    }
+}
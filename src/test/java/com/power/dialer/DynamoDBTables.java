@@ -0,0 +1,63 @@
+package com.power.dialer;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.AgentRecord;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+/*
+ * Agent and lead tables of the DynamoDB daos, and their records, on the embedded DynamoDB of a test
+ */
+public final class DynamoDBTables {
+
+    private static final String DEFAULT_AGENT = "NONE";
+    private static final ProvisionedThroughput PROVISIONED_THROUGHPUT = new ProvisionedThroughput(1L, 1L);
+
+    private DynamoDBTables() {
+    }
+
+    /**
+     * @param dynamoDbMapper mapper of the embedded DynamoDB
+     * @param recordClass AgentRecord or LeadRecord
+     * @return request creating the table of the records, whose indexes project all the attributes
+     */
+    public static CreateTableRequest createTableRequest(final DynamoDBMapper dynamoDbMapper, final Class<?> recordClass) {
+        final CreateTableRequest createTableRequest = dynamoDbMapper.generateCreateTableRequest(recordClass)
+            .withProvisionedThroughput(PROVISIONED_THROUGHPUT);
+        if (createTableRequest.getGlobalSecondaryIndexes() != null) {
+            createTableRequest.getGlobalSecondaryIndexes().forEach(index -> index
+                .withProvisionedThroughput(PROVISIONED_THROUGHPUT)
+                .withProjection(new Projection().withProjectionType(ProjectionType.ALL)));
+        }
+        return createTableRequest;
+    }
+
+    public static void createTables(final AmazonDynamoDB dynamoDb, final DynamoDBMapper dynamoDbMapper) {
+        dynamoDb.createTable(createTableRequest(dynamoDbMapper, AgentRecord.class));
+        dynamoDb.createTable(createTableRequest(dynamoDbMapper, LeadRecord.class));
+    }
+
+    /**
+     * Saves OFF_DUTY agents
+     */
+    public static void createAgents(final DynamoDBMapper dynamoDbMapper, final String... agentIds) {
+        for (final String agentId : agentIds) {
+            dynamoDbMapper.save(AgentRecord.builder().agentId(agentId).agentStatus(AgentStatus.OFF_DUTY.toString()).build());
+        }
+    }
+
+    /**
+     * Saves AVAILABLE leads waiting under the NONE agent
+     */
+    public static void createLeads(final DynamoDBMapper dynamoDbMapper, final String... phoneNumbers) {
+        for (final String phoneNumber : phoneNumbers) {
+            dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(phoneNumber).leadStatus(LeadStatus.AVAILABLE.toString()).build());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.power.dialer;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/*
+ * UTC clock which only moves when a test advances it
+ */
+public final class MutableClock extends Clock {
+
+    private volatile long millis;
+
+    public MutableClock(final long millis) {
+        this.millis = millis;
+    }
+
+    public void advance(final long duration) {
+        this.millis += duration;
+    }
+
+    @Override
+    public long millis() {
+        return this.millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(this.millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+        throw new UnsupportedOperationException();
+    }
+}
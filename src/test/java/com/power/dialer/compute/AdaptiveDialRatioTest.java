@@ -0,0 +1,71 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveDialRatioTest {
+
+    private static final String AGENT = "agent1";
+
+    private AdaptiveDialRatio underTest;
+
+    @Before
+    public void init() {
+        this.underTest = new AdaptiveDialRatio(0.03);
+    }
+
+    @Test
+    public void testGetDialRatio_withoutOutcomes_returnsTwo() {
+        assertEquals(2, this.underTest.getDialRatio(AGENT));
+    }
+
+    @Test
+    public void testGetDialRatio_withLowAnswerRateAndNoAbandons_dialsOneAnsweredCallWorthOfLeads() {
+        // One call out of four picks up and is connected
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 4 == 0) {
+                this.underTest.onCallAnswered(AGENT);
+            } else {
+                this.underTest.onCallFailed(AGENT);
+            }
+        }
+        assertEquals(0.25, this.underTest.getAnswerRate(), 0.05);
+        assertEquals(5, this.underTest.getDialRatio(AGENT));
+    }
+
+    @Test
+    public void testGetDialRatio_withAbandonRateAboveTheCeiling_dialsFewerLeads() {
+        for (int i = 0; i < 10_000; i++) {
+            this.underTest.onCallFailed(AGENT);
+            this.underTest.onCallAnswered(AGENT);
+        }
+        assertEquals(3, this.underTest.getDialRatio(AGENT));
+
+        // One abandoned call out of ten answered ones
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 == 0) {
+                this.underTest.onCallAbandoned(AGENT);
+            } else {
+                this.underTest.onCallAnswered(AGENT);
+            }
+        }
+        assertTrue(this.underTest.getAbandonRate() > 0.03);
+        assertEquals(2, this.underTest.getDialRatio(AGENT));
+    }
+
+    @Test
+    public void testGetDialRatio_withNoAnsweredCalls_keepsTheRatio() {
+        for (int i = 0; i < 1000; i++) {
+            this.underTest.onCallFailed(AGENT);
+        }
+        assertEquals(2, this.underTest.getDialRatio(AGENT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_withInvalidAbandonRate_throwsIllegalArgumentException() {
+        new AdaptiveDialRatio(1.5);
+    }
+}
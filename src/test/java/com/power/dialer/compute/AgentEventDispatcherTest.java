@@ -0,0 +1,129 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.exception.AgentSessionTerminationException;
+
+public class AgentEventDispatcherTest {
+
+    private static final int AGENTS = 16;
+    private static final int EVENTS_PER_AGENT = 200;
+
+    private final Map<String, List<String>> events = new ConcurrentHashMap<>();
+    private AgentEventDispatcher underTest;
+
+    @Before
+    public void init() {
+        this.underTest = new AgentEventDispatcher(new RecordingPowerDialer(), 4);
+    }
+
+    @After
+    public void tearDown() {
+        this.underTest.close();
+    }
+
+    @Test
+    public void testDispatch_eventsOfAnAgentRunInDispatchOrder() {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < EVENTS_PER_AGENT; i++) {
+            for (int agent = 0; agent < AGENTS; agent++) {
+                final String agentId = "agent" + agent;
+                futures.add(i % 2 == 0
+                    ? this.underTest.onCallStarted(agentId, String.valueOf(i))
+                    : this.underTest.onCallEnded(agentId, String.valueOf(i)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals(AGENTS, this.events.size());
+        this.events.values().forEach(agentEvents -> {
+            assertEquals(EVENTS_PER_AGENT, agentEvents.size());
+            for (int i = 0; i < EVENTS_PER_AGENT; i++) {
+                assertEquals((i % 2 == 0 ? "started " : "ended ") + i, agentEvents.get(i));
+            }
+        });
+        assertEquals(0, this.underTest.getQueueDepth());
+        long completed = 0;
+        for (int lane = 0; lane < this.underTest.getLaneCount(); lane++) {
+            completed += this.underTest.getCompletedEvents(lane);
+            assertTrue(this.underTest.getMaxLatencyNanos(lane) >= this.underTest.getAverageLatencyNanos(lane));
+        }
+        assertEquals(AGENTS * EVENTS_PER_AGENT, completed);
+    }
+
+    @Test
+    public void testDispatch_whenEventFails_completesExceptionallyAndLaneKeepsRunning() {
+        try {
+            this.underTest.onAgentLogout("agent1").join();
+            fail("The failed logout completes its future exceptionally");
+        } catch (final CompletionException e) {
+            assertTrue(e.getCause() instanceof AgentSessionTerminationException);
+        }
+        this.underTest.onCallStarted("agent1", "1").join();
+
+        assertEquals(Collections.singletonList("started 1"), this.events.get("agent1"));
+    }
+
+    private class RecordingPowerDialer implements PowerDialer {
+
+        @Override
+        public void onAgentLogin(final String agentId) {
+            this.record(agentId, "login");
+        }
+
+        @Override
+        public void onAgentsLogin(final Collection<String> agentIds) {
+            agentIds.forEach(this::onAgentLogin);
+        }
+
+        @Override
+        public void onAgentLogout(final String agentId) {
+            throw new AgentSessionTerminationException(String.format("Agent %s status ENGAGED. Could not terminate session", agentId));
+        }
+
+        @Override
+        public void onAgentsLogout(final Collection<String> agentIds) {
+            agentIds.forEach(this::onAgentLogout);
+        }
+
+        @Override
+        public void onCallStarted(final String agentId, final String phoneNumber) {
+            this.record(agentId, "started " + phoneNumber);
+        }
+
+        @Override
+        public void onCallFailed(final String agentId, final String phoneNumber) {
+            this.record(agentId, "failed " + phoneNumber);
+        }
+
+        @Override
+        public void onCallEnded(final String agentId, final String phoneNumber) {
+            this.record(agentId, "ended " + phoneNumber);
+        }
+
+        @Override
+        public void onLeadAssigned(final String agentId, final String phoneNumber) {
+            this.record(agentId, "assigned " + phoneNumber);
+        }
+
+        private void record(final String agentId, final String event) {
+            // Not synchronized on purpose, only the dispatcher keeps the events of an agent apart
+            events.computeIfAbsent(agentId, ignored -> new ArrayList<>()).add(event);
+        }
+    }
+}
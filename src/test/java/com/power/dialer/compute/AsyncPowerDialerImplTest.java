@@ -0,0 +1,169 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.power.dialer.DynamoDBTables;
+import com.power.dialer.dao.AsyncPowerDialerDaoImpl;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.dao.PowerDialerDaoImpl;
+import com.power.dialer.exception.AgentSessionTerminationException;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class AsyncPowerDialerImplTest {
+
+    private static final String LEAD_PHONE_NUMBER1 = "1";
+    private static final String LEAD_PHONE_NUMBER2 = "2";
+    private static final String LEAD_PHONE_NUMBER3 = "3";
+    private static final String AGENT1 = "agent1";
+    private static final String AGENT2 = "agent2";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private AsyncPowerDialerImpl underTest;
+    private PowerDialerDao powerDialerDao;
+    private DynamoDBMapper dynamoDbMapper = null;
+    private AmazonDynamoDB dynamoDb = null;
+    private ExecutorService executorService;
+
+    @Before
+    public void init() {
+        this.dynamoDb = DynamoDBEmbedded.create().amazonDynamoDB();
+        this.dynamoDbMapper = new DynamoDBMapper(this.dynamoDb);
+        this.powerDialerDao = new PowerDialerDaoImpl(this.dynamoDb, this.dynamoDbMapper);
+        this.executorService = Executors.newFixedThreadPool(2);
+        this.underTest = new AsyncPowerDialerImpl(new AsyncPowerDialerDaoImpl(new EmbeddedDynamoDBAsync()), 10);
+        DynamoDBTables.createTables(this.dynamoDb, this.dynamoDbMapper);
+        DynamoDBTables.createAgents(this.dynamoDbMapper, AGENT1);
+        DynamoDBTables.createLeads(this.dynamoDbMapper, LEAD_PHONE_NUMBER1, LEAD_PHONE_NUMBER2, LEAD_PHONE_NUMBER3);
+    }
+
+    @After
+    public void tearDown() {
+        this.executorService.shutdownNow();
+        this.dynamoDb.shutdown();
+    }
+
+    @Test
+    public void testOnAgentLogin_success() {
+        this.underTest.onAgentLogin(AGENT1).join();
+
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT1).size());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getNextLead(AGENT1).getCurrentStatus());
+    }
+
+    @Test
+    public void testOnCallFailed_leadGoesBackToThePool_nextLeadIsDialed() {
+        this.underTest.onAgentLogin(AGENT1).join();
+        final String dialedLead = this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .findFirst().get().getPhoneNumber();
+
+        this.underTest.onCallFailed(AGENT1, dialedLead).join();
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT1).size());
+    }
+
+    @Test
+    public void testOnAgentLogout_whenAgentEngagedOnACall_failsWithAgentSessionTerminationException() {
+        this.underTest.onAgentLogin(AGENT1).join();
+        final String dialedLead = this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .findFirst().get().getPhoneNumber();
+        this.underTest.onCallStarted(AGENT1, dialedLead).join();
+
+        try {
+            this.underTest.onAgentLogout(AGENT1).join();
+            fail("An ENGAGED agent can not log out");
+        } catch (final CompletionException e) {
+            assertTrue(e.getCause() instanceof AgentSessionTerminationException);
+        }
+        assertEquals(AgentStatus.ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.ENGAGED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+    }
+
+    @Test
+    public void testOnCallStarted_withLeadMovedToAnotherAgent_leavesTheAgentWaiting() {
+        this.underTest.onAgentLogin(AGENT1).join();
+        final String dialedLead = this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .findFirst().get().getPhoneNumber();
+        // A stale event released the lead and another agent claimed it before its call started
+        assertTrue(this.powerDialerDao.releaseLead(dialedLead, AGENT1));
+        assertTrue(this.powerDialerDao.claimLead(AGENT2, dialedLead));
+
+        this.underTest.onCallStarted(AGENT1, dialedLead).join();
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        assertEquals(AGENT2, this.powerDialerDao.getLead(dialedLead).getAgentId());
+    }
+
+    /*
+     * Embedded DynamoDB only comes with a synchronous client, the calls used by the async dao run it on a thread pool
+     */
+    private class EmbeddedDynamoDBAsync extends AbstractAmazonDynamoDBAsync {
+
+        @Override
+        public Future<GetItemResult> getItemAsync(final GetItemRequest request, final AsyncHandler<GetItemRequest, GetItemResult> asyncHandler) {
+            return this.submit(request, asyncHandler, dynamoDb::getItem);
+        }
+
+        @Override
+        public Future<QueryResult> queryAsync(final QueryRequest request, final AsyncHandler<QueryRequest, QueryResult> asyncHandler) {
+            return this.submit(request, asyncHandler, dynamoDb::query);
+        }
+
+        @Override
+        public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest request,
+                final AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler) {
+            return this.submit(request, asyncHandler, dynamoDb::updateItem);
+        }
+
+        @Override
+        public Future<TransactWriteItemsResult> transactWriteItemsAsync(final TransactWriteItemsRequest request,
+                final AsyncHandler<TransactWriteItemsRequest, TransactWriteItemsResult> asyncHandler) {
+            return this.submit(request, asyncHandler, dynamoDb::transactWriteItems);
+        }
+
+        private <Q extends AmazonWebServiceRequest, R> Future<R> submit(final Q request, final AsyncHandler<Q, R> asyncHandler,
+                final Function<Q, R> call) {
+            return executorService.submit(() -> {
+                try {
+                    final R result = call.apply(request);
+                    asyncHandler.onSuccess(request, result);
+                    return result;
+                } catch (final Exception e) {
+                    asyncHandler.onError(e);
+                    throw e;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.local.shared.access.AmazonDynamoDBLocal;
+import com.power.dialer.DynamoDBTables;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.dao.PowerDialerDao;
+import com.power.dialer.dao.PowerDialerDaoImpl;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadPools;
+import com.power.dialer.model.LeadRecord;
+
+public class CampaignLeadSelectorTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String AGENT2 = "agent2";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private AmazonDynamoDBLocal dynamoDbLocal;
+    private CampaignLeadSelector underTest;
+
+    @After
+    public void tearDown() {
+        if (this.underTest != null) {
+            this.underTest.close();
+        }
+        if (this.dynamoDbLocal != null) {
+            this.dynamoDbLocal.shutdown();
+        }
+    }
+
+    @Test
+    public void testClaimLead_inMemory_claimsFromTheCampaignOfTheAgent() {
+        this.assertClaimsFromTheCampaignOfTheAgent(new InMemoryPowerDialerDao());
+    }
+
+    @Test
+    public void testClaimLead_onDynamoDB_claimsFromTheCampaignOfTheAgent() {
+        this.dynamoDbLocal = DynamoDBEmbedded.create();
+        final AmazonDynamoDB dynamoDb = this.dynamoDbLocal.amazonDynamoDB();
+        final DynamoDBMapper dynamoDbMapper = new DynamoDBMapper(dynamoDb);
+        dynamoDb.createTable(DynamoDBTables.createTableRequest(dynamoDbMapper, LeadRecord.class));
+
+        this.assertClaimsFromTheCampaignOfTheAgent(new PowerDialerDaoImpl(dynamoDb, dynamoDbMapper));
+    }
+
+    private void assertClaimsFromTheCampaignOfTheAgent(final PowerDialerDao powerDialerDao) {
+        for (int i = 0; i < 20; i++) {
+            powerDialerDao.updateLead(lead(String.valueOf(1000 + i), "spring"));
+        }
+        powerDialerDao.updateLead(lead("2000", "summer"));
+        powerDialerDao.updateLead(lead("3000", null));
+        this.underTest = new CampaignLeadSelector(powerDialerDao, 3, 2);
+        this.underTest.bind(AGENT1, "spring");
+
+        // The spring leads are spread over the shards, every one of them is found
+        final List<String> claimed = new ArrayList<>();
+        for (String phoneNumber = this.underTest.claimLead(AGENT1); phoneNumber != null; phoneNumber = this.underTest.claimLead(AGENT1)) {
+            claimed.add(phoneNumber);
+        }
+        Collections.sort(claimed);
+        assertEquals(20, claimed.size());
+        assertEquals("1000", claimed.get(0));
+        assertEquals("1019", claimed.get(19));
+
+        // A released lead goes back to its campaign pool, unassigned
+        assertTrue(powerDialerDao.transitionLeadStatus("1007", EnumSet.of(LeadStatus.QUEUED), LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        assertEquals(DEFAULT_AGENT, powerDialerDao.getLead("1007").getAgentId());
+        assertEquals("spring", powerDialerDao.getLead("1007").getMetadata().get(LeadPools.CAMPAIGN));
+        assertEquals(Arrays.asList("1007"), powerDialerDao.getLeadPhoneNumbersToDial("spring", LeadPools.shard("1007"), 10, null));
+        assertEquals("1007", this.underTest.claimLead(AGENT1));
+        assertEquals(AGENT1, powerDialerDao.getLead("1007").getAgentId());
+
+        // Unbound agents only see the leads without a campaign
+        assertEquals("3000", this.underTest.claimLead(AGENT2));
+        assertNull(this.underTest.claimLead(AGENT2));
+        this.underTest.bind(AGENT2, "summer");
+        assertEquals("2000", this.underTest.claimLead(AGENT2));
+    }
+
+    private static Lead lead(final String phoneNumber, final String campaign) {
+        final Map<String, String> metadata = campaign == null ? null : Collections.singletonMap(LeadPools.CAMPAIGN, campaign);
+        return Lead.builder()
+            .phoneNumber(phoneNumber)
+            .currentStatus(LeadStatus.AVAILABLE)
+            .agentId(DEFAULT_AGENT)
+            .metadata(metadata)
+            .build();
+    }
+}
@@ -1,6 +1,17 @@
 package com.power.dialer.compute;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -9,14 +20,15 @@ import org.junit.Test;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
-import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
-import com.amazonaws.services.dynamodbv2.model.Projection;
-import com.amazonaws.services.dynamodbv2.model.ProjectionType;
-import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.power.dialer.DynamoDBTables;
+import com.power.dialer.dao.CachingPowerDialerDao;
+import com.power.dialer.dao.CountingPowerDialerDao;
+import com.power.dialer.dao.ForwardingPowerDialerDao;
 import com.power.dialer.dao.PowerDialerDao;
 import com.power.dialer.dao.PowerDialerDaoImpl;
 import com.power.dialer.exception.AgentSessionTerminationException;
+import com.power.dialer.exception.CallToLeadFailedException;
 import com.power.dialer.exception.NoLeadsAvailableException;
 import com.power.dialer.model.Agent.AgentStatus;
 import com.power.dialer.model.AgentRecord;
@@ -44,10 +56,11 @@ public class PowerDialerImplTest {
     public void init() {
         this.dynamoDb = DynamoDBEmbedded.create().amazonDynamoDB();
         this.dynamoDbMapper = new DynamoDBMapper(this.dynamoDb);
-        this.powerDialerDao = new PowerDialerDaoImpl(this.dynamoDbMapper);
+        this.powerDialerDao = new PowerDialerDaoImpl(this.dynamoDb, this.dynamoDbMapper);
         this.underTest = new PowerDialerImpl(powerDialerDao);
-        this.createTables();
-        this.createAgentAndLeads();
+        DynamoDBTables.createTables(this.dynamoDb, this.dynamoDbMapper);
+        DynamoDBTables.createAgents(this.dynamoDbMapper, AGENT1, AGENT2, AGENT3);
+        DynamoDBTables.createLeads(this.dynamoDbMapper, LEAD_PHONE_NUMBER1, LEAD_PHONE_NUMBER2, LEAD_PHONE_NUMBER3, LEAD_PHONE_NUMBER4);
     }
 
     @After
@@ -63,18 +76,19 @@ public class PowerDialerImplTest {
     @Test
     public void testOnAgentLogin_success() {
         this.underTest.onAgentLogin(AGENT1);
-        final Lead agent1LeadDialed = this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1);
-        final Lead agent1LeadQueued = this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2);
+        final Lead agent1LeadDialed = this.powerDialerDao.getLead(this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED));
+        final Lead agent1LeadQueued = this.powerDialerDao.getLead(this.leadOf(AGENT1, LeadStatus.QUEUED));
 
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, agent1LeadDialed.getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, agent1LeadQueued.getCurrentStatus());
+        assertEquals(AGENT1, agent1LeadDialed.getAgentId());
+        assertEquals(AGENT1, agent1LeadQueued.getAgentId());
 
         this.underTest.onAgentLogin(AGENT2);
-        final Lead agent2LeadDialed = this.powerDialerDao.getLead(LEAD_PHONE_NUMBER3);
-        final Lead agent2LeadQueued = this.powerDialerDao.getLead(LEAD_PHONE_NUMBER4);
+        final Lead agent2LeadDialed = this.powerDialerDao.getLead(this.leadOf(AGENT2, LeadStatus.WAITING_TO_BE_ENGAGED));
+        final Lead agent2LeadQueued = this.powerDialerDao.getLead(this.leadOf(AGENT2, LeadStatus.QUEUED));
 
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, agent2LeadDialed.getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, agent2LeadQueued.getCurrentStatus());
+        assertEquals(AGENT2, agent2LeadDialed.getAgentId());
+        assertEquals(AGENT2, agent2LeadQueued.getAgentId());
+        assertEquals(null, this.powerDialerDao.getLeadPhoneNumberToDial());
     }
 
     @Test(expected = NoLeadsAvailableException.class)
@@ -85,29 +99,156 @@ public class PowerDialerImplTest {
         this.underTest.onAgentLogin(AGENT3);        
     }
 
+    @Test
+    public void testOnAgentLogin_withLeadClaimedByAnotherAgent_skipsClaimedLead() {
+        final String claimedLead = this.powerDialerDao.claimLead(AGENT3);
+
+        this.underTest.onAgentLogin(AGENT1);
+        assertFalse(claimedLead.equals(this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED)));
+        assertFalse(claimedLead.equals(this.leadOf(AGENT1, LeadStatus.QUEUED)));
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(claimedLead).getCurrentStatus());
+        assertEquals(AGENT3, this.powerDialerDao.getLead(claimedLead).getAgentId());
+    }
+
+    @Test
+    public void testOnAgentLogin_withLeadPool_assignsDistinctLeads() {
+        try (final LeadPool leadPool = new LeadPool(this.powerDialerDao, 1, 3, 2)) {
+            final PowerDialerImpl pooledDialer = new PowerDialerImpl(this.powerDialerDao, leadPool);
+            pooledDialer.onAgentLogin(AGENT1);
+            pooledDialer.onAgentLogin(AGENT2);
+        }
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT1).size());
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT2).size());
+        assertEquals(null, this.powerDialerDao.getLeadPhoneNumberToDial());
+    }
+
+    @Test
+    public void testOnAgentsLogin_success() {
+        this.underTest.onAgentsLogin(Arrays.asList(AGENT1, AGENT2));
+
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT2).getAgentStatus());
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT1).size());
+        assertEquals(2, this.powerDialerDao.getAllLeads(AGENT2).size());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getNextLead(AGENT1).getCurrentStatus());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getNextLead(AGENT2).getCurrentStatus());
+    }
+
+    @Test(expected = NoLeadsAvailableException.class)
+    public void testOnAgentsLogin_withNoLeadsAvailable_throwsNoLeadsAvailableException() {
+        this.underTest.onAgentsLogin(Arrays.asList(AGENT1, AGENT2));
+        // All the available leads have already been assigned to the above agents
+        this.underTest.onAgentsLogin(Arrays.asList(AGENT3));
+    }
+
+    @Test
+    public void testOnAgentsLogin_withMoreAgentsThanClaimCandidates_fillsEveryQueue() {
+        final List<String> agentIds = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            agentIds.add("agent" + i);
+            this.dynamoDbMapper.save(AgentRecord.builder().agentId("agent" + i).agentStatus(AgentStatus.OFF_DUTY.toString()).build());
+        }
+        for (int i = 5; i <= 16; i++) {
+            this.dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(String.valueOf(i)).leadStatus(LeadStatus.AVAILABLE.toString()).build());
+        }
+
+        this.underTest.onAgentsLogin(agentIds);
+        for (final String agentId : agentIds) {
+            assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(agentId).getAgentStatus());
+            assertEquals(Arrays.asList(LeadStatus.QUEUED, LeadStatus.WAITING_TO_BE_ENGAGED), this.powerDialerDao.getAllLeads(agentId).stream()
+                .map(Lead::getCurrentStatus)
+                .sorted()
+                .collect(Collectors.toList()));
+        }
+        assertEquals(null, this.powerDialerDao.getLeadPhoneNumberToDial());
+    }
+
+    @Test
+    public void testOnAgentsLogin_withUnknownAgent_throwsIllegalArgumentException() {
+        try {
+            this.underTest.onAgentsLogin(Arrays.asList(AGENT1, "agent4"));
+            fail("An unknown agent can not log in");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("Unknown agents [agent4]", e.getMessage());
+        }
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(Collections.emptyList(), this.powerDialerDao.getAllLeads(AGENT1));
+    }
+
+    @Test
+    public void testOnAgentsLogin_withFailedFirstCall_releasesTheLeadOnceTheQueueIsFilled() {
+        final AtomicReference<String> failedLead = new AtomicReference<>();
+        final PowerDialerDao failingDao = new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public void dial(final String agentId, final String phoneNumber) {
+                if (failedLead.compareAndSet(null, phoneNumber)) {
+                    throw new CallToLeadFailedException(String.format("Could not reach lead %s", phoneNumber));
+                }
+                super.dial(agentId, phoneNumber);
+            }
+        };
+        new PowerDialerImpl(failingDao).onAgentsLogin(Arrays.asList(AGENT1));
+
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(failedLead.get()).getCurrentStatus());
+        assertEquals(DEFAULT_AGENT, this.powerDialerDao.getLead(failedLead.get()).getAgentId());
+        // The failed lead was not claimed again when the queue was filled back up
+        final List<Lead> queue = this.powerDialerDao.getAllLeads(AGENT1);
+        assertEquals(Arrays.asList(LeadStatus.QUEUED, LeadStatus.WAITING_TO_BE_ENGAGED), queue.stream()
+            .map(Lead::getCurrentStatus)
+            .sorted()
+            .collect(Collectors.toList()));
+        assertFalse(queue.stream().anyMatch(lead -> failedLead.get().equals(lead.getPhoneNumber())));
+    }
+
     @Test
     public void testOnAgentLogout_success() {
         // Assigning 2 leads to agent1
         this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
 
         this.underTest.onAgentLogout(AGENT1);
-        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+    }
+
+    @Test
+    public void testOnAgentLogout_withStaleQueue_leavesTheCompletedLead() {
+        this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        final List<Lead> staleQueue = this.powerDialerDao.getAllLeads(AGENT1);
+        this.underTest.onCallEnded(AGENT1, dialedLead);
+        // The agentId-leadStatus index still lists the completed lead in the agent's queue
+        final PowerDialerDao staleDao = new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public List<Lead> getAllLeads(final String agentId) {
+                return staleQueue;
+            }
+        };
+
+        new PowerDialerImpl(staleDao).onAgentLogout(AGENT1);
         assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.COMPLETED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        for (final String phoneNumber : Arrays.asList(LEAD_PHONE_NUMBER1, LEAD_PHONE_NUMBER2, LEAD_PHONE_NUMBER3, LEAD_PHONE_NUMBER4)) {
+            if (!dialedLead.equals(phoneNumber)) {
+                assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(phoneNumber).getCurrentStatus());
+            }
+        }
     }
 
     @Test(expected = AgentSessionTerminationException.class)
     public void testOnAgentLogout_whenAgentEngagedOnACall_throwsAgentSessionTerminationException() {
         // Assigning 2 leads to agent1
         this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
 
-        this.underTest.onCallStarted(AGENT1, LEAD_PHONE_NUMBER1);
+        this.underTest.onCallStarted(AGENT1, dialedLead);
         try {
             this.underTest.onAgentLogout(AGENT1);
         } finally {
@@ -118,67 +259,254 @@ public class PowerDialerImplTest {
     @Test
     public void testOnCallStarted_leadAndAgentStatusUpdatesToEngaged() {
         this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
 
-        this.underTest.onCallStarted(AGENT1, LEAD_PHONE_NUMBER1);
+        this.underTest.onCallStarted(AGENT1, dialedLead);
         assertEquals(AgentStatus.ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
+        assertEquals(LeadStatus.ENGAGED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
     }
 
     @Test
     public void testOnCallFailed_leadStatusUpdatesToAvailable_agentStatusUpdatesToWaitingToBeEnagedWithNextLead() {
         this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
 
-        this.underTest.onCallFailed(AGENT1, LEAD_PHONE_NUMBER1);
+        this.underTest.onCallFailed(AGENT1, dialedLead);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
-        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+    }
+
+    @Test
+    public void testOnCallFailed_whenLeadClaimedByAnotherAgent_leavesTheLeadWithThatAgent() {
+        this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        // The lease of the dialed lead expired and another agent claimed it before the failure was reported
+        assertTrue(this.powerDialerDao.transitionLeadStatus(dialedLead, EnumSet.of(LeadStatus.WAITING_TO_BE_ENGAGED),
+            LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        assertTrue(this.powerDialerDao.claimLead(AGENT2, dialedLead));
+
+        this.underTest.onCallFailed(AGENT1, dialedLead);
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        assertEquals(AGENT2, this.powerDialerDao.getLead(dialedLead).getAgentId());
     }
 
     @Test
     public void testOnCallEnded_leadStatusUpdatesToWaitingToBeEngagedWithNextLead_currentLeadMovesToCompleted() {
         this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+
+        this.underTest.onCallEnded(AGENT1, dialedLead);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
-        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(LeadStatus.COMPLETED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+    }
+
+    @Test
+    public void testOnCallEnded_withEventScopedCache_readsAndWritesEachRecordOnce() {
+        final CachingPowerDialerDao cachingPowerDialerDao = new CachingPowerDialerDao(this.powerDialerDao);
+        final PowerDialer cachedDialer = new EventScopedPowerDialer(new PowerDialerImpl(cachingPowerDialerDao), cachingPowerDialerDao);
+        cachedDialer.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
 
-        this.underTest.onCallEnded(AGENT1, LEAD_PHONE_NUMBER1);
+        cachedDialer.onCallEnded(AGENT1, dialedLead);
         assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
-        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
-        assertEquals(LeadStatus.COMPLETED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(LeadStatus.COMPLETED, this.powerDialerDao.getLead(dialedLead).getCurrentStatus());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getNextLead(AGENT1).getCurrentStatus());
+        // agent's queue query, agent and completed lead transition batch, dialed lead transition and claim
+        assertEquals(4, cachingPowerDialerDao.getLastEventRoundTrips());
+    }
+
+    @Test
+    public void testOnAgentsLogout_releasesTheQueuesOfTheAgents() {
+        this.underTest.onAgentsLogin(Arrays.asList(AGENT1, AGENT2));
+
+        this.underTest.onAgentsLogout(Arrays.asList(AGENT1, AGENT2, AGENT3));
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT2).getAgentStatus());
+        assertEquals(Collections.emptyList(), this.powerDialerDao.getAllLeads(AGENT1));
+        assertEquals(Collections.emptyList(), this.powerDialerDao.getAllLeads(AGENT2));
+        for (final String phoneNumber : Arrays.asList(LEAD_PHONE_NUMBER1, LEAD_PHONE_NUMBER2, LEAD_PHONE_NUMBER3, LEAD_PHONE_NUMBER4)) {
+            assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(phoneNumber).getCurrentStatus());
+            assertEquals(DEFAULT_AGENT, this.powerDialerDao.getLead(phoneNumber).getAgentId());
+        }
     }
 
-    private void createAgentAndLeads() {
-        this.dynamoDbMapper.save(AgentRecord.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY.toString()).build());
-        this.dynamoDbMapper.save(AgentRecord.builder().agentId(AGENT2).agentStatus(AgentStatus.OFF_DUTY.toString()).build());
-        this.dynamoDbMapper.save(AgentRecord.builder().agentId(AGENT3).agentStatus(AgentStatus.OFF_DUTY.toString()).build());
+    @Test
+    public void testOnAgentsLogout_withEngagedAgent_logsOutTheOthers() {
+        this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        this.underTest.onAgentLogin(AGENT2);
+        this.underTest.onCallStarted(AGENT1, dialedLead);
 
-        this.dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(LEAD_PHONE_NUMBER1).leadStatus(LeadStatus.AVAILABLE.toString()).build());
-        this.dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(LEAD_PHONE_NUMBER2).leadStatus(LeadStatus.AVAILABLE.toString()).build());
-        this.dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(LEAD_PHONE_NUMBER3).leadStatus(LeadStatus.AVAILABLE.toString()).build());
-        this.dynamoDbMapper.save(LeadRecord.builder().agentId(DEFAULT_AGENT).phoneNumber(LEAD_PHONE_NUMBER4).leadStatus(LeadStatus.AVAILABLE.toString()).build());
+        try {
+            this.underTest.onAgentsLogout(Arrays.asList(AGENT1, AGENT2));
+            fail("An ENGAGED agent can not log out");
+        } catch (final AgentSessionTerminationException e) {
+            assertEquals("Agents [agent1] status ENGAGED. Could not terminate sessions", e.getMessage());
+        }
+        assertEquals(AgentStatus.ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT2).getAgentStatus());
+        assertEquals(Collections.emptyList(), this.powerDialerDao.getAllLeads(AGENT2));
     }
 
-    private void createTables() {
-        final ProvisionedThroughput provisionedThroughput = new ProvisionedThroughput(1L, 1L);
+    @Test
+    public void testOnCallEnded_whenPipelined_dialsBeforeRefillingTheQueue() {
+        final List<Runnable> refills = new ArrayList<>();
+        final PowerDialerImpl dialer = new PowerDialerImpl(this.powerDialerDao, this.powerDialerDao::claimLead,
+            refills::add, new FixedDialRatio(2), true);
+        dialer.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        dialer.onCallStarted(AGENT1, dialedLead);
+
+        dialer.onCallEnded(AGENT1, dialedLead);
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(Collections.singletonList(queuedLead), this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .map(Lead::getPhoneNumber)
+            .collect(Collectors.toList()));
+        assertEquals(1, refills.size());
 
-        final CreateTableRequest createAgentTableRequest =
-            this.dynamoDbMapper.generateCreateTableRequest(AgentRecord.class);
-        final CreateTableRequest createLeadTableRequest =
-            this.dynamoDbMapper.generateCreateTableRequest(LeadRecord.class);
+        refills.get(0).run();
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getNextLead(AGENT1).getCurrentStatus());
+        assertEquals(AGENT1, this.powerDialerDao.getNextLead(AGENT1).getAgentId());
+    }
+
+    @Test
+    public void testOnCallEnded_whenPipelined_dialsWithoutReadingTheQueue() {
+        final CountingPowerDialerDao countingPowerDialerDao = new CountingPowerDialerDao(this.powerDialerDao);
+        final List<Runnable> refills = new ArrayList<>();
+        final PowerDialerImpl dialer = new PowerDialerImpl(countingPowerDialerDao, countingPowerDialerDao::claimLead,
+            refills::add, new FixedDialRatio(2), true);
+        dialer.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        dialer.onCallStarted(AGENT1, dialedLead);
 
-        createAgentTableRequest.setProvisionedThroughput(provisionedThroughput);
-        createLeadTableRequest.setProvisionedThroughput(provisionedThroughput);
-        createLeadTableRequest.getGlobalSecondaryIndexes().forEach(index -> index.setProvisionedThroughput(provisionedThroughput));
-        createLeadTableRequest.getGlobalSecondaryIndexes().forEach(index -> index.setProjection(new Projection().withProjectionType(
-            ProjectionType.ALL)));
+        long calls = countingPowerDialerDao.getCalls();
+        dialer.onCallEnded(AGENT1, dialedLead);
+        // The dial and the write completing the ended lead, dialing the queued one and making the agent wait
+        assertEquals(2, countingPowerDialerDao.getCalls() - calls);
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+
+        refills.get(0).run();
+        final String refilledLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+        dialer.onCallStarted(AGENT1, queuedLead);
+        calls = countingPowerDialerDao.getCalls();
+        dialer.onCallEnded(AGENT1, queuedLead);
+        assertEquals(2, countingPowerDialerDao.getCalls() - calls);
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.COMPLETED, this.powerDialerDao.getLead(queuedLead).getCurrentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(refilledLead).getCurrentStatus());
+    }
+
+    @Test
+    public void testOnAgentLogin_withDialRatio3_dialsTwoLeadsAndQueuesOne() {
+        final PowerDialerImpl dialer = new PowerDialerImpl(this.powerDialerDao, this.powerDialerDao::claimLead,
+            Runnable::run, new FixedDialRatio(3));
+        dialer.onAgentLogin(AGENT1);
+
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(Arrays.asList(LeadStatus.QUEUED, LeadStatus.WAITING_TO_BE_ENGAGED, LeadStatus.WAITING_TO_BE_ENGAGED),
+            this.powerDialerDao.getAllLeads(AGENT1).stream()
+                .map(Lead::getCurrentStatus)
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testOnCallStarted_whenAgentAlreadyEngaged_abandonsTheLead() {
+        final AdaptiveDialRatio dialRatio = new AdaptiveDialRatio(0.03);
+        final PowerDialerImpl dialer = new PowerDialerImpl(this.powerDialerDao, this.powerDialerDao::claimLead,
+            Runnable::run, new FixedDialRatio(3) {
+                @Override
+                public void onCallAbandoned(final String agentId) {
+                    dialRatio.onCallAbandoned(agentId);
+                }
+            });
+        dialer.onAgentLogin(AGENT1);
+        final List<String> dialedLeads = this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .map(Lead::getPhoneNumber)
+            .collect(Collectors.toList());
+        final String answeredLead = dialedLeads.get(0);
+        final String abandonedLead = dialedLeads.get(1);
+        dialer.onCallStarted(AGENT1, answeredLead);
+
+        dialer.onCallStarted(AGENT1, abandonedLead);
+        assertEquals(AgentStatus.ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.ENGAGED, this.powerDialerDao.getLead(answeredLead).getCurrentStatus());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead(abandonedLead).getCurrentStatus());
+        assertEquals(DEFAULT_AGENT, this.powerDialerDao.getLead(abandonedLead).getAgentId());
+        assertEquals(0.02, dialRatio.getAbandonRate(), 1e-9);
+    }
+
+    @Test
+    public void testOnCallStarted_whenAbandonedLeadMovedToAnotherAgent_leavesItAndCountsNoAbandon() {
+        final AdaptiveDialRatio dialRatio = new AdaptiveDialRatio(0.03);
+        final PowerDialerImpl dialer = new PowerDialerImpl(this.powerDialerDao, this.powerDialerDao::claimLead,
+            Runnable::run, new FixedDialRatio(3) {
+                @Override
+                public void onCallAbandoned(final String agentId) {
+                    dialRatio.onCallAbandoned(agentId);
+                }
+            });
+        dialer.onAgentLogin(AGENT1);
+        final List<String> dialedLeads = this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .map(Lead::getPhoneNumber)
+            .collect(Collectors.toList());
+        final String answeredLead = dialedLeads.get(0);
+        final String abandonedLead = dialedLeads.get(1);
+        dialer.onCallStarted(AGENT1, answeredLead);
+        // A stale event released the lead and another agent dialed it before its call started
+        assertTrue(this.powerDialerDao.releaseLead(abandonedLead, AGENT1));
+        assertTrue(this.powerDialerDao.claimLead(AGENT2, abandonedLead));
+        assertTrue(this.powerDialerDao.transitionLeadStatus(abandonedLead, EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT2));
+
+        dialer.onCallStarted(AGENT1, abandonedLead);
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(abandonedLead).getCurrentStatus());
+        assertEquals(AGENT2, this.powerDialerDao.getLead(abandonedLead).getAgentId());
+        assertEquals(0.0, dialRatio.getAbandonRate(), 1e-9);
+    }
+
+    @Test
+    public void testGetNextLead_withCompletedLeadHistory_returnsOnlyTheAgentsQueue() {
+        for (int i = 0; i < 50; i++) {
+            this.dynamoDbMapper.save(LeadRecord.builder().agentId(AGENT1).phoneNumber("100" + i).leadStatus(LeadStatus.COMPLETED.toString())
+                .metadata(Collections.singletonMap("timezone", "PST")).build());
+        }
+        this.underTest.onAgentLogin(AGENT1);
+        final String dialedLead = this.leadOf(AGENT1, LeadStatus.WAITING_TO_BE_ENGAGED);
+        final String queuedLead = this.leadOf(AGENT1, LeadStatus.QUEUED);
+
+        final Lead nextLead = this.powerDialerDao.getNextLead(AGENT1);
+        assertEquals(queuedLead, nextLead.getPhoneNumber());
+        assertEquals(LeadStatus.QUEUED, nextLead.getCurrentStatus());
+        assertEquals(Arrays.asList(queuedLead, dialedLead), this.powerDialerDao.getAllLeads(AGENT1).stream()
+            .map(Lead::getPhoneNumber).collect(Collectors.toList()));
+        assertEquals(null, this.powerDialerDao.getNextLead(AGENT2));
+    }
 
-        this.dynamoDb.createTable(createAgentTableRequest);
-        this.dynamoDb.createTable(createLeadTableRequest);
+    private String leadOf(final String agentId, final LeadStatus leadStatus) {
+        // The claims take the AVAILABLE leads in index order, which is not the order of their phone numbers
+        final List<String> phoneNumbers = this.powerDialerDao.getAllLeads(agentId).stream()
+            .filter(lead -> leadStatus.equals(lead.getCurrentStatus()))
+            .map(Lead::getPhoneNumber)
+            .collect(Collectors.toList());
+        assertEquals(1, phoneNumbers.size());
+        return phoneNumbers.get(0);
     }
 }
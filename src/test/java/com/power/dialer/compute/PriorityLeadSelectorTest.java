@@ -0,0 +1,122 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.MutableClock;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class PriorityLeadSelectorTest {
+
+    private static final String AGENT = "agent1";
+    // Noon UTC, 4am or 5am in Los Angeles
+    private static final long NOON_UTC = Instant.parse("2020-01-15T12:00:00Z").toEpochMilli();
+
+    private InMemoryPowerDialerDao powerDialerDao;
+    private MutableClock clock;
+    private PriorityLeadSelector underTest;
+
+    @Before
+    public void init() {
+        this.powerDialerDao = new InMemoryPowerDialerDao();
+        this.clock = new MutableClock(NOON_UTC);
+        this.underTest = new PriorityLeadSelector(this.powerDialerDao, LeadSelectionPolicy.builder().build(), this.clock, 2);
+    }
+
+    @After
+    public void close() {
+        this.underTest.close();
+    }
+
+    @Test
+    public void testClaimLead_claimsLeadsByPriorityThenFewestAttempts() {
+        this.addLead("1", metadata(PriorityLeadSelector.PRIORITY, "1"));
+        this.addLead("2", metadata(PriorityLeadSelector.PRIORITY, "5", PriorityLeadSelector.ATTEMPTS, "2"));
+        this.addLead("3", metadata(PriorityLeadSelector.PRIORITY, "5"));
+        this.addLead("4", null);
+        this.addLead("5", metadata(PriorityLeadSelector.PRIORITY, "not a number"));
+
+        assertEquals("3", this.underTest.claimLead(AGENT));
+        assertEquals("2", this.underTest.claimLead(AGENT));
+        assertEquals("1", this.underTest.claimLead(AGENT));
+        assertEquals("4", this.underTest.claimLead(AGENT));
+        assertEquals("5", this.underTest.claimLead(AGENT));
+        assertNull(this.underTest.claimLead(AGENT));
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead("3").getCurrentStatus());
+    }
+
+    @Test
+    public void testClaimLead_skipsLeadsOutsideTheirCallingWindow() {
+        this.addLead("1", metadata(PriorityLeadSelector.PRIORITY, "9", PriorityLeadSelector.TIMEZONE, "America/Los_Angeles"));
+        this.addLead("2", metadata(PriorityLeadSelector.PRIORITY, "1", PriorityLeadSelector.TIMEZONE, "Europe/Paris"));
+        this.addLead("3", metadata(PriorityLeadSelector.PRIORITY, "5", PriorityLeadSelector.TIMEZONE, "Not/A_Zone"));
+
+        assertEquals("3", this.underTest.claimLead(AGENT));
+        assertEquals("2", this.underTest.claimLead(AGENT));
+        assertNull(this.underTest.claimLead(AGENT));
+
+        // 10am in Los Angeles, 7pm in Paris
+        this.clock.advance(TimeUnit.HOURS.toMillis(6));
+        assertEquals("1", this.underTest.claimLead(AGENT));
+    }
+
+    @Test
+    public void testClaimLead_waitsForTheRetryDelayOfAttemptedLeads() {
+        this.addLead("1", metadata(PriorityLeadSelector.LAST_ATTEMPT, Long.toString(NOON_UTC - TimeUnit.MINUTES.toMillis(10))));
+        this.addLead("2", null);
+
+        assertEquals("2", this.underTest.claimLead(AGENT));
+        assertNull(this.underTest.claimLead(AGENT));
+
+        // The call to the claimed lead failed and it went back to the pool, a refresh indexes it again
+        this.powerDialerDao.transitionLeadStatus("2", EnumSet.of(LeadStatus.QUEUED), LeadStatus.AVAILABLE, "NONE");
+        this.clock.advance(TimeUnit.MINUTES.toMillis(50));
+        this.underTest.refresh();
+        assertEquals(2, this.underTest.size());
+        assertEquals("1", this.underTest.claimLead(AGENT));
+        assertNull(this.underTest.claimLead(AGENT));
+
+        this.clock.advance(TimeUnit.MINUTES.toMillis(10));
+        assertEquals("2", this.underTest.claimLead(AGENT));
+    }
+
+    @Test
+    public void testClaimLead_withLeadClaimedElsewhere_dropsIt() {
+        this.addLead("1", metadata(PriorityLeadSelector.PRIORITY, "2"));
+        this.addLead("2", metadata(PriorityLeadSelector.PRIORITY, "1"));
+        this.underTest.refresh();
+
+        this.powerDialerDao.claimLead("agent2", "1");
+        assertEquals("2", this.underTest.claimLead(AGENT));
+        assertEquals(0, this.underTest.size());
+    }
+
+    private void addLead(final String phoneNumber, final Map<String, String> metadata) {
+        this.powerDialerDao.updateLead(Lead.builder()
+            .phoneNumber(phoneNumber)
+            .currentStatus(LeadStatus.AVAILABLE)
+            .agentId("NONE")
+            .metadata(metadata)
+            .build());
+    }
+
+    private static Map<String, String> metadata(final String... keysAndValues) {
+        final Map<String, String> metadata = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            metadata.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,161 @@
+package com.power.dialer.compute;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.dao.LeadChangeFeedPoller;
+import com.power.dialer.dao.NotifyingPowerDialerDao;
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadPools;
+
+public class WaitingPowerDialerTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String AGENT2 = "agent2";
+    private static final String DEFAULT_AGENT = "NONE";
+    private static final String CAMPAIGN = "spring";
+
+    private InMemoryPowerDialerDao inMemoryPowerDialerDao;
+    private NotifyingPowerDialerDao powerDialerDao;
+    private WaitingPowerDialer underTest;
+
+    @Before
+    public void init() {
+        this.inMemoryPowerDialerDao = new InMemoryPowerDialerDao();
+        this.powerDialerDao = new NotifyingPowerDialerDao(this.inMemoryPowerDialerDao);
+        // Hand overs run on the calling thread, so they are done when the write making the lead AVAILABLE returns
+        this.underTest = new WaitingPowerDialer(new PowerDialerImpl(this.powerDialerDao), this.powerDialerDao,
+            this.powerDialerDao::claimLead, Runnable::run);
+        this.powerDialerDao.subscribe(this.underTest);
+        this.powerDialerDao.updateAgents(Arrays.asList(
+            Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY).build(),
+            Agent.builder().agentId(AGENT2).agentStatus(AgentStatus.OFF_DUTY).build()));
+    }
+
+    @Test
+    public void testOnLeadAvailable_handsTheLeadToTheLongestWaitingAgent() {
+        this.loginWithoutLeads(AGENT1);
+        this.loginWithoutLeads(AGENT2);
+        assertEquals(2, this.underTest.waitingAgents());
+
+        this.powerDialerDao.updateLead(availableLead("1"));
+        assertEquals(1, this.underTest.waitingAgents());
+        assertEquals(AGENT1, this.powerDialerDao.getLead("1").getAgentId());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead("1").getCurrentStatus());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+
+        // The lead picks up and its call ends, agent1 waits again behind agent2
+        this.underTest.onCallStarted(AGENT1, "1");
+        assertEquals(AgentStatus.ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        try {
+            this.underTest.onCallEnded(AGENT1, "1");
+        } catch (final NoLeadsAvailableException e) {
+            // Expected, agent1 waits
+        }
+        this.powerDialerDao.updateLead(availableLead("2"));
+        assertEquals(AGENT2, this.powerDialerDao.getLead("2").getAgentId());
+        assertEquals(1, this.underTest.waitingAgents());
+    }
+
+    @Test
+    public void testOnLeadAvailable_handsTheLeadToAnAgentOfItsCampaign() {
+        try (final CampaignLeadSelector leadSelector = new CampaignLeadSelector(this.powerDialerDao)) {
+            leadSelector.bind(AGENT2, CAMPAIGN);
+            final WaitingPowerDialer campaignDialer = new WaitingPowerDialer(new PowerDialerImpl(this.powerDialerDao, leadSelector),
+                this.powerDialerDao, leadSelector, Runnable::run);
+            this.powerDialerDao.subscribe(campaignDialer);
+            this.loginWithoutLeads(campaignDialer, AGENT1);
+            this.loginWithoutLeads(campaignDialer, AGENT2);
+
+            // agent1 waits the longest but is bound to no campaign
+            this.powerDialerDao.updateLead(availableLead("1").toBuilder().metadata(Collections.singletonMap(LeadPools.CAMPAIGN, CAMPAIGN)).build());
+            assertEquals(AGENT2, this.powerDialerDao.getLead("1").getAgentId());
+            assertEquals(AgentStatus.AVAILABLE, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+            assertEquals(1, campaignDialer.waitingAgents());
+
+            this.powerDialerDao.updateLead(availableLead("2"));
+            assertEquals(AGENT1, this.powerDialerDao.getLead("2").getAgentId());
+            assertEquals(0, campaignDialer.waitingAgents());
+        }
+    }
+
+    @Test
+    public void testOnLeadAvailable_withDispatcher_assignsTheLeadOnTheAgentsLane() {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+        final WaitingPowerDialer waitingDialer = new WaitingPowerDialer(new PowerDialerImpl(this.powerDialerDao) {
+            @Override
+            public void onLeadAssigned(final String agentId, final String phoneNumber) {
+                threads.add(Thread.currentThread().getName());
+                super.onLeadAssigned(agentId, phoneNumber);
+            }
+        }, this.powerDialerDao, this.powerDialerDao::claimLead, Runnable::run);
+        this.powerDialerDao.subscribe(waitingDialer);
+        final AgentEventDispatcher dispatcher = new AgentEventDispatcher(waitingDialer, 2);
+        waitingDialer.dispatchHandOversTo(dispatcher);
+        this.loginWithoutLeads(waitingDialer, AGENT1);
+
+        this.powerDialerDao.updateLead(availableLead("1"));
+        // Closing the dispatcher waits for the hand over on the lane
+        dispatcher.close();
+        assertEquals(Collections.singletonList("agent-event-lane-" + dispatcher.getLane(AGENT1)), threads);
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead("1").getCurrentStatus());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+    }
+
+    @Test
+    public void testOnAgentLogout_endsTheWait() {
+        this.loginWithoutLeads(AGENT1);
+        this.underTest.onAgentLogout(AGENT1);
+        assertEquals(0, this.underTest.waitingAgents());
+
+        this.powerDialerDao.updateLead(availableLead("1"));
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead("1").getCurrentStatus());
+        assertEquals(AgentStatus.OFF_DUTY, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+    }
+
+    @Test
+    public void testOnLeadAvailable_fromChangeFeed_handsTheLeadOver() {
+        this.loginWithoutLeads(AGENT1);
+        // Another node released the lead, this node only hears of it through the feed
+        this.inMemoryPowerDialerDao.updateLead(availableLead("1"));
+        assertEquals(1, this.underTest.waitingAgents());
+
+        try (LeadChangeFeedPoller poller = new LeadChangeFeedPoller(
+                () -> Collections.singletonList(this.inMemoryPowerDialerDao.getLead("1")), this.underTest, Long.MAX_VALUE)) {
+            poller.poll();
+        }
+        assertEquals(0, this.underTest.waitingAgents());
+        assertEquals(AGENT1, this.powerDialerDao.getLead("1").getAgentId());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead("1").getCurrentStatus());
+    }
+
+    private void loginWithoutLeads(final String agentId) {
+        this.loginWithoutLeads(this.underTest, agentId);
+    }
+
+    private void loginWithoutLeads(final PowerDialer powerDialer, final String agentId) {
+        try {
+            powerDialer.onAgentLogin(agentId);
+        } catch (final NoLeadsAvailableException e) {
+            assertEquals(AgentStatus.AVAILABLE, this.powerDialerDao.getAgent(agentId).getAgentStatus());
+            return;
+        }
+        throw new AssertionError(String.format("Agent %s found leads", agentId));
+    }
+
+    private static Lead availableLead(final String phoneNumber) {
+        return Lead.builder().phoneNumber(phoneNumber).currentStatus(LeadStatus.AVAILABLE).agentId(DEFAULT_AGENT).build();
+    }
+}
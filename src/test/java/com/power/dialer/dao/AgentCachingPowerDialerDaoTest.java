@@ -0,0 +1,99 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+
+public class AgentCachingPowerDialerDaoTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String AGENT2 = "agent2";
+    private static final String AGENT3 = "agent3";
+
+    private InMemoryPowerDialerDao powerDialerDao;
+    private AtomicInteger agentReads;
+    private AgentCachingPowerDialerDao underTest;
+
+    @Before
+    public void init() {
+        this.powerDialerDao = new InMemoryPowerDialerDao();
+        this.agentReads = new AtomicInteger();
+        final PowerDialerDao readCounting = new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public Agent getAgent(final String agentId) {
+                agentReads.incrementAndGet();
+                return super.getAgent(agentId);
+            }
+        };
+        this.underTest = new AgentCachingPowerDialerDao(readCounting, 2);
+        for (final String agentId : Arrays.asList(AGENT1, AGENT2, AGENT3)) {
+            this.powerDialerDao.updateAgent(agent(agentId, AgentStatus.OFF_DUTY));
+        }
+    }
+
+    @Test
+    public void testGetAgent_afterAWrite_isServedFromTheCache() {
+        assertTrue(this.underTest.transitionAgentStatus(AGENT1, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.AVAILABLE));
+
+        assertEquals(AgentStatus.AVAILABLE, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(AgentStatus.AVAILABLE, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(0, this.agentReads.get());
+        assertEquals(2, this.underTest.getHits());
+    }
+
+    @Test
+    public void testTransitionAgentStatus_rejected_readsTheAgentAgain() {
+        assertEquals(AgentStatus.OFF_DUTY, this.underTest.getAgent(AGENT1).getAgentStatus());
+        // Another writer logs the agent in behind the cache's back
+        this.powerDialerDao.updateAgent(agent(AGENT1, AgentStatus.ENGAGED));
+
+        assertFalse(this.underTest.transitionAgentStatus(AGENT1, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.AVAILABLE));
+        assertEquals(AgentStatus.ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(2, this.agentReads.get());
+    }
+
+    @Test
+    public void testTransitionBatch_rejected_readsItsAgentsAgain() {
+        this.underTest.getAgents(Arrays.asList(AGENT1, AGENT2));
+        this.powerDialerDao.updateAgent(agent(AGENT2, AgentStatus.ENGAGED));
+
+        assertFalse(this.underTest.transitionBatch(TransitionBatch.builder()
+            .agent(AGENT1, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.AVAILABLE)
+            .agent(AGENT2, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.AVAILABLE)
+            .build()));
+        assertEquals(AgentStatus.OFF_DUTY, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(AgentStatus.ENGAGED, this.underTest.getAgent(AGENT2).getAgentStatus());
+        assertEquals(2, this.agentReads.get());
+    }
+
+    @Test
+    public void testGetAgent_beyondMaxAgents_evictsTheLeastRecentlyUsedAgent() {
+        this.underTest.getAgent(AGENT1);
+        this.underTest.getAgent(AGENT2);
+        this.underTest.getAgent(AGENT1);
+        this.underTest.getAgent(AGENT3);
+        assertEquals(3, this.agentReads.get());
+
+        this.underTest.getAgent(AGENT1);
+        assertEquals(3, this.agentReads.get());
+        this.underTest.getAgent(AGENT2);
+        assertEquals(4, this.agentReads.get());
+    }
+
+    private static Agent agent(final String agentId, final AgentStatus agentStatus) {
+        return Agent.builder()
+            .agentId(agentId)
+            .agentStatus(agentStatus)
+            .build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class CachingPowerDialerDaoTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String LEAD_PHONE_NUMBER1 = "1";
+    private static final String LEAD_PHONE_NUMBER2 = "2";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private InMemoryPowerDialerDao powerDialerDao;
+    private AtomicInteger fullWrites;
+    private CachingPowerDialerDao underTest;
+
+    @Before
+    public void init() {
+        this.powerDialerDao = new InMemoryPowerDialerDao();
+        this.fullWrites = new AtomicInteger();
+        final PowerDialerDao writeCounting = new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public void updateLead(final Lead lead) {
+                fullWrites.incrementAndGet();
+                super.updateLead(lead);
+            }
+
+            @Override
+            public void updateLeads(final Collection<Lead> leads) {
+                fullWrites.incrementAndGet();
+                super.updateLeads(leads);
+            }
+
+            @Override
+            public void updateAgent(final Agent agent) {
+                fullWrites.incrementAndGet();
+                super.updateAgent(agent);
+            }
+        };
+        this.underTest = new CachingPowerDialerDao(writeCounting);
+        this.powerDialerDao.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.AVAILABLE).build());
+        this.powerDialerDao.updateLead(lead(LEAD_PHONE_NUMBER1, LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        this.powerDialerDao.updateLead(lead(LEAD_PHONE_NUMBER2, LeadStatus.AVAILABLE, DEFAULT_AGENT));
+    }
+
+    @Test
+    public void testEndEvent_withUpdatesOfReadRecords_writesThemAsOneTransition() {
+        this.underTest.beginEvent();
+        final Agent agent = this.underTest.getAgent(AGENT1);
+        final Lead lead1 = this.underTest.getLead(LEAD_PHONE_NUMBER1);
+        final Lead lead2 = this.underTest.getLead(LEAD_PHONE_NUMBER2);
+        this.underTest.updateAgent(agent.toBuilder().agentStatus(AgentStatus.WAITING_TO_BE_ENGAGED).build());
+        this.underTest.updateLead(lead1.toBuilder().currentStatus(LeadStatus.QUEUED).agentId(AGENT1).build());
+        this.underTest.updateLead(lead1.toBuilder().currentStatus(LeadStatus.WAITING_TO_BE_ENGAGED).agentId(AGENT1).build());
+        this.underTest.updateLead(lead2.toBuilder().currentStatus(LeadStatus.QUEUED).agentId(AGENT1).build());
+        this.underTest.endEvent();
+
+        // 3 reads and one transition batch
+        assertEquals(4, this.underTest.getLastEventRoundTrips());
+        assertEquals(0, this.fullWrites.get());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
+        assertEquals(AGENT1, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getAgentId());
+    }
+
+    @Test
+    public void testEndEvent_withLeadMovedByAnotherWriter_keepsTheOtherWrite() {
+        this.underTest.beginEvent();
+        final Lead lead1 = this.underTest.getLead(LEAD_PHONE_NUMBER1);
+        final Lead lead2 = this.underTest.getLead(LEAD_PHONE_NUMBER2);
+        this.underTest.updateLead(lead1.toBuilder().currentStatus(LeadStatus.QUEUED).agentId(AGENT1).build());
+        this.underTest.updateLead(lead2.toBuilder().currentStatus(LeadStatus.QUEUED).agentId(AGENT1).build());
+        // Another agent claims the first lead before the event ends
+        this.powerDialerDao.claimLead("agent2", LEAD_PHONE_NUMBER1);
+        this.underTest.endEvent();
+
+        assertEquals(0, this.fullWrites.get());
+        assertEquals("agent2", this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getAgentId());
+        assertEquals(AGENT1, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getAgentId());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER2).getCurrentStatus());
+    }
+
+    @Test
+    public void testEndEvent_withLeadBufferedAgainAfterLosingARace_keepsTheOtherWrite() {
+        this.underTest.beginEvent();
+        final Lead lead1 = this.underTest.getLead(LEAD_PHONE_NUMBER1);
+        this.underTest.updateLead(lead1.toBuilder().currentStatus(LeadStatus.QUEUED).agentId(AGENT1).build());
+        // Another agent claims the lead before the query flushes the update
+        this.powerDialerDao.claimLead("agent2", LEAD_PHONE_NUMBER1);
+        assertEquals(0, this.underTest.getAllLeads(AGENT1).size());
+        this.underTest.updateLead(lead1.toBuilder().currentStatus(LeadStatus.WAITING_TO_BE_ENGAGED).agentId(AGENT1).build());
+        this.underTest.endEvent();
+
+        assertEquals(0, this.fullWrites.get());
+        assertEquals("agent2", this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getAgentId());
+        assertEquals(LeadStatus.QUEUED, this.powerDialerDao.getLead(LEAD_PHONE_NUMBER1).getCurrentStatus());
+    }
+
+    @Test
+    public void testEndEvent_withUnreadLead_writesTheWholeLead() {
+        this.underTest.beginEvent();
+        this.underTest.updateLead(lead("3", LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        this.underTest.endEvent();
+
+        assertEquals(1, this.fullWrites.get());
+        assertEquals(LeadStatus.AVAILABLE, this.powerDialerDao.getLead("3").getCurrentStatus());
+    }
+
+    private static Lead lead(final String phoneNumber, final LeadStatus leadStatus, final String agentId) {
+        return Lead.builder()
+            .phoneNumber(phoneNumber)
+            .currentStatus(leadStatus)
+            .agentId(agentId)
+            .build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.dao.DurabilityConfig.SyncPolicy;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class DurablePowerDialerDaoTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private Path directory;
+    private DurabilityConfig config;
+    private DurablePowerDialerDao underTest;
+
+    @Before
+    public void init() throws IOException {
+        this.directory = Files.createTempDirectory("power-dialer-state");
+        this.config = DurabilityConfig.builder().directory(this.directory).segmentSize(1 << 16).snapshotEveryWrites(0).build();
+        this.underTest = new DurablePowerDialerDao(this.config);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        this.underTest.close();
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (final Path path : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testReopen_recoversLoggedTransitions() {
+        this.createLeads(3);
+        this.underTest.updateLead(availableLead("1002").toBuilder().metadata(Collections.singletonMap("timezone", "PST")).build());
+        this.underTest.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY).build());
+        assertTrue(this.underTest.transitionAgentStatus(AGENT1, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.WAITING_TO_BE_ENGAGED));
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.COMPLETED, AGENT1));
+
+        this.reopen();
+
+        assertEquals(3, this.underTest.getState().size());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        final Lead completed = this.underTest.getLead("1000");
+        assertEquals(LeadStatus.COMPLETED, completed.getCurrentStatus());
+        assertEquals(AGENT1, completed.getAgentId());
+        assertEquals("PST", this.underTest.getLead("1002").getMetadata().get("timezone"));
+        assertEquals("1001", this.underTest.claimLead(AGENT1));
+    }
+
+    @Test
+    public void testReopen_recoversTransitionBatches() {
+        this.createLeads(2);
+        this.underTest.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.AVAILABLE).build());
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        assertTrue(this.underTest.transitionBatch(TransitionBatch.builder()
+            .agent(AGENT1, EnumSet.of(AgentStatus.AVAILABLE), AgentStatus.WAITING_TO_BE_ENGAGED)
+            .lead("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1)
+            .lead("1001", EnumSet.of(LeadStatus.AVAILABLE), LeadStatus.QUEUED, AGENT1)
+            .build()));
+        assertFalse(this.underTest.transitionBatch(TransitionBatch.builder()
+            .agent(AGENT1, EnumSet.of(AgentStatus.WAITING_TO_BE_ENGAGED), AgentStatus.ENGAGED)
+            .lead("1001", EnumSet.of(LeadStatus.WAITING_TO_BE_ENGAGED), LeadStatus.ENGAGED, AGENT1)
+            .build()));
+
+        this.reopen();
+
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.underTest.getLead("1000").getCurrentStatus());
+        assertEquals(LeadStatus.QUEUED, this.underTest.getLead("1001").getCurrentStatus());
+        assertNull(this.underTest.claimLead(AGENT1));
+    }
+
+    @Test
+    public void testReopen_afterSnapshot_replaysTheLogOverIt() throws IOException {
+        // Enough leads to roll over several log segments
+        this.createLeads(5_000);
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        this.underTest.snapshot();
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.ENGAGED, AGENT1));
+        assertEquals("1001", this.underTest.claimLead(AGENT1));
+
+        assertEquals(1, this.files("snapshot-").size());
+        assertEquals(1, this.files("wal-").size());
+
+        this.reopen();
+
+        assertEquals(5_000, this.underTest.getState().size());
+        assertEquals(LeadStatus.ENGAGED, this.underTest.getLead("1000").getCurrentStatus());
+        assertEquals(LeadStatus.QUEUED, this.underTest.getLead("1001").getCurrentStatus());
+        assertEquals("1002", this.underTest.getLeadPhoneNumberToDial());
+    }
+
+    @Test
+    public void testSnapshot_withoutSyncThread_deletesTheRolledSegments() throws IOException {
+        this.underTest.close();
+        this.config = this.config.toBuilder().syncPolicy(SyncPolicy.NEVER).build();
+        this.underTest = new DurablePowerDialerDao(this.config);
+        // Enough leads to roll over several log segments
+        this.createLeads(5_000);
+        assertTrue(this.files("wal-").size() > 2);
+        this.underTest.snapshot();
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+
+        assertEquals(1, this.files("wal-").size());
+
+        this.reopen();
+
+        assertEquals(5_000, this.underTest.getState().size());
+        assertEquals(LeadStatus.QUEUED, this.underTest.getLead("1000").getCurrentStatus());
+        assertEquals("1001", this.underTest.getLeadPhoneNumberToDial());
+    }
+
+    @Test
+    public void testReopen_withTornRecord_dropsItAndKeepsLogging() throws IOException {
+        this.createLeads(2);
+        assertTrue(this.underTest.claimLead(AGENT1, "1001"));
+        this.underTest.close();
+
+        // Flip a byte of the last record's payload, as if the process died while it was written
+        final Path segment = this.files("wal-").get(0);
+        final int lastRecord = 2 * (4 + 8 + 4 + recordSize("1000", DEFAULT_AGENT));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(lastRecord + 4 + 8 + 1);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        this.underTest = new DurablePowerDialerDao(this.config);
+        assertEquals(LeadStatus.AVAILABLE, this.underTest.getLead("1001").getCurrentStatus());
+        assertTrue(this.underTest.claimLead("agent2", "1001"));
+
+        this.reopen();
+
+        assertEquals("agent2", this.underTest.getLead("1001").getAgentId());
+        assertFalse(this.underTest.claimLead(AGENT1, "1001"));
+        assertNull(this.underTest.getAgent(AGENT1));
+    }
+
+    @Test
+    public void testSyncPolicies_recoverEveryWrite() {
+        for (final SyncPolicy syncPolicy : SyncPolicy.values()) {
+            this.underTest.close();
+            this.config = this.config.toBuilder().syncPolicy(syncPolicy).build();
+            this.underTest = new DurablePowerDialerDao(this.config);
+            final String phoneNumber = String.valueOf(2000 + syncPolicy.ordinal());
+            this.underTest.updateLead(availableLead(phoneNumber));
+            this.reopen();
+            assertEquals(LeadStatus.AVAILABLE, this.underTest.getLead(phoneNumber).getCurrentStatus());
+        }
+    }
+
+    private void reopen() {
+        this.underTest.close();
+        this.underTest = new DurablePowerDialerDao(this.config);
+    }
+
+    private void createLeads(final int leads) {
+        for (int i = 0; i < leads; i++) {
+            this.underTest.updateLead(availableLead(String.valueOf(1000 + i)));
+        }
+    }
+
+    private List<Path> files(final String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // Type, phone number, status, agent id and metadata count of a lead record without metadata
+    private static int recordSize(final String phoneNumber, final String agentId) {
+        return 1 + 2 + phoneNumber.length() + 1 + 2 + agentId.length() + 2;
+    }
+
+    private static Lead availableLead(final String phoneNumber) {
+        return Lead.builder().phoneNumber(phoneNumber).currentStatus(LeadStatus.AVAILABLE).agentId(DEFAULT_AGENT).build();
+    }
+}
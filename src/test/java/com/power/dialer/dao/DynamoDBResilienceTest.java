@@ -0,0 +1,264 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsRequest;
+import com.amazonaws.services.dynamodbv2.model.TransactWriteItemsResult;
+import com.power.dialer.MutableClock;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.metrics.PowerDialerMetrics;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class DynamoDBResilienceTest {
+
+    private static final Supplier<String> EVENT_MESSAGE = () -> "Testing";
+    private static final ResilienceConfig NO_BACKOFF = ResilienceConfig.builder()
+        .baseBackoffMillis(0)
+        .maxBackoffMillis(0)
+        .build();
+
+    private PowerDialerMetrics metrics;
+    private MutableClock clock;
+
+    @Before
+    public void init() {
+        this.metrics = new PowerDialerMetrics();
+        this.clock = new MutableClock(System.currentTimeMillis());
+    }
+
+    @Test
+    public void testCall_retriesThrottledCalls() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw throttled();
+            }
+            return "answer";
+        });
+
+        assertEquals("answer", result);
+        assertEquals(3, calls.get());
+        assertEquals(2L, this.count("dynamodb.retries"));
+        assertEquals(2L, this.count("dynamodb.throttled"));
+        assertEquals(0L, this.count("dynamodb.circuit.open"));
+    }
+
+    @Test
+    public void testCall_doesNotRetryAFailedCondition() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF);
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> {
+                calls.incrementAndGet();
+                throw new ConditionalCheckFailedException("Condition failed");
+            });
+            fail("The failed condition should have been thrown");
+        } catch (final ConditionalCheckFailedException e) {
+            assertEquals(1, calls.get());
+            assertEquals(0L, this.count("dynamodb.retries"));
+        }
+    }
+
+    @Test
+    public void testCall_failsFastWhileTheCircuitIsOpen() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF.toBuilder()
+            .maxAttempts(2)
+            .circuitBreakerFailures(2)
+            .circuitBreakerOpenMillis(1000)
+            .build());
+        final AtomicInteger calls = new AtomicInteger();
+        final Supplier<String> failing = () -> {
+            calls.incrementAndGet();
+            throw serverError();
+        };
+
+        try {
+            underTest.call(PowerDialerDaoImpl.AGENT_TABLE, EVENT_MESSAGE, failing);
+            fail("The server error should have been thrown");
+        } catch (final AmazonServiceException e) {
+            assertEquals(2, calls.get());
+        }
+        try {
+            underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> "answer");
+            fail("The circuit should be open");
+        } catch (final PowerDialerDependencyException e) {
+            assertEquals(1L, this.count("dynamodb.circuit.open"));
+            assertEquals(1L, this.count("dynamodb.circuit.rejected"));
+        }
+
+        // A single probe goes through once the circuit was open long enough, its answer closes the circuit
+        this.clock.advance(1000);
+        assertEquals("answer", underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> "answer"));
+        assertEquals(0L, this.count("dynamodb.circuit.open"));
+        assertEquals(1L, this.count("dynamodb.circuit.opened"));
+    }
+
+    @Test
+    public void testCall_withProbeThrowingAnError_probesAgainLater() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF.toBuilder()
+            .maxAttempts(1)
+            .circuitBreakerFailures(1)
+            .circuitBreakerOpenMillis(1000)
+            .build());
+        try {
+            underTest.call(PowerDialerDaoImpl.AGENT_TABLE, EVENT_MESSAGE, () -> {
+                throw serverError();
+            });
+            fail("The server error should have been thrown");
+        } catch (final AmazonServiceException e) {
+            assertEquals(1L, this.count("dynamodb.circuit.open"));
+        }
+
+        this.clock.advance(1000);
+        try {
+            underTest.call(PowerDialerDaoImpl.AGENT_TABLE, EVENT_MESSAGE, () -> {
+                throw new Error("Probe failed");
+            });
+            fail("The error should have been thrown");
+        } catch (final Error e) {
+            assertEquals("Probe failed", e.getMessage());
+        }
+
+        // The failed probe opened the circuit again instead of leaving it waiting for an outcome
+        this.clock.advance(1000);
+        assertEquals("answer", underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> "answer"));
+        assertEquals(0L, this.count("dynamodb.circuit.open"));
+    }
+
+    @Test
+    public void testCall_failsOverTheRateLimitOfTheResource() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF.toBuilder()
+            .requestsPerSecond(Collections.singletonMap(PowerDialerDaoImpl.AGENT_LEADS_INDEX, 1.0))
+            .maxRateLimitWaitMillis(0)
+            .build());
+
+        assertEquals("answer", underTest.call(PowerDialerDaoImpl.AGENT_LEADS_INDEX, EVENT_MESSAGE, () -> "answer"));
+        try {
+            underTest.call(PowerDialerDaoImpl.AGENT_LEADS_INDEX, EVENT_MESSAGE, () -> "answer");
+            fail("The call should have been rate limited");
+        } catch (final PowerDialerDependencyException e) {
+            assertEquals(1L, this.count("dynamodb.rateLimited"));
+        }
+        // The table itself is not limited
+        assertEquals("answer", underTest.call(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> "answer"));
+    }
+
+    @Test
+    public void testHedgedCall_answersWithTheFirstCallToAnswer() {
+        final DynamoDBResilience underTest = this.resilience(NO_BACKOFF.toBuilder()
+            .hedgeAfterMillis(10)
+            .build());
+        final CountDownLatch slowCall = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            final String result = underTest.hedgedCall(PowerDialerDaoImpl.LEAD_TABLE, EVENT_MESSAGE, () -> {
+                if (calls.incrementAndGet() == 1) {
+                    awaitQuietly(slowCall);
+                    return "slow";
+                }
+                return "fast";
+            });
+
+            assertEquals("fast", result);
+            assertEquals(1L, this.count("dynamodb.hedged"));
+            assertEquals(1L, this.count("dynamodb.hedge.wins"));
+        } finally {
+            slowCall.countDown();
+            underTest.close();
+        }
+    }
+
+    @Test
+    public void testTransitionBatch_retriedAfterAServerError_sendsTheSameClientRequestToken() {
+        final List<String> tokens = new ArrayList<>();
+        final AmazonDynamoDB amazonDynamoDB = new AbstractAmazonDynamoDB() {
+            @Override
+            public TransactWriteItemsResult transactWriteItems(final TransactWriteItemsRequest request) {
+                tokens.add(request.getClientRequestToken());
+                if (tokens.size() == 1) {
+                    throw serverError();
+                }
+                return new TransactWriteItemsResult();
+            }
+        };
+        final PowerDialerDaoImpl underTest = new PowerDialerDaoImpl(amazonDynamoDB, new DynamoDBMapper(amazonDynamoDB),
+            this.resilience(NO_BACKOFF));
+
+        assertTrue(underTest.transitionBatch(TransitionBatch.builder()
+            .agent("agent1", EnumSet.of(AgentStatus.AVAILABLE), AgentStatus.WAITING_TO_BE_ENGAGED)
+            .lead("1", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, "agent1")
+            .build()));
+        assertEquals(2, tokens.size());
+        assertNotNull(tokens.get(0));
+        assertEquals(tokens.get(0), tokens.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInit_withInvalidRate() {
+        this.resilience(NO_BACKOFF.toBuilder()
+            .requestsPerSecond(Collections.singletonMap(PowerDialerDaoImpl.LEAD_TABLE, 0.0))
+            .build());
+    }
+
+    private DynamoDBResilience resilience(final ResilienceConfig config) {
+        final DynamoDBResilience resilience = new DynamoDBResilience(config, this.clock);
+        resilience.registerMetrics(this.metrics);
+        return resilience;
+    }
+
+    private long count(final String name) {
+        final Map<String, Long> counts = this.metrics.getCounts();
+        assertTrue(counts.containsKey(name));
+        return counts.get(name);
+    }
+
+    private static AmazonServiceException throttled() {
+        final AmazonServiceException e = new ProvisionedThroughputExceededException("Throttled");
+        e.setErrorCode("ProvisionedThroughputExceededException");
+        e.setStatusCode(400);
+        return e;
+    }
+
+    private static AmazonServiceException serverError() {
+        final AmazonServiceException e = new AmazonServiceException("Internal server error");
+        e.setErrorType(ErrorType.Service);
+        e.setStatusCode(500);
+        return e;
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.local.shared.access.AmazonDynamoDBLocal;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.power.dialer.DynamoDBTables;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+public class DynamoDBStreamsLeadChangeFeedTest {
+
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private AmazonDynamoDBLocal dynamoDbLocal;
+    private PowerDialerDao powerDialerDao;
+    private DynamoDBStreamsLeadChangeFeed underTest;
+
+    @Before
+    public void init() {
+        this.dynamoDbLocal = DynamoDBEmbedded.create();
+        final AmazonDynamoDB dynamoDb = this.dynamoDbLocal.amazonDynamoDB();
+        final DynamoDBMapper dynamoDbMapper = new DynamoDBMapper(dynamoDb);
+        this.powerDialerDao = new PowerDialerDaoImpl(dynamoDb, dynamoDbMapper);
+
+        final CreateTableRequest createLeadTableRequest = DynamoDBTables.createTableRequest(dynamoDbMapper, LeadRecord.class)
+            .withStreamSpecification(new StreamSpecification().withStreamEnabled(true).withStreamViewType(StreamViewType.NEW_IMAGE));
+        final String streamArn = dynamoDb.createTable(createLeadTableRequest).getTableDescription().getLatestStreamArn();
+        this.underTest = new DynamoDBStreamsLeadChangeFeed(this.dynamoDbLocal.amazonDynamoDBStreams(), dynamoDbMapper, streamArn);
+    }
+
+    @After
+    public void tearDown() {
+        this.dynamoDbLocal.shutdown();
+    }
+
+    @Test
+    public void testPoll_returnsTheLeadsChangedSinceThePreviousPoll() {
+        this.powerDialerDao.updateLead(lead("1", LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        // The feed starts from the latest record, changes made before its first poll are not returned
+        assertTrue(this.underTest.poll().isEmpty());
+
+        this.powerDialerDao.updateLead(lead("2", LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        this.powerDialerDao.claimLead("agent1", "1");
+        this.powerDialerDao.transitionLeadStatus("1", EnumSet.of(LeadStatus.QUEUED), LeadStatus.AVAILABLE, DEFAULT_AGENT);
+
+        final List<Lead> changes = new ArrayList<>(this.underTest.poll());
+        assertEquals(3, changes.size());
+        final List<String> leadOneStatuses = changes.stream()
+            .filter(lead -> "1".equals(lead.getPhoneNumber()))
+            .map(lead -> lead.getCurrentStatus() + " " + lead.getAgentId())
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList("QUEUED agent1", "AVAILABLE NONE"), leadOneStatuses);
+        assertEquals(Collections.emptyList(), this.underTest.poll());
+    }
+
+    private static Lead lead(final String phoneNumber, final LeadStatus status, final String agentId) {
+        return Lead.builder().phoneNumber(phoneNumber).currentStatus(status).agentId(agentId).build();
+    }
+}
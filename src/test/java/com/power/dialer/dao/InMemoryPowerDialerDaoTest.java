@@ -0,0 +1,245 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.MutableClock;
+import com.power.dialer.compute.PowerDialerImpl;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class InMemoryPowerDialerDaoTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private InMemoryPowerDialerDao underTest;
+
+    @Before
+    public void init() {
+        this.underTest = new InMemoryPowerDialerDao();
+    }
+
+    @Test
+    public void testUpdateLead_withAnyPhoneNumberFormat_roundTrips() {
+        final List<String> phoneNumbers = Arrays.asList("5550100", "+1 555 0101", "0800", "0", "1234567890123456789012");
+        phoneNumbers.forEach(phoneNumber -> this.underTest.updateLead(availableLead(phoneNumber)));
+        this.underTest.updateLead(availableLead("5550100").toBuilder().metadata(Collections.singletonMap("timezone", "PST")).build());
+
+        assertEquals(phoneNumbers.size(), this.underTest.size());
+        phoneNumbers.forEach(phoneNumber -> assertEquals(phoneNumber, this.underTest.getLead(phoneNumber).getPhoneNumber()));
+        assertEquals("PST", this.underTest.getLead("5550100").getMetadata().get("timezone"));
+        assertNull(this.underTest.getLead("5550199"));
+        assertNull(this.underTest.getLead("+1 555 0199"));
+    }
+
+    @Test
+    public void testClaimLead_movesLeadsThroughTheAgentIndexes() {
+        this.createLeads(3);
+
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        assertTrue(this.underTest.claimLead(AGENT1, "1001"));
+        assertFalse(this.underTest.claimLead("agent2", "1001"));
+
+        assertEquals("1000", this.underTest.getNextLead(AGENT1).getPhoneNumber());
+        assertEquals("1002", this.underTest.getLeadPhoneNumberToDial());
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1));
+        assertEquals("1001", this.underTest.getNextLead(AGENT1).getPhoneNumber());
+        assertEquals(Arrays.asList("1000", "1001"), this.underTest.getAllLeads(AGENT1).stream()
+            .map(Lead::getPhoneNumber).collect(Collectors.toList()));
+
+        assertFalse(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.ENGAGED, AGENT1));
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.allOf(LeadStatus.class), LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        assertEquals(Collections.singletonList("1001"), this.underTest.getAllLeads(AGENT1).stream()
+            .map(Lead::getPhoneNumber).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("1002", "1000"), this.underTest.getLeadPhoneNumbersToDial(10, null));
+
+        assertEquals("1002", this.underTest.claimLead(AGENT1));
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        assertNull(this.underTest.claimLead(AGENT1));
+        assertNull(this.underTest.getLeadPhoneNumberToDial());
+        assertEquals(3, this.underTest.getLeadClaimCounters().getClaimed());
+        assertEquals(1, this.underTest.getLeadClaimCounters().getExhausted());
+    }
+
+    @Test
+    public void testGetLeadPhoneNumbersToDial_pagesFromTheCursor() {
+        this.createLeads(5);
+
+        assertEquals(Arrays.asList("1000", "1001"), this.underTest.getLeadPhoneNumbersToDial(2, null));
+        assertEquals(Arrays.asList("1002", "1003"), this.underTest.getLeadPhoneNumbersToDial(2, "1001"));
+        assertEquals(Collections.singletonList("1004"), this.underTest.getLeadPhoneNumbersToDial(2, "1003"));
+
+        // A cursor which is no longer AVAILABLE starts over
+        assertTrue(this.underTest.claimLead(AGENT1, "1001"));
+        assertEquals(Arrays.asList("1000", "1002"), this.underTest.getLeadPhoneNumbersToDial(2, "1001"));
+    }
+
+    @Test
+    public void testTransitionAgentStatus_onlyFromExpectedStatuses() {
+        assertFalse(this.underTest.transitionAgentStatus(AGENT1, EnumSet.allOf(AgentStatus.class), AgentStatus.AVAILABLE));
+        this.underTest.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY).build());
+
+        assertFalse(this.underTest.transitionAgentStatus(AGENT1, EnumSet.of(AgentStatus.ENGAGED), AgentStatus.AVAILABLE));
+        assertTrue(this.underTest.transitionAgentStatus(AGENT1, EnumSet.of(AgentStatus.OFF_DUTY), AgentStatus.AVAILABLE));
+        assertEquals(AgentStatus.AVAILABLE, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertNull(this.underTest.getAgent("agent2"));
+    }
+
+    @Test
+    public void testTransitionBatch_movesEveryRecordOrNone() {
+        this.createLeads(2);
+        this.underTest.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.AVAILABLE).build());
+        assertTrue(this.underTest.claimLead(AGENT1, "1000"));
+
+        final TransitionBatch rejected = TransitionBatch.builder()
+            .agent(AGENT1, EnumSet.of(AgentStatus.AVAILABLE), AgentStatus.WAITING_TO_BE_ENGAGED)
+            .lead("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1)
+            .lead("1001", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1)
+            .build();
+        assertFalse(this.underTest.transitionBatch(rejected));
+        assertEquals(AgentStatus.AVAILABLE, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.QUEUED, this.underTest.getLead("1000").getCurrentStatus());
+
+        assertTrue(this.underTest.transitionBatch(rejected.toBuilder().clearLeadTransitions()
+            .lead("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1)
+            .lead("1001", EnumSet.of(LeadStatus.AVAILABLE), LeadStatus.QUEUED, AGENT1)
+            .build()));
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.underTest.getLead("1000").getCurrentStatus());
+        assertEquals("1001", this.underTest.getNextLead(AGENT1).getPhoneNumber());
+        assertFalse(this.underTest.transitionBatch(TransitionBatch.builder()
+            .agent("agent2", EnumSet.allOf(AgentStatus.class), AgentStatus.AVAILABLE)
+            .build()));
+    }
+
+    @Test
+    public void testClaimLead_concurrentAgents_claimDistinctLeads() throws Exception {
+        // Spans more than one column chunk
+        final int leads = 100_000;
+        final int agents = 16;
+        this.createLeads(leads);
+
+        final Set<String> claimed = ConcurrentHashMap.newKeySet();
+        final ExecutorService executorService = Executors.newFixedThreadPool(agents);
+        final List<Future<Integer>> claims = new ArrayList<>();
+        for (int i = 0; i < agents; i++) {
+            final String agentId = "agent" + i;
+            claims.add(executorService.submit(() -> {
+                int count = 0;
+                for (String phoneNumber = this.underTest.claimLead(agentId); phoneNumber != null;
+                        phoneNumber = this.underTest.claimLead(agentId)) {
+                    assertTrue(claimed.add(phoneNumber));
+                    count++;
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        for (final Future<Integer> claim : claims) {
+            total += claim.get();
+        }
+        executorService.shutdown();
+
+        assertEquals(leads, total);
+        assertEquals(leads, claimed.size());
+        assertTrue(this.underTest.getAllLeads("agent0").stream()
+            .allMatch(lead -> LeadStatus.QUEUED.equals(lead.getCurrentStatus()) && "agent0".equals(lead.getAgentId())));
+    }
+
+    @Test
+    public void testPowerDialer_onInMemoryDao_dialsAndCompletesLeads() {
+        this.createLeads(3);
+        this.underTest.updateAgent(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY).build());
+        final PowerDialerImpl powerDialer = new PowerDialerImpl(this.underTest);
+
+        powerDialer.onAgentLogin(AGENT1);
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(2, this.underTest.getAllLeads(AGENT1).size());
+
+        final String dialedLead = this.underTest.getAllLeads(AGENT1).stream()
+            .filter(lead -> LeadStatus.WAITING_TO_BE_ENGAGED.equals(lead.getCurrentStatus()))
+            .findFirst().get().getPhoneNumber();
+        powerDialer.onCallStarted(AGENT1, dialedLead);
+        powerDialer.onCallEnded(AGENT1, dialedLead);
+
+        assertEquals(LeadStatus.COMPLETED, this.underTest.getLead(dialedLead).getCurrentStatus());
+        assertEquals(AgentStatus.WAITING_TO_BE_ENGAGED, this.underTest.getAgent(AGENT1).getAgentStatus());
+        assertEquals(2, this.underTest.getAllLeads(AGENT1).size());
+        assertNull(this.underTest.getLeadPhoneNumberToDial());
+    }
+
+    @Test
+    public void testReleaseExpiredLeases_releasesTheLeasesNotRenewedSince() {
+        final MutableClock clock = new MutableClock(0);
+        this.underTest = new InMemoryPowerDialerDao(InMemoryPowerDialerDao.DEFAULT_EXPECTED_LEADS, clock);
+        this.createLeads(4);
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        clock.advance(TimeUnit.MINUTES.toMillis(10));
+        assertEquals("1001", this.underTest.claimLead(AGENT1));
+        assertEquals("1002", this.underTest.claimLead(AGENT1));
+        assertTrue(this.underTest.transitionLeadStatus("1002", EnumSet.of(LeadStatus.QUEUED), LeadStatus.ENGAGED, AGENT1));
+        clock.advance(TimeUnit.MINUTES.toMillis(10));
+        // Dialing the first lead renews its lease
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1));
+
+        assertEquals(Collections.singletonList("1001"), this.underTest.releaseExpiredLeases(TimeUnit.MINUTES.toMillis(15), 10));
+        assertEquals(LeadStatus.AVAILABLE, this.underTest.getLead("1001").getCurrentStatus());
+        assertEquals(DEFAULT_AGENT, this.underTest.getLead("1001").getAgentId());
+        assertEquals(LeadStatus.WAITING_TO_BE_ENGAGED, this.underTest.getLead("1000").getCurrentStatus());
+
+        assertEquals(Collections.singletonList("1000"), this.underTest.releaseExpiredLeases(TimeUnit.MINUTES.toMillis(21), 10));
+        assertEquals(Collections.emptyList(), this.underTest.releaseExpiredLeases(TimeUnit.MINUTES.toMillis(21), 10));
+        assertEquals(LeadStatus.ENGAGED, this.underTest.getLead("1002").getCurrentStatus());
+        assertEquals(Arrays.asList("1003", "1001", "1000"), this.underTest.getLeadPhoneNumbersToDial(10, null));
+    }
+
+    @Test
+    public void testReleaseLeads_releasesTheQueueOfTheAgentOnly() {
+        this.createLeads(5);
+        assertEquals("1000", this.underTest.claimLead(AGENT1));
+        assertEquals("1001", this.underTest.claimLead(AGENT1));
+        assertEquals("1002", this.underTest.claimLead(AGENT1));
+        assertEquals("1003", this.underTest.claimLead("agent2"));
+        assertTrue(this.underTest.transitionLeadStatus("1000", EnumSet.of(LeadStatus.QUEUED), LeadStatus.ENGAGED, AGENT1));
+        assertTrue(this.underTest.transitionLeadStatus("1001", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1));
+
+        assertEquals(Arrays.asList("1001", "1002"), this.underTest.releaseLeads(AGENT1));
+        assertEquals(Collections.emptyList(), this.underTest.getAllLeads(AGENT1));
+        assertEquals(LeadStatus.ENGAGED, this.underTest.getLead("1000").getCurrentStatus());
+        assertEquals(AGENT1, this.underTest.getLead("1000").getAgentId());
+        assertEquals("agent2", this.underTest.getLead("1003").getAgentId());
+        assertEquals(Arrays.asList("1004", "1001", "1002"), this.underTest.getLeadPhoneNumbersToDial(10, null));
+        assertEquals(Collections.emptyList(), this.underTest.releaseLeads("agent3"));
+    }
+
+    private void createLeads(final int leads) {
+        for (int i = 0; i < leads; i++) {
+            this.underTest.updateLead(availableLead(String.valueOf(1000 + i)));
+        }
+    }
+
+    private static Lead availableLead(final String phoneNumber) {
+        return Lead.builder().phoneNumber(phoneNumber).currentStatus(LeadStatus.AVAILABLE).agentId(DEFAULT_AGENT).build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.power.dialer.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.local.shared.access.AmazonDynamoDBLocal;
+import com.power.dialer.DynamoDBTables;
+import com.power.dialer.MutableClock;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+import com.power.dialer.model.LeadRecord;
+
+public class LeaseReaperTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String DEFAULT_AGENT = "NONE";
+
+    private AmazonDynamoDBLocal dynamoDbLocal;
+    private PowerDialerDao powerDialerDao;
+    private MutableClock clock;
+    private LeaseReaper underTest;
+
+    @Before
+    public void init() {
+        this.dynamoDbLocal = DynamoDBEmbedded.create();
+        final AmazonDynamoDB dynamoDb = this.dynamoDbLocal.amazonDynamoDB();
+        final DynamoDBMapper dynamoDbMapper = new DynamoDBMapper(dynamoDb);
+        this.powerDialerDao = new PowerDialerDaoImpl(dynamoDb, dynamoDbMapper);
+
+        dynamoDb.createTable(DynamoDBTables.createTableRequest(dynamoDbMapper, LeadRecord.class));
+
+        this.clock = new MutableClock(System.currentTimeMillis());
+        this.underTest = new LeaseReaper(this.powerDialerDao, TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(1), 2, this.clock);
+    }
+
+    @After
+    public void tearDown() {
+        this.underTest.close();
+        this.dynamoDbLocal.shutdown();
+    }
+
+    @Test
+    public void testReap_releasesTheExpiredLeasesInBatches() {
+        for (int i = 0; i < 5; i++) {
+            this.powerDialerDao.updateLead(lead(String.valueOf(1000 + i), LeadStatus.AVAILABLE, DEFAULT_AGENT));
+        }
+        assertTrue(this.powerDialerDao.claimLead(AGENT1, "1000"));
+        assertTrue(this.powerDialerDao.claimLead(AGENT1, "1001"));
+        assertTrue(this.powerDialerDao.transitionLeadStatus("1001", EnumSet.of(LeadStatus.QUEUED), LeadStatus.WAITING_TO_BE_ENGAGED, AGENT1));
+        assertTrue(this.powerDialerDao.claimLead(AGENT1, "1002"));
+        assertTrue(this.powerDialerDao.transitionLeadStatus("1002", EnumSet.of(LeadStatus.QUEUED), LeadStatus.ENGAGED, AGENT1));
+        this.powerDialerDao.updateLead(lead("1003", LeadStatus.QUEUED, "agent2"));
+
+        // Nothing expired yet
+        assertEquals(0, this.underTest.reap());
+
+        this.clock.advance(TimeUnit.HOURS.toMillis(2));
+        assertEquals(3, this.underTest.reap());
+        assertEquals(0, this.underTest.reap());
+        for (final String phoneNumber : new String[] {"1000", "1001", "1003", "1004"}) {
+            final Lead lead = this.powerDialerDao.getLead(phoneNumber);
+            assertEquals(LeadStatus.AVAILABLE, lead.getCurrentStatus());
+            assertEquals(DEFAULT_AGENT, lead.getAgentId());
+        }
+        assertEquals(LeadStatus.ENGAGED, this.powerDialerDao.getLead("1002").getCurrentStatus());
+    }
+
+    private static Lead lead(final String phoneNumber, final LeadStatus status, final String agentId) {
+        return Lead.builder().phoneNumber(phoneNumber).currentStatus(status).agentId(agentId).build();
+    }
+}
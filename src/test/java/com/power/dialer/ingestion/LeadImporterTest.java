@@ -0,0 +1,155 @@
+package com.power.dialer.ingestion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.dao.ForwardingPowerDialerDao;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.exception.PowerDialerDependencyException;
+import com.power.dialer.ingestion.LeadImporter.Format;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class LeadImporterTest {
+
+    private InMemoryPowerDialerDao powerDialerDao;
+
+    @Before
+    public void init() {
+        this.powerDialerDao = new InMemoryPowerDialerDao();
+    }
+
+    @Test
+    public void testImportLeads_fromCsv_normalizesAndDeduplicatesPhoneNumbers() throws IOException {
+        final LeadImporter underTest = new LeadImporter(this.powerDialerDao, 4);
+        final String csv = String.join("\n",
+            "phoneNumber,timezone,name",
+            "+1 (555) 010-0100,PST,\"Doe, Jane\"",
+            "1.555.010.0100,EST,John",
+            "",
+            "0800 123,,",
+            "555-CALL,PST,Nobody",
+            "5550100101,CET");
+
+        final ImportProgress progress = underTest.importLeads(new BufferedReader(new StringReader(csv)), Format.CSV);
+        assertEquals(5, progress.getRecords());
+        assertEquals(2, progress.getLeadsWritten());
+        assertEquals(1, progress.getDuplicates());
+        assertEquals(2, progress.getInvalid());
+
+        final Lead lead = this.powerDialerDao.getLead("15550100100");
+        assertEquals(LeadStatus.AVAILABLE, lead.getCurrentStatus());
+        assertEquals("NONE", lead.getAgentId());
+        assertEquals("PST", lead.getMetadata().get("timezone"));
+        assertEquals("Doe, Jane", lead.getMetadata().get("name"));
+        assertNull(this.powerDialerDao.getLead("0800123").getMetadata());
+    }
+
+    @Test
+    public void testImportLeads_fromNdjsonFiles_deduplicatesAcrossFiles() throws IOException {
+        final LeadImporter underTest = new LeadImporter(this.powerDialerDao);
+        final Path directory = Files.createTempDirectory("lead-import");
+        final Path first = directory.resolve("first.ndjson");
+        final Path second = directory.resolve("second.jsonl");
+        try {
+            final StringBuilder records = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                records.append(String.format("{\"phoneNumber\": \"+1555%07d\", \"priority\": %d}%n", i, i % 3));
+            }
+            Files.write(first, records.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(second, Arrays.asList("{\"phoneNumber\": 15550000999}", "{\"phoneNumber\": \"15550001000\"}", "not json",
+                "{\"name\": \"no phone number\"}"), StandardCharsets.UTF_8);
+
+            assertEquals(1000, underTest.importLeads(first).getLeadsWritten());
+            final ImportProgress progress = underTest.importLeads(second);
+            assertEquals(1004, progress.getRecords());
+            assertEquals(1001, progress.getLeadsWritten());
+            assertEquals(1, progress.getDuplicates());
+            assertEquals(2, progress.getInvalid());
+            assertTrue(progress.getElapsedMillis() >= 0);
+        } finally {
+            Files.deleteIfExists(first);
+            Files.deleteIfExists(second);
+            Files.delete(directory);
+        }
+        assertEquals(1001, this.powerDialerDao.size());
+        assertEquals("2", this.powerDialerDao.getLead("15550000998").getMetadata().get("priority"));
+    }
+
+    @Test
+    public void testImportLeads_withFailingBatches_retriesThem() throws IOException {
+        final AtomicInteger failures = new AtomicInteger(3);
+        final LeadImporter underTest = new LeadImporter(new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public void updateLeads(final Collection<Lead> leads) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new PowerDialerDependencyException("Throttled");
+                }
+                super.updateLeads(leads);
+            }
+        }, 1);
+
+        final ImportProgress progress = underTest.importLeads(new BufferedReader(new StringReader("phoneNumber\n1\n2\n3")), Format.CSV);
+        assertEquals(3, progress.getLeadsWritten());
+        assertEquals(3, progress.getRetries());
+        assertEquals(3, this.powerDialerDao.size());
+    }
+
+    @Test(expected = PowerDialerDependencyException.class)
+    public void testImportLeads_withBatchFailingEveryAttempt_stopsTheImport() throws IOException {
+        final LeadImporter underTest = new LeadImporter(new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public void updateLeads(final Collection<Lead> leads) {
+                throw new PowerDialerDependencyException("Table missing");
+            }
+        }, 2);
+        underTest.importLeads(new BufferedReader(new StringReader("phoneNumber\n1\n2\n3")), Format.CSV);
+    }
+
+    @Test
+    public void testImportLeads_afterBatchFailingEveryAttempt_retryWritesTheLeads() throws IOException {
+        final AtomicBoolean tableMissing = new AtomicBoolean(true);
+        final LeadImporter underTest = new LeadImporter(new ForwardingPowerDialerDao(this.powerDialerDao) {
+            @Override
+            public void updateLeads(final Collection<Lead> leads) {
+                if (tableMissing.get()) {
+                    throw new PowerDialerDependencyException("Table missing");
+                }
+                super.updateLeads(leads);
+            }
+        }, 2);
+        try {
+            underTest.importLeads(new BufferedReader(new StringReader("phoneNumber\n1\n2\n3")), Format.CSV);
+            fail("The import should stop once a batch fails every attempt");
+        } catch (final PowerDialerDependencyException e) {
+            // Expected, the table is created before the retry
+        }
+
+        tableMissing.set(false);
+        final ImportProgress progress = underTest.importLeads(new BufferedReader(new StringReader("phoneNumber\n1\n2\n3")), Format.CSV);
+        assertEquals(3, progress.getLeadsWritten());
+        assertEquals(0, progress.getDuplicates());
+        assertEquals(3, this.powerDialerDao.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImportLeads_withoutPhoneNumberColumn_throwsIllegalArgumentException() throws IOException {
+        new LeadImporter(this.powerDialerDao).importLeads(new BufferedReader(new StringReader("phone,name\n1,a")), Format.CSV);
+    }
+}
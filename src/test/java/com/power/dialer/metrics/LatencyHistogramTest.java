@@ -0,0 +1,71 @@
+package com.power.dialer.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testGetValueAtPercentile_isWithinThePrecisionOfTheRecordedValues() {
+        final LatencyHistogram underTest = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++) {
+            underTest.record(nanos * 1000);
+        }
+        final LatencyHistogram.Snapshot snapshot = underTest.snapshot();
+
+        assertEquals(1_000_000, snapshot.getCount());
+        assertEquals(500_000_500, snapshot.getMean(), 1);
+        assertEquals(500_000_000, snapshot.getValueAtPercentile(50), 500_000_000 / 32);
+        assertEquals(990_000_000, snapshot.getValueAtPercentile(99), 990_000_000 / 32);
+        assertEquals(1_000_000_000, snapshot.getMax(), 1_000_000_000 / 32);
+        assertEquals(1000, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testRecord_fromManyThreads_countsEveryValue() throws InterruptedException {
+        final LatencyHistogram underTest = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    underTest.record(ThreadLocalRandom.current().nextLong(1_000_000_000L));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, underTest.snapshot().getCount());
+    }
+
+    @Test
+    public void testMinus_keepsTheValuesRecordedBetweenTwoSnapshots() {
+        final LatencyHistogram underTest = new LatencyHistogram();
+        underTest.record(1_000_000);
+        final LatencyHistogram.Snapshot first = underTest.snapshot();
+        underTest.record(5);
+        underTest.record(7);
+
+        final LatencyHistogram.Snapshot interval = underTest.snapshot().minus(first);
+        assertEquals(2, interval.getCount());
+        assertEquals(6, interval.getMean(), 0);
+        assertEquals(7, interval.getMax());
+    }
+
+    @Test
+    public void testRecord_withOutOfRangeValues_clampsThem() {
+        final LatencyHistogram underTest = new LatencyHistogram();
+        underTest.record(-1);
+        underTest.record(Long.MAX_VALUE);
+
+        final LatencyHistogram.Snapshot snapshot = underTest.snapshot();
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(1L << 40, snapshot.getMax(), (1L << 40) / 32);
+    }
+}
@@ -0,0 +1,105 @@
+package com.power.dialer.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.power.dialer.compute.MeteredPowerDialer;
+import com.power.dialer.compute.PowerDialer;
+import com.power.dialer.compute.PowerDialerImpl;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+import com.power.dialer.dao.MeteredPowerDialerDao;
+import com.power.dialer.exception.NoLeadsAvailableException;
+import com.power.dialer.model.Agent;
+import com.power.dialer.model.Agent.AgentStatus;
+import com.power.dialer.model.Lead;
+import com.power.dialer.model.Lead.LeadStatus;
+
+public class PowerDialerMetricsTest {
+
+    private static final String AGENT1 = "agent1";
+    private static final String AGENT2 = "agent2";
+    private static final String OBJECT_NAME = "com.power.dialer:type=PowerDialerMetricsTest";
+
+    private PowerDialerMetrics underTest;
+    private PowerDialer powerDialer;
+
+    @Before
+    public void init() {
+        this.underTest = new PowerDialerMetrics();
+        final InMemoryPowerDialerDao powerDialerDao = new InMemoryPowerDialerDao();
+        powerDialerDao.updateAgents(Arrays.asList(Agent.builder().agentId(AGENT1).agentStatus(AgentStatus.OFF_DUTY).build(),
+            Agent.builder().agentId(AGENT2).agentStatus(AgentStatus.OFF_DUTY).build()));
+        powerDialerDao.updateLeads(Arrays.asList(Lead.builder().phoneNumber("1").currentStatus(LeadStatus.AVAILABLE).agentId("NONE").build(),
+            Lead.builder().phoneNumber("2").currentStatus(LeadStatus.AVAILABLE).agentId("NONE").build()));
+        this.underTest.gauge("dao.claimLead.claimed", powerDialerDao.getLeadClaimCounters()::getClaimed);
+        this.powerDialer = new MeteredPowerDialer(new PowerDialerImpl(new MeteredPowerDialerDao(powerDialerDao, this.underTest)),
+            this.underTest);
+    }
+
+    @After
+    public void tearDown() {
+        this.underTest.close();
+    }
+
+    @Test
+    public void testMeteredPowerDialer_recordsEventsDaoCallsAndMissingLeads() {
+        this.powerDialer.onAgentLogin(AGENT1);
+        try {
+            this.powerDialer.onAgentLogin(AGENT2);
+        } catch (final NoLeadsAvailableException e) {
+            // Both leads are in the first agent's queue
+        }
+
+        final Map<String, LatencyHistogram.Snapshot> histograms = this.underTest.getHistograms();
+        assertEquals(2, histograms.get("event.onAgentLogin").getCount());
+        assertEquals(1, histograms.get("dao.dial").getCount());
+        assertEquals(3, histograms.get("dao.claimLead").getCount());
+        final Map<String, Long> counts = this.underTest.getCounts();
+        assertEquals(1, counts.get("event.noLeadsAvailable").longValue());
+        assertEquals(1, counts.get("dao.claimLead.empty").longValue());
+        assertEquals(2, counts.get("dao.claimLead.claimed").longValue());
+        assertEquals(0, counts.get("event.errors").longValue());
+    }
+
+    @Test
+    public void testRegisterMBean_exposesTheMetricsAsAttributes() throws Exception {
+        this.underTest.registerMBean(OBJECT_NAME);
+        this.powerDialer.onAgentLogin(AGENT1);
+
+        final ObjectName name = new ObjectName(OBJECT_NAME);
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "event.onAgentLogin.count"));
+        assertTrue((Double) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "event.onAgentLogin.p99.9") > 0);
+        assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "event.noLeadsAvailable"));
+
+        this.underTest.close();
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testStartReporting_reportsTheLatenciesOfEachInterval() throws InterruptedException {
+        this.powerDialer.onAgentLogin(AGENT1);
+        final CountDownLatch reported = new CountDownLatch(1);
+        final AtomicReference<LatencyHistogram.Snapshot> logins = new AtomicReference<>();
+        this.underTest.startReporting((histograms, counts) -> {
+            // Only the first interval holds the login, the later ones report empty histograms
+            logins.compareAndSet(null, histograms.get("event.onAgentLogin"));
+            reported.countDown();
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(1, logins.get().getCount());
+    }
+}
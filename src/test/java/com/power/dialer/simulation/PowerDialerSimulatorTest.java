@@ -0,0 +1,59 @@
+package com.power.dialer.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.power.dialer.compute.AdaptiveDialRatio;
+import com.power.dialer.compute.PowerDialerImpl;
+import com.power.dialer.dao.InMemoryPowerDialerDao;
+
+public class PowerDialerSimulatorTest {
+
+    private static final SimulationConfig CONFIG = SimulationConfig.builder()
+        .agents(50)
+        .leads(50_000)
+        .durationMillis(3_600_000)
+        .build();
+
+    @Test
+    public void testRun_withEveryLeadPickingUp_neverAbandonsACall() {
+        final SimulationReport report = new PowerDialerSimulator(CONFIG.toBuilder().answerRate(1).dialFailureRate(0).build(),
+            new InMemoryPowerDialerDao(), PowerDialerImpl::new).run();
+
+        assertEquals(0, report.getAbandonedCalls());
+        assertEquals(0, report.getUnansweredCalls());
+        assertEquals(report.getDials(), report.getConnectedCalls() + countRinging(report));
+        assertTrue(report.getAgentUtilization() > 0.8);
+        assertTrue(report.getDaoCallsPerEvent() > 0);
+    }
+
+    @Test
+    public void testRun_withTheSameSeed_reportsTheSameOutcomes() {
+        final SimulationReport first = new PowerDialerSimulator(CONFIG, new InMemoryPowerDialerDao(), PowerDialerImpl::new).run();
+        final SimulationReport second = new PowerDialerSimulator(CONFIG, new InMemoryPowerDialerDao(), PowerDialerImpl::new).run();
+
+        assertEquals(first.getEvents(), second.getEvents());
+        assertEquals(first.getConnectedCalls(), second.getConnectedCalls());
+        assertEquals(first.getTalkTimeMillis(), second.getTalkTimeMillis());
+    }
+
+    @Test
+    public void testRun_withAdaptiveDialRatio_raisesUtilizationOfLowAnswerRates() {
+        final SimulationConfig config = CONFIG.toBuilder().answerRate(0.2).build();
+        final SimulationReport fixed = new PowerDialerSimulator(config, new InMemoryPowerDialerDao(), PowerDialerImpl::new).run();
+        final SimulationReport adaptive = new PowerDialerSimulator(config, new InMemoryPowerDialerDao(), powerDialerDao ->
+            new PowerDialerImpl(powerDialerDao, powerDialerDao::claimLead, Runnable::run, new AdaptiveDialRatio(0.05))).run();
+
+        assertTrue(adaptive.getAgentUtilization() > fixed.getAgentUtilization());
+        assertTrue(adaptive.getAbandonRate() < 0.1);
+    }
+
+    private static long countRinging(final SimulationReport report) {
+        // Leads dialed at most one per agent are still ringing when the run ends
+        final long ringing = report.getDials() - report.getConnectedCalls();
+        assertTrue(ringing <= report.getAgents());
+        return ringing;
+    }
+}